@@ -151,7 +151,7 @@ public class AmqpsConnection extends BaseHandler
      */
     public void open() throws IOException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         if(!this.isOpen)
         {
             try
@@ -179,7 +179,7 @@ public class AmqpsConnection extends BaseHandler
                 throw new IOException("Waited too long for the connection to open.");
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -188,7 +188,7 @@ public class AmqpsConnection extends BaseHandler
      */
     public void openAmqpAsync()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         if (executorService == null)
         {
             executorService = Executors.newFixedThreadPool(THREAD_POOL_MAX_NUMBER);
@@ -198,7 +198,7 @@ public class AmqpsConnection extends BaseHandler
         ReactorRunner reactorRunner = new ReactorRunner(amqpReactor, this.logger);
         executorService.submit(reactorRunner);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -207,7 +207,7 @@ public class AmqpsConnection extends BaseHandler
      */
     public void close() throws IOException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (this.isOpen)
         {
@@ -263,7 +263,7 @@ public class AmqpsConnection extends BaseHandler
             }
             this.isOpen = false;
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -273,21 +273,21 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onReactorInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         event.getReactor().connectionToHost(this.hostName, this.useWebSockets ? AMQP_WEB_SOCKET_PORT : AMQP_PORT, this);
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     @Override
     public void onReactorFinal(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         this.reactor = null;
         synchronized (closeLock)
         {
             closeLock.notifyLock();
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -297,7 +297,7 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onConnectionInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         this.connection = event.getConnection();
         this.connection.setHostname(this.fullHostAddress);
 
@@ -314,7 +314,7 @@ public class AmqpsConnection extends BaseHandler
         {
             logger.LogDebug("openLinks has thrown exception: %s", e.getMessage());
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -334,7 +334,7 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onConnectionBound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         Transport transport = event.getConnection().getTransport();
         if (transport != null)
         {
@@ -362,15 +362,15 @@ public class AmqpsConnection extends BaseHandler
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     @Override
     public void onConnectionUnbound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         this.isOpen = false;
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -380,7 +380,7 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onLinkInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         try
         {
             Link link = event.getLink();
@@ -390,7 +390,7 @@ public class AmqpsConnection extends BaseHandler
         {
             logger.LogDebug("Exception in onLinkInit: %s", e.getMessage());
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -401,7 +401,7 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         String linkName = event.getLink().getName();
 
         if (amqpDeviceOperations.isReceiverLinkTag(linkName))
@@ -418,7 +418,7 @@ public class AmqpsConnection extends BaseHandler
                 }
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -435,7 +435,7 @@ public class AmqpsConnection extends BaseHandler
         }
 
         boolean result;
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // credit, the function shall return -1.]
         if (!this.isOpen)
@@ -473,7 +473,7 @@ public class AmqpsConnection extends BaseHandler
                 result = false;
             }
         }
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
         return result;
     }
 
@@ -484,7 +484,7 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onDelivery(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         AmqpMessage message = amqpDeviceOperations.receiverMessageFromLink(event.getLink().getName());
         if (message == null)
@@ -508,7 +508,7 @@ public class AmqpsConnection extends BaseHandler
             msgListener.messageReceived(message);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -518,10 +518,10 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         this.linkCredit = event.getLink().getCredit();
         logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -533,8 +533,8 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onLinkRemoteClose(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodEntry();
+        logger.LogMethodExit();
     }
 
     /**
@@ -544,9 +544,9 @@ public class AmqpsConnection extends BaseHandler
     @Override
     public void onTransportError(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
         this.isOpen = false;
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
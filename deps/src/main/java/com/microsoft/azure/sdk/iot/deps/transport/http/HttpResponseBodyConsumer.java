@@ -0,0 +1,28 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.deps.transport.http;
+
+import java.io.IOException;
+
+/**
+ * Receives the body of an HTTP response chunk by chunk, so that it can be
+ * processed without holding the whole body in memory.
+ */
+public interface HttpResponseBodyConsumer
+{
+    /**
+     * Called for each chunk of the body, in order. The buffer is reused for the
+     * next chunk once this function returns, so its content must be copied if
+     * it is needed later.
+     *
+     * @param buffer the buffer holding the chunk.
+     * @param offset the position of the first byte of the chunk in the buffer.
+     * @param length the number of bytes in the chunk.
+     *
+     * @throws IOException if the chunk could not be processed. Reading stops.
+     */
+    void onBodyChunk(byte[] buffer, int offset, int length) throws IOException;
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.deps.transport.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads HTTP response bodies in chunks rather than one byte at a time. Shared
+ * by the HTTP connections of the device and service clients.
+ */
+public final class HttpResponseBodyReader
+{
+    /** The size of the chunks read from the stream when the body length is unknown. */
+    public static final int CHUNK_SIZE_BYTES = 8 * 1024;
+
+    /**
+     * The largest array allocated up front for a body of known length. A
+     * larger body grows the array as it arrives, so that a wrong or hostile
+     * Content-Length cannot make the reader allocate more than is received.
+     */
+    public static final int MAX_PREALLOCATED_BYTES = 1024 * 1024;
+
+    /** Per thread chunk buffer used to stream bodies, so that streaming a body allocates nothing. */
+    private static final ThreadLocal<byte[]> CHUNK_BUFFER = new ThreadLocal<byte[]>()
+    {
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[CHUNK_SIZE_BYTES];
+        }
+    };
+
+    private HttpResponseBodyReader()
+    {
+    }
+
+    /**
+     * Reads the stream until it is empty. If the body length is known, the
+     * body is read straight into an array of that size, up to
+     * {@link #MAX_PREALLOCATED_BYTES}. A stream that ends early, or that
+     * holds more than announced, is still read completely.
+     *
+     * @param stream the stream to read.
+     * @param contentLength the announced length of the body, or a negative value if unknown.
+     *
+     * @return the content of the stream.
+     *
+     * @throws IOException if the stream could not be read from.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public static byte[] readAll(InputStream stream, int contentLength) throws IOException
+    {
+        if (stream == null)
+        {
+            // Codes_SRS_HTTPRESPONSEBODYREADER_41_001: [If the provided stream is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("stream cannot be null");
+        }
+
+        byte[] body;
+        if (contentLength >= 0)
+        {
+            // Codes_SRS_HTTPRESPONSEBODYREADER_41_002: [If the provided contentLength is not negative, the function shall read the body into an array of that size, or of MAX_PREALLOCATED_BYTES if contentLength is larger.]
+            body = new byte[Math.min(contentLength, MAX_PREALLOCATED_BYTES)];
+        }
+        else
+        {
+            // Codes_SRS_HTTPRESPONSEBODYREADER_41_005: [If the provided contentLength is negative, the function shall read the stream in chunks until it is empty and return its content.]
+            body = new byte[CHUNK_SIZE_BYTES];
+        }
+
+        int bodySize = 0;
+        while (true)
+        {
+            if (bodySize == body.length)
+            {
+                // Probe before growing, so that a body of the announced length is returned without a copy
+                int nextByte = stream.read();
+                if (nextByte == -1)
+                {
+                    break;
+                }
+
+                // Codes_SRS_HTTPRESPONSEBODYREADER_41_004: [If the stream holds more bytes than the array, the function shall grow the array and read the stream until it is empty.]
+                body = Arrays.copyOf(body, Math.max(body.length * 2, CHUNK_SIZE_BYTES));
+                body[bodySize++] = (byte) nextByte;
+            }
+
+            int bytesRead = stream.read(body, bodySize, body.length - bodySize);
+            if (bytesRead == -1)
+            {
+                break;
+            }
+
+            bodySize += bytesRead;
+        }
+
+        // Codes_SRS_HTTPRESPONSEBODYREADER_41_003: [If the stream ends before contentLength bytes were read, the function shall return the bytes that were read.]
+        return bodySize == body.length ? body : Arrays.copyOf(body, bodySize);
+    }
+
+    /**
+     * Streams the body to the provided consumer chunk by chunk instead of
+     * materializing it. The chunks are read into a buffer pooled per thread.
+     *
+     * @param stream the stream to read.
+     * @param consumer the consumer of the body chunks.
+     *
+     * @return the number of bytes read.
+     *
+     * @throws IOException if the stream could not be read from, or if the consumer failed.
+     * @throws IllegalArgumentException if the stream or the consumer is null.
+     */
+    public static long readTo(InputStream stream, HttpResponseBodyConsumer consumer) throws IOException
+    {
+        // Codes_SRS_HTTPRESPONSEBODYREADER_41_006: [The function shall read the chunks into a buffer owned by the calling thread.]
+        return readTo(stream, consumer, CHUNK_BUFFER.get());
+    }
+
+    /**
+     * Streams the body to the provided consumer chunk by chunk instead of
+     * materializing it, reading the chunks into the provided buffer. Lets
+     * callers that pool their own buffers read without allocating.
+     *
+     * @param stream the stream to read.
+     * @param consumer the consumer of the body chunks.
+     * @param buffer the buffer to read the chunks into.
+     *
+     * @return the number of bytes read.
+     *
+     * @throws IOException if the stream could not be read from, or if the consumer failed.
+     * @throws IllegalArgumentException if the stream, the consumer or the buffer is null, or if the buffer is empty.
+     */
+    public static long readTo(InputStream stream, HttpResponseBodyConsumer consumer, byte[] buffer) throws IOException
+    {
+        if (stream == null || consumer == null || buffer == null || buffer.length == 0)
+        {
+            // Codes_SRS_HTTPRESPONSEBODYREADER_41_007: [If the provided stream, consumer or buffer is null, or if the buffer is empty, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("stream, consumer and buffer cannot be null or empty");
+        }
+
+        // Codes_SRS_HTTPRESPONSEBODYREADER_41_008: [The function shall read the stream into the buffer until it is empty, pass each chunk to the consumer, and return the number of bytes read.]
+        long totalBytesRead = 0;
+        int bytesRead;
+        while ((bytesRead = stream.read(buffer, 0, buffer.length)) != -1)
+        {
+            if (bytesRead > 0)
+            {
+                consumer.onBodyChunk(buffer, 0, bytesRead);
+                totalBytesRead += bytesRead;
+            }
+        }
+
+        return totalBytesRead;
+    }
+}
@@ -283,13 +283,66 @@ public final class Base64
         return new String(encodeBase64Internal(dataValues));
     }
 
+    /**
+     * Get the number of Base64 values needed to encode the provided number of bytes.
+     *
+     * @param dataLength is the number of bytes to encode
+     * @return the length of the encoded values
+     * @throws IllegalArgumentException if the provided dataLength is negative
+     */
+    public static int encodedLength(int dataLength) throws IllegalArgumentException
+    {
+        /* Codes_SRS_BASE64_41_001: [If the `dataLength` is negative, the encodedLength shall throw IllegalArgumentException.] */
+        if(dataLength < 0)
+        {
+            throw new IllegalArgumentException("negative dataLength");
+        }
+
+        /* Codes_SRS_BASE64_41_002: [The encodedLength shall return the number of Base64 values needed to encode `dataLength` bytes.] */
+        return ((dataLength + BYTE_GROUP_SIZE - 1) / BYTE_GROUP_SIZE) * BASE64_GROUP_SIZE;
+    }
+
+    /**
+     * Convert a array of bytes in MIME Base64 values, written straight into the provided destination, so that large
+     * payloads can be encoded without intermediate copies.
+     * <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>.
+     *
+     * @param dataValues is an array of bytes with the original values
+     * @param destination is the array that receives the base64 encoded values
+     * @param destinationOffset is the position in the destination of the first encoded value
+     * @return the number of encoded values written in the destination
+     * @throws IllegalArgumentException if the provided dataValues or destination are null, or if the encoded values do not fit in the destination
+     */
+    public static int encodeBase64Local(byte[] dataValues, byte[] destination, int destinationOffset) throws IllegalArgumentException
+    {
+        /* Codes_SRS_BASE64_41_003: [If the `dataValues` or the `destination` is null, the encodeBase64Local shall throw IllegalArgumentException.] */
+        if(dataValues == null || destination == null)
+        {
+            throw new IllegalArgumentException("null dataValues or destination");
+        }
+
+        /* Codes_SRS_BASE64_41_004: [If the encoded values do not fit in the `destination` from the `destinationOffset`, the encodeBase64Local shall throw IllegalArgumentException.] */
+        int encodedLength = encodedLength(dataValues.length);
+        if(destinationOffset < 0 || destinationOffset > destination.length - encodedLength)
+        {
+            throw new IllegalArgumentException("destination too small for the encoded values");
+        }
+
+        /* Codes_SRS_BASE64_41_005: [The encodeBase64Local shall encode the provided `dataValues` in the `destination` from the `destinationOffset` using the Base64 format define in the RFC2045, and return the number of encoded values.] */
+        encodeBase64Internal(dataValues, destination, destinationOffset);
+        return encodedLength;
+    }
+
     private static byte[] encodeBase64Internal(byte[] dataValues) throws IllegalArgumentException
     {
-        int encodedLength = (((dataValues.length - 1) / BYTE_GROUP_SIZE) + 1) * BASE64_GROUP_SIZE;
-        int destinationPosition = 0;
-        int currentPosition = 0;
+        byte[] encodedResult = new byte[encodedLength(dataValues.length)];
+        encodeBase64Internal(dataValues, encodedResult, 0);
+        return encodedResult;
+    }
 
-        byte[] encodedResult = new byte[encodedLength];
+    private static void encodeBase64Internal(byte[] dataValues, byte[] encodedResult, int destinationPosition)
+    {
+        int currentPosition = 0;
 
         while((dataValues.length - currentPosition) >= BYTE_GROUP_SIZE)
         {
@@ -318,7 +371,5 @@ public final class Base64
             encodedResult[destinationPosition++] = BASE64_PAD;
             encodedResult[destinationPosition] = BASE64_PAD;
         }
-
-        return encodedResult;
     }
 }
@@ -3,10 +3,12 @@
 
 package com.microsoft.azure.sdk.iot.deps.util;
 
+/**
+ * Logger of the dependencies, which does not log anything. It keeps the same functions as the logger of the device
+ * client so that the code shared with the device client does not change.
+ */
 public class CustomLogger
 {
-    private static final int CALLING_METHOD_NAME_DEPTH = 2;
-
     public CustomLogger()
     {
     }
@@ -43,8 +45,35 @@ public class CustomLogger
     {
     }
 
+    public void LogMethodEntry()
+    {
+    }
+
+    public void LogMethodExit()
+    {
+    }
+
+    public boolean isInfoEnabled()
+    {
+        return false;
+    }
+
+    public boolean isDebugEnabled()
+    {
+        return false;
+    }
+
+    public boolean isTraceEnabled()
+    {
+        return false;
+    }
+
+    /**
+     * Nothing is logged, so the name of the calling method is not looked up.
+     * @return an empty string
+     */
     public String getMethodName()
     {
-        return Thread.currentThread().getStackTrace()[CALLING_METHOD_NAME_DEPTH].getMethodName();
+        return "";
     }
 }
@@ -7,6 +7,8 @@ package tests.unit.com.microsoft.azure.sdk.iot.deps.transport.http;
 
 import com.microsoft.azure.sdk.iot.deps.transport.http.HttpConnection;
 import com.microsoft.azure.sdk.iot.deps.transport.http.HttpMethod;
+import com.microsoft.azure.sdk.iot.deps.transport.http.HttpResponseBodyConsumer;
+import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
@@ -15,6 +17,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.net.ssl.HttpsURLConnection;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -392,7 +396,7 @@ public class HttpConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_25_014: [The function shall read from the input stream (response stream) and return the response.]
     @Test
-    public void readInputCompletelyReadsInputStream(@Mocked final InputStream mockIs) throws IOException
+    public void readInputCompletelyReadsInputStream() throws IOException
     {
         // Arrange
         final HttpMethod httpsMethod = HttpMethod.GET;
@@ -407,9 +411,7 @@ public class HttpConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -420,6 +422,77 @@ public class HttpConnectionTest
         assertThat(testResponse, is(expectedResponse));
     }
 
+    // Tests_SRS_HTTPCONNECTION_41_001: [The function shall read from the input stream (response stream) and pass the response to the provided consumer.]
+    @Test
+    public void readInputStreamsResponseToConsumer() throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        byte[] expectedResponse = { 1, 2, 3 };
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getInputStream();
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
+            }
+        };
+        HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
+        conn.connect();
+        // Act
+        long bytesRead = conn.readInput(new HttpResponseBodyConsumer()
+        {
+            @Override
+            public void onBodyChunk(byte[] buffer, int offset, int length)
+            {
+                received.write(buffer, offset, length);
+            }
+        });
+        // Assert
+        assertThat(bytesRead, is(3L));
+        assertThat(received.toByteArray(), is(expectedResponse));
+    }
+
+    // Tests_SRS_HTTPCONNECTION_41_002: [The function shall close the input stream after it has been read.]
+    @Test
+    public void readInputWithConsumerClosesInputStream(@Mocked final InputStream mockIs, @Mocked final HttpResponseBodyConsumer mockConsumer) throws IOException
+    {
+        // Arrange
+        final HttpMethod httpsMethod = HttpMethod.GET;
+        new NonStrictExpectations()
+        {
+            {
+                mockUrl.getProtocol();
+                result = "https";
+                mockUrl.openConnection();
+                result = mockUrlConn;
+                mockUrlConn.getRequestMethod();
+                result = httpsMethod.name();
+                mockUrlConn.getInputStream();
+                result = mockIs;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
+            }
+        };
+        HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
+        conn.connect();
+        // Act
+        conn.readInput(mockConsumer);
+        // Assert
+        new Verifications()
+        {
+            {
+                mockIs.close();
+            }
+        };
+    }
+
     // Tests_SRS_HTTPSCONNECTION_25_015: [The function shall throw an IOException if the input stream could not be accessed.]
     // Assert
     @Test(expected = IOException.class)
@@ -465,6 +538,8 @@ public class HttpConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -482,7 +557,7 @@ public class HttpConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_25_017: [The function shall read from the error stream and return the response.]
     @Test
-    public void readErrorCompletelyReadsErrorStream(@Mocked final InputStream mockIs) throws IOException
+    public void readErrorCompletelyReadsErrorStream() throws IOException
     {
         // Arrange
         final HttpMethod httpsMethod = HttpMethod.GET;
@@ -497,9 +572,7 @@ public class HttpConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -583,6 +656,8 @@ public class HttpConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -723,4 +798,16 @@ public class HttpConnectionTest
         // Act
         conn.getResponseHeaders();
     }
+
+    // Tests_SRS_HTTPCONNECTION_41_003: [The function shall read the stream until it is empty and return its content.]
+    @Test
+    public void readInputStreamReadsStreamUntilEmpty() throws IOException
+    {
+        // Arrange
+        byte[] expectedContent = { 1, 2, 3 };
+        // Act
+        byte[] content = Deencapsulation.invoke(HttpConnection.class, "readInputStream", new ByteArrayInputStream(expectedContent));
+        // Assert
+        assertThat(content, is(expectedContent));
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.deps.transport.http;
+
+import com.microsoft.azure.sdk.iot.deps.transport.http.HttpResponseBodyConsumer;
+import com.microsoft.azure.sdk.iot.deps.transport.http.HttpResponseBodyReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for HttpResponseBodyReader.
+ */
+public class HttpResponseBodyReaderTest
+{
+    private static byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Stream that hands out at most 7 bytes per read, like a socket that receives the body in small segments. */
+    private static class TrickleInputStream extends ByteArrayInputStream
+    {
+        TrickleInputStream(byte[] bytes)
+        {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len)
+        {
+            return super.read(b, off, Math.min(len, 7));
+        }
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_001: [If the provided stream is null, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void readAllThrowsForNullStream() throws IOException
+    {
+        // act
+        HttpResponseBodyReader.readAll(null, -1);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_002: [If the provided contentLength is not negative, the function shall read the body into an array of that size, or of MAX_PREALLOCATED_BYTES if contentLength is larger.]
+    @Test
+    public void readAllReadsBodyOfKnownLength() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(1000);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new TrickleInputStream(expectedBody), expectedBody.length);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_003: [If the stream ends before contentLength bytes were read, the function shall return the bytes that were read.]
+    @Test
+    public void readAllReturnsShortBodyIfStreamEndsEarly() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(10);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new ByteArrayInputStream(expectedBody), 100);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_004: [If the stream holds more bytes than the array, the function shall grow the array and read the stream until it is empty.]
+    @Test
+    public void readAllReadsPastContentLength() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(20000);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new ByteArrayInputStream(expectedBody), 0);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_002: [If the provided contentLength is not negative, the function shall read the body into an array of that size, or of MAX_PREALLOCATED_BYTES if contentLength is larger.]
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_003: [If the stream ends before contentLength bytes were read, the function shall return the bytes that were read.]
+    @Test
+    public void readAllDoesNotPreallocateHugeContentLength() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(10);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new ByteArrayInputStream(expectedBody), Integer.MAX_VALUE);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_002: [If the provided contentLength is not negative, the function shall read the body into an array of that size, or of MAX_PREALLOCATED_BYTES if contentLength is larger.]
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_004: [If the stream holds more bytes than the array, the function shall grow the array and read the stream until it is empty.]
+    @Test
+    public void readAllReadsBodyLargerThanPreallocation() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(HttpResponseBodyReader.MAX_PREALLOCATED_BYTES + 5);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new ByteArrayInputStream(expectedBody), expectedBody.length);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_005: [If the provided contentLength is negative, the function shall read the stream in chunks until it is empty and return its content.]
+    @Test
+    public void readAllReadsBodyOfUnknownLength() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(3 * HttpResponseBodyReader.CHUNK_SIZE_BYTES + 5);
+
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new TrickleInputStream(expectedBody), -1);
+
+        // assert
+        assertArrayEquals(expectedBody, body);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_005: [If the provided contentLength is negative, the function shall read the stream in chunks until it is empty and return its content.]
+    @Test
+    public void readAllReadsEmptyStream() throws IOException
+    {
+        // act
+        byte[] body = HttpResponseBodyReader.readAll(new ByteArrayInputStream(new byte[0]), -1);
+
+        // assert
+        assertEquals(0, body.length);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_007: [If the provided stream, consumer or buffer is null, or if the buffer is empty, the function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void readToThrowsForEmptyBuffer() throws IOException
+    {
+        // act
+        HttpResponseBodyReader.readTo(new ByteArrayInputStream(new byte[1]), new HttpResponseBodyConsumer()
+        {
+            @Override
+            public void onBodyChunk(byte[] buffer, int offset, int length)
+            {
+            }
+        }, new byte[0]);
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_006: [The function shall read the chunks into a buffer owned by the calling thread.]
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_008: [The function shall read the stream into the buffer until it is empty, pass each chunk to the consumer, and return the number of bytes read.]
+    @Test
+    public void readToStreamsBodyToConsumer() throws IOException
+    {
+        // arrange
+        byte[] expectedBody = randomBytes(2 * HttpResponseBodyReader.CHUNK_SIZE_BYTES + 1);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final int[] chunkCount = new int[1];
+        InputStream stream = new ByteArrayInputStream(expectedBody);
+
+        // act
+        long bytesRead = HttpResponseBodyReader.readTo(stream, new HttpResponseBodyConsumer()
+        {
+            @Override
+            public void onBodyChunk(byte[] buffer, int offset, int length)
+            {
+                received.write(buffer, offset, length);
+                chunkCount[0]++;
+            }
+        });
+
+        // assert
+        assertEquals(expectedBody.length, bytesRead);
+        assertEquals(3, chunkCount[0]);
+        assertArrayEquals(expectedBody, received.toByteArray());
+    }
+
+    // Tests_SRS_HTTPRESPONSEBODYREADER_41_008: [The function shall read the stream into the buffer until it is empty, pass each chunk to the consumer, and return the number of bytes read.]
+    @Test
+    public void readToUsesProvidedBuffer() throws IOException
+    {
+        // arrange
+        final byte[] pooledBuffer = new byte[16];
+        final boolean[] usedPooledBuffer = { true };
+
+        // act
+        long bytesRead = HttpResponseBodyReader.readTo(new ByteArrayInputStream(randomBytes(100)), new HttpResponseBodyConsumer()
+        {
+            @Override
+            public void onBodyChunk(byte[] buffer, int offset, int length)
+            {
+                usedPooledBuffer[0] &= buffer == pooledBuffer;
+            }
+        }, pooledBuffer);
+
+        // assert
+        assertEquals(100, bytesRead);
+        assertTrue(usedPooledBuffer[0]);
+    }
+}
@@ -274,4 +274,59 @@ public class Base64Test
         // assert
         assertEquals(expectedBase64Result, result);
     }
+
+    /* Tests_SRS_BASE64_41_001: [If the `dataLength` is negative, the encodedLength shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void encodedLengthThrowsOnNegativeLength()
+    {
+        // act
+        Base64.encodedLength(-1);
+    }
+
+    /* Tests_SRS_BASE64_41_002: [The encodedLength shall return the number of Base64 values needed to encode `dataLength` bytes.] */
+    @Test
+    public void encodedLengthRoundsUpToBase64Group()
+    {
+        // act - assert
+        assertEquals(0, Base64.encodedLength(0));
+        assertEquals(4, Base64.encodedLength(1));
+        assertEquals(4, Base64.encodedLength(3));
+        assertEquals(8, Base64.encodedLength(4));
+    }
+
+    /* Tests_SRS_BASE64_41_003: [If the `dataValues` or the `destination` is null, the encodeBase64Local shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void encodeBase64InDestinationThrowsOnNullDestination()
+    {
+        // act
+        Base64.encodeBase64Local("abc".getBytes(), null, 0);
+    }
+
+    /* Tests_SRS_BASE64_41_004: [If the encoded values do not fit in the `destination` from the `destinationOffset`, the encodeBase64Local shall throw IllegalArgumentException.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void encodeBase64InDestinationThrowsIfDestinationTooSmall()
+    {
+        // act
+        Base64.encodeBase64Local("abcd".getBytes(), new byte[10], 3);
+    }
+
+    /* Tests_SRS_BASE64_41_005: [The encodeBase64Local shall encode the provided `dataValues` in the `destination` from the `destinationOffset` using the Base64 format define in the RFC2045, and return the number of encoded values.] */
+    @Test
+    public void encodeBase64InDestinationWritesAtOffset()
+    {
+        // arrange
+        String textToEncode = "This is a valid test (aBcDeFgHiJKLmnoPqRstuVWXyz)-01234567";
+        String expectedBase64Result = "VGhpcyBpcyBhIHZhbGlkIHRlc3QgKGFCY0RlRmdIaUpLTG1ub1BxUnN0dVZXWHl6KS0wMTIzNDU2Nw==";
+        byte[] destination = new byte[expectedBase64Result.length() + 3];
+        destination[0] = '[';
+        destination[1] = '"';
+        destination[destination.length - 1] = '"';
+
+        // act
+        int result = Base64.encodeBase64Local(textToEncode.getBytes(), destination, 2);
+
+        // assert
+        assertEquals(expectedBase64Result.length(), result);
+        assertEquals("[\"" + expectedBase64Result + "\"", new String(destination));
+    }
 }
@@ -0,0 +1,261 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.async;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodCallback;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.Property;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.TwinPropertyCallBack;
+import com.microsoft.azure.sdk.iot.device.IotHubDirectEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.Message;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * CompletableFuture based API of a {@link DeviceClient}, for Java 8 and later.
+ *
+ * <p>The future of a message completes as soon as IoT Hub acknowledges it: the transport signals it from the thread
+ * that received the acknowledgement instead of queueing it for its send task. The future of a twin request completes
+ * when the response to this very request is received. The futures complete on the completion executor, so that the
+ * stages of the caller never run on the threads of the transport. A future completes
+ * exceptionally with an {@link IotHubStatusException} if the request did not complete with an OK status, and with
+ * the exception thrown by the device client if the request could not be started.</p>
+ *
+ * <p>The device client must be opened and closed by the caller.</p>
+ */
+public final class AsyncDeviceClient
+{
+    private final DeviceClient deviceClient;
+    private final Executor completionExecutor;
+
+    private CompletableFuture<Void> deviceTwinStarted = null;
+    private CompletableFuture<Void> deviceMethodSubscribed = null;
+
+    /**
+     * Constructor of an AsyncDeviceClient that completes its futures on the common fork join pool.
+     * @param deviceClient the device client to send the requests with. Cannot be {@code null}.
+     * @throws IllegalArgumentException if deviceClient is {@code null}
+     */
+    public AsyncDeviceClient(DeviceClient deviceClient)
+    {
+        this(deviceClient, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     * @param deviceClient the device client to send the requests with. Cannot be {@code null}.
+     * @param completionExecutor the executor on which the futures complete. Cannot be {@code null}.
+     * @throws IllegalArgumentException if deviceClient or completionExecutor is {@code null}
+     */
+    public AsyncDeviceClient(DeviceClient deviceClient, Executor completionExecutor)
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_001: [The constructor shall throw IllegalArgumentException if deviceClient or completionExecutor is null.]
+        if (deviceClient == null || completionExecutor == null)
+        {
+            throw new IllegalArgumentException("deviceClient and completionExecutor cannot be null");
+        }
+
+        // Codes_SRS_ASYNCDEVICECLIENT_41_002: [The constructor shall save the device client and the completion executor.]
+        this.deviceClient = deviceClient;
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Get the device client that sends the requests, for the operations that have no future based equivalent.
+     * @return the device client
+     */
+    public DeviceClient getDeviceClient()
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_003: [The function shall return the saved device client.]
+        return this.deviceClient;
+    }
+
+    /**
+     * Send a message to IoT Hub.
+     * @param message the message to send. Cannot be {@code null}.
+     * @return a future that completes when IoT Hub acknowledged the message
+     */
+    public CompletableFuture<Void> sendEventAsync(Message message)
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_004: [The function shall send the message by calling sendEventAsync on the device client with a callback that completes the returned future.]
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try
+        {
+            this.deviceClient.sendEventAsync(message, new FutureCompletingCallback(future), null);
+        }
+        catch (RuntimeException e)
+        {
+            // Codes_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Start the device twin and get its properties. This must complete before the other twin operations are used,
+     * as they share the device twin status that completes the returned future.
+     * @param twinPropertyCallBack the callback for the desired and reported properties. Cannot be {@code null}.
+     * @param twinPropertyCallBackContext the context to be passed to the property callback. Can be {@code null}.
+     * @return a future that completes when IoT Hub responded to the first request for the twin. Calling this function
+     * again returns the same future.
+     */
+    public synchronized CompletableFuture<Void> startDeviceTwinAsync(TwinPropertyCallBack twinPropertyCallBack, Object twinPropertyCallBackContext)
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_006: [If the twin was already started by this object, the function shall return the future of the first call.]
+        if (this.deviceTwinStarted == null)
+        {
+            // Codes_SRS_ASYNCDEVICECLIENT_41_007: [The function shall start the twin by calling startDeviceTwin on the device client with a status callback that completes the returned future on the first status.]
+            this.deviceTwinStarted = new CompletableFuture<>();
+            try
+            {
+                this.deviceClient.startDeviceTwin(new FutureCompletingCallback(this.deviceTwinStarted), null, twinPropertyCallBack, twinPropertyCallBackContext);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // Codes_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+                this.deviceTwinStarted.completeExceptionally(e);
+            }
+        }
+
+        return this.deviceTwinStarted;
+    }
+
+    /**
+     * Get the twin properties again. They are reported to the property callback of the twin.
+     * @return a future that completes when IoT Hub responded to this request, or with an IotHubStatusException of
+     * status MESSAGE_EXPIRED if it did not respond within the operation timeout of the device client
+     */
+    public CompletableFuture<Void> getDeviceTwinAsync()
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_008: [The function shall get the twin by calling getDeviceTwin on the device client with a request status callback that completes the returned future.]
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try
+        {
+            this.deviceClient.getDeviceTwin(new FutureCompletingCallback(future), null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Codes_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Send reported properties.
+     * @param reportedProperties the properties to report. Cannot be {@code null} or empty.
+     * @return a future that completes when IoT Hub responded to this request, or with an IotHubStatusException of
+     * status MESSAGE_EXPIRED if it did not respond within the operation timeout of the device client
+     */
+    public CompletableFuture<Void> sendReportedPropertiesAsync(Set<Property> reportedProperties)
+    {
+        return sendReportedPropertiesAsync(reportedProperties, null);
+    }
+
+    /**
+     * Send reported properties with a version.
+     * @param reportedProperties the properties to report. Cannot be {@code null} or empty.
+     * @param version the version of the reported properties. Can be {@code null}, cannot be negative.
+     * @return a future that completes when IoT Hub responded to this request, or with an IotHubStatusException of
+     * status MESSAGE_EXPIRED if it did not respond within the operation timeout of the device client
+     */
+    public CompletableFuture<Void> sendReportedPropertiesAsync(Set<Property> reportedProperties, Integer version)
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_009: [The function shall send the reported properties by calling sendReportedProperties on the device client with a request status callback that completes the returned future.]
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try
+        {
+            this.deviceClient.sendReportedProperties(reportedProperties, version, new FutureCompletingCallback(future), null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Codes_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Subscribe to direct methods. Calling this function again replaces the method callback.
+     * @param deviceMethodCallback the callback on which the methods are invoked. Cannot be {@code null}.
+     * @param deviceMethodCallbackContext the context to be passed to the method callback. Can be {@code null}.
+     * @return a future that completes when IoT Hub acknowledged the subscription. Calling this function again
+     * returns the same future.
+     */
+    public synchronized CompletableFuture<Void> subscribeToDeviceMethodAsync(DeviceMethodCallback deviceMethodCallback, Object deviceMethodCallbackContext)
+    {
+        // Codes_SRS_ASYNCDEVICECLIENT_41_010: [The function shall subscribe by calling subscribeToDeviceMethod on the device client with a status callback that completes the returned future on the first status.]
+        // Codes_SRS_ASYNCDEVICECLIENT_41_011: [If methods were already subscribed by this object, the function shall return the future of the first call.]
+        CompletableFuture<Void> subscribed = this.deviceMethodSubscribed != null ? this.deviceMethodSubscribed : new CompletableFuture<Void>();
+        try
+        {
+            this.deviceClient.subscribeToDeviceMethod(deviceMethodCallback, deviceMethodCallbackContext, new FutureCompletingCallback(subscribed), null);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Codes_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        this.deviceMethodSubscribed = subscribed;
+        return subscribed;
+    }
+
+    /**
+     * Status callback executed by the transport as soon as the status is known. Only the first status completes the
+     * future, the next ones, such as the statuses of the responses to direct methods, are ignored.
+     */
+    private final class FutureCompletingCallback implements IotHubDirectEventCallback
+    {
+        private final CompletableFuture<Void> future;
+
+        private FutureCompletingCallback(CompletableFuture<Void> future)
+        {
+            this.future = future;
+        }
+
+        @Override
+        public void execute(final IotHubStatusCode responseStatus, Object callbackContext)
+        {
+            if (this.future.isDone())
+            {
+                return;
+            }
+
+            // Codes_SRS_ASYNCDEVICECLIENT_41_012: [The callback shall complete the future on the completion executor, normally if the status is OK or OK_EMPTY, and exceptionally with an IotHubStatusException otherwise.]
+            Runnable completion = () ->
+            {
+                if (responseStatus == IotHubStatusCode.OK || responseStatus == IotHubStatusCode.OK_EMPTY)
+                {
+                    this.future.complete(null);
+                }
+                else
+                {
+                    this.future.completeExceptionally(new IotHubStatusException(responseStatus));
+                }
+            };
+
+            try
+            {
+                completionExecutor.execute(completion);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Codes_SRS_ASYNCDEVICECLIENT_41_013: [If the completion executor rejects the completion, the callback shall complete the future on the calling thread.]
+                completion.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.async;
+
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.exceptions.IotHubServiceException;
+
+/**
+ * Exception with which a future of the {@link AsyncDeviceClient} completes when IoT Hub, or the transport, reported
+ * a status other than OK for the request. The cause, if any, is the exception that maps to the status code.
+ */
+public class IotHubStatusException extends IotHubServiceException
+{
+    private final IotHubStatusCode statusCode;
+
+    /**
+     * Constructor.
+     * @param statusCode the status reported for the request
+     */
+    public IotHubStatusException(IotHubStatusCode statusCode)
+    {
+        // Codes_SRS_IOTHUBSTATUSEXCEPTION_41_001: [The constructor shall save the status code, and use the exception that maps to it as the cause, if any.]
+        super("IoT Hub request completed with status " + statusCode, IotHubStatusCode.getConnectionStatusException(statusCode, statusCode.name()));
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Get the status reported for the request.
+     * @return the status code
+     */
+    @Override
+    public IotHubStatusCode getStatusCode()
+    {
+        // Codes_SRS_IOTHUBSTATUSEXCEPTION_41_002: [The function shall return the saved status code.]
+        return this.statusCode;
+    }
+}
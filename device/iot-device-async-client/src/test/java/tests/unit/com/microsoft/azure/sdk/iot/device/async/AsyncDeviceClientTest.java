@@ -0,0 +1,343 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.async;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClient;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.DeviceMethodCallback;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.Property;
+import com.microsoft.azure.sdk.iot.device.DeviceTwin.TwinPropertyCallBack;
+import com.microsoft.azure.sdk.iot.device.IotHubDirectEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubEventCallback;
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.async.AsyncDeviceClient;
+import com.microsoft.azure.sdk.iot.device.async.IotHubStatusException;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AsyncDeviceClient.
+ */
+public class AsyncDeviceClientTest
+{
+    @Mocked
+    DeviceClient mockDeviceClient;
+
+    @Mocked
+    Message mockMessage;
+
+    @Mocked
+    TwinPropertyCallBack mockTwinPropertyCallBack;
+
+    @Mocked
+    DeviceMethodCallback mockDeviceMethodCallback;
+
+    @Mocked
+    Set<Property> mockReportedProperties;
+
+    private static final Executor DIRECT_EXECUTOR = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    private IotHubEventCallback captureSendEventCallback()
+    {
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockDeviceClient.sendEventAsync(mockMessage, withCapture(callbacks), null);
+                times = 1;
+            }
+        };
+        return callbacks.get(0);
+    }
+
+    private static Throwable getFailure(CompletableFuture<Void> future) throws InterruptedException
+    {
+        try
+        {
+            future.get();
+            fail("The future should have completed exceptionally");
+            return null;
+        }
+        catch (ExecutionException e)
+        {
+            return e.getCause();
+        }
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_001: [The constructor shall throw IllegalArgumentException if deviceClient or completionExecutor is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullDeviceClient()
+    {
+        new AsyncDeviceClient(null, DIRECT_EXECUTOR);
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_001: [The constructor shall throw IllegalArgumentException if deviceClient or completionExecutor is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnNullExecutor()
+    {
+        new AsyncDeviceClient(mockDeviceClient, null);
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_002: [The constructor shall save the device client and the completion executor.]
+    // Tests_SRS_ASYNCDEVICECLIENT_41_003: [The function shall return the saved device client.]
+    @Test
+    public void getDeviceClientReturnsDeviceClient()
+    {
+        //act
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient);
+
+        //assert
+        assertEquals(mockDeviceClient, client.getDeviceClient());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_004: [The function shall send the message by calling sendEventAsync on the device client with a callback that completes the returned future.]
+    // Tests_SRS_ASYNCDEVICECLIENT_41_012: [The callback shall complete the future on the completion executor, normally if the status is OK or OK_EMPTY, and exceptionally with an IotHubStatusException otherwise.]
+    @Test
+    public void sendEventAsyncCompletesOnOkEmpty() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> future = client.sendEventAsync(mockMessage);
+
+        //assert
+        assertFalse(future.isDone());
+        IotHubEventCallback callback = captureSendEventCallback();
+        assertTrue(callback instanceof IotHubDirectEventCallback);
+        callback.execute(IotHubStatusCode.OK_EMPTY, null);
+        assertTrue(future.isDone());
+        assertNull(future.get());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_012: [The callback shall complete the future on the completion executor, normally if the status is OK or OK_EMPTY, and exceptionally with an IotHubStatusException otherwise.]
+    @Test
+    public void sendEventAsyncCompletesExceptionallyOnError() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+        CompletableFuture<Void> future = client.sendEventAsync(mockMessage);
+
+        //act
+        captureSendEventCallback().execute(IotHubStatusCode.MESSAGE_EXPIRED, null);
+
+        //assert
+        Throwable failure = getFailure(future);
+        assertTrue(failure instanceof IotHubStatusException);
+        assertEquals(IotHubStatusCode.MESSAGE_EXPIRED, ((IotHubStatusException) failure).getStatusCode());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_012: [The callback shall complete the future on the completion executor, normally if the status is OK or OK_EMPTY, and exceptionally with an IotHubStatusException otherwise.]
+    @Test
+    public void sendEventAsyncCompletesOnCompletionExecutor()
+    {
+        //arrange
+        final List<Runnable> completions = new ArrayList<>();
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                completions.add(command);
+            }
+        });
+        CompletableFuture<Void> future = client.sendEventAsync(mockMessage);
+
+        //act
+        captureSendEventCallback().execute(IotHubStatusCode.OK, null);
+
+        //assert
+        assertFalse(future.isDone());
+        assertEquals(1, completions.size());
+        completions.get(0).run();
+        assertTrue(future.isDone());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_013: [If the completion executor rejects the completion, the callback shall complete the future on the calling thread.]
+    @Test
+    public void sendEventAsyncCompletesInlineIfExecutorRejects()
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException();
+            }
+        });
+        CompletableFuture<Void> future = client.sendEventAsync(mockMessage);
+
+        //act
+        captureSendEventCallback().execute(IotHubStatusCode.OK, null);
+
+        //assert
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+    @Test
+    public void sendEventAsyncCompletesExceptionallyIfDeviceClientThrows() throws Exception
+    {
+        //arrange
+        final IllegalArgumentException exception = new IllegalArgumentException();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.sendEventAsync(mockMessage, (IotHubEventCallback) any, null);
+                result = exception;
+            }
+        };
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> future = client.sendEventAsync(mockMessage);
+
+        //assert
+        assertEquals(exception, getFailure(future));
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_006: [If the twin was already started by this object, the function shall return the future of the first call.]
+    // Tests_SRS_ASYNCDEVICECLIENT_41_007: [The function shall start the twin by calling startDeviceTwin on the device client with a status callback that completes the returned future on the first status.]
+    @Test
+    public void startDeviceTwinAsyncStartsTwinOnce() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> first = client.startDeviceTwinAsync(mockTwinPropertyCallBack, null);
+        CompletableFuture<Void> second = client.startDeviceTwinAsync(mockTwinPropertyCallBack, null);
+
+        //assert
+        assertSame(first, second);
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockDeviceClient.startDeviceTwin(withCapture(callbacks), null, mockTwinPropertyCallBack, null);
+                times = 1;
+            }
+        };
+        callbacks.get(0).execute(IotHubStatusCode.OK, null);
+        callbacks.get(0).execute(IotHubStatusCode.ERROR, null);
+        assertTrue(first.isDone());
+        assertFalse(first.isCompletedExceptionally());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_008: [The function shall get the twin by calling getDeviceTwin on the device client with a request status callback that completes the returned future.]
+    @Test
+    public void getDeviceTwinAsyncCompletesOnRequestStatus() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> future = client.getDeviceTwinAsync();
+
+        //assert
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockDeviceClient.getDeviceTwin(withCapture(callbacks), null);
+                times = 1;
+            }
+        };
+        callbacks.get(0).execute(IotHubStatusCode.THROTTLED, null);
+        assertEquals(IotHubStatusCode.THROTTLED, ((IotHubStatusException) getFailure(future)).getStatusCode());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_005: [If the device client throws, the function shall complete the returned future exceptionally with the thrown exception.]
+    @Test
+    public void getDeviceTwinAsyncCompletesExceptionallyIfDeviceClientThrows() throws Exception
+    {
+        //arrange
+        final IOException exception = new IOException();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getDeviceTwin((IotHubEventCallback) any, any);
+                result = exception;
+            }
+        };
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> future = client.getDeviceTwinAsync();
+
+        //assert
+        assertEquals(exception, getFailure(future));
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_009: [The function shall send the reported properties by calling sendReportedProperties on the device client with a request status callback that completes the returned future.]
+    @Test
+    public void sendReportedPropertiesAsyncCompletesOnRequestStatus() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> future = client.sendReportedPropertiesAsync(mockReportedProperties, 5);
+
+        //assert
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockDeviceClient.sendReportedProperties(mockReportedProperties, 5, withCapture(callbacks), null);
+                times = 1;
+            }
+        };
+        callbacks.get(0).execute(IotHubStatusCode.OK, null);
+        assertNull(future.get());
+    }
+
+    // Tests_SRS_ASYNCDEVICECLIENT_41_010: [The function shall subscribe by calling subscribeToDeviceMethod on the device client with a status callback that completes the returned future on the first status.]
+    // Tests_SRS_ASYNCDEVICECLIENT_41_011: [If methods were already subscribed by this object, the function shall return the future of the first call.]
+    @Test
+    public void subscribeToDeviceMethodAsyncReturnsFirstFuture() throws Exception
+    {
+        //arrange
+        AsyncDeviceClient client = new AsyncDeviceClient(mockDeviceClient, DIRECT_EXECUTOR);
+
+        //act
+        CompletableFuture<Void> first = client.subscribeToDeviceMethodAsync(mockDeviceMethodCallback, null);
+        CompletableFuture<Void> second = client.subscribeToDeviceMethodAsync(mockDeviceMethodCallback, null);
+
+        //assert
+        assertSame(first, second);
+        final List<IotHubEventCallback> callbacks = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockDeviceClient.subscribeToDeviceMethod(mockDeviceMethodCallback, null, withCapture(callbacks), null);
+                times = 2;
+            }
+        };
+        callbacks.get(0).execute(IotHubStatusCode.OK_EMPTY, null);
+        assertNull(first.get());
+    }
+}
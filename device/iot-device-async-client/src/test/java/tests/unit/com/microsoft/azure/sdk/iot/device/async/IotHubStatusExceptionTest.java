@@ -0,0 +1,42 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.async;
+
+import com.microsoft.azure.sdk.iot.device.IotHubStatusCode;
+import com.microsoft.azure.sdk.iot.device.async.IotHubStatusException;
+import com.microsoft.azure.sdk.iot.device.exceptions.ThrottledException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IotHubStatusException.
+ */
+public class IotHubStatusExceptionTest
+{
+    // Tests_SRS_IOTHUBSTATUSEXCEPTION_41_001: [The constructor shall save the status code, and use the exception that maps to it as the cause, if any.]
+    // Tests_SRS_IOTHUBSTATUSEXCEPTION_41_002: [The function shall return the saved status code.]
+    @Test
+    public void constructorUsesMappedExceptionAsCause()
+    {
+        //act
+        IotHubStatusException exception = new IotHubStatusException(IotHubStatusCode.THROTTLED);
+
+        //assert
+        assertEquals(IotHubStatusCode.THROTTLED, exception.getStatusCode());
+        assertTrue(exception.getCause() instanceof ThrottledException);
+    }
+
+    // Tests_SRS_IOTHUBSTATUSEXCEPTION_41_001: [The constructor shall save the status code, and use the exception that maps to it as the cause, if any.]
+    @Test
+    public void constructorHasNoCauseForTransportStatus()
+    {
+        //act
+        IotHubStatusException exception = new IotHubStatusException(IotHubStatusCode.MESSAGE_EXPIRED);
+
+        //assert
+        assertEquals(IotHubStatusCode.MESSAGE_EXPIRED, exception.getStatusCode());
+        assertNull(exception.getCause());
+    }
+}
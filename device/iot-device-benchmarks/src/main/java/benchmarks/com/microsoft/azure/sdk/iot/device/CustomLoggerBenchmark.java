@@ -0,0 +1,68 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package benchmarks.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import org.apache.log4j.BasicConfigurator;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the logging done by the transports for every message, with the root logger at WARN so that INFO and DEBUG
+ * are disabled. Run it with {@code -prof gc}: gc.alloc.rate.norm of perMessageLogging is 0 B/op, since a disabled
+ * entry, exit or guarded log call neither formats its message nor looks up the calling method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CustomLoggerBenchmark
+{
+    private CustomLogger logger;
+    private String messageId;
+    private int linkCredit;
+
+    @Setup
+    public void setup()
+    {
+        BasicConfigurator.configure();
+        LogManager.getRootLogger().setLevel(Level.WARN);
+        this.logger = new CustomLogger(CustomLoggerBenchmark.class);
+        this.messageId = "message-id";
+        this.linkCredit = 100;
+    }
+
+    /** The shape of the logging of AmqpsIotHubConnection.onDelivery and IotHubTransport.invokeCallbacks. */
+    @Benchmark
+    public int perMessageLogging()
+    {
+        logger.LogMethodEntry();
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", this.messageId, logger.getMethodName());
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
+        }
+        logger.LogMethodExit();
+        return this.linkCredit;
+    }
+
+    /**
+     * An unguarded call with parameters. It does not walk the stack either, and its parameter array is left to escape
+     * analysis once the call is inlined.
+     */
+    @Benchmark
+    public int unguardedLogWithMethodName()
+    {
+        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", this.messageId, logger.getMethodName());
+        return this.linkCredit;
+    }
+}
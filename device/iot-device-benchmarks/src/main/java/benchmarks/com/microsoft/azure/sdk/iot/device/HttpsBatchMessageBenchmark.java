@@ -0,0 +1,191 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package benchmarks.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.deps.util.Base64;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.MessageProperty;
+import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming HttpsBatchMessage with the string concatenating builder it replaced. The 200 messages of
+ * 1 KB do not fit in a single batch, so both builders start a new batch whenever the current one is full, as the
+ * HTTPS transport does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HttpsBatchMessageBenchmark
+{
+    private static final int MESSAGE_COUNT = 200;
+    private static final int MESSAGE_SIZE_BYTES = 1024;
+
+    private List<HttpsSingleMessage> messages;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        this.messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++)
+        {
+            byte[] body = new byte[MESSAGE_SIZE_BYTES];
+            random.nextBytes(body);
+            Message message = new Message(body);
+            message.setProperty("sensor", "sensor-" + i);
+            this.messages.add(HttpsSingleMessage.parseHttpsMessage(message));
+        }
+    }
+
+    @Benchmark
+    public void streamingBatchMessage(Blackhole blackhole)
+    {
+        HttpsBatchMessage batch = new HttpsBatchMessage();
+        for (HttpsSingleMessage message : this.messages)
+        {
+            try
+            {
+                batch.addMessage(message);
+            }
+            catch (IotHubSizeExceededException e)
+            {
+                blackhole.consume(batch.getBody());
+                batch = new HttpsBatchMessage();
+                addOrFail(batch, message);
+            }
+        }
+
+        blackhole.consume(batch.getBody());
+    }
+
+    @Benchmark
+    public void stringConcatenatingBatchMessage(Blackhole blackhole)
+    {
+        StringConcatenatingBatchMessage batch = new StringConcatenatingBatchMessage();
+        for (HttpsSingleMessage message : this.messages)
+        {
+            try
+            {
+                batch.addMessage(message);
+            }
+            catch (IotHubSizeExceededException e)
+            {
+                blackhole.consume(batch.getBody());
+                batch = new StringConcatenatingBatchMessage();
+                addOrFail(batch, message);
+            }
+        }
+
+        blackhole.consume(batch.getBody());
+    }
+
+    private static void addOrFail(HttpsBatchMessage batch, HttpsSingleMessage message)
+    {
+        try
+        {
+            batch.addMessage(message);
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void addOrFail(StringConcatenatingBatchMessage batch, HttpsSingleMessage message)
+    {
+        try
+        {
+            batch.addMessage(message);
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The batch builder HttpsBatchMessage used before it wrote into a byte buffer. It rebuilds and re-encodes the
+     * whole batch on every add.
+     */
+    private static final class StringConcatenatingBatchMessage
+    {
+        private static final int SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES = 255 * 1024 - 1;
+
+        private String batchBody = "[]";
+
+        void addMessage(HttpsSingleMessage msg) throws IotHubSizeExceededException
+        {
+            String newBatchBody = addJsonObjToArray(msgToJson(msg), this.batchBody);
+            byte[] newBatchBodyBytes = newBatchBody.getBytes(StandardCharsets.UTF_8);
+            if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+            {
+                throw new IotHubSizeExceededException("Service-bound message size exceeded");
+            }
+
+            this.batchBody = newBatchBody;
+        }
+
+        byte[] getBody()
+        {
+            return this.batchBody.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String msgToJson(HttpsSingleMessage msg)
+        {
+            StringBuilder jsonMsg = new StringBuilder("{");
+            jsonMsg.append("\"body\":");
+            jsonMsg.append("\"").append(Base64.encodeBase64StringLocal(msg.getBody())).append("\",");
+            jsonMsg.append("\"base64Encoded\":");
+            jsonMsg.append(true);
+            Map<String, String> allProperties = new HashMap<>(msg.getSystemProperties());
+            for (MessageProperty p : msg.getProperties())
+            {
+                allProperties.put(p.getName(), p.getValue());
+            }
+
+            if (allProperties.size() > 0)
+            {
+                jsonMsg.append(",");
+                jsonMsg.append("\"properties\":");
+                jsonMsg.append("{");
+                for (String key : allProperties.keySet())
+                {
+                    jsonMsg.append("\"").append(key).append("\":");
+                    jsonMsg.append("\"").append(allProperties.get(key)).append("\",");
+                }
+
+                jsonMsg.deleteCharAt(jsonMsg.length() - 1);
+                jsonMsg.append("}");
+            }
+
+            jsonMsg.append("}");
+            return jsonMsg.toString();
+        }
+
+        private static String addJsonObjToArray(String jsonObj, String jsonArray)
+        {
+            if (jsonArray.equals("[]"))
+            {
+                return "[" + jsonObj + "]";
+            }
+
+            return jsonArray.substring(0, jsonArray.length() - 1) + "," + jsonObj + "]";
+        }
+    }
+}
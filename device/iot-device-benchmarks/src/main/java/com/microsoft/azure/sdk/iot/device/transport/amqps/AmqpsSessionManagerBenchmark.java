@@ -0,0 +1,154 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
+import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.device.MessageType;
+import com.microsoft.azure.sdk.iot.device.SharedTransportExecutor;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.message.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the cost of routing a send and a Proton delivery event through the AmqpsSessionManager grows with the
+ * number of devices multiplexed on the connection. The links are opened on a Proton connection that is not bound to
+ * a transport, so nothing is written to a socket: the sends stay in the sender link until the benchmark settles them.
+ *
+ * <p>The benchmark lives in the package of the session manager because the functions it measures are package
+ * private. The CBS authentication of the devices is skipped by marking their sessions as authenticated.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AmqpsSessionManagerBenchmark
+{
+    private static final String SHARED_ACCESS_KEY = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=";
+    private static final int MESSAGE_SIZE_BYTES = 256;
+    private static final EnumSet<EndpointState> ANY_STATE = EnumSet.allOf(EndpointState.class);
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int deviceCount;
+
+    private SharedTransportExecutor sharedTransportExecutor;
+    private AmqpsSessionManager amqpsSessionManager;
+    private Message message;
+
+    // The last registered device, which the previous implementation found at the end of its session list
+    private IotHubConnectionString lastDeviceConnectionString;
+    private String lastDeviceTelemetrySenderLinkName;
+    private Sender lastDeviceTelemetrySender;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        this.sharedTransportExecutor = new SharedTransportExecutor(1);
+        DeviceClientConfig deviceClientConfig = null;
+        for (int i = 0; i < this.deviceCount; i++)
+        {
+            IotHubConnectionString iotHubConnectionString = new IotHubConnectionString("HostName=benchmark-hub.azure-devices.net;DeviceId=device-" + i + ";SharedAccessKey=" + SHARED_ACCESS_KEY);
+            deviceClientConfig = new DeviceClientConfig(iotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+            deviceClientConfig.setSharedTransportExecutor(this.sharedTransportExecutor);
+            if (this.amqpsSessionManager == null)
+            {
+                this.amqpsSessionManager = new AmqpsSessionManager(deviceClientConfig);
+            }
+            else
+            {
+                this.amqpsSessionManager.addDeviceOperationSession(deviceClientConfig);
+            }
+        }
+        this.lastDeviceConnectionString = deviceClientConfig.getIotHubConnectionString();
+
+        // Open the CBS links and report them open, then open the links of the devices and report them open
+        Connection connection = Proton.connection();
+        this.amqpsSessionManager.onConnectionInit(connection);
+        openAllLinks(connection);
+        markAllSessionsAuthenticated();
+        this.amqpsSessionManager.onConnectionInit(connection);
+        openAllLinks(connection);
+
+        String lastDeviceTelemetrySenderLinkPrefix = "sender_link_telemetry-" + deviceClientConfig.getDeviceId() + "-";
+        for (Link link = connection.linkHead(ANY_STATE, ANY_STATE); link != null; link = link.next(ANY_STATE, ANY_STATE))
+        {
+            if (link.getName().startsWith(lastDeviceTelemetrySenderLinkPrefix))
+            {
+                this.lastDeviceTelemetrySenderLinkName = link.getName();
+                this.lastDeviceTelemetrySender = (Sender) link;
+            }
+        }
+
+        byte[] body = new byte[MESSAGE_SIZE_BYTES];
+        new Random(42).nextBytes(body);
+        this.message = Proton.message();
+        this.message.setBody(new Data(new Binary(body)));
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.amqpsSessionManager.closeNow();
+        this.sharedTransportExecutor.close();
+    }
+
+    /**
+     * Routes a telemetry message of the last device to its sender link, then settles it as the service would.
+     */
+    @Benchmark
+    public Integer sendMessage() throws Exception
+    {
+        Integer deliveryHash = this.amqpsSessionManager.sendMessage(this.message, MessageType.DEVICE_TELEMETRY, this.lastDeviceConnectionString);
+        Delivery delivery = this.lastDeviceTelemetrySender.head();
+        if (delivery != null)
+        {
+            delivery.settle();
+        }
+        return deliveryHash;
+    }
+
+    /**
+     * Routes the delivery event of a send acknowledgement, which onDelivery first offers to the receivers.
+     */
+    @Benchmark
+    public AmqpsMessage dispatchDeliveryEvent() throws Exception
+    {
+        return this.amqpsSessionManager.getMessageFromReceiverLink(this.lastDeviceTelemetrySenderLinkName);
+    }
+
+    private void openAllLinks(Connection connection)
+    {
+        for (Link link = connection.linkHead(ANY_STATE, ANY_STATE); link != null; link = link.next(ANY_STATE, ANY_STATE))
+        {
+            this.amqpsSessionManager.isLinkFound(link.getName());
+        }
+    }
+
+    private void markAllSessionsAuthenticated() throws ReflectiveOperationException
+    {
+        Field sessionListField = AmqpsSessionManager.class.getDeclaredField("amqpsDeviceSessionList");
+        sessionListField.setAccessible(true);
+        Field stateField = AmqpsSessionDeviceOperation.class.getDeclaredField("amqpsAuthenticatorState");
+        stateField.setAccessible(true);
+        for (Object amqpsSessionDeviceOperation : (List<?>) sessionListField.get(this.amqpsSessionManager))
+        {
+            stateField.set(amqpsSessionDeviceOperation, AmqpsDeviceAuthenticationState.AUTHENTICATED);
+        }
+    }
+}
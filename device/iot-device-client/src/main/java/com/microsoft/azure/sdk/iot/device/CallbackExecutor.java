@@ -0,0 +1,348 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the message callbacks of clients, so that a slow callback does not hold up the thread that sends the
+ * messages. By default a client runs the {@link IotHubEventCallback} of each sent message on its send thread, between
+ * two rounds of sending, and the {@link MessageCallback} of each received message on its receive task.
+ *
+ * <p>If the callbacks are ordered per device, the callbacks of one device run one at a time, in the order in which
+ * their messages completed, and the callbacks of different devices run in parallel, even if the devices share the
+ * connection of a transport client. Otherwise every callback may run
+ * on any thread as soon as it is dispatched. The callbacks of received messages run in batches; they stay ordered
+ * over MQTT, which acknowledges the messages in the order they were received.</p>
+ *
+ * <p>The metrics of the executor help find slow callbacks: the number of callbacks dispatched but not run yet, the
+ * time callbacks waited for a thread and the time they ran.</p>
+ *
+ * <p>The executor is owned by the application: clients never shut it down, and {@link #close()} must only be called
+ * once every client using it is closed.</p>
+ */
+public final class CallbackExecutor
+{
+    private static final String THREAD_NAME_PREFIX = "azure-iot-sdk-CallbackExecutor-";
+
+    // the callbacks of one device that run in a row before the thread is handed over to another device
+    private static final int MAX_CALLBACKS_PER_TURN = 10;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final boolean isOrderedPerDevice;
+
+    // the ordered executor of each device id, or a single unordered executor for every device
+    private final ConcurrentMap<String, OrderedDeviceExecutor> orderedDeviceExecutors = new ConcurrentHashMap<>();
+    private final Executor unorderedDeviceExecutor = new Executor()
+    {
+        @Override
+        public void execute(Runnable callback)
+        {
+            submit(new MeasuredCallback(callback));
+        }
+    };
+
+    private final AtomicLong dispatchedCallbackCount = new AtomicLong(0);
+    private final AtomicLong completedCallbackCount = new AtomicLong(0);
+    private final AtomicLong totalCallbackWaitNanos = new AtomicLong(0);
+    private final AtomicLong totalCallbackRunNanos = new AtomicLong(0);
+    private final AtomicLong maxCallbackRunNanos = new AtomicLong(0);
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Creates an executor with one daemon thread per available processor that orders the callbacks per device.
+     */
+    public CallbackExecutor()
+    {
+        this(Runtime.getRuntime().availableProcessors(), true);
+    }
+
+    /**
+     * Creates an executor with the provided number of daemon threads.
+     * @param threadCount the number of threads
+     * @param isOrderedPerDevice true to run the callbacks of each client one at a time, in completion order
+     * @throws IllegalArgumentException if threadCount is less than 1
+     */
+    public CallbackExecutor(int threadCount, boolean isOrderedPerDevice) throws IllegalArgumentException
+    {
+        if (threadCount < 1)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_001: [If the provided threadCount is less than 1, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+
+        // Codes_SRS_CALLBACKEXECUTOR_41_002: [The constructor shall create a pool of threadCount daemon threads, which close shuts down.]
+        this.ownedExecutor = Executors.newFixedThreadPool(threadCount, new ThreadFactory()
+        {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                // Daemon threads, so that an application that never calls close can still exit
+                Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = this.ownedExecutor;
+        this.isOrderedPerDevice = isOrderedPerDevice;
+    }
+
+    /**
+     * Creates an executor that runs the callbacks on the provided executor, which it never shuts down.
+     * @param executor the executor to run the callbacks on
+     * @param isOrderedPerDevice true to run the callbacks of each client one at a time, in completion order
+     * @throws IllegalArgumentException if executor is null
+     */
+    public CallbackExecutor(Executor executor, boolean isOrderedPerDevice) throws IllegalArgumentException
+    {
+        if (executor == null)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_003: [If the provided executor is null, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+
+        // Codes_SRS_CALLBACKEXECUTOR_41_004: [The constructor shall save the provided executor, which close does not shut down.]
+        this.executor = executor;
+        this.ownedExecutor = null;
+        this.isOrderedPerDevice = isOrderedPerDevice;
+    }
+
+    /**
+     * Gets the executor to which the callbacks of one device are dispatched. Each callback is counted in the metrics
+     * of this executor, and an exception it throws is logged and ignored.
+     * @param deviceId the id of the device the callbacks belong to
+     * @return the executor that runs the callbacks of the device in order if the callbacks are ordered per device
+     * @throws IllegalArgumentException if deviceId is null
+     */
+    public Executor getDeviceExecutor(String deviceId) throws IllegalArgumentException
+    {
+        if (deviceId == null)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_017: [If the provided deviceId is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("deviceId cannot be null");
+        }
+
+        if (this.isOrderedPerDevice)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_005: [If the callbacks are ordered per device, this function shall return the executor of the provided device id, which runs its callbacks one at a time, in the order they were dispatched.]
+            OrderedDeviceExecutor deviceExecutor = this.orderedDeviceExecutors.get(deviceId);
+            if (deviceExecutor == null)
+            {
+                OrderedDeviceExecutor newDeviceExecutor = new OrderedDeviceExecutor();
+                deviceExecutor = this.orderedDeviceExecutors.putIfAbsent(deviceId, newDeviceExecutor);
+                if (deviceExecutor == null)
+                {
+                    deviceExecutor = newDeviceExecutor;
+                }
+            }
+
+            return deviceExecutor;
+        }
+
+        // Codes_SRS_CALLBACKEXECUTOR_41_006: [If the callbacks are not ordered per device, this function shall return an executor that runs each callback on the executor as soon as it is dispatched.]
+        return this.unorderedDeviceExecutor;
+    }
+
+    /**
+     * Getter for whether the callbacks of each client run one at a time.
+     * @return true if the callbacks are ordered per device
+     */
+    public boolean isOrderedPerDevice()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_007: [This function shall return whether the callbacks are ordered per device.]
+        return this.isOrderedPerDevice;
+    }
+
+    /**
+     * Getter for the number of callbacks that were dispatched and did not complete yet.
+     * @return the number of pending callbacks
+     */
+    public long getPendingCallbackCount()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_008: [This function shall return the number of dispatched callbacks minus the number of completed callbacks.]
+        return this.dispatchedCallbackCount.get() - this.completedCallbackCount.get();
+    }
+
+    /**
+     * Getter for the number of callbacks that completed.
+     * @return the number of completed callbacks
+     */
+    public long getCompletedCallbackCount()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_009: [This function shall return the number of completed callbacks.]
+        return this.completedCallbackCount.get();
+    }
+
+    /**
+     * Getter for the average time between the dispatch of a callback and its start.
+     * @return the average wait time of the completed callbacks, in milliseconds
+     */
+    public double getAverageCallbackWaitMillis()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_010: [This function shall return the average time the completed callbacks waited to start, in milliseconds, or 0 if none completed.]
+        return averageMillis(this.totalCallbackWaitNanos.get());
+    }
+
+    /**
+     * Getter for the average time a callback runs.
+     * @return the average run time of the completed callbacks, in milliseconds
+     */
+    public double getAverageCallbackRunMillis()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_011: [This function shall return the average run time of the completed callbacks, in milliseconds, or 0 if none completed.]
+        return averageMillis(this.totalCallbackRunNanos.get());
+    }
+
+    /**
+     * Getter for the longest time a callback ran.
+     * @return the longest run time of the completed callbacks, in milliseconds
+     */
+    public double getMaxCallbackRunMillis()
+    {
+        // Codes_SRS_CALLBACKEXECUTOR_41_012: [This function shall return the longest run time of the completed callbacks, in milliseconds.]
+        return this.maxCallbackRunNanos.get() / 1e6;
+    }
+
+    /**
+     * Stops the threads of this executor, if it created them. Must only be called once every client using the
+     * executor is closed.
+     */
+    public void close()
+    {
+        if (this.ownedExecutor != null)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_013: [This function shall shut down the pool created by the constructor, if any.]
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private double averageMillis(long totalNanos)
+    {
+        long completed = this.completedCallbackCount.get();
+        return completed == 0 ? 0 : totalNanos / 1e6 / completed;
+    }
+
+    private void submit(Runnable task)
+    {
+        try
+        {
+            this.executor.execute(task);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Codes_SRS_CALLBACKEXECUTOR_41_014: [If the executor rejects a callback, it shall run on the dispatching thread, so that no callback is lost.]
+            task.run();
+        }
+    }
+
+    /**
+     * Callback that updates the metrics of the executor, and does not let an exception escape to the executor.
+     */
+    private final class MeasuredCallback implements Runnable
+    {
+        private final Runnable callback;
+        private final long dispatchNanos;
+
+        private MeasuredCallback(Runnable callback)
+        {
+            this.callback = callback;
+            this.dispatchNanos = System.nanoTime();
+            dispatchedCallbackCount.incrementAndGet();
+        }
+
+        @Override
+        public void run()
+        {
+            long startNanos = System.nanoTime();
+            try
+            {
+                this.callback.run();
+            }
+            catch (RuntimeException e)
+            {
+                // Codes_SRS_CALLBACKEXECUTOR_41_015: [An exception thrown by a callback shall be logged and ignored.]
+                logger.LogError(e);
+            }
+            finally
+            {
+                long runNanos = System.nanoTime() - startNanos;
+                totalCallbackWaitNanos.addAndGet(startNanos - this.dispatchNanos);
+                totalCallbackRunNanos.addAndGet(runNanos);
+                long max = maxCallbackRunNanos.get();
+                while (runNanos > max && !maxCallbackRunNanos.compareAndSet(max, runNanos))
+                {
+                    max = maxCallbackRunNanos.get();
+                }
+                completedCallbackCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs the callbacks of one device one at a time, on the threads of the executor. At most one turn of the device
+     * is submitted to the executor at any time, and a turn runs a bounded number of callbacks so that a busy device
+     * does not keep a thread from the others.
+     */
+    private final class OrderedDeviceExecutor implements Executor, Runnable
+    {
+        private final Queue<MeasuredCallback> callbacks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean isTurnSubmitted = new AtomicBoolean(false);
+
+        @Override
+        public void execute(Runnable callback)
+        {
+            this.callbacks.add(new MeasuredCallback(callback));
+            this.submitTurn();
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (int i = 0; i < MAX_CALLBACKS_PER_TURN; i++)
+                {
+                    MeasuredCallback callback = this.callbacks.poll();
+                    if (callback == null)
+                    {
+                        break;
+                    }
+
+                    callback.run();
+                }
+            }
+            finally
+            {
+                // Codes_SRS_CALLBACKEXECUTOR_41_016: [If a callback throws an Error, the callbacks of the device dispatched after it shall still run.]
+                this.isTurnSubmitted.set(false);
+
+                // a callback dispatched while the flag was still set would otherwise wait for the next dispatch
+                this.submitTurn();
+            }
+        }
+
+        private void submitTurn()
+        {
+            if (!this.callbacks.isEmpty() && this.isTurnSubmitted.compareAndSet(false, true))
+            {
+                submit(this);
+            }
+        }
+    }
+}
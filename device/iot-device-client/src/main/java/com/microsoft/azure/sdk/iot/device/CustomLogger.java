@@ -6,11 +6,26 @@ package com.microsoft.azure.sdk.iot.device;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+/**
+ * Logger of the device client. A log call whose level is disabled costs a level check: the message is only
+ * formatted, and the calling method only looked up, if the level is enabled.
+ */
 public class CustomLogger {
 
     private final Logger logger;
+
+    /*
+     * Placeholder returned by getMethodName, replaced by the name of the calling method when the message is formatted.
+     * It is compared by reference, so it must not be an interned string literal.
+     */
+    private static final String CALLING_METHOD_NAME = new String("<calling method>");
+
+    /* Depth of the method calling a Log function, in the stack trace created by a function that the Log function calls */
     private static final int CALLING_METHOD_NAME_DEPTH = 2;
 
+    private static final String ENTERED_METHOD_FORMAT = "Entered in method %s";
+    private static final String EXITED_METHOD_FORMAT = "Exited from method %s";
+
     public CustomLogger(Class<?> clazz)
     {
         logger = Logger.getLogger(clazz);
@@ -20,7 +35,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.INFO))
         {
-            logger.info(String.format(message, params));
+            logger.info(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -28,7 +43,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.DEBUG))
         {
-            logger.debug(String.format(message, params));
+            logger.debug(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -36,7 +51,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.DEBUG))
         {
-            logger.debug(String.format(message, params), t);
+            logger.debug(String.format(message, resolveMethodName(params)), t);
         }
     }
 
@@ -44,7 +59,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.TRACE))
         {
-            logger.trace(String.format(message, params));
+            logger.trace(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -52,7 +67,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.WARN))
         {
-            logger.warn(String.format(message, params));
+            logger.warn(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -60,7 +75,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.FATAL))
         {
-            logger.fatal(String.format(message, params));
+            logger.fatal(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -68,7 +83,7 @@ public class CustomLogger {
     {
         if(logger.isEnabledFor(Level.ERROR))
         {
-            logger.error(String.format(message, params));
+            logger.error(String.format(message, resolveMethodName(params)));
         }
     }
 
@@ -80,8 +95,79 @@ public class CustomLogger {
         }
     }
 
+    /**
+     * Logs at DEBUG level that the calling method was entered. Unlike
+     * {@code LogDebug("Entered in method %s", getMethodName())}, it does not allocate anything if DEBUG is disabled.
+     */
+    public void LogMethodEntry()
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(String.format(ENTERED_METHOD_FORMAT, getCallingMethodName(CALLING_METHOD_NAME_DEPTH)));
+        }
+    }
+
+    /**
+     * Logs at DEBUG level that the calling method is about to return. Unlike
+     * {@code LogDebug("Exited from method %s", getMethodName())}, it does not allocate anything if DEBUG is disabled.
+     */
+    public void LogMethodExit()
+    {
+        if(logger.isEnabledFor(Level.DEBUG))
+        {
+            logger.debug(String.format(EXITED_METHOD_FORMAT, getCallingMethodName(CALLING_METHOD_NAME_DEPTH)));
+        }
+    }
+
+    public boolean isInfoEnabled()
+    {
+        return logger.isEnabledFor(Level.INFO);
+    }
+
+    public boolean isDebugEnabled()
+    {
+        return logger.isEnabledFor(Level.DEBUG);
+    }
+
+    public boolean isTraceEnabled()
+    {
+        return logger.isEnabledFor(Level.TRACE);
+    }
+
+    /**
+     * Returns a placeholder for the name of the calling method, to be passed as a parameter of a Log function of this
+     * logger in the same method. The name is only looked up if the message is logged.
+     * @return the placeholder for the name of the calling method
+     */
     public String getMethodName()
     {
-        return Thread.currentThread().getStackTrace()[CALLING_METHOD_NAME_DEPTH].getMethodName();
+        return CALLING_METHOD_NAME;
+    }
+
+    private static Object[] resolveMethodName(Object[] params)
+    {
+        String methodName = null;
+        for (int i = 0; i < params.length; i++)
+        {
+            if (params[i] == CALLING_METHOD_NAME)
+            {
+                if (methodName == null)
+                {
+                    // One more frame than from a Log function, for this function
+                    methodName = getCallingMethodName(CALLING_METHOD_NAME_DEPTH + 1);
+                }
+
+                params[i] = methodName;
+            }
+        }
+
+        return params;
+    }
+
+    private static String getCallingMethodName(int depth)
+    {
+        // Cheaper than Thread.getStackTrace, which creates a Throwable as well, and starts in this function
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        return stackTrace.length > depth ? stackTrace[depth].getMethodName() : "";
     }
 }
@@ -10,6 +10,7 @@ import com.microsoft.azure.sdk.iot.device.fileupload.FileUpload;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.IoTHubConnectionType;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 
 import java.io.*;
@@ -476,7 +477,10 @@ public final class DeviceClient implements Closeable
         /* Codes_SRS_DEVICECLIENT_12_001: [The function shall call deviceIO.sendEventAsync with the client's config parameter to enable multiplexing.] */
         deviceIO.sendEventAsync(message, callback, callbackContext, this.config.getIotHubConnectionString());
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        }
     }
 
     /**
@@ -629,6 +633,48 @@ public final class DeviceClient implements Closeable
         this.deviceTwin.getDeviceTwin();
     }
 
+    /**
+     * Gets the twin, and reports the status of this request to the provided callback in addition to the device twin
+     * status callback given to startDeviceTwin.
+     *
+     * @param getTwinStatusCallback the callback for the status of this request. Cannot be {@code null}.
+     * @param getTwinStatusCallbackContext the context to be passed to the callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if the callback is {@code null}.
+     */
+    public void getDeviceTwin(IotHubEventCallback getTwinStatusCallback, Object getTwinStatusCallbackContext) throws IOException
+    {
+        if (this.deviceTwin == null)
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_21_040: [**If the client has not started twin before calling this method, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Start twin before using it");
+        }
+
+        if (!this.deviceIO.isOpen())
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_21_041: [**If the client has not been open, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        if (getTwinStatusCallback == null)
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_41_009: [**If the request status callback is null, the function shall throw an IllegalArgumentException.**]**
+             */
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        /*
+         **Codes_SRS_DEVICECLIENT_41_010: [**The function shall get the twin by calling getDeviceTwin on the twin object with the request status callback and its context.**]**
+         */
+        this.deviceTwin.getDeviceTwin(getTwinStatusCallback, getTwinStatusCallbackContext);
+    }
+
     /**
      * Subscribes to desired properties
      *
@@ -781,6 +827,68 @@ public final class DeviceClient implements Closeable
         this.deviceTwin.updateReportedProperties(reportedProperties, version);
     }
 
+    /**
+     * Sends reported properties, and reports the status of this request to the provided callback in addition to the
+     * device twin status callback given to startDeviceTwin.
+     *
+     * @param reportedProperties the Set for desired properties and their corresponding callback and context. Cannot be {@code null}.
+     * @param version the Reported property version. Can be {@code null}, cannot be negative.
+     * @param reportedPropertiesStatusCallback the callback for the status of this request. Cannot be {@code null}.
+     * @param reportedPropertiesStatusCallbackContext the context to be passed to the callback. Can be {@code null}.
+     *
+     * @throws IOException if called when client is not opened or called before starting twin.
+     * @throws IllegalArgumentException if reportedProperties is null or empty, if version is negative or if the callback is {@code null}.
+     */
+    public void sendReportedProperties(Set<Property> reportedProperties, Integer version,
+                                       IotHubEventCallback reportedPropertiesStatusCallback, Object reportedPropertiesStatusCallbackContext)
+            throws IOException
+    {
+        if (this.deviceTwin == null)
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_25_032: [**If the client has not started twin before calling this method, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Start twin before using it");
+        }
+
+        if (!this.deviceIO.isOpen())
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_25_033: [**If the client has not been open, the function shall throw an IOException.**]**
+             */
+            throw new IOException("Open the client connection before using it.");
+        }
+
+        if (reportedProperties == null || reportedProperties.isEmpty())
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_25_034: [**If reportedProperties is null or empty, the function shall throw an IllegalArgumentException.**]**
+             */
+            throw new IllegalArgumentException("Reported properties set cannot be null or empty.");
+        }
+
+        if (version != null && version < 0)
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_21_053: [**If version is negative, the function shall throw an IllegalArgumentException.**]**
+             */
+            throw new IllegalArgumentException("Version cannot be negative.");
+        }
+
+        if (reportedPropertiesStatusCallback == null)
+        {
+            /*
+             **Codes_SRS_DEVICECLIENT_41_009: [**If the request status callback is null, the function shall throw an IllegalArgumentException.**]**
+             */
+            throw new IllegalArgumentException("Callback cannot be null");
+        }
+
+        /*
+         **Codes_SRS_DEVICECLIENT_41_011: [**The function shall send the reported properties by calling updateReportedProperties on the twin object with the version, the request status callback and its context.**]**
+         */
+        this.deviceTwin.updateReportedProperties(reportedProperties, version, reportedPropertiesStatusCallback, reportedPropertiesStatusCallbackContext);
+    }
+
     /**
      * Subscribes to device methods
      *
@@ -1059,6 +1167,11 @@ public final class DeviceClient implements Closeable
      *	      option specifies the interval in milliseconds between calls to
      *	      the service checking for availability of new messages. The value
      *	      is expected to be of type {@code long}.
+     *	    - <b>SetSendInterval</b> - this option specifies the interval in
+     *	      milliseconds between attempts to send queued messages. By default
+     *	      messages are sent as soon as they are queued; setting this option
+     *	      switches the client to polling the send queue at a fixed rate.
+     *	      The value is expected to be of type {@code long}.
      *	    - <b>SetCertificatePath</b> - this option is applicable only
      *	      when the transport configured with this client is AMQP. This
      *	      option specifies the path to the certificate used to verify peer.
@@ -1281,6 +1394,163 @@ public final class DeviceClient implements Closeable
         logger.LogInfo("Device Operation Timeout updated successfully in the device client config, method name is %s ", logger.getMethodName());
     }
 
+    /**
+     * Limits the number of messages, and of message body bytes, that may be waiting to be sent to the IoT Hub. Once
+     * either limit is reached, new messages are handled according to the outbound queue overflow policy. By default
+     * the queue is unbounded. Takes effect the next time the client is opened.
+     * @param maxMessages the maximum number of messages waiting to be sent
+     * @param maxBytes the maximum number of message body bytes waiting to be sent
+     * @throws IllegalArgumentException if maxMessages or maxBytes is 0 or negative
+     */
+    public void setOutboundQueueCapacity(int maxMessages, long maxBytes) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_001: [The function shall set the device config's outbound queue capacity.]
+        this.config.setOutboundQueueCapacity(maxMessages, maxBytes);
+        logger.LogInfo("Outbound queue capacity updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Sets what happens to a message sent with {@link #sendEventAsync(Message, IotHubEventCallback, Object)} when
+     * the outbound queue is full. Messages that are not queued are reported to their callback with status
+     * {@link IotHubStatusCode#OUTBOUND_QUEUE_FULL}. Takes effect the next time the client is opened.
+     * @param overflowPolicy the overflow policy
+     * @param blockTimeoutMillis how long a send waits for room in the queue when the policy is
+     *                           {@link IotHubQueueOverflowPolicy#BLOCK}. Ignored by the other policies.
+     * @throws IllegalArgumentException if overflowPolicy is null or blockTimeoutMillis is negative
+     */
+    public void setOutboundQueueOverflowPolicy(IotHubQueueOverflowPolicy overflowPolicy, long blockTimeoutMillis) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_002: [The function shall set the device config's outbound queue overflow policy and block timeout.]
+        this.config.setOutboundQueueOverflowPolicy(overflowPolicy, blockTimeoutMillis);
+        logger.LogInfo("Outbound queue overflow policy updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Sets the maximum number of MQTT publishes that may be waiting for an acknowledgement from the IoT Hub at once.
+     * A larger window lets a single connection pipeline more QoS 1 publishes. Only used by the MQTT and MQTT_WS
+     * protocols. Defaults to 10. Takes effect the next time the client is opened.
+     * @param maxInFlightPublishes the size of the MQTT in flight window
+     * @throws IllegalArgumentException if maxInFlightPublishes is smaller than 1 or larger than 65535
+     */
+    public void setMqttMaxInFlightPublishes(int maxInFlightPublishes) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_006: [The function shall set the device config's max mqtt in flight publishes.]
+        this.config.setMqttMaxInFlightPublishes(maxInFlightPublishes);
+        logger.LogInfo("MQTT in flight window updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Makes the HTTPS transport coalesce queued telemetry into batch requests, so that many small messages cost a
+     * single round trip. A batch is sent once it holds maxMessagesPerBatch messages, once the next message would make
+     * it larger than the IoT Hub allows, or once its oldest message has waited lingerMillis. The callback of every
+     * message in a batch is invoked with the result of the batch. Only used by the HTTPS protocol. Defaults to 1
+     * message per batch, which sends every message on its own. Takes effect the next time the client is opened.
+     * @param maxMessagesPerBatch the maximum number of messages in a single batch
+     * @param lingerMillis how long the oldest queued message may wait for more messages to join its batch
+     * @throws IllegalArgumentException if maxMessagesPerBatch is 0 or negative, or if lingerMillis is negative
+     */
+    public void setHttpsBatching(int maxMessagesPerBatch, long lingerMillis) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_008: [The function shall set the device config's https batch size and linger time.]
+        this.config.setHttpsBatching(maxMessagesPerBatch, lingerMillis);
+        logger.LogInfo("HTTPS batching updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Makes the HTTPS transport poll for cloud to device messages with an adaptive interval, instead of every
+     * {@link #RECEIVE_PERIOD_MILLIS_HTTPS} milliseconds. Once a poll returns a message, the following messages are
+     * requested back to back and the next poll happens after minIntervalMillis. Every poll that returns no message
+     * doubles the interval, up to maxIntervalMillis. Only used by the HTTPS protocol. Takes effect the next time the
+     * client is opened.
+     * @param minIntervalMillis the interval between polls while messages are being received
+     * @param maxIntervalMillis the longest interval between polls while no message is received
+     * @throws IllegalArgumentException if minIntervalMillis is 0 or negative, or if maxIntervalMillis is smaller than minIntervalMillis
+     */
+    public void setHttpsReceiveInterval(long minIntervalMillis, long maxIntervalMillis) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_013: [The function shall set the device config's https receive intervals.]
+        this.config.setHttpsReceiveInterval(minIntervalMillis, maxIntervalMillis);
+        logger.LogInfo("HTTPS receive interval updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Makes this client run its send, receive, retry and token renewal work on the provided executor instead of on
+     * threads of its own. Giving many clients the same executor keeps the number of threads in the process tied to
+     * the number of cores rather than to the number of clients. The executor is not shut down when the client is
+     * closed. Takes effect the next time the client is opened.
+     * @param sharedTransportExecutor the executor shared by many clients, or null for threads of its own
+     */
+    public void setSharedTransportExecutor(SharedTransportExecutor sharedTransportExecutor)
+    {
+        // Codes_SRS_DEVICECLIENT_41_007: [The function shall set the device config's shared transport executor.]
+        this.config.setSharedTransportExecutor(sharedTransportExecutor);
+        logger.LogInfo("Shared transport executor updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Makes this client run the callbacks of its sent messages on the provided executor instead of on the thread
+     * that sends the messages, so that a slow callback does not delay the messages that follow. The callbacks of the
+     * received messages also run on the executor, as soon as the messages are received, in batches. The executor may
+     * be shared with other clients, and is not shut down when the client is closed. Takes effect the next time the
+     * client is opened.
+     * @param callbackExecutor the executor for the callbacks, or null to run them on the send thread
+     */
+    public void setCallbackExecutor(CallbackExecutor callbackExecutor)
+    {
+        // Codes_SRS_DEVICECLIENT_41_012: [The function shall set the device config's callback executor.]
+        this.config.setCallbackExecutor(callbackExecutor);
+        logger.LogInfo("Callback executor updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Enables the message spool, so that telemetry survives connection losses and process restarts. Messages are
+     * written to an append only log in the provided directory before they are sent, and removed from it once the IoT
+     * Hub acknowledges them. Messages that are still in the log when the client is opened are sent again; their
+     * original callbacks are not invoked. Takes effect the next time the client is opened.
+     * @param directory the directory that holds the spool files. It must not be shared with another client.
+     * @param maxSizeInBytes the maximum number of bytes the spool may take on disk. When it is full, the oldest
+     *                       messages are discarded.
+     * @param syncPolicy when spooled messages are forced to disk
+     * @throws IllegalArgumentException if directory or syncPolicy is null or empty, or if maxSizeInBytes is too small
+     */
+    public void setMessageSpool(String directory, long maxSizeInBytes, IotHubSpoolSyncPolicy syncPolicy) throws IllegalArgumentException
+    {
+        // Codes_SRS_DEVICECLIENT_41_005: [The function shall set the device config's message spool.]
+        this.config.setMessageSpool(directory, maxSizeInBytes, syncPolicy);
+        logger.LogInfo("Message spool updated successfully in the device client config, method name is %s ", logger.getMethodName());
+    }
+
+    /**
+     * Getter for the number of messages waiting to be sent to the IoT Hub.
+     * @return the number of queued messages
+     */
+    public int getOutboundQueueDepth()
+    {
+        // Codes_SRS_DEVICECLIENT_41_003: [The function shall return the outbound queue depth of its device IO instance.]
+        return this.deviceIO.getOutboundQueueDepth();
+    }
+
+    /**
+     * Getter for the number of message body bytes waiting to be sent to the IoT Hub.
+     * @return the number of queued bytes
+     */
+    public long getOutboundQueueSizeInBytes()
+    {
+        // Codes_SRS_DEVICECLIENT_41_004: [The function shall return the outbound queue size in bytes of its device IO instance.]
+        return this.deviceIO.getOutboundQueueSizeInBytes();
+    }
+
+    /**
+     * Getter for the poller that receives cloud to device messages over HTTPS, which exports the number of receive
+     * requests and their latency for this client.
+     * @return the https receive poller, or null if the client is not open with an adaptive HTTPS receive interval
+     */
+    public HttpsReceivePoller getHttpsReceivePoller()
+    {
+        // Codes_SRS_DEVICECLIENT_41_014: [The function shall return the https receive poller of its device IO instance.]
+        return this.deviceIO.getHttpsReceivePoller();
+    }
+
     /**
      * Closes FileUpload object if it is initialized.
      *
@@ -5,6 +5,7 @@ package com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.auth.*;
 import com.microsoft.azure.sdk.iot.device.transport.ExponentialBackoffWithJitter;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubMessageSpool;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProviderTpm;
@@ -25,6 +26,14 @@ public final class DeviceClientConfig
 
     private static final long DEFAULT_OPERATION_TIMEOUT = 4 * 60 * 1000; //4 minutes
 
+    /** The default number of messages that may be waiting for an acknowledgement from the IoT Hub at once. */
+    private static final int DEFAULT_MAX_MESSAGES_IN_FLIGHT = 100;
+
+    /** By default the queue of messages waiting to be sent is unbounded. */
+    private static final int DEFAULT_MQTT_MAX_IN_FLIGHT_PUBLISHES = 10;
+    private static final int DEFAULT_MAX_QUEUED_MESSAGES = Integer.MAX_VALUE;
+    private static final long DEFAULT_MAX_QUEUED_BYTES = Long.MAX_VALUE;
+
     private boolean useWebsocket;
 
     private IotHubX509AuthenticationProvider x509Authentication;
@@ -66,6 +75,21 @@ public final class DeviceClientConfig
 
     private AuthType authenticationType;
     private long operationTimeout = DEFAULT_OPERATION_TIMEOUT;
+    private int maxMessagesInFlight = DEFAULT_MAX_MESSAGES_IN_FLIGHT;
+    private int mqttMaxInFlightPublishes = DEFAULT_MQTT_MAX_IN_FLIGHT_PUBLISHES;
+    private int maxQueuedMessages = DEFAULT_MAX_QUEUED_MESSAGES;
+    private long maxQueuedBytes = DEFAULT_MAX_QUEUED_BYTES;
+    private IotHubQueueOverflowPolicy queueOverflowPolicy = IotHubQueueOverflowPolicy.FAIL_FAST;
+    private long queueBlockTimeoutMillis = 0;
+    private String messageSpoolDirectory;
+    private long messageSpoolMaxSizeInBytes;
+    private IotHubSpoolSyncPolicy messageSpoolSyncPolicy;
+    private SharedTransportExecutor sharedTransportExecutor;
+    private CallbackExecutor callbackExecutor;
+    private int httpsMaxMessagesPerBatch = 1;
+    private long httpsBatchLingerMillis = 0;
+    private long httpsReceiveMinIntervalMillis = 0;
+    private long httpsReceiveMaxIntervalMillis = 0;
     private IotHubClientProtocol protocol;
 
     // Codes_SRS_DEVICECLIENTCONFIG_28_001: [The class shall have ExponentialBackOff as the default retryPolicy.]
@@ -522,6 +546,336 @@ public final class DeviceClientConfig
         return this.operationTimeout;
     }
 
+    /**
+     * Sets the maximum number of sent messages that may be waiting for an acknowledgement from the IoT Hub at
+     * once. The transport stops dequeueing messages while this window is full.
+     * @param maxMessagesInFlight the size of the in flight window
+     * @throws IllegalArgumentException if maxMessagesInFlight is 0 or negative
+     */
+    public void setMaxMessagesInFlight(int maxMessagesInFlight) throws IllegalArgumentException
+    {
+        if (maxMessagesInFlight < 1)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_001: [If the provided maxMessagesInFlight is 0 or negative, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max messages in flight cannot be 0 or negative");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_002: [This function shall save the provided maxMessagesInFlight.]
+        this.maxMessagesInFlight = maxMessagesInFlight;
+    }
+
+    /**
+     * Getter for the in flight window
+     * @return the maximum number of sent messages that may be waiting for an acknowledgement at once
+     */
+    public int getMaxMessagesInFlight()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_003: [This function shall return the saved maxMessagesInFlight.]
+        return this.maxMessagesInFlight;
+    }
+
+    /**
+     * Sets the maximum number of MQTT publishes that may be waiting for a PUBACK from the IoT Hub at once on a single
+     * connection. Takes effect the next time the client is opened.
+     * @param maxInFlightPublishes the size of the MQTT in flight window
+     * @throws IllegalArgumentException if maxInFlightPublishes is smaller than 1 or larger than 65535
+     */
+    public void setMqttMaxInFlightPublishes(int maxInFlightPublishes) throws IllegalArgumentException
+    {
+        if (maxInFlightPublishes < 1 || maxInFlightPublishes > 65535)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_019: [If the provided maxInFlightPublishes is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max MQTT in flight publishes must be between 1 and 65535");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_020: [This function shall save the provided maxInFlightPublishes.]
+        this.mqttMaxInFlightPublishes = maxInFlightPublishes;
+    }
+
+    /**
+     * Getter for the MQTT in flight window
+     * @return the maximum number of MQTT publishes that may be waiting for a PUBACK at once
+     */
+    public int getMqttMaxInFlightPublishes()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_021: [This function shall return the saved maxInFlightPublishes.]
+        return this.mqttMaxInFlightPublishes;
+    }
+
+    /**
+     * Sets the capacity of the queue of messages waiting to be sent. Once either limit is reached, new messages are
+     * handled according to the queue overflow policy. Takes effect the next time the client is opened.
+     * @param maxMessages the maximum number of messages waiting to be sent
+     * @param maxBytes the maximum number of message body bytes waiting to be sent
+     * @throws IllegalArgumentException if maxMessages or maxBytes is 0 or negative
+     */
+    public void setOutboundQueueCapacity(int maxMessages, long maxBytes) throws IllegalArgumentException
+    {
+        if (maxMessages < 1 || maxBytes < 1)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_004: [If the provided maxMessages or maxBytes is 0 or negative, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Outbound queue capacity cannot be 0 or negative");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_005: [This function shall save the provided maxMessages and maxBytes.]
+        this.maxQueuedMessages = maxMessages;
+        this.maxQueuedBytes = maxBytes;
+    }
+
+    /**
+     * Getter for the outbound queue capacity in messages
+     * @return the maximum number of messages waiting to be sent
+     */
+    public int getMaxQueuedMessages()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_006: [This function shall return the saved maximum number of queued messages.]
+        return this.maxQueuedMessages;
+    }
+
+    /**
+     * Getter for the outbound queue capacity in bytes
+     * @return the maximum number of message body bytes waiting to be sent
+     */
+    public long getMaxQueuedBytes()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_007: [This function shall return the saved maximum number of queued bytes.]
+        return this.maxQueuedBytes;
+    }
+
+    /**
+     * Sets what happens to a new message when the queue of messages waiting to be sent is full. Takes effect the next
+     * time the client is opened.
+     * @param overflowPolicy the overflow policy
+     * @param blockTimeoutMillis how long a send waits for room in the queue when the policy is
+     *                           {@link IotHubQueueOverflowPolicy#BLOCK}. Ignored by the other policies.
+     * @throws IllegalArgumentException if overflowPolicy is null or blockTimeoutMillis is negative
+     */
+    public void setOutboundQueueOverflowPolicy(IotHubQueueOverflowPolicy overflowPolicy, long blockTimeoutMillis) throws IllegalArgumentException
+    {
+        if (overflowPolicy == null)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_008: [If the provided overflowPolicy is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Overflow policy cannot be null");
+        }
+
+        if (blockTimeoutMillis < 0)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_009: [If the provided blockTimeoutMillis is negative, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Block timeout cannot be negative");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_010: [This function shall save the provided overflowPolicy and blockTimeoutMillis.]
+        this.queueOverflowPolicy = overflowPolicy;
+        this.queueBlockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Getter for the outbound queue overflow policy
+     * @return what happens to a new message when the queue of messages waiting to be sent is full
+     */
+    public IotHubQueueOverflowPolicy getOutboundQueueOverflowPolicy()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_011: [This function shall return the saved overflow policy.]
+        return this.queueOverflowPolicy;
+    }
+
+    /**
+     * Getter for the outbound queue block timeout
+     * @return how long, in milliseconds, a send waits for room in a full queue under the BLOCK policy
+     */
+    public long getOutboundQueueBlockTimeout()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_012: [This function shall return the saved block timeout.]
+        return this.queueBlockTimeoutMillis;
+    }
+
+    /**
+     * Enables the message spool: telemetry is written to an append only log in the provided directory before it is
+     * sent, and messages that were never acknowledged by the IoT Hub are sent again the next time the client is opened,
+     * including after a process restart. Takes effect the next time the client is opened.
+     * @param directory the directory that holds the spool files. It must not be shared with another client.
+     * @param maxSizeInBytes the maximum number of bytes the spool may take on disk
+     * @param syncPolicy when spooled messages are forced to disk
+     * @throws IllegalArgumentException if directory or syncPolicy is null or empty, or if maxSizeInBytes is smaller
+     * than {@link IotHubMessageSpool#MIN_SPOOL_SIZE_IN_BYTES}
+     */
+    public void setMessageSpool(String directory, long maxSizeInBytes, IotHubSpoolSyncPolicy syncPolicy) throws IllegalArgumentException
+    {
+        if (directory == null || directory.isEmpty() || syncPolicy == null)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_013: [If the provided directory is null or empty, or the provided syncPolicy is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Spool directory and sync policy cannot be null or empty");
+        }
+
+        if (maxSizeInBytes < IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_014: [If the provided maxSizeInBytes is smaller than the minimum spool size, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Spool size cannot be smaller than " + IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES + " bytes");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_015: [This function shall save the provided directory, maxSizeInBytes, and syncPolicy.]
+        this.messageSpoolDirectory = directory;
+        this.messageSpoolMaxSizeInBytes = maxSizeInBytes;
+        this.messageSpoolSyncPolicy = syncPolicy;
+    }
+
+    /**
+     * Getter for the message spool directory
+     * @return the directory that holds the spool files, or null if the message spool is not enabled
+     */
+    public String getMessageSpoolDirectory()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_016: [This function shall return the saved spool directory.]
+        return this.messageSpoolDirectory;
+    }
+
+    /**
+     * Getter for the message spool maximum size
+     * @return the maximum number of bytes the spool may take on disk
+     */
+    public long getMessageSpoolMaxSizeInBytes()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_017: [This function shall return the saved spool maximum size.]
+        return this.messageSpoolMaxSizeInBytes;
+    }
+
+    /**
+     * Getter for the message spool sync policy
+     * @return when spooled messages are forced to disk
+     */
+    public IotHubSpoolSyncPolicy getMessageSpoolSyncPolicy()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_018: [This function shall return the saved spool sync policy.]
+        return this.messageSpoolSyncPolicy;
+    }
+
+    /**
+     * Makes the client run its send, receive, retry and token renewal work on the provided executor instead of on
+     * threads of its own. Takes effect the next time the client is opened.
+     * @param sharedTransportExecutor the executor shared by many clients, or null for threads of its own
+     */
+    public void setSharedTransportExecutor(SharedTransportExecutor sharedTransportExecutor)
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_022: [This function shall save the provided sharedTransportExecutor.]
+        this.sharedTransportExecutor = sharedTransportExecutor;
+    }
+
+    /**
+     * Getter for the shared transport executor
+     * @return the executor shared by many clients, or null if the client runs its work on threads of its own
+     */
+    public SharedTransportExecutor getSharedTransportExecutor()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_023: [This function shall return the saved sharedTransportExecutor.]
+        return this.sharedTransportExecutor;
+    }
+
+    /**
+     * Makes the client run the callbacks of its sent messages on the provided executor instead of on its send
+     * thread. Takes effect the next time the client is opened.
+     * @param callbackExecutor the executor for the callbacks, or null to run them on the send thread
+     */
+    public void setCallbackExecutor(CallbackExecutor callbackExecutor)
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_029: [This function shall save the provided callbackExecutor.]
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Getter for the callback executor
+     * @return the executor for the callbacks, or null if the client runs them on its send thread
+     */
+    public CallbackExecutor getCallbackExecutor()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_030: [This function shall return the saved callbackExecutor.]
+        return this.callbackExecutor;
+    }
+
+    /**
+     * Makes the HTTPS transport send queued telemetry in batches. Takes effect the next time the client is opened.
+     * @param maxMessagesPerBatch the maximum number of messages in a single batch, or 1 to send every message on its own
+     * @param lingerMillis how long the oldest queued message may wait for more messages to join its batch
+     * @throws IllegalArgumentException if maxMessagesPerBatch is 0 or negative, or if lingerMillis is negative
+     */
+    public void setHttpsBatching(int maxMessagesPerBatch, long lingerMillis) throws IllegalArgumentException
+    {
+        if (maxMessagesPerBatch < 1)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_024: [If the provided maxMessagesPerBatch is 0 or negative, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max messages per batch must be greater than 0");
+        }
+
+        if (lingerMillis < 0)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_025: [If the provided lingerMillis is negative, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Batch linger time cannot be negative");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_026: [This function shall save the provided maxMessagesPerBatch and lingerMillis.]
+        this.httpsMaxMessagesPerBatch = maxMessagesPerBatch;
+        this.httpsBatchLingerMillis = lingerMillis;
+    }
+
+    /**
+     * Getter for the HTTPS batch size
+     * @return the maximum number of messages in a single HTTPS batch
+     */
+    public int getHttpsMaxMessagesPerBatch()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_027: [This function shall return the saved maxMessagesPerBatch.]
+        return this.httpsMaxMessagesPerBatch;
+    }
+
+    /**
+     * Getter for the HTTPS batch linger time
+     * @return how long the oldest queued message may wait for more messages to join its batch, in milliseconds
+     */
+    public long getHttpsBatchLingerMillis()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_028: [This function shall return the saved lingerMillis.]
+        return this.httpsBatchLingerMillis;
+    }
+
+    /**
+     * Makes the HTTPS transport poll for received messages with an adaptive interval instead of the fixed receive
+     * period. Takes effect the next time the client is opened.
+     * @param minIntervalMillis the interval between polls while messages are being received
+     * @param maxIntervalMillis the longest interval between polls while no message is received
+     * @throws IllegalArgumentException if minIntervalMillis is 0 or negative, or if maxIntervalMillis is smaller than minIntervalMillis
+     */
+    public void setHttpsReceiveInterval(long minIntervalMillis, long maxIntervalMillis) throws IllegalArgumentException
+    {
+        if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis)
+        {
+            //Codes_SRS_DEVICECLIENTCONFIG_41_031: [If the provided minIntervalMillis is 0 or negative, or if the provided maxIntervalMillis is smaller than minIntervalMillis, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Receive intervals must satisfy 0 < minIntervalMillis <= maxIntervalMillis");
+        }
+
+        //Codes_SRS_DEVICECLIENTCONFIG_41_032: [This function shall save the provided minIntervalMillis and maxIntervalMillis.]
+        this.httpsReceiveMinIntervalMillis = minIntervalMillis;
+        this.httpsReceiveMaxIntervalMillis = maxIntervalMillis;
+    }
+
+    /**
+     * Getter for the shortest HTTPS receive interval
+     * @return the interval between polls while messages are being received, or 0 if the receive interval is not adaptive
+     */
+    public long getHttpsReceiveMinIntervalMillis()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_033: [This function shall return the saved minIntervalMillis, or 0 if none was set.]
+        return this.httpsReceiveMinIntervalMillis;
+    }
+
+    /**
+     * Getter for the longest HTTPS receive interval
+     * @return the longest interval between polls, or 0 if the receive interval is not adaptive
+     */
+    public long getHttpsReceiveMaxIntervalMillis()
+    {
+        //Codes_SRS_DEVICECLIENTCONFIG_41_034: [This function shall return the saved maxIntervalMillis, or 0 if none was set.]
+        return this.httpsReceiveMaxIntervalMillis;
+    }
+
     public ProductInfo getProductInfo()
     {
         //Codes_SRS_DEVICECLIENTCONFIG_34_040: [This function shall return the saved product info.]
@@ -4,16 +4,21 @@
 package com.microsoft.azure.sdk.iot.device;
 
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubSignalledSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
 
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /*
  *     +-------------------------------------+                  +-----------------------------------+
@@ -81,12 +86,29 @@ public final class DeviceIO
     private IotHubTransport transport;
     private DeviceClientConfig config;
     private IotHubSendTask sendTask = null;
+    private IotHubEventDrivenSendTask eventDrivenSendTask = null;
+    private IotHubSignalledSendTask signalledSendTask = null;
     private IotHubReceiveTask receiveTask = null;
     private IotHubClientProtocol protocol = null;
 
     private ScheduledExecutorService taskScheduler;
+    private boolean isTaskSchedulerShared;
+    private Future<?> sendTaskFuture;
+    private Future<?> receiveTaskFuture;
     private IotHubClientState state;
 
+    /*
+     * Sends hold the read lock so that they do not wait for each other, close holds the write lock so that no message
+     * is added to the transport after close has cancelled the pending ones.
+     */
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    /*
+     * By default messages are sent as soon as they are queued. Explicitly setting a send period switches back to
+     * the legacy mode where the send task polls the transport at a fixed rate.
+     */
+    private boolean isSendPollingEnabled = false;
+
     private List<DeviceClientConfig> deviceClientConfigs = new LinkedList<>();
 
     /**
@@ -190,23 +212,102 @@ public final class DeviceIO
     private void commonOpenSetup()
     {
         this.sendTask = new IotHubSendTask(this.transport);
+        this.eventDrivenSendTask = new IotHubEventDrivenSendTask(this.transport);
         this.receiveTask = new IotHubReceiveTask(this.transport);
 
-        this.taskScheduler = Executors.newScheduledThreadPool(2);
+        SharedTransportExecutor sharedTransportExecutor = this.config.getSharedTransportExecutor();
+        if (sharedTransportExecutor != null)
+        {
+            /* Codes_SRS_DEVICE_IO_41_005: [If the config has a shared transport executor, the open shall schedule the send and receive tasks on it instead of creating a scheduler of its own.] */
+            this.taskScheduler = sharedTransportExecutor.getScheduledExecutorService();
+            this.isTaskSchedulerShared = true;
+        }
+        else
+        {
+            this.taskScheduler = Executors.newScheduledThreadPool(2);
+            this.isTaskSchedulerShared = false;
+        }
+
         // the scheduler waits until each execution is finished before
         // scheduling the next one, so executions of a given task
         // will never overlap.
         /* Codes_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
-        this.taskScheduler.scheduleAtFixedRate(this.sendTask, 0,
-                sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        /* Codes_SRS_DEVICE_IO_41_001: [If no send period was explicitly set, the open shall start the event driven send task instead of scheduling the send task.] */
+        this.startSendTask();
+        long httpsReceiveMinIntervalMillis = this.config.getHttpsReceiveMinIntervalMillis();
+        if (this.protocol == IotHubClientProtocol.HTTPS && httpsReceiveMinIntervalMillis > 0)
+        {
+            /* Codes_SRS_DEVICE_IO_41_010: [If the protocol is HTTPS and the config has an adaptive receive interval, the open shall run the receive task every minimum receive interval, and let the transport decide when to poll.] */
+            this.receivePeriodInMilliseconds = httpsReceiveMinIntervalMillis;
+        }
+
         /* Codes_SRS_DEVICE_IO_21_014: [The open shall schedule receive tasks to run every receivePeriodInMilliseconds milliseconds.] */
-        this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
+        this.receiveTaskFuture = this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
                 receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
 
         /* Codes_SRS_DEVICE_IO_21_016: [The open shall set the `state` as `CONNECTED`.] */
         this.state = IotHubClientState.OPEN;
     }
 
+    /**
+     * Starts either the polling send task or the event driven send task on the task scheduler, depending on
+     * whether a send period was explicitly set. A shared scheduler must not have one of its threads parked for
+     * each client, so on a shared scheduler the event driven send task is replaced by one that the transport
+     * submits whenever it has work to send.
+     */
+    private void startSendTask()
+    {
+        if (this.isSendPollingEnabled)
+        {
+            this.sendTaskFuture = this.taskScheduler.scheduleAtFixedRate(this.sendTask, 0,
+                    this.sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
+        }
+        else if (!this.isTaskSchedulerShared)
+        {
+            this.sendTaskFuture = this.taskScheduler.submit(this.eventDrivenSendTask);
+        }
+        else
+        {
+            /* Codes_SRS_DEVICE_IO_41_006: [If no send period was explicitly set and the scheduler is shared, the open shall register a signalled send task with the transport and signal it once.] */
+            this.signalledSendTask = new IotHubSignalledSendTask(this.transport, this.taskScheduler);
+            this.transport.setSignalledSendTask(this.signalledSendTask);
+            this.signalledSendTask.signal();
+        }
+    }
+
+    /**
+     * Stops the currently running send task, if any. The event driven send task is parked until the transport
+     * signals it, so it has to be interrupted in order to stop.
+     */
+    private void stopSendTask()
+    {
+        if (this.sendTaskFuture != null)
+        {
+            this.sendTaskFuture.cancel(!this.isSendPollingEnabled);
+            this.sendTaskFuture = null;
+        }
+
+        if (this.signalledSendTask != null)
+        {
+            /* Codes_SRS_DEVICE_IO_41_007: [The close shall unregister and stop the signalled send task if there is one.] */
+            this.transport.setSignalledSendTask(null);
+            this.signalledSendTask.stop();
+            this.signalledSendTask = null;
+        }
+    }
+
+    /**
+     * Stops the receive task, if it is scheduled.
+     */
+    private void stopReceiveTask()
+    {
+        if (this.receiveTaskFuture != null)
+        {
+            this.receiveTaskFuture.cancel(false);
+            this.receiveTaskFuture = null;
+        }
+    }
+
     /**
      * Completes all current outstanding requests and closes the IoT Hub client.
      * Must be called to terminate the background thread that is sending data to
@@ -216,6 +317,20 @@ public final class DeviceIO
      * @throws IOException if the connection to an IoT Hub cannot be closed.
      */
     public void close() throws IOException
+    {
+        /* Codes_SRS_DEVICE_IO_41_012: [The close shall wait for the sends that are in progress, and block new sends until the client is closed.] */
+        this.closeLock.writeLock().lock();
+        try
+        {
+            this.closeUnderLock();
+        }
+        finally
+        {
+            this.closeLock.writeLock().unlock();
+        }
+    }
+
+    private void closeUnderLock() throws IOException
     {
         /* Codes_SRS_DEVICE_IO_21_020: [If the client is already closed, the close shall do nothing.] */
         if (this.state == IotHubClientState.CLOSED)
@@ -225,7 +340,14 @@ public final class DeviceIO
 
         /* Codes_SRS_DEVICE_IO_21_017: [The close shall finish all ongoing tasks.] */
         /* Codes_SRS_DEVICE_IO_21_018: [The close shall cancel all recurring tasks.] */
-        this.taskScheduler.shutdown();
+        /* Codes_SRS_DEVICE_IO_41_002: [The close shall stop the event driven send task if it is running.] */
+        this.stopSendTask();
+        this.stopReceiveTask();
+        if (!this.isTaskSchedulerShared)
+        {
+            /* Codes_SRS_DEVICE_IO_41_008: [The close shall not shut down a shared transport executor.] */
+            this.taskScheduler.shutdown();
+        }
 
         /* Codes_SRS_DEVICE_IO_21_019: [The close shall close the transport.] */
         try
@@ -269,10 +391,34 @@ public final class DeviceIO
      * @throws IllegalArgumentException if the message provided is {@code null}.
      * @throws IllegalStateException if the client has not been opened yet or is already closed.
      */
-    public synchronized void sendEventAsync(Message message,
+    public void sendEventAsync(Message message,
                                IotHubEventCallback callback,
                                Object callbackContext,
                                IotHubConnectionString iotHubConnectionString)
+    {
+        /* Codes_SRS_DEVICE_IO_41_013: [If the client is being closed by the calling thread, for instance from a callback invoked by close, the sendEventAsync shall throw an IllegalStateException.] */
+        if (this.closeLock.isWriteLockedByCurrentThread())
+        {
+            throw new IllegalStateException(
+                    "Cannot send event from "
+                            + "an IoT Hub client that is closing.");
+        }
+
+        this.closeLock.readLock().lock();
+        try
+        {
+            this.sendEventAsyncUnderLock(message, callback, callbackContext, iotHubConnectionString);
+        }
+        finally
+        {
+            this.closeLock.readLock().unlock();
+        }
+    }
+
+    private void sendEventAsyncUnderLock(Message message,
+                                         IotHubEventCallback callback,
+                                         Object callbackContext,
+                                         IotHubConnectionString iotHubConnectionString)
     {
         /* Codes_SRS_DEVICE_IO_21_024: [If the client is closed, the sendEventAsync shall throw an IllegalStateException.] */
         if (this.state == IotHubClientState.CLOSED)
@@ -294,7 +440,10 @@ public final class DeviceIO
             message.setIotHubConnectionString(iotHubConnectionString);
         }
 
-        logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("Message with messageid %s along with callback and callbackcontext is added to the queue, method name is %s ", message.getMessageId(), logger.getMethodName());
+        }
         /* Codes_SRS_DEVICE_IO_21_022: [The sendEventAsync shall add the message, with its associated callback and callback context, to the transport.] */
         transport.addMessage(message, callback, callbackContext);
     }
@@ -337,7 +486,9 @@ public final class DeviceIO
                 throw new IOException("transport receive task not set");
             }
 
-            this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
+            /* Codes_SRS_DEVICE_IO_41_009: [The setReceivePeriodInMilliseconds shall cancel the receive task that is currently scheduled before scheduling it again.] */
+            this.stopReceiveTask();
+            this.receiveTaskFuture = this.taskScheduler.scheduleAtFixedRate(this.receiveTask, 0,
                     this.receivePeriodInMilliseconds, TimeUnit.MILLISECONDS);
         }
     }
@@ -354,7 +505,8 @@ public final class DeviceIO
     }
 
     /**
-     * Setter for the send period in milliseconds.
+     * Setter for the send period in milliseconds. Setting a send period switches the client from sending
+     * messages as soon as they are queued to polling the send queue every {@code newIntervalInMilliseconds}.
      *
      * @param newIntervalInMilliseconds is the new interval in milliseconds.
      * @throws IOException if the task schedule exist but there is no send task function to call.
@@ -380,8 +532,15 @@ public final class DeviceIO
                 throw new IOException("transport send task not set");
             }
 
-            this.taskScheduler.scheduleAtFixedRate(this.sendTask, 0,
-                    this.sendPeriodInMilliseconds, TimeUnit.MILLISECONDS);
+            /* Codes_SRS_DEVICE_IO_41_003: [The setSendPeriodInMilliseconds shall stop the send task that is currently running before scheduling the new one.] */
+            this.stopSendTask();
+            this.isSendPollingEnabled = true;
+            this.startSendTask();
+        }
+        else
+        {
+            /* Codes_SRS_DEVICE_IO_41_004: [The setSendPeriodInMilliseconds shall switch the client to polling the send queue.] */
+            this.isSendPollingEnabled = true;
         }
     }
 
@@ -417,6 +576,36 @@ public final class DeviceIO
         return this.transport.isEmpty();
     }
 
+    /**
+     * Getter for the number of messages waiting in the transport queue to be sent.
+     * @return the number of queued messages.
+     */
+    public int getOutboundQueueDepth()
+    {
+        /* Codes_SRS_DEVICE_IO_41_001: [The getOutboundQueueDepth shall return the number of messages waiting in the transport queue.] */
+        return this.transport.getOutboundQueueDepth();
+    }
+
+    /**
+     * Getter for the number of message body bytes waiting in the transport queue to be sent.
+     * @return the number of queued bytes.
+     */
+    public long getOutboundQueueSizeInBytes()
+    {
+        /* Codes_SRS_DEVICE_IO_41_002: [The getOutboundQueueSizeInBytes shall return the number of message body bytes waiting in the transport queue.] */
+        return this.transport.getOutboundQueueSizeInBytes();
+    }
+
+    /**
+     * Getter for the poller that receives the messages over HTTPS, which holds the receive statistics.
+     * @return the https receive poller, or null if the client does not use an adaptive HTTPS receive interval.
+     */
+    public HttpsReceivePoller getHttpsReceivePoller()
+    {
+        /* Codes_SRS_DEVICE_IO_41_011: [The getHttpsReceivePoller shall return the https receive poller of the transport.] */
+        return this.transport.getHttpsReceivePoller();
+    }
+
     /**
      * Registers a callback with the configured transport to be executed whenever the connection to the device is lost or established.
      *
@@ -14,14 +14,20 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.ABANDON;
 import static com.microsoft.azure.sdk.iot.device.IotHubMessageResult.COMPLETE;
 
 public class DeviceTwin
 {
-    private int requestId;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private DeviceIO deviceIO = null;
     private DeviceClientConfig config = null;
     private boolean isSubscribed = false;
@@ -47,6 +53,49 @@ public class DeviceTwin
     private ConcurrentSkipListMap<String, Pair<PropertyCallBack<String, Object>, Object>> onDesiredPropertyChangeMap;
     private ConcurrentSkipListMap<String, Pair<TwinPropertyCallBack, Object>> onDesiredTwinPropertyChangeMap;
 
+    /*
+        Requests that were given their own status callback, by request id and by correlation id. MQTT responses carry
+        the request id of their request, AMQP responses its correlation id.
+     */
+    private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+
+    /*
+        Expires the requests that got no response within the operation timeout. It has a single daemon thread shared by
+        all twins, so that an application that never closes its clients can still exit.
+     */
+    private static final ScheduledThreadPoolExecutor requestExpiryScheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "azure-iot-sdk-DeviceTwin-RequestExpiry");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static
+    {
+        requestExpiryScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    private static final class PendingRequest
+    {
+        private final String requestId;
+        private final String correlationId;
+        private final IotHubEventCallback callback;
+        private final Object callbackContext;
+        private volatile ScheduledFuture<?> expiryTask;
+
+        private PendingRequest(String requestId, String correlationId, IotHubEventCallback callback, Object callbackContext)
+        {
+            this.requestId = requestId;
+            this.correlationId = correlationId;
+            this.callback = callback;
+            this.callbackContext = callbackContext;
+        }
+    }
+
     /*
         Callback invoked when a response to device twin operation is issued by iothub
      */
@@ -88,6 +137,7 @@ public class DeviceTwin
                          */
 
                         deviceTwinStatusCallback.execute(iotHubStatus, deviceTwinStatusCallbackContext);
+                        completePendingRequest(dtMessage, iotHubStatus);
 
                         if (iotHubStatus == IotHubStatusCode.OK)
                         {
@@ -116,6 +166,7 @@ public class DeviceTwin
                          **Codes_SRS_DEVICETWIN_25_027: [**If the message is of type DEVICE_TWIN and DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE then the user call with a valid status is triggered.**]**
                          */
                         deviceTwinStatusCallback.execute(iotHubStatus, deviceTwinStatusCallbackContext);
+                        completePendingRequest(dtMessage, iotHubStatus);
 
                         break;
                     }
@@ -228,6 +279,15 @@ public class DeviceTwin
                 if((responseStatus != IotHubStatusCode.OK) && (responseStatus != IotHubStatusCode.OK_EMPTY))
                 {
                     deviceTwinStatusCallback.execute(responseStatus, deviceTwinStatusCallbackContext);
+
+                    /*
+                     **Codes_SRS_DEVICETWIN_41_003: [**If a request that has its own status callback could not be delivered, the callback shall be removed and invoked with the delivery status.**]**
+                     */
+                    if (callbackContext instanceof PendingRequest && removePendingRequest((PendingRequest) callbackContext))
+                    {
+                        PendingRequest pendingRequest = (PendingRequest) callbackContext;
+                        pendingRequest.callback.execute(responseStatus, pendingRequest.callbackContext);
+                    }
                 }
             }
         }
@@ -281,7 +341,6 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_002: [**The constructor shall save the device twin message callback by calling setDeviceTwinMessageCallback where any further messages for device twin shall be delivered.**]**
          */
         this.config.setDeviceTwinMessageCallback(new deviceTwinResponseMessageCallback(), null);
-        this.requestId = 0;
 
         this.deviceTwinStatusCallback = deviceTwinCallback;
         this.deviceTwinStatusCallbackContext = deviceTwinCallbackContext;
@@ -289,7 +348,91 @@ public class DeviceTwin
         this.deviceTwinGenericPropertyChangeCallbackContext = genericPropertyCallbackContext;
     }
 
+    private void completePendingRequest(IotHubTransportMessage response, IotHubStatusCode iotHubStatus)
+    {
+        /*
+         **Codes_SRS_DEVICETWIN_41_002: [**On a GET or UPDATE_REPORTED_PROPERTIES response, the status callback of the request with the request id or correlation id of the response, if any, shall be removed and invoked with the response status.**]**
+         */
+        PendingRequest pendingRequest = null;
+        if (response.getRequestId() != null)
+        {
+            pendingRequest = this.pendingRequests.get(response.getRequestId());
+        }
+        if (pendingRequest == null && response.getCorrelationId() != null)
+        {
+            pendingRequest = this.pendingRequests.get(response.getCorrelationId());
+        }
+
+        if (pendingRequest != null && removePendingRequest(pendingRequest))
+        {
+            pendingRequest.callback.execute(iotHubStatus, pendingRequest.callbackContext);
+        }
+    }
+
+    private PendingRequest addPendingRequest(IotHubTransportMessage request, IotHubEventCallback callback, Object callbackContext)
+    {
+        if (callback == null)
+        {
+            return null;
+        }
+
+        final PendingRequest pendingRequest = new PendingRequest(request.getRequestId(), request.getCorrelationId(), callback, callbackContext);
+        this.pendingRequests.put(pendingRequest.requestId, pendingRequest);
+        this.pendingRequests.put(pendingRequest.correlationId, pendingRequest);
+
+        /*
+         **Codes_SRS_DEVICETWIN_41_004: [**If a request that has its own status callback gets no response within the operation timeout of the config, the callback shall be removed and invoked with MESSAGE_EXPIRED.**]**
+         */
+        pendingRequest.expiryTask = requestExpiryScheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                expirePendingRequest(pendingRequest);
+            }
+        }, this.config.getOperationTimeout(), TimeUnit.MILLISECONDS);
+
+        return pendingRequest;
+    }
+
+    private void expirePendingRequest(PendingRequest pendingRequest)
+    {
+        synchronized (DEVICE_TWIN_LOCK)
+        {
+            if (removePendingRequest(pendingRequest))
+            {
+                pendingRequest.callback.execute(IotHubStatusCode.MESSAGE_EXPIRED, pendingRequest.callbackContext);
+            }
+        }
+    }
+
+    /* Returns true if this call removed the request, so that its callback is invoked only once */
+    private boolean removePendingRequest(PendingRequest pendingRequest)
+    {
+        boolean removed = this.pendingRequests.remove(pendingRequest.requestId, pendingRequest);
+        removed |= this.pendingRequests.remove(pendingRequest.correlationId, pendingRequest);
+
+        ScheduledFuture<?> expiryTask = pendingRequest.expiryTask;
+        if (removed && expiryTask != null)
+        {
+            expiryTask.cancel(false);
+        }
+        return removed;
+    }
+
     public void getDeviceTwin()
+    {
+        this.getDeviceTwin(null, null);
+    }
+
+    /**
+     * Requests the twin, and reports the status of this request only to the provided callback in addition to the
+     * device twin status callback.
+     *
+     * @param callback the callback for the status of this request. Can be {@code null}.
+     * @param callbackContext the context to be passed to the callback. Can be {@code null}.
+     */
+    public void getDeviceTwin(IotHubEventCallback callback, Object callbackContext)
     {
         /*
          **Codes_SRS_DEVICETWIN_25_005: [**The method shall create a device twin message with empty payload to be sent IotHub.**]**
@@ -299,17 +442,22 @@ public class DeviceTwin
         /*
          **Codes_SRS_DEVICETWIN_25_007: [**This method shall set the request id for the message by calling setRequestId .**]**
          */
-        getTwinRequestMessage.setRequestId(String.valueOf(requestId++));
+        getTwinRequestMessage.setRequestId(String.valueOf(requestId.getAndIncrement()));
 
         /*
          **Codes_SRS_DEVICETWIN_25_006: [**This method shall set the message type as DEVICE_OPERATION_TWIN_GET_REQUEST by calling setDeviceOperationType.**]**
          */
         getTwinRequestMessage.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_GET_REQUEST);
 
+        /*
+         **Codes_SRS_DEVICETWIN_41_001: [**If a request status callback is provided, the method shall save it by the request id and correlation id of the message before sending it.**]**
+         */
+        PendingRequest pendingRequest = addPendingRequest(getTwinRequestMessage, callback, callbackContext);
+
         /*
          **Codes_SRS_DEVICETWIN_25_008: [**This method shall send the message to the lower transport layers by calling sendEventAsync.**]**
          */
-        this.deviceIO.sendEventAsync(getTwinRequestMessage, new deviceTwinRequestMessageCallback(), null, this.config.getIotHubConnectionString());
+        this.deviceIO.sendEventAsync(getTwinRequestMessage, new deviceTwinRequestMessageCallback(), pendingRequest, this.config.getIotHubConnectionString());
     }
 
     public synchronized void updateReportedProperties(Set<Property> reportedProperties) throws IOException
@@ -318,6 +466,22 @@ public class DeviceTwin
     }
 
     public synchronized void updateReportedProperties(Set<Property> reportedProperties, Integer version) throws IOException
+    {
+        this.updateReportedProperties(reportedProperties, version, null, null);
+    }
+
+    /**
+     * Updates the reported properties, and reports the status of this request only to the provided callback in
+     * addition to the device twin status callback.
+     *
+     * @param reportedProperties the properties to report. Cannot be {@code null}.
+     * @param version the version of the reported properties. Can be {@code null}.
+     * @param callback the callback for the status of this request. Can be {@code null}.
+     * @param callbackContext the context to be passed to the callback. Can be {@code null}.
+     * @throws IOException if the properties could not be serialized.
+     */
+    public synchronized void updateReportedProperties(Set<Property> reportedProperties, Integer version,
+                                                      IotHubEventCallback callback, Object callbackContext) throws IOException
     {
         if (reportedProperties == null)
         {
@@ -350,7 +514,7 @@ public class DeviceTwin
         /*
          **Codes_SRS_DEVICETWIN_25_014: [**This method shall set the request id for the message by calling setRequestId .**]**
          */
-        updateReportedPropertiesRequest.setRequestId(String.valueOf(requestId++));
+        updateReportedPropertiesRequest.setRequestId(String.valueOf(requestId.getAndIncrement()));
 
         if(version != null)
         {
@@ -365,10 +529,15 @@ public class DeviceTwin
          */
         updateReportedPropertiesRequest.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_REQUEST);
 
+        /*
+         **Codes_SRS_DEVICETWIN_41_001: [**If a request status callback is provided, the method shall save it by the request id and correlation id of the message before sending it.**]**
+         */
+        PendingRequest pendingRequest = addPendingRequest(updateReportedPropertiesRequest, callback, callbackContext);
+
         /*
          **Codes_SRS_DEVICETWIN_25_015: [**This method shall send the message to the lower transport layers by calling sendEventAsync.**]**
          */
-        this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, new deviceTwinRequestMessageCallback(), null, this.config.getIotHubConnectionString());
+        this.deviceIO.sendEventAsync(updateReportedPropertiesRequest, new deviceTwinRequestMessageCallback(), pendingRequest, this.config.getIotHubConnectionString());
 
     }
 
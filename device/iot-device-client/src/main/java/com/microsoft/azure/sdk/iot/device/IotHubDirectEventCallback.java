@@ -0,0 +1,16 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * An IoT Hub event callback that the transport executes as soon as IoT Hub acknowledges the request, on the thread
+ * that received the acknowledgement, instead of queueing it for the send task.
+ *
+ * That thread is the thread of the protocol connection, so an implementation must return quickly and must not block,
+ * for instance by completing a future or handing the status over to an executor. An exception thrown by
+ * {@link IotHubEventCallback#execute(IotHubStatusCode, Object)} is logged and ignored.
+ */
+public interface IotHubDirectEventCallback extends IotHubEventCallback
+{
+}
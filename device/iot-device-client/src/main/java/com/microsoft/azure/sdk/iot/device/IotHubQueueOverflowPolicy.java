@@ -0,0 +1,37 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * What the client does with a new outbound message when its queue of messages waiting to be sent is already at
+ * capacity. Messages that are not queued are reported through their event callback with status
+ * {@link IotHubStatusCode#OUTBOUND_QUEUE_FULL}. Twin and method messages are always queued, so that the device stays
+ * manageable while its telemetry backs up.
+ */
+public enum IotHubQueueOverflowPolicy
+{
+    /**
+     * The sending thread waits for room in the queue, up to the configured block timeout. If there is still no room
+     * when the timeout elapses, the message is rejected. A message sent from the thread that empties the queue, for
+     * instance from an event callback, is rejected right away instead, since waiting there would stop the queue from
+     * emptying.
+     */
+    BLOCK,
+
+    /**
+     * The message is rejected and its callback is invoked on the sending thread before the send call returns.
+     */
+    FAIL_FAST,
+
+    /**
+     * The new message is dropped and its callback is invoked later from the callback thread.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest messages waiting to be sent are dropped to make room for the new message, and their callbacks are
+     * invoked later from the callback thread.
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,27 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+/**
+ * When the client forces spooled messages to disk. Spooled messages that were written but not yet forced survive a
+ * process crash, since they are already in the operating system's page cache, but may be lost on a power failure.
+ */
+public enum IotHubSpoolSyncPolicy
+{
+    /**
+     * Every message is forced to disk before the send call returns. Safest, and slowest.
+     */
+    PER_MESSAGE,
+
+    /**
+     * Messages are forced to disk in groups, right before they are sent to the IoT Hub, so a single sync covers every
+     * message queued since the last one. A message is never sent before it is on disk.
+     */
+    GROUP_COMMIT,
+
+    /**
+     * Messages are forced to disk at most once a second. Messages may be sent before they are on disk.
+     */
+    PERIODIC
+}
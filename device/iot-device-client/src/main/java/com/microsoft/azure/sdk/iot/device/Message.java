@@ -5,6 +5,7 @@ package com.microsoft.azure.sdk.iot.device;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -131,7 +132,8 @@ public class Message
      * Stream that will provide the bytes for the body of the
      */
     private ByteArrayInputStream bodyStream;
-    private CustomLogger logger;
+    /* Shared by all the instances, so that creating a message does not look up a log4j logger */
+    private static final CustomLogger logger = new CustomLogger(Message.class);
 
     // ----- Constructors -----
 
@@ -213,6 +215,31 @@ public class Message
         return bodyClone;
     }
 
+    /**
+     * The byte content of the body, without a copy.
+     * @return A read-only view of this Message body, or null if it has none.
+     */
+    public ByteBuffer getBodyAsReadOnlyBuffer()
+    {
+        // Codes_SRS_MESSAGE_41_002: [The function shall return a read-only view of the message body, or null if the message has no body.]
+        if (this.body == null)
+        {
+            return null;
+        }
+
+        return ByteBuffer.wrap(this.body).asReadOnlyBuffer();
+    }
+
+    /**
+     * The length of the body, without a copy.
+     * @return The number of bytes in this Message body, or 0 if it has none.
+     */
+    public int getBodyLength()
+    {
+        // Codes_SRS_MESSAGE_41_003: [The function shall return the length of the message body, or 0 if the message has no body.]
+        return (this.body == null) ? 0 : this.body.length;
+    }
+
     /**
      * Gets the values of user-defined properties of this Message.
      * @param name Name of the user-defined property to search for.
@@ -277,7 +304,10 @@ public class Message
             this.properties.remove(messageProperty);
         }
 
-        logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, logger.getMethodName());
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("Setting message property with name=%s and value=%s, method name is %s ", name, value, logger.getMethodName());
+        }
         this.properties.add(new MessageProperty(name, value));
     }
 
@@ -303,7 +333,6 @@ public class Message
         this.feedbackStatusCode = FeedbackStatusCodeEnum.none;
         this.ack = FeedbackStatusCodeEnum.none;
         this.properties = new ArrayList<>();
-        this.logger = new CustomLogger(this.getClass());
     }
 
     /**
@@ -377,6 +406,16 @@ public class Message
         this.correlationId = correlationId;
     }
 
+    /**
+     * Getter for the expiryTime property
+     * @return the number of milliseconds since the epoch at which this message expires, or 0 if it never expires
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_MESSAGE_41_001: [The function shall return the message's absolute expiry time.]
+        return this.expiryTime;
+    }
+
     /**
      * Setter for the expiryTime property. This setter uses relative time, not absolute time.
      * @param timeOut The time out for the message, in milliseconds, from the current time.
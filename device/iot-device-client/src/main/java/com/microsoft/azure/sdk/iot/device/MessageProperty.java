@@ -43,7 +43,8 @@ public final class MessageProperty {
     private String name;
     /** The property value. */
     private String value;
-    private CustomLogger logger;
+    /* Shared by all the instances, so that creating a message does not look up a log4j logger */
+    private static final CustomLogger logger = new CustomLogger(MessageProperty.class);
     
     /**
      * Constructor.
@@ -56,7 +57,6 @@ public final class MessageProperty {
      * A message property name cannot be one of the reserved property names.
      */
     public MessageProperty(String name, String value) {
-        this.logger = new CustomLogger(this.getClass());
         if (name == null) {
             logger.LogError("Property argument 'name' cannot be null, method name is %s ", logger.getMethodName());
             throw new IllegalArgumentException("Property argument 'name' cannot be null.");
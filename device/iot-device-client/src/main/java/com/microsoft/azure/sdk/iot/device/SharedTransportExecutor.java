@@ -0,0 +1,122 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of threads that runs the send, receive, retry and token renewal work of many clients. By default every
+ * client starts threads of its own, most of which sit idle; clients that are given the same shared executor use its
+ * threads instead, so the number of threads depends on the number of cores rather than on the number of clients.
+ *
+ * <p>The executor is owned by the application: clients never shut it down, and {@link #close()} must only be called
+ * once every client using it is closed. Each AMQP connection still runs its protocol event loop on a thread of its
+ * own, and each MQTT connection keeps the reader and writer threads of its socket.</p>
+ */
+public final class SharedTransportExecutor
+{
+    private static final String THREAD_NAME_PREFIX = "azure-iot-sdk-SharedTransportExecutor-";
+
+    // the clients' send and receive work is short and never blocks for long, so a couple of threads per core keep up
+    private static final int MIN_THREAD_COUNT = 2;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Creates an executor with one thread per available processor, and at least two threads.
+     */
+    public SharedTransportExecutor()
+    {
+        this(Math.max(MIN_THREAD_COUNT, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates an executor with the provided number of threads.
+     * @param threadCount the number of threads
+     * @throws IllegalArgumentException if threadCount is less than 1
+     */
+    public SharedTransportExecutor(int threadCount) throws IllegalArgumentException
+    {
+        if (threadCount < 1)
+        {
+            // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_001: [If the provided threadCount is less than 1, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_002: [The constructor shall create a scheduler with threadCount threads that removes cancelled tasks from its queue.]
+        this.scheduler = new ScheduledThreadPoolExecutor(threadCount, new ThreadFactory()
+        {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                return new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
+            }
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Getter for the scheduler the clients run their work on.
+     * @return the shared scheduler
+     */
+    public ScheduledExecutorService getScheduledExecutorService()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_003: [This function shall return the scheduler.]
+        return this.scheduler;
+    }
+
+    /**
+     * Getter for the number of threads in the pool.
+     * @return the number of threads currently in the pool
+     */
+    public int getThreadCount()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_004: [This function shall return the current pool size of the scheduler.]
+        return this.scheduler.getPoolSize();
+    }
+
+    /**
+     * Getter for the number of threads that are running a task.
+     * @return the approximate number of busy threads
+     */
+    public int getActiveThreadCount()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_005: [This function shall return the number of threads of the scheduler that are running a task.]
+        return this.scheduler.getActiveCount();
+    }
+
+    /**
+     * Getter for the number of tasks waiting to run, including periodic tasks waiting for their next run.
+     * @return the number of queued tasks
+     */
+    public int getQueuedTaskCount()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_006: [This function shall return the size of the scheduler's queue.]
+        return this.scheduler.getQueue().size();
+    }
+
+    /**
+     * Getter for the number of task runs that have completed.
+     * @return the approximate number of completed task runs
+     */
+    public long getCompletedTaskCount()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_007: [This function shall return the number of completed tasks of the scheduler.]
+        return this.scheduler.getCompletedTaskCount();
+    }
+
+    /**
+     * Stops the threads of this executor. Must only be called once every client using the executor is closed.
+     */
+    public void close()
+    {
+        // Codes_SRS_SHAREDTRANSPORTEXECUTOR_41_008: [This function shall shut down the scheduler.]
+        this.scheduler.shutdown();
+    }
+}
@@ -13,7 +13,9 @@ import java.util.ArrayList;
  * Handle to register devices to transport client and open / closeNow
  * the connection. 
  * </p>
- * The multiplexed connection is supported with AMQPS / AMQPS_WS protocols.
+ * The multiplexed connection is supported with AMQPS / AMQPS_WS protocols. With MQTT / MQTT_WS every
+ * device still has a connection of its own, as the IoT Hub requires, but the devices share the transport
+ * threads, the SSLContext and the keep alive scheduler of the transport client.
  */
 public class TransportClient
 {
@@ -25,10 +27,17 @@ public class TransportClient
 
     public static long SEND_PERIOD_MILLIS = 10L;
     public static long RECEIVE_PERIOD_MILLIS_AMQPS = 10L;
+    public static long RECEIVE_PERIOD_MILLIS_MQTT = 10L;
+
+    // every mqtt device holds a socket of its own, so a transport client only takes this many of them by default
+    public static final int DEFAULT_MAX_MQTT_DEVICE_COUNT = 1000;
 
     private IotHubClientProtocol iotHubClientProtocol;
     private DeviceIO deviceIO;
     private TransportClientState transportClientState;
+    private int maxMqttDeviceCount = DEFAULT_MAX_MQTT_DEVICE_COUNT;
+    private SharedTransportExecutor sharedTransportExecutor;
+    private CallbackExecutor callbackExecutor;
 
     private ArrayList<DeviceClient> deviceClientList;
 
@@ -37,7 +46,7 @@ public class TransportClient
     /**
      * Constructor that takes a protocol as an argument.
      *
-     * @param protocol the communication protocol used (i.e. AMQPS or AMQPS_WS).
+     * @param protocol the communication protocol used (i.e. AMQPS, AMQPS_WS, MQTT or MQTT_WS).
      *
      * @throws IllegalArgumentException if other protocol given.
      */
@@ -48,11 +57,11 @@ public class TransportClient
         {
             case AMQPS:
             case AMQPS_WS:
-                break;
             case MQTT:
             case MQTT_WS:
+                break;
             case HTTPS:
-                throw new IllegalArgumentException("Multiplexing is only supported for AMQPS and AMQPS_WS");
+                throw new IllegalArgumentException("Multiplexing is only supported for AMQPS, AMQPS_WS, MQTT and MQTT_WS");
             default:
                 // should never happen.
                 throw new IllegalStateException(
@@ -99,13 +108,26 @@ public class TransportClient
             {
                 deviceClientList.get(i).getConfig().getSasTokenAuthentication().getRenewedSasToken();
             }
+
+            if (this.sharedTransportExecutor != null)
+            {
+                // Codes_SRS_TRANSPORTCLIENT_41_004: [The function shall set the shared transport executor, if any, on each device client's config.]
+                deviceClientList.get(i).getConfig().setSharedTransportExecutor(this.sharedTransportExecutor);
+            }
+
+            if (this.callbackExecutor != null)
+            {
+                // Codes_SRS_TRANSPORTCLIENT_41_006: [The function shall set the callback executor, if any, on each device client's config.]
+                deviceClientList.get(i).getConfig().setCallbackExecutor(this.callbackExecutor);
+            }
         }
 
         // Codes_SRS_TRANSPORTCLIENT_12_009: [The function shall do nothing if the the registration list is empty.]
         if (this.deviceClientList.size() > 0)
         {
             // Codes_SRS_TRANSPORTCLIENT_12_011: [The function shall create a new DeviceIO using the first registered device client's configuration.]
-            this.deviceIO = new DeviceIO(deviceClientList.get(0).getConfig(), SEND_PERIOD_MILLIS, RECEIVE_PERIOD_MILLIS_AMQPS);
+            long receivePeriodInMilliseconds = isMqtt() ? RECEIVE_PERIOD_MILLIS_MQTT : RECEIVE_PERIOD_MILLIS_AMQPS;
+            this.deviceIO = new DeviceIO(deviceClientList.get(0).getConfig(), SEND_PERIOD_MILLIS, receivePeriodInMilliseconds);
             deviceClientList.get(0).setDeviceIO(this.deviceIO);
 
             // Codes_SRS_TRANSPORTCLIENT_12_012: [The function shall set the created DeviceIO to all registered device client.]
@@ -154,7 +176,8 @@ public class TransportClient
     }
 
     /***
-     * Sets the given send interval on the underlying device IO
+     * Sets the given send interval on the underlying device IO. By default messages are sent as soon as they
+     * are queued; setting a send interval switches the transport to polling the send queue at a fixed rate.
      *
      * @param newIntervalInMilliseconds the new interval in milliseconds
      * @throws IOException if the given number is less or equal to zero.
@@ -204,11 +227,58 @@ public class TransportClient
         logger.LogInfo("Retry policy updated successfully in the transport client, method name is %s ", logger.getMethodName());
     }
 
+    /**
+     * Makes the transport client run its send, receive, retry and token renewal work on the provided executor instead
+     * of on threads of its own. The executor may be shared with other transport and device clients, and is not shut
+     * down when the transport client is closed. Takes effect the next time the transport client is opened.
+     *
+     * @param sharedTransportExecutor the shared executor, or null for threads of its own
+     */
+    public void setSharedTransportExecutor(SharedTransportExecutor sharedTransportExecutor)
+    {
+        // Codes_SRS_TRANSPORTCLIENT_41_005: [The function shall save the provided sharedTransportExecutor.]
+        this.sharedTransportExecutor = sharedTransportExecutor;
+    }
+
+    /**
+     * Makes the device clients of this transport client run the callbacks of their sent messages on the provided
+     * executor instead of on the thread that sends the messages. With an executor ordered per device, the callbacks
+     * of each device still run in order. The executor is not shut down when the transport client is closed. Takes
+     * effect the next time the transport client is opened.
+     *
+     * @param callbackExecutor the executor for the callbacks, or null to run them on the send thread
+     */
+    public void setCallbackExecutor(CallbackExecutor callbackExecutor)
+    {
+        // Codes_SRS_TRANSPORTCLIENT_41_007: [The function shall save the provided callbackExecutor.]
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Sets the maximum number of devices this transport client connects over MQTT or MQTT_WS. Every one of those
+     * devices holds a socket of its own, so gateways with more devices should spread them over several transport
+     * clients.
+     *
+     * @param maxMqttDeviceCount the maximum number of devices
+     * @throws IllegalArgumentException if maxMqttDeviceCount is less than 1 or less than the number of registered devices.
+     */
+    public void setMaxMqttDeviceCount(int maxMqttDeviceCount) throws IllegalArgumentException
+    {
+        if (maxMqttDeviceCount < 1 || maxMqttDeviceCount < this.deviceClientList.size())
+        {
+            // Codes_SRS_TRANSPORTCLIENT_41_001: [The function shall throw IllegalArgumentException if the maxMqttDeviceCount parameter is less than 1 or less than the number of registered device clients.]
+            throw new IllegalArgumentException("max mqtt device count can not be less than 1 or than the number of registered devices");
+        }
+
+        // Codes_SRS_TRANSPORTCLIENT_41_002: [The function shall save the provided maxMqttDeviceCount.]
+        this.maxMqttDeviceCount = maxMqttDeviceCount;
+    }
+
     /**
      * Registers the given device into the transport client.
      *
      * @throws IllegalArgumentException if the deviceClient parameter is null.
-     * @throws IllegalStateException if the connection is open.
+     * @throws IllegalStateException if the connection is open, or if the transport client already has as many MQTT devices as it may.
      */
     void registerDeviceClient(DeviceClient deviceClient) throws IllegalArgumentException, IllegalStateException
     {
@@ -224,12 +294,23 @@ public class TransportClient
             throw new IllegalStateException("deviceClient cannot be registered if the connection is open.");
         }
 
+        // Codes_SRS_TRANSPORTCLIENT_41_003: [The function shall throw IllegalStateException if the protocol is MQTT or MQTT_WS and maxMqttDeviceCount device clients are already registered.]
+        if (isMqtt() && this.deviceClientList.size() >= this.maxMqttDeviceCount)
+        {
+            throw new IllegalStateException("This transport client cannot connect more than " + this.maxMqttDeviceCount + " devices over mqtt.");
+        }
+
         // Codes_SRS_TRANSPORTCLIENT_12_007: [The function shall add the given device client to the deviceClientList.]
         this.deviceClientList.add(deviceClient);
 
         logger.LogInfo("DeviceClient is added successfully to the transport client, method name is %s ", logger.getMethodName());
     }
 
+    private boolean isMqtt()
+    {
+        return this.iotHubClientProtocol == IotHubClientProtocol.MQTT || this.iotHubClientProtocol == IotHubClientProtocol.MQTT_WS;
+    }
+
     /**
      * Getter for the iotHubClientProtocol
      * @return the current protocol for the iotHubClient
@@ -100,6 +100,41 @@ public class IotHubSasTokenSoftwareAuthenticationProvider extends IotHubSasToken
         }
     }
 
+    /**
+     * Gives the provided authentication provider this provider's SSLContext, so that devices connecting side by side do
+     * not each load their own trust store. Nothing is shared if the two providers trust different certificates.
+     * @param other the provider to give this provider's SSLContext to
+     * @return true if the SSLContext was shared, and false otherwise
+     * @throws IllegalArgumentException if other is null
+     * @throws IOException if an error occurs when generating the SSLContext
+     */
+    public boolean shareSSLContext(IotHubSasTokenSoftwareAuthenticationProvider other) throws IllegalArgumentException, IOException
+    {
+        if (other == null)
+        {
+            //Codes_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_001: [If the provided authentication provider is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("The authentication provider to share the ssl context with cannot be null");
+        }
+
+        if (!sameCertificate(this.iotHubTrustedCert, other.iotHubTrustedCert)
+                || !sameCertificate(this.pathToIotHubTrustedCert, other.pathToIotHubTrustedCert))
+        {
+            //Codes_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_002: [If the provided authentication provider trusts a different certificate or certificate path than this object, this function shall return false.]
+            return false;
+        }
+
+        //Codes_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_003: [This function shall generate this object's ssl context if needed, save it in the provided authentication provider, and return true.]
+        this.getSSLContext();
+        other.iotHubSSLContext = this.iotHubSSLContext;
+        other.sslContextNeedsUpdate = false;
+        return true;
+    }
+
+    private static boolean sameCertificate(String certificate, String otherCertificate)
+    {
+        return (certificate == null) ? (otherCertificate == null) : certificate.equals(otherCertificate);
+    }
+
     /**
      * Setter for the providing trusted certificate.
      * @param pathToCertificate path to the certificate for one way authentication.
@@ -0,0 +1,73 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+/**
+ * Sends queued messages and invokes callbacks on completed requests as soon as the transport signals that
+ * there is work to do, and parks while the transport is idle. Meant to be submitted once to an executor; it
+ * runs until its thread is interrupted.
+ */
+public final class IotHubEventDrivenSendTask implements Runnable
+{
+    private static final String THREAD_NAME = "azure-iot-sdk-IotHubEventDrivenSendTask";
+    private final IotHubTransport transport;
+
+    /**
+     * Private logger for class
+     */
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    public IotHubEventDrivenSendTask(IotHubTransport transport)
+    {
+        if (transport == null)
+        {
+            //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_001: [If the provided transport is null, the constructor shall throw an IllegalArgumentException.]
+            logger.LogError("IotHubEventDrivenSendTask constructor called with null value for parameter transport");
+            throw new IllegalArgumentException("Parameter 'transport' must not be null");
+        }
+
+        //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_002: [The constructor shall save the transport.]
+        this.transport = transport;
+    }
+
+    public void run()
+    {
+        Thread.currentThread().setName(THREAD_NAME);
+
+        //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_003: [The function shall run until the thread it runs on is interrupted.]
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try
+            {
+                //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_004: [The function shall send all messages on the transport
+                // queue that fit in the in flight window.]
+                this.transport.sendAllMessages();
+
+                //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_005: [The function shall invoke all callbacks on the transport's callback queue.]
+                this.transport.invokeCallbacks();
+            }
+            //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_006: [The function shall not crash because of any error or exception thrown by the transport.]
+            catch (Throwable e)
+            {
+                logger.LogError(e.toString() + ": " + e.getMessage());
+                logger.LogDebug("Exception on sending queued messages to IoT Hub", e);
+            }
+
+            try
+            {
+                //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_007: [The function shall wait for the transport to signal new
+                // work before sending again.]
+                this.transport.waitForSendSignal();
+            }
+            catch (InterruptedException e)
+            {
+                //Codes_SRS_IOTHUBEVENTDRIVENSENDTASK_41_008: [If the thread is interrupted while waiting, the function shall return.]
+                logger.LogTrace("IotHubEventDrivenSendTask was interrupted, stopping");
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,840 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append only log of outgoing telemetry, used to keep messages across connection losses and process
+ * restarts. The log is made of fixed size segment files in a single directory. Every appended message gets a sequence
+ * number, which is acknowledged through {@link #acknowledge(long)} once the IoT Hub has accepted or finally rejected
+ * the message. Segments whose messages have all been acknowledged are deleted. The messages that were never
+ * acknowledged by a previous instance are read back by the constructor and handed out once by
+ * {@link #takeRecoveredMessages()}.
+ *
+ * <p>The size of the log on disk is bounded. When a new segment is needed for a message and the log is already at its
+ * maximum size, the oldest segment is deleted even if some of its messages were never acknowledged. Acknowledgements
+ * never need a new segment: every message reserves room for its acknowledgement in its own segment, where the
+ * acknowledgement is written.</p>
+ *
+ * <p>Segments are written with positional writes on their file channel rather than through a memory mapping, since a
+ * mapped file cannot be deleted on some platforms until the mapping is garbage collected.</p>
+ */
+public final class IotHubMessageSpool implements Closeable
+{
+    /** The smallest maximum size a spool can be configured with. */
+    public static final long MIN_SPOOL_SIZE_IN_BYTES = 256 * 1024;
+
+    private static final long MIN_SEGMENT_SIZE_IN_BYTES = MIN_SPOOL_SIZE_IN_BYTES / 4;
+    private static final long MAX_SEGMENT_SIZE_IN_BYTES = 8 * 1024 * 1024;
+
+    /** How often messages are forced to disk with {@link IotHubSpoolSyncPolicy#PERIODIC}. */
+    public static final long PERIODIC_SYNC_INTERVAL_MILLIS = 1000;
+
+    private static final String SEGMENT_FILE_PREFIX = "spool-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private static final byte RECORD_END = 0;
+    private static final byte RECORD_MESSAGE = 1;
+    private static final byte RECORD_ACK = 2;
+    // record type (1 byte), payload length (4 bytes), sequence number (8 bytes), checksum (4 bytes)
+    private static final int RECORD_HEADER_SIZE = 17;
+    private static final byte MESSAGE_FORMAT_VERSION = 1;
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+    private static final int CLEAR_BUFFER_SIZE = 4096;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final IotHubSpoolSyncPolicy syncPolicy;
+
+    // Segments ordered from oldest to newest, and the segments holding at least one message by first sequence number
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final TreeMap<Long, Segment> segmentsBySequenceNumber = new TreeMap<>();
+    private Segment activeSegment;
+    private long nextSegmentId;
+    private long nextSequenceNumber;
+    private long syncedSequenceNumber;
+    private long lastSyncTimeMillis;
+    private boolean isClosed;
+    private List<SpooledMessage> recoveredMessages;
+
+    private final Object spoolLock = new Object();
+    private final CRC32 checksum = new CRC32();
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * A message read back from the spool when it was opened.
+     */
+    public static final class SpooledMessage
+    {
+        private final long sequenceNumber;
+        private final Message message;
+        private final String deviceId;
+
+        private SpooledMessage(long sequenceNumber, Message message, String deviceId)
+        {
+            this.sequenceNumber = sequenceNumber;
+            this.message = message;
+            this.deviceId = deviceId;
+        }
+
+        /**
+         * @return the sequence number to acknowledge once the message is sent.
+         */
+        public long getSequenceNumber()
+        {
+            return this.sequenceNumber;
+        }
+
+        /**
+         * @return the recovered message.
+         */
+        public Message getMessage()
+        {
+            return this.message;
+        }
+
+        /**
+         * @return the id of the device that sent the message, or null if it was not known.
+         */
+        public String getDeviceId()
+        {
+            return this.deviceId;
+        }
+    }
+
+    private static final class Segment
+    {
+        private final long id;
+        private final File file;
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final int capacity;
+        private int writePosition;
+        private long firstSequenceNumber = -1;
+        private int entryCount;
+        private int acknowledgedCount;
+        private int acknowledgementRecordCount;
+        private final BitSet acknowledged = new BitSet();
+
+        private Segment(long id, File file, int size) throws IOException
+        {
+            this.id = id;
+            this.file = file;
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            if (this.randomAccessFile.length() < size)
+            {
+                this.randomAccessFile.setLength(size);
+            }
+            this.channel = this.randomAccessFile.getChannel();
+            this.capacity = (int) Math.min(Integer.MAX_VALUE, this.randomAccessFile.length());
+        }
+
+        private int remaining()
+        {
+            return this.capacity - this.writePosition;
+        }
+
+        private int available()
+        {
+            // The room reserved for the acknowledgements of the messages of this segment is not available to new messages
+            return this.remaining() - Math.max(0, this.entryCount - this.acknowledgementRecordCount) * RECORD_HEADER_SIZE;
+        }
+
+        private void write(ByteBuffer source, long position) throws IOException
+        {
+            while (source.hasRemaining())
+            {
+                position += this.channel.write(source, position);
+            }
+        }
+
+        private void force() throws IOException
+        {
+            this.channel.force(false);
+        }
+
+        private boolean isFullyAcknowledged()
+        {
+            return this.acknowledgedCount == this.entryCount;
+        }
+
+        private void close() throws IOException
+        {
+            this.randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Opens the spool in the provided directory, creating the directory if needed, and reads back the messages that
+     * were never acknowledged.
+     *
+     * @param directory the directory that holds the segment files. It must not be shared with another spool.
+     * @param maxSizeInBytes the maximum number of bytes the segment files may take on disk.
+     * @param syncPolicy when appended messages are forced to disk.
+     * @throws IllegalArgumentException if directory or syncPolicy is null, or if maxSizeInBytes is smaller than
+     * {@link #MIN_SPOOL_SIZE_IN_BYTES}.
+     * @throws IOException if the directory cannot be created or a segment file cannot be opened.
+     */
+    public IotHubMessageSpool(File directory, long maxSizeInBytes, IotHubSpoolSyncPolicy syncPolicy) throws IOException
+    {
+        if (directory == null || syncPolicy == null)
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_001: [If the provided directory or sync policy is null, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("directory and syncPolicy cannot be null");
+        }
+
+        if (maxSizeInBytes < MIN_SPOOL_SIZE_IN_BYTES)
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_002: [If the provided maximum size is smaller than MIN_SPOOL_SIZE_IN_BYTES, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("maxSizeInBytes cannot be smaller than " + MIN_SPOOL_SIZE_IN_BYTES);
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_003: [If the directory does not exist and cannot be created, the constructor shall throw an IOException.]
+            throw new IOException("Could not create spool directory " + directory.getPath());
+        }
+
+        this.directory = directory;
+        this.syncPolicy = syncPolicy;
+        this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE_IN_BYTES, Math.min(MAX_SEGMENT_SIZE_IN_BYTES, maxSizeInBytes / 4));
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSizeInBytes / this.segmentSize);
+
+        // Codes_SRS_IOTHUBMESSAGESPOOL_41_004: [The constructor shall read every segment file in the directory and keep the messages that were not acknowledged.]
+        this.recover();
+
+        if (this.activeSegment == null)
+        {
+            this.activeSegment = this.createSegment();
+        }
+
+        this.syncedSequenceNumber = this.nextSequenceNumber - 1;
+        this.lastSyncTimeMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the messages that were read back when the spool was opened, oldest first, and forgets them. Later calls
+     * return an empty list.
+     *
+     * @return the recovered messages that were never acknowledged.
+     */
+    public List<SpooledMessage> takeRecoveredMessages()
+    {
+        synchronized (this.spoolLock)
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_005: [This function shall return the recovered messages in the order they were appended, and return an empty list on later calls.]
+            List<SpooledMessage> messages = this.recoveredMessages;
+            this.recoveredMessages = Collections.emptyList();
+            return messages;
+        }
+    }
+
+    /**
+     * Appends a message to the spool. With {@link IotHubSpoolSyncPolicy#PER_MESSAGE} the message is on disk when this
+     * returns.
+     *
+     * @param message the message to append.
+     * @return the sequence number of the message, to pass to {@link #acknowledge(long)}.
+     * @throws IOException if the message is too large for a segment, the spool is closed, or a new segment cannot be
+     * created.
+     */
+    public long append(Message message) throws IOException
+    {
+        if (message == null)
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_006: [If the provided message is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("message cannot be null");
+        }
+
+        byte[] payload = serialize(message);
+        if (2 * RECORD_HEADER_SIZE + payload.length > this.segmentSize)
+        {
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_007: [If the message does not fit in a segment, this function shall throw an IOException.]
+            throw new IOException("Message of " + payload.length + " bytes is too large for the spool");
+        }
+
+        synchronized (this.spoolLock)
+        {
+            this.checkOpen();
+
+            // The message record is followed by the room reserved for its acknowledgement
+            if (this.activeSegment.available() < 2 * RECORD_HEADER_SIZE + payload.length)
+            {
+                this.roll();
+            }
+
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_008: [This function shall write the message to the active segment with the next sequence number and return that sequence number.]
+            long sequenceNumber = this.nextSequenceNumber++;
+            this.writeRecord(this.activeSegment, RECORD_MESSAGE, sequenceNumber, payload);
+            this.addEntry(this.activeSegment, sequenceNumber);
+
+            if (this.syncPolicy == IotHubSpoolSyncPolicy.PER_MESSAGE)
+            {
+                // Codes_SRS_IOTHUBMESSAGESPOOL_41_009: [If the sync policy is PER_MESSAGE, this function shall force the active segment to disk before returning.]
+                this.activeSegment.force();
+                this.syncedSequenceNumber = sequenceNumber;
+            }
+            else if (this.syncPolicy == IotHubSpoolSyncPolicy.PERIODIC)
+            {
+                this.syncIfDue();
+            }
+
+            return sequenceNumber;
+        }
+    }
+
+    /**
+     * Called before a spooled message is sent. With {@link IotHubSpoolSyncPolicy#GROUP_COMMIT} this forces every
+     * message appended so far to disk if the provided one is not on disk yet, so that one sync covers a whole batch of
+     * sends. With {@link IotHubSpoolSyncPolicy#PERIODIC} it forces the spool if the sync interval has elapsed.
+     *
+     * @param sequenceNumber the sequence number of the message about to be sent.
+     * @throws IOException if the spool cannot be forced to disk.
+     */
+    public void ensureDurable(long sequenceNumber) throws IOException
+    {
+        Segment segmentToSync;
+        long sequenceNumberToSync;
+
+        synchronized (this.spoolLock)
+        {
+            if (this.isClosed || this.syncPolicy == IotHubSpoolSyncPolicy.PER_MESSAGE)
+            {
+                return;
+            }
+
+            if (this.syncPolicy == IotHubSpoolSyncPolicy.PERIODIC)
+            {
+                // Codes_SRS_IOTHUBMESSAGESPOOL_41_011: [If the sync policy is PERIODIC, this function shall force the active segment to disk only if the sync interval has elapsed.]
+                this.syncIfDue();
+                return;
+            }
+
+            if (sequenceNumber <= this.syncedSequenceNumber)
+            {
+                return;
+            }
+
+            segmentToSync = this.activeSegment;
+            sequenceNumberToSync = this.nextSequenceNumber - 1;
+        }
+
+        // Codes_SRS_IOTHUBMESSAGESPOOL_41_010: [If the sync policy is GROUP_COMMIT and the provided sequence number is not on disk yet, this function shall force every appended message to disk.]
+        // Forcing outside the lock lets new messages be appended while the disk catches up. Segments that were rolled
+        // before this point were forced when they were rolled, and a segment closed in the meantime was forced when
+        // the spool was closed.
+        try
+        {
+            segmentToSync.force();
+        }
+        catch (ClosedChannelException e)
+        {
+            return;
+        }
+
+        synchronized (this.spoolLock)
+        {
+            this.syncedSequenceNumber = Math.max(this.syncedSequenceNumber, sequenceNumberToSync);
+            this.lastSyncTimeMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Forces the messages appended since the last sync to disk. With {@link IotHubSpoolSyncPolicy#PERIODIC} this is
+     * called every {@link #PERIODIC_SYNC_INTERVAL_MILLIS}, so that the last messages appended before the client goes
+     * idle do not stay off disk until the next append.
+     *
+     * @throws IOException if the spool cannot be forced to disk.
+     */
+    public void sync() throws IOException
+    {
+        Segment segmentToSync;
+        long sequenceNumberToSync;
+
+        synchronized (this.spoolLock)
+        {
+            sequenceNumberToSync = this.nextSequenceNumber - 1;
+            if (this.isClosed || sequenceNumberToSync <= this.syncedSequenceNumber)
+            {
+                // Codes_SRS_IOTHUBMESSAGESPOOL_41_018: [If the spool is closed or every appended message is on disk, this function shall do nothing.]
+                return;
+            }
+
+            segmentToSync = this.activeSegment;
+        }
+
+        // Codes_SRS_IOTHUBMESSAGESPOOL_41_019: [This function shall force every appended message to disk.]
+        try
+        {
+            segmentToSync.force();
+        }
+        catch (ClosedChannelException e)
+        {
+            return;
+        }
+
+        synchronized (this.spoolLock)
+        {
+            this.syncedSequenceNumber = Math.max(this.syncedSequenceNumber, sequenceNumberToSync);
+            this.lastSyncTimeMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Acknowledges a message so that it is not recovered again, and deletes the oldest segments once all of their
+     * messages are acknowledged. Unknown or already acknowledged sequence numbers are ignored. The acknowledgement is
+     * written to the room the message reserved in its own segment, so it never creates a segment or deletes one that
+     * still holds unacknowledged messages.
+     *
+     * @param sequenceNumber the sequence number returned by {@link #append(Message)}.
+     * @throws IOException if the acknowledgement cannot be written.
+     */
+    public void acknowledge(long sequenceNumber) throws IOException
+    {
+        synchronized (this.spoolLock)
+        {
+            if (this.isClosed)
+            {
+                return;
+            }
+
+            Map.Entry<Long, Segment> entry = this.segmentsBySequenceNumber.floorEntry(sequenceNumber);
+            if (entry == null)
+            {
+                // Codes_SRS_IOTHUBMESSAGESPOOL_41_012: [If the sequence number is not in the spool, this function shall do nothing.]
+                return;
+            }
+
+            Segment segment = entry.getValue();
+            int index = (int) (sequenceNumber - segment.firstSequenceNumber);
+            if (index >= segment.entryCount || segment.acknowledged.get(index))
+            {
+                return;
+            }
+
+            segment.acknowledged.set(index);
+            segment.acknowledgedCount++;
+
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_016: [This function shall record the acknowledgement in the segment that holds the message.]
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_017: [This function shall not create a segment, nor delete a segment that holds unacknowledged messages.]
+            if (segment.remaining() >= RECORD_HEADER_SIZE)
+            {
+                this.writeRecord(segment, RECORD_ACK, sequenceNumber, EMPTY_PAYLOAD);
+                segment.acknowledgementRecordCount++;
+            }
+
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_014: [This function shall delete the oldest segments, other than the active one, whose messages are all acknowledged.]
+            this.compact();
+        }
+    }
+
+    /**
+     * Forces the spool to disk and releases the segment files. Later appends fail, and later acknowledgements are
+     * ignored.
+     *
+     * @throws IOException if a segment file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this.spoolLock)
+        {
+            if (this.isClosed)
+            {
+                return;
+            }
+
+            // Codes_SRS_IOTHUBMESSAGESPOOL_41_015: [This function shall force the active segment to disk and close all segment files.]
+            // The older segments are forced too, since they may hold acknowledgements written after they were rolled
+            this.isClosed = true;
+            for (Segment segment : this.segments)
+            {
+                segment.force();
+                segment.close();
+            }
+        }
+    }
+
+    private void checkOpen() throws IOException
+    {
+        if (this.isClosed)
+        {
+            throw new IOException("The spool is closed");
+        }
+    }
+
+    private void syncIfDue() throws IOException
+    {
+        long now = System.currentTimeMillis();
+        if (now - this.lastSyncTimeMillis >= PERIODIC_SYNC_INTERVAL_MILLIS)
+        {
+            this.activeSegment.force();
+            this.syncedSequenceNumber = this.nextSequenceNumber - 1;
+            this.lastSyncTimeMillis = now;
+        }
+    }
+
+    private void addEntry(Segment segment, long sequenceNumber)
+    {
+        if (segment.firstSequenceNumber < 0)
+        {
+            segment.firstSequenceNumber = sequenceNumber;
+            this.segmentsBySequenceNumber.put(sequenceNumber, segment);
+        }
+        segment.entryCount++;
+    }
+
+    private void writeRecord(Segment segment, byte type, long sequenceNumber, byte[] payload) throws IOException
+    {
+        int position = segment.writePosition;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE - 1 + payload.length);
+        record.putInt(payload.length);
+        record.putLong(sequenceNumber);
+        record.putInt(this.computeChecksum(type, sequenceNumber, payload, 0, payload.length));
+        record.put(payload);
+        record.flip();
+        segment.write(record, position + 1);
+
+        // The type is written last so that a record is never seen as complete before the rest of it is written
+        segment.write(ByteBuffer.wrap(new byte[] { type }), position);
+        segment.writePosition = position + RECORD_HEADER_SIZE + payload.length;
+    }
+
+    private int computeChecksum(byte type, long sequenceNumber, byte[] payload, int offset, int length)
+    {
+        this.checksum.reset();
+        this.checksum.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8)
+        {
+            this.checksum.update((int) (sequenceNumber >>> shift));
+        }
+        this.checksum.update(payload, offset, length);
+        return (int) this.checksum.getValue();
+    }
+
+    private void roll() throws IOException
+    {
+        // Everything appended so far is in the active segment or in older ones that were forced when they were rolled
+        this.activeSegment.force();
+        this.syncedSequenceNumber = this.nextSequenceNumber - 1;
+        this.lastSyncTimeMillis = System.currentTimeMillis();
+
+        this.compact();
+        while (this.segments.size() >= this.maxSegments)
+        {
+            Segment oldest = this.segments.peekFirst();
+            logger.LogWarn("Spool is full, discarding %d unacknowledged messages, method name is %s ",
+                    oldest.entryCount - oldest.acknowledgedCount, logger.getMethodName());
+            if (!this.deleteOldestSegment())
+            {
+                throw new IOException("Spool is full and segment " + oldest.file.getName() + " cannot be deleted");
+            }
+        }
+
+        this.activeSegment = this.createSegment();
+    }
+
+    private void compact()
+    {
+        while (this.segments.size() > 1
+                && this.segments.peekFirst() != this.activeSegment
+                && this.segments.peekFirst().isFullyAcknowledged())
+        {
+            if (!this.deleteOldestSegment())
+            {
+                // Segments are deleted oldest first, so the newer ones stay until this one is gone
+                break;
+            }
+        }
+    }
+
+    private boolean deleteOldestSegment()
+    {
+        Segment oldest = this.segments.peekFirst();
+        try
+        {
+            oldest.close();
+        }
+        catch (IOException e)
+        {
+            logger.LogError(e);
+        }
+
+        if (!oldest.file.delete() && oldest.file.exists())
+        {
+            logger.LogError("Could not delete spool segment %s, method name is %s ", oldest.file.getName(), logger.getMethodName());
+            return false;
+        }
+
+        this.segments.removeFirst();
+        if (oldest.firstSequenceNumber >= 0)
+        {
+            this.segmentsBySequenceNumber.remove(oldest.firstSequenceNumber);
+        }
+        return true;
+    }
+
+    private Segment createSegment() throws IOException
+    {
+        long id = this.nextSegmentId++;
+        File file = new File(this.directory, String.format("%s%020d%s", SEGMENT_FILE_PREFIX, id, SEGMENT_FILE_SUFFIX));
+        Segment segment = new Segment(id, file, this.segmentSize);
+        this.segments.addLast(segment);
+        return segment;
+    }
+
+    private void recover() throws IOException
+    {
+        TreeMap<Long, File> segmentFiles = new TreeMap<>();
+        File[] files = this.directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX))
+                {
+                    try
+                    {
+                        segmentFiles.put(Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length())), file);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        logger.LogWarn("Ignoring unexpected file %s in the spool directory, method name is %s ", name, logger.getMethodName());
+                    }
+                }
+            }
+        }
+
+        Map<Long, SpooledMessage> pendingMessages = new LinkedHashMap<>();
+        for (Map.Entry<Long, File> segmentFile : segmentFiles.entrySet())
+        {
+            Segment segment = new Segment(segmentFile.getKey(), segmentFile.getValue(), 0);
+            this.segments.addLast(segment);
+            this.nextSegmentId = segment.id + 1;
+            this.activeSegment = segment;
+            this.readSegment(segment, pendingMessages);
+        }
+
+        this.compact();
+        this.recoveredMessages = new ArrayList<>(pendingMessages.values());
+    }
+
+    private void readSegment(Segment segment, Map<Long, SpooledMessage> pendingMessages) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(segment.capacity);
+        while (buffer.hasRemaining())
+        {
+            if (segment.channel.read(buffer, buffer.position()) < 0)
+            {
+                break;
+            }
+        }
+        buffer.clear();
+
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity())
+        {
+            byte type = buffer.get(position);
+            if (type == RECORD_END)
+            {
+                break;
+            }
+
+            int length = buffer.getInt(position + 1);
+            long sequenceNumber = buffer.getLong(position + 5);
+            int expectedChecksum = buffer.getInt(position + 13);
+            if ((type != RECORD_MESSAGE && type != RECORD_ACK) || length < 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE)
+            {
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            buffer.position(position + RECORD_HEADER_SIZE);
+            buffer.get(payload);
+            if (this.computeChecksum(type, sequenceNumber, payload, 0, length) != expectedChecksum)
+            {
+                break;
+            }
+
+            if (type == RECORD_MESSAGE)
+            {
+                this.addEntry(segment, sequenceNumber);
+                this.nextSequenceNumber = Math.max(this.nextSequenceNumber, sequenceNumber + 1);
+                try
+                {
+                    SpooledMessage spooledMessage = deserialize(sequenceNumber, payload);
+                    pendingMessages.put(sequenceNumber, spooledMessage);
+                }
+                catch (IOException | IllegalArgumentException e)
+                {
+                    logger.LogError("Discarding unreadable spooled message %d, method name is %s ", sequenceNumber, logger.getMethodName());
+                    segment.acknowledged.set(segment.entryCount - 1);
+                    segment.acknowledgedCount++;
+                }
+            }
+            else
+            {
+                pendingMessages.remove(sequenceNumber);
+                Map.Entry<Long, Segment> owner = this.segmentsBySequenceNumber.floorEntry(sequenceNumber);
+                if (owner != null)
+                {
+                    int index = (int) (sequenceNumber - owner.getValue().firstSequenceNumber);
+                    if (index < owner.getValue().entryCount && !owner.getValue().acknowledged.get(index))
+                    {
+                        owner.getValue().acknowledged.set(index);
+                        owner.getValue().acknowledgedCount++;
+                    }
+                }
+                if (owner != null && owner.getValue() == segment)
+                {
+                    segment.acknowledgementRecordCount++;
+                }
+            }
+
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        segment.writePosition = position;
+        if (position < buffer.capacity() && buffer.get(position) != RECORD_END)
+        {
+            // A torn or corrupted record: clear the rest of the segment so that stale bytes are never read back
+            logger.LogWarn("Spool segment %s is truncated at offset %d, method name is %s ", segment.file.getName(), position, logger.getMethodName());
+            ByteBuffer clear = ByteBuffer.allocate(CLEAR_BUFFER_SIZE);
+            for (long i = position; i < buffer.capacity(); i += CLEAR_BUFFER_SIZE)
+            {
+                clear.clear();
+                clear.limit((int) Math.min(CLEAR_BUFFER_SIZE, buffer.capacity() - i));
+                segment.write(clear, i);
+            }
+        }
+    }
+
+    private static byte[] serialize(Message message) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(MESSAGE_FORMAT_VERSION);
+        writeString(out, message.getMessageId());
+        writeString(out, message.getCorrelationId());
+        writeString(out, message.getMessageType() == null ? null : message.getMessageType().name());
+        writeString(out, message.getIotHubConnectionString() == null ? null : message.getIotHubConnectionString().getDeviceId());
+        out.writeLong(message.getExpiryTime());
+
+        MessageProperty[] properties = message.getProperties();
+        out.writeInt(properties.length);
+        for (MessageProperty property : properties)
+        {
+            writeString(out, property.getName());
+            writeString(out, property.getValue());
+        }
+
+        byte[] body = message.getBytes();
+        if (body == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static SpooledMessage deserialize(long sequenceNumber, byte[] payload) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+
+        byte version = in.readByte();
+        if (version != MESSAGE_FORMAT_VERSION)
+        {
+            throw new IOException("Unknown spooled message format " + version);
+        }
+
+        String messageId = readString(in);
+        String correlationId = readString(in);
+        String messageType = readString(in);
+        String deviceId = readString(in);
+        long expiryTime = in.readLong();
+
+        int propertyCount = in.readInt();
+        String[] properties = new String[2 * propertyCount];
+        for (int i = 0; i < properties.length; i++)
+        {
+            properties[i] = readString(in);
+        }
+
+        int bodyLength = in.readInt();
+        Message message;
+        if (bodyLength < 0)
+        {
+            message = new Message();
+        }
+        else
+        {
+            byte[] body = new byte[bodyLength];
+            in.readFully(body);
+            message = new Message(body);
+        }
+
+        message.setMessageId(messageId);
+        message.setCorrelationId(correlationId);
+        if (messageType != null)
+        {
+            message.setMessageType(MessageType.valueOf(messageType));
+        }
+        if (expiryTime != 0)
+        {
+            message.setAbsoluteExpiryTime(expiryTime);
+        }
+        for (int i = 0; i < properties.length; i += 2)
+        {
+            message.setProperty(properties[i], properties[i + 1]);
+        }
+
+        return new SpooledMessage(sequenceNumber, message, deviceId);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,267 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.IotHubQueueOverflowPolicy;
+
+import java.util.*;
+
+/**
+ * Queue of packets waiting to be sent to the IoT Hub, bounded by a number of packets and a number of message body
+ * bytes. New messages go through {@link #admit(IotHubTransportPacket)}, which applies the overflow policy when the
+ * queue is full. Packets that were already admitted once and are being put back, for instance to be retried after a
+ * disconnection, go through {@link #offer(IotHubTransportPacket)} which never rejects them.
+ */
+public final class IotHubOutboundPacketQueue extends AbstractQueue<IotHubTransportPacket>
+{
+    private final Deque<IotHubTransportPacket> packets = new ArrayDeque<>();
+    private final int maxPackets;
+    private final long maxBytes;
+    private final IotHubQueueOverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private long sizeInBytes;
+
+    /**
+     * Constructor for a queue with no capacity limits.
+     */
+    public IotHubOutboundPacketQueue()
+    {
+        this(Integer.MAX_VALUE, Long.MAX_VALUE, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxPackets the maximum number of packets the queue holds.
+     * @param maxBytes the maximum number of message body bytes the queue holds.
+     * @param overflowPolicy what to do with a new packet when the queue is full.
+     * @param blockTimeoutMillis how long {@link IotHubQueueOverflowPolicy#BLOCK} waits for room in the queue.
+     * @throws IllegalArgumentException if overflowPolicy is null.
+     */
+    public IotHubOutboundPacketQueue(int maxPackets, long maxBytes, IotHubQueueOverflowPolicy overflowPolicy, long blockTimeoutMillis)
+    {
+        if (overflowPolicy == null)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_001: [If the provided overflow policy is null, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("overflowPolicy cannot be null");
+        }
+
+        // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_002: [The constructor shall save the capacity, overflow policy, and block timeout.]
+        this.maxPackets = maxPackets;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Adds a new packet to the queue, applying the overflow policy if there is no room for it.
+     *
+     * @param packet the packet to add.
+     * @return the packets that did not make it into the queue: either the provided packet, if it was rejected, or the
+     * packets that were evicted to make room for it. The list is empty if nothing was dropped.
+     */
+    public List<IotHubTransportPacket> admit(IotHubTransportPacket packet)
+    {
+        return this.admit(packet, true);
+    }
+
+    /**
+     * Adds a new packet to the queue, applying the overflow policy if there is no room for it.
+     *
+     * @param packet the packet to add.
+     * @param mayBlock false if the calling thread must not wait for room in the queue, because it is the thread that
+     *                 empties it. The packet is then rejected right away under {@link IotHubQueueOverflowPolicy#BLOCK}.
+     * @return the packets that did not make it into the queue: either the provided packet, if it was rejected, or the
+     * packets that were evicted to make room for it. The list is empty if nothing was dropped.
+     */
+    public List<IotHubTransportPacket> admit(IotHubTransportPacket packet, boolean mayBlock)
+    {
+        if (packet == null)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_003: [If the provided packet is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("packet cannot be null");
+        }
+
+        long packetSize = packet.getSizeInBytes();
+
+        synchronized (this.packets)
+        {
+            if (this.hasRoomFor(packetSize))
+            {
+                // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_004: [If the queue has room for the packet, this function shall add it to the queue and return an empty list.]
+                this.addLast(packet);
+                return Collections.emptyList();
+            }
+
+            if (packetSize > this.maxBytes)
+            {
+                // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_005: [If the packet is larger than the byte capacity of the queue, this function shall reject it regardless of the overflow policy.]
+                return Collections.singletonList(packet);
+            }
+
+            switch (this.overflowPolicy)
+            {
+                case BLOCK:
+                    if (!mayBlock)
+                    {
+                        // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_014: [If the overflow policy is BLOCK and the caller may not block, this function shall reject the packet without waiting.]
+                        return Collections.singletonList(packet);
+                    }
+
+                    // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_006: [If the overflow policy is BLOCK, this function shall wait up to the block timeout for room in the queue, and reject the packet if there is still no room.]
+                    if (this.waitForRoom(packetSize))
+                    {
+                        this.addLast(packet);
+                        return Collections.emptyList();
+                    }
+                    return Collections.singletonList(packet);
+
+                case DROP_OLDEST:
+                    // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_007: [If the overflow policy is DROP_OLDEST, this function shall remove packets from the head of the queue until there is room, add the packet, and return the removed packets.]
+                    List<IotHubTransportPacket> evictedPackets = new ArrayList<>();
+                    while (!this.hasRoomFor(packetSize))
+                    {
+                        evictedPackets.add(this.removeFirst());
+                    }
+                    this.addLast(packet);
+                    return evictedPackets;
+
+                default:
+                    // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_008: [If the overflow policy is FAIL_FAST or DROP_NEWEST, this function shall reject the packet.]
+                    return Collections.singletonList(packet);
+            }
+        }
+    }
+
+    /**
+     * Adds a packet to the tail of the queue without checking the capacity.
+     *
+     * @param packet the packet to add.
+     * @return always true.
+     */
+    @Override
+    public boolean offer(IotHubTransportPacket packet)
+    {
+        if (packet == null)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_009: [If the provided packet is null, this function shall throw a NullPointerException.]
+            throw new NullPointerException("packet cannot be null");
+        }
+
+        synchronized (this.packets)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_010: [This function shall add the packet to the queue even if the queue is at capacity.]
+            this.addLast(packet);
+        }
+
+        return true;
+    }
+
+    @Override
+    public IotHubTransportPacket poll()
+    {
+        synchronized (this.packets)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_011: [This function shall remove and return the packet at the head of the queue, or null if the queue is empty.]
+            return this.packets.isEmpty() ? null : this.removeFirst();
+        }
+    }
+
+    @Override
+    public IotHubTransportPacket peek()
+    {
+        synchronized (this.packets)
+        {
+            return this.packets.peekFirst();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        synchronized (this.packets)
+        {
+            return this.packets.size();
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queue. The iterator does not support removal.
+     */
+    @Override
+    public Iterator<IotHubTransportPacket> iterator()
+    {
+        synchronized (this.packets)
+        {
+            return Collections.unmodifiableList(new ArrayList<>(this.packets)).iterator();
+        }
+    }
+
+    /**
+     * Getter for the number of message body bytes currently in the queue.
+     *
+     * @return the sum of the body sizes of all queued packets.
+     */
+    public long getSizeInBytes()
+    {
+        synchronized (this.packets)
+        {
+            // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_012: [This function shall return the sum of the body sizes of all queued packets.]
+            return this.sizeInBytes;
+        }
+    }
+
+    /**
+     * Getter for the overflow policy.
+     *
+     * @return what this queue does with a new packet when it is full.
+     */
+    public IotHubQueueOverflowPolicy getOverflowPolicy()
+    {
+        // Codes_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_013: [This function shall return the saved overflow policy.]
+        return this.overflowPolicy;
+    }
+
+    private boolean hasRoomFor(long packetSize)
+    {
+        return this.packets.size() < this.maxPackets && this.sizeInBytes <= this.maxBytes - packetSize;
+    }
+
+    private boolean waitForRoom(long packetSize)
+    {
+        long deadline = System.currentTimeMillis() + this.blockTimeoutMillis;
+        long remaining = this.blockTimeoutMillis;
+        try
+        {
+            while (!this.hasRoomFor(packetSize) && remaining > 0)
+            {
+                this.packets.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return this.hasRoomFor(packetSize);
+    }
+
+    private void addLast(IotHubTransportPacket packet)
+    {
+        this.packets.addLast(packet);
+        this.sizeInBytes += packet.getSizeInBytes();
+    }
+
+    private IotHubTransportPacket removeFirst()
+    {
+        IotHubTransportPacket packet = this.packets.removeFirst();
+        this.sizeInBytes -= packet.getSizeInBytes();
+        if (this.overflowPolicy == IotHubQueueOverflowPolicy.BLOCK)
+        {
+            this.packets.notifyAll();
+        }
+        return packet;
+    }
+}
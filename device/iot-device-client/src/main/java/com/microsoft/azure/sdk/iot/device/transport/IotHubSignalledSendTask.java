@@ -0,0 +1,134 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends queued messages and invokes callbacks on completed requests each time the transport signals that there is
+ * work to do. Unlike {@link IotHubEventDrivenSendTask}, it does not hold on to a thread while the transport is idle:
+ * every signal submits a single run to the executor, so many transports can share a few threads. Runs never
+ * overlap, and a signal that arrives while a run is in progress makes that run go around once more.
+ */
+public final class IotHubSignalledSendTask implements Runnable
+{
+    private static final int IDLE = 0;
+    private static final int SCHEDULED = 1;
+    private static final int RUNNING = 2;
+    private static final int RUNNING_SIGNALLED = 3;
+    private static final int STOPPED = 4;
+
+    private final IotHubTransport transport;
+    private final Executor executor;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    /**
+     * Private logger for class
+     */
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    public IotHubSignalledSendTask(IotHubTransport transport, Executor executor)
+    {
+        if (transport == null || executor == null)
+        {
+            //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_001: [If the provided transport or executor is null, the constructor shall throw an IllegalArgumentException.]
+            logger.LogError("IotHubSignalledSendTask constructor called with null value for parameter transport or executor");
+            throw new IllegalArgumentException("Parameters 'transport' and 'executor' must not be null");
+        }
+
+        //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_002: [The constructor shall save the transport and the executor.]
+        this.transport = transport;
+        this.executor = executor;
+    }
+
+    /**
+     * Makes sure a run starts after this call: submits one to the executor if none is scheduled, or makes the run in
+     * progress go around once more. Does nothing once the task is stopped.
+     */
+    public void signal()
+    {
+        while (true)
+        {
+            int currentState = this.state.get();
+            if (currentState == IDLE)
+            {
+                if (this.state.compareAndSet(IDLE, SCHEDULED))
+                {
+                    //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_003: [If no run is scheduled or in progress, this function shall submit this task to the executor.]
+                    this.submit();
+                    return;
+                }
+            }
+            else if (currentState == RUNNING)
+            {
+                //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_004: [If a run is in progress, this function shall make that run send again once it is done.]
+                if (this.state.compareAndSet(RUNNING, RUNNING_SIGNALLED))
+                {
+                    return;
+                }
+            }
+            else
+            {
+                //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_005: [If a run is already scheduled or the task is stopped, this function shall do nothing.]
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the task. Signals that arrive afterwards are ignored; a run in progress finishes normally.
+     */
+    public void stop()
+    {
+        //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_006: [This function shall make all later signals do nothing.]
+        this.state.set(STOPPED);
+    }
+
+    public void run()
+    {
+        if (!this.state.compareAndSet(SCHEDULED, RUNNING))
+        {
+            // stopped while it was waiting for a thread
+            return;
+        }
+
+        do
+        {
+            try
+            {
+                //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_007: [The function shall send all messages on the transport
+                // queue that fit in the in flight window and invoke all callbacks on the transport's callback queue.]
+                this.transport.sendAllMessages();
+                this.transport.invokeCallbacks();
+            }
+            //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_008: [The function shall not crash because of any error or exception thrown by the transport.]
+            catch (Throwable e)
+            {
+                logger.LogError(e.toString() + ": " + e.getMessage());
+                logger.LogDebug("Exception on sending queued messages to IoT Hub", e);
+            }
+        }
+        //Codes_SRS_IOTHUBSIGNALLEDSENDTASK_41_009: [If the task was signalled while it was running, the function shall send again.]
+        while (this.state.compareAndSet(RUNNING_SIGNALLED, RUNNING)
+                || !(this.state.compareAndSet(RUNNING, IDLE) || this.state.get() == STOPPED));
+    }
+
+    private void submit()
+    {
+        try
+        {
+            this.executor.execute(this);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // the executor was shut down, so no run will ever happen
+            logger.LogError("The executor rejected the send task, queued messages will not be sent: %s", e.getMessage());
+            this.state.set(STOPPED);
+        }
+    }
+}
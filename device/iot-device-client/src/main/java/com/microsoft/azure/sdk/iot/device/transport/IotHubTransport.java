@@ -11,15 +11,25 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.*;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpUnauthorizedAccessException;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMultiplexedIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthorizedException;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -30,11 +40,18 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 public class IotHubTransport implements IotHubListener
 {
     private static final int MAX_MESSAGES_TO_SEND_PER_THREAD = 10;
+    private static final int MAX_RECEIVED_MESSAGES_PER_BATCH = 32;
     private IotHubConnectionStatus connectionStatus;
     private IotHubTransportConnection iotHubTransportConnection;
 
-    /* Messages waiting to be sent to the IoT Hub. */
-    private final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+    /* Messages waiting to be sent to the IoT Hub. Rebuilt with the configured capacity on each open. */
+    private IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+
+    /* Durable copy of the telemetry that was not acknowledged yet, if the config enables it. */
+    private volatile IotHubMessageSpool messageSpool;
+
+    /* Periodic sync of the message spool, if its sync policy is PERIODIC. */
+    private ScheduledFuture<?> messageSpoolSyncFuture;
 
     /* Messages which are sent to the IoT Hub but did not receive ack yet. */
     private final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
@@ -45,6 +62,24 @@ public class IotHubTransport implements IotHubListener
     /* Messages whose callbacks that are waiting to be invoked. */
     private final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
 
+    /* Executor of the callbacks, which orders them per device, or null to invoke them on the send thread. Set on each open. */
+    private volatile CallbackExecutor callbackExecutor;
+
+    /* Executor of the default device, to which the received messages are dispatched. Set on each open. */
+    private volatile Executor callbackDispatcher;
+
+    /* True if the received messages must be acknowledged one at a time, in the order they were received. Set on each open. */
+    private volatile boolean isReceiveOrdered;
+
+    /* Set while a task that acknowledges the received messages is dispatched, if the received messages are ordered. */
+    private final AtomicBoolean isReceivedMessagesTaskDispatched = new AtomicBoolean();
+
+    /* Held while an acknowledgement is sent, since unordered tasks may acknowledge from several threads at once. */
+    private final Object receivedMessagesAckLock = new Object();
+
+    /* Decides when to poll for received messages over HTTPS, or null to poll on every run of the receive task. Set on each open. */
+    private volatile HttpsReceivePoller httpsReceivePoller;
+
     /*Connection Status callback information (deprecated)*/
     private IotHubConnectionStateCallback stateCallback;
     private Object stateCallbackContext;
@@ -62,11 +97,25 @@ public class IotHubTransport implements IotHubListener
     private int currentReconnectionAttempt;
     private long reconnectionAttemptStartTimeMillis;
     private ScheduledExecutorService taskScheduler;
+    private boolean isTaskSchedulerShared;
 
     private final CustomLogger logger;
 
     final private Object reconnectionLock = new Object();
 
+    //Lock used to park the event driven send task until there is something for it to do
+    final private Object sendSignalLock = new Object();
+    private boolean isSendSignalled;
+
+    //Send task that runs on a shared executor instead of parking in waitForSendSignal, if any
+    private volatile IotHubSignalledSendTask signalledSendTask;
+
+    //Thread currently emptying the waiting queue or invoking callbacks, which must never wait for room in the queue
+    private volatile Thread sendThread;
+
+    //Set while a signal is scheduled to send a lingering https batch
+    private final AtomicBoolean isBatchLingerSignalScheduled = new AtomicBoolean();
+
     /**
      * Constructor for an IotHubTransport object with default values
      * @param defaultConfig the config used for opening connections, retrieving retry policy, and checking protocol
@@ -112,6 +161,10 @@ public class IotHubTransport implements IotHubListener
 
         if (packet != null)
         {
+            //Codes_SRS_IOTHUBTRANSPORT_41_001: [If there was a packet in the inProgressPackets queue tied to the
+            // provided message, this function shall signal the send task that the in flight window has room.]
+            this.signalSendTask();
+
             if (e == null)
             {
                 //Codes_SRS_IOTHUBTRANSPORT_34_005: [If there was a packet in the inProgressPackets queue tied to the
@@ -162,9 +215,16 @@ public class IotHubTransport implements IotHubListener
         {
             //Codes_SRS_IOTHUBTRANSPORT_34_009: [If this function is called with a non-null message and a null
             // exception, this function shall add that message to the receivedMessagesQueue.]
-            logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ",
-                    message.hashCode(), new Date(), logger.getMethodName());
+            if (logger.isInfoEnabled())
+            {
+                logger.LogInfo("Message with hashcode %s is received from IotHub on %s, method name is %s ",
+                        message.hashCode(), new Date(), logger.getMethodName());
+            }
             this.receivedMessagesQueue.add(message);
+
+            //Codes_SRS_IOTHUBTRANSPORT_41_036: [If the transport has a callback executor, this function shall
+            // dispatch a task that acknowledges the received messages to it.]
+            this.dispatchReceivedMessages();
         }
         else if (e != null)
         {
@@ -270,10 +330,68 @@ public class IotHubTransport implements IotHubListener
 
         this.deviceClientConfigs = new LinkedBlockingQueue<>(deviceClientConfigs);
         this.defaultConfig = this.deviceClientConfigs.peek();
-        this.taskScheduler = Executors.newScheduledThreadPool(1);
 
-        //Codes_SRS_IOTHUBTRANSPORT_34_019: [This function shall open the invoke the method openConnection.]
-        openConnection();
+        SharedTransportExecutor sharedTransportExecutor = this.defaultConfig.getSharedTransportExecutor();
+        if (sharedTransportExecutor != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_021: [If the default config has a shared transport executor, this function
+            // shall schedule message retries on it instead of creating a scheduler of its own.]
+            this.taskScheduler = sharedTransportExecutor.getScheduledExecutorService();
+            this.isTaskSchedulerShared = true;
+        }
+        else
+        {
+            this.taskScheduler = Executors.newScheduledThreadPool(1);
+            this.isTaskSchedulerShared = false;
+        }
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_034: [If the default config has a callback executor, this function shall save
+        // it, and get the device executor of the default device from it to dispatch the received messages to.]
+        CallbackExecutor callbackExecutor = this.defaultConfig.getCallbackExecutor();
+        this.callbackExecutor = callbackExecutor;
+        this.callbackDispatcher = callbackExecutor != null ? callbackExecutor.getDeviceExecutor(this.defaultConfig.getDeviceId()) : null;
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_037: [The received messages shall be acknowledged in order if the callback
+        // executor orders the callbacks per device or if the protocol is MQTT or MQTT_WS, which acknowledges the
+        // messages in the order they were received.]
+        IotHubClientProtocol protocol = this.defaultConfig.getProtocol();
+        this.isReceiveOrdered = callbackExecutor == null || callbackExecutor.isOrderedPerDevice()
+                || protocol == IotHubClientProtocol.MQTT || protocol == IotHubClientProtocol.MQTT_WS;
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_043: [If the protocol is HTTPS and the default config has an adaptive receive
+        // interval, this function shall create a poller with the configured intervals to receive the messages with.]
+        long httpsReceiveMinIntervalMillis = this.defaultConfig.getHttpsReceiveMinIntervalMillis();
+        this.httpsReceivePoller = protocol == IotHubClientProtocol.HTTPS && httpsReceiveMinIntervalMillis > 0
+                ? new HttpsReceivePoller(httpsReceiveMinIntervalMillis, this.defaultConfig.getHttpsReceiveMaxIntervalMillis())
+                : null;
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_008: [This function shall create the waiting queue with the capacity and
+        // overflow policy of the default config.]
+        this.waitingPacketsQueue = new IotHubOutboundPacketQueue(
+                this.defaultConfig.getMaxQueuedMessages(),
+                this.defaultConfig.getMaxQueuedBytes(),
+                this.defaultConfig.getOutboundQueueOverflowPolicy(),
+                this.defaultConfig.getOutboundQueueBlockTimeout());
+
+        if (this.defaultConfig.getMessageSpoolDirectory() != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_013: [If the default config enables the message spool, this function shall
+            // open the spool and add the messages it recovered to the waiting queue.]
+            this.openMessageSpool();
+        }
+
+        try
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_34_019: [This function shall open the invoke the method openConnection.]
+            openConnection();
+        }
+        catch (TransportException e)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_014: [If opening the connection fails, this function shall close the message
+            // spool before rethrowing.]
+            this.closeMessageSpool();
+            throw e;
+        }
     }
 
     /**
@@ -307,7 +425,15 @@ public class IotHubTransport implements IotHubListener
         //Codes_SRS_IOTHUBTRANSPORT_34_023: [This function shall invoke all callbacks.]
         this.invokeCallbacks();
 
-        this.taskScheduler.shutdown();
+        //Codes_SRS_IOTHUBTRANSPORT_41_015: [This function shall close the message spool. Cancelled messages stay in the
+        // spool so that they are sent again the next time the transport is opened.]
+        this.closeMessageSpool();
+
+        if (!this.isTaskSchedulerShared)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_022: [This function shall not shut down a shared transport executor.]
+            this.taskScheduler.shutdown();
+        }
 
         //Codes_SRS_IOTHUBTRANSPORT_34_024: [This function shall close the connection.]
         this.iotHubTransportConnection.close();
@@ -338,7 +464,72 @@ public class IotHubTransport implements IotHubListener
         //Codes_SRS_IOTHUBTRANSPORT_34_042: [This function shall build a transport packet from the provided message,
         // callback, and context and then add that packet to the waiting queue.]
         IotHubTransportPacket packet = new IotHubTransportPacket(message, callback, callbackContext, null, System.currentTimeMillis());
-        this.waitingPacketsQueue.add(packet);
+
+        IotHubMessageSpool spool = this.messageSpool;
+        if (spool != null && isSpoolable(message))
+        {
+            try
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_016: [If the message spool is open and the message is telemetry, this
+                // function shall append the message to the spool before adding the packet to the waiting queue.]
+                packet.setSpoolSequenceNumber(spool.append(message));
+            }
+            catch (IOException e)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_017: [If the message cannot be spooled, this function shall log the error
+                // and queue the message without spooling it.]
+                logger.LogError("Could not spool message with id %s, sending it without a durable copy, method name is %s ",
+                        message.getMessageId(), logger.getMethodName());
+                logger.LogError(e);
+            }
+        }
+
+        List<IotHubTransportPacket> droppedPackets;
+        if (isControlPlane(message))
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_047: [If the message is a twin or method message, this function shall add the
+            // packet to the waiting queue without applying the overflow policy.]
+            this.waitingPacketsQueue.offer(packet);
+            droppedPackets = Collections.emptyList();
+        }
+        else
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_048: [If this function is called from the thread that sends the queued
+            // messages, for instance from an event callback, it shall not wait for room in the waiting queue.]
+            droppedPackets = this.waitingPacketsQueue.admit(packet, Thread.currentThread() != this.sendThread);
+        }
+
+        for (IotHubTransportPacket droppedPacket : droppedPackets)
+        {
+            logger.LogWarn("Outbound queue is full, dropping message with id %s, method name is %s ",
+                    droppedPacket.getMessage().getMessageId(), logger.getMethodName());
+            droppedPacket.setStatus(IotHubStatusCode.OUTBOUND_QUEUE_FULL);
+
+            if (droppedPacket == packet
+                    && this.waitingPacketsQueue.getOverflowPolicy() == IotHubQueueOverflowPolicy.FAIL_FAST)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_009: [If the waiting queue rejects the packet and the overflow policy is
+                // FAIL_FAST, this function shall invoke the packet's callback with status OUTBOUND_QUEUE_FULL before
+                // returning.]
+                //Codes_SRS_IOTHUBTRANSPORT_41_046: [If the waiting queue rejects the packet and the overflow policy is
+                // FAIL_FAST, this function shall acknowledge the packet in the message spool, so that the rejected message
+                // is not sent again the next time the transport is opened.]
+                this.acknowledgeSpooledPacket(packet);
+                if (callback != null)
+                {
+                    callback.execute(IotHubStatusCode.OUTBOUND_QUEUE_FULL, callbackContext);
+                }
+            }
+            else
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_010: [Any other packet dropped by the waiting queue shall be added to the
+                // callback queue with status OUTBOUND_QUEUE_FULL.]
+                this.addToCallbackQueue(droppedPacket);
+            }
+        }
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_002: [This function shall signal the send task that there is a packet waiting to be sent.]
+        this.signalSendTask();
     }
 
     /**
@@ -357,23 +548,72 @@ public class IotHubTransport implements IotHubListener
 
         int timeSlice = MAX_MESSAGES_TO_SEND_PER_THREAD;
 
-        while (this.connectionStatus == IotHubConnectionStatus.CONNECTED && timeSlice-- > 0)
+        this.sendThread = Thread.currentThread();
+        try
         {
-            IotHubTransportPacket packet = waitingPacketsQueue.poll();
-            if (packet != null)
+            while (this.connectionStatus == IotHubConnectionStatus.CONNECTED && timeSlice-- > 0)
             {
-                logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ",
-                        logger.getMethodName());
-                Message message = packet.getMessage();
+                //Codes_SRS_IOTHUBTRANSPORT_34_044: [This function continue to dequeue packets saved in the waiting
+                // queue and send them until connection status isn't CONNECTED or until 10 messages have been sent]
+                this.sendNextWaiting();
+            }
+        }
+        finally
+        {
+            this.sendThread = null;
+        }
+    }
 
-                if (message != null && this.isMessageValid(packet))
+    /**
+     * Sends messages from the waiting queue until the queue is empty, the connection is no longer
+     * CONNECTED, or the number of messages waiting for an acknowledgement reaches the in flight window
+     * configured in the default config. Used by the event driven send task instead of {@link #sendMessages()}.
+     */
+    public void sendAllMessages()
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_003: [If the connection status of this object is not CONNECTED, this function shall do nothing.]
+        //Codes_SRS_IOTHUBTRANSPORT_41_004: [This function shall dequeue packets saved in the waiting queue and send
+        // them until the waiting queue is empty, the connection status isn't CONNECTED, or the number of in progress
+        // packets reaches the config's max messages in flight.]
+        int maxMessagesInFlight = this.defaultConfig.getMaxMessagesInFlight();
+        this.sendThread = Thread.currentThread();
+        try
+        {
+            while (this.connectionStatus == IotHubConnectionStatus.CONNECTED
+                    && this.inProgressPackets.size() < maxMessagesInFlight)
+            {
+                if (!this.sendNextWaiting())
                 {
-                    //Codes_SRS_IOTHUBTRANSPORT_34_044: [This function continue to dequeue packets saved in the waiting
-                    // queue and send them until connection status isn't CONNECTED or until 10 messages have been sent]
-                    sendPacket(packet);
+                    break;
                 }
             }
         }
+        finally
+        {
+            this.sendThread = null;
+        }
+    }
+
+    /**
+     * Blocks the calling thread until there is new work for the send task: a packet was added to the waiting
+     * queue, a packet was acknowledged, a callback was queued, or the connection was established.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting.
+     */
+    public void waitForSendSignal() throws InterruptedException
+    {
+        synchronized (this.sendSignalLock)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_005: [If the send task has not been signalled since the last call, this
+            // function shall block until it is.]
+            while (!this.isSendSignalled)
+            {
+                this.sendSignalLock.wait();
+            }
+
+            //Codes_SRS_IOTHUBTRANSPORT_41_006: [This function shall consume the signal before returning.]
+            this.isSendSignalled = false;
+        }
     }
 
     /**
@@ -381,30 +621,55 @@ public class IotHubTransport implements IotHubListener
      */
     public void invokeCallbacks()
     {
-        IotHubTransportPacket packet = this.callbackPacketsQueue.poll();
-        while (packet != null)
+        this.sendThread = Thread.currentThread();
+        try
         {
-            IotHubStatusCode status = packet.getStatus();
-            IotHubEventCallback callback = packet.getCallback();
-            Object context = packet.getContext();
+            IotHubTransportPacket packet = this.callbackPacketsQueue.poll();
+            while (packet != null)
+            {
+                IotHubStatusCode status = packet.getStatus();
+                IotHubEventCallback callback = packet.getCallback();
+                Object context = packet.getContext();
 
-            logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with " +
-                    "status %s, method name is %s ", status.name(), logger.getMethodName());
+                if (logger.isInfoEnabled())
+                {
+                    logger.LogInfo("Invoking the callback function for sent message, IoT Hub responded to message with " +
+                            "status %s, method name is %s ", status.name(), logger.getMethodName());
+                }
 
-            //Codes_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and
-            // execute their saved callback with their saved status and context]
-            callback.execute(status, context);
+                CallbackExecutor callbackExecutor = this.callbackExecutor;
+                if (callbackExecutor != null)
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_41_035: [If the transport has a callback executor, this function shall
+                    // dispatch each callback to the device executor of the device that sent the message instead of
+                    // executing it, so that the devices of a multiplexed connection do not wait for each other.]
+                    callbackExecutor.getDeviceExecutor(this.getDeviceId(packet.getMessage()))
+                            .execute(new DispatchedCallback(callback, status, context));
+                }
+                else
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and
+                    // execute their saved callback with their saved status and context]
+                    callback.execute(status, context);
+                }
 
-            packet = this.callbackPacketsQueue.poll();
+                packet = this.callbackPacketsQueue.poll();
+            }
+        }
+        finally
+        {
+            this.sendThread = null;
         }
     }
 
     /**
      * <p>
-     * Invokes the message callback if a message is found and
-     * responds to the IoT Hub on how the processed message should be
+     * Invokes the message callback of the received messages, up to one batch, and
+     * responds to the IoT Hub on how the processed messages should be
      * handled by the IoT Hub.
      * </p>
+     * If the transport has a callback executor, the received messages are acknowledged on it as soon as they
+     * are received, and this function only dispatches the messages that are left in the queue.
      * If no message callback is set, the function will do nothing.
      *
      * @throws DeviceClientException if the server could not be reached.
@@ -414,8 +679,11 @@ public class IotHubTransport implements IotHubListener
         //Codes_SRS_IOTHUBTRANSPORT_34_046: [If this object's connection status is not CONNECTED, this function shall do nothing.]
         if (this.connectionStatus == IotHubConnectionStatus.CONNECTED)
         {
-            logger.LogDebug("Get the callback function for the received message, method name is %s ",
-                    logger.getMethodName());
+            if (logger.isDebugEnabled())
+            {
+                logger.LogDebug("Get the callback function for the received message, method name is %s ",
+                        logger.getMethodName());
+            }
 
             if (this.iotHubTransportConnection instanceof HttpsIotHubConnection)
             {
@@ -424,13 +692,67 @@ public class IotHubTransport implements IotHubListener
                 addReceivedMessagesOverHttpToReceivedQueue();
             }
 
-            IotHubTransportMessage receivedMessage = this.receivedMessagesQueue.poll();
-            if (receivedMessage != null)
+            if (this.callbackDispatcher != null)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_038: [If the transport has a callback executor, this function shall
+                // dispatch a task that acknowledges the received messages to it instead of acknowledging them.]
+                this.dispatchReceivedMessages();
+            }
+            else
             {
                 //Codes_SRS_IOTHUBTRANSPORT_34_048: [If this object's connection status is CONNECTED and there is a
                 // received message in the queue, this function shall acknowledge the received message
-                this.acknowledgeReceivedMessage(receivedMessage);
+                this.acknowledgeReceivedMessages();
+            }
+        }
+    }
+
+    /**
+     * Dispatches a task that acknowledges the received messages to the callback executor, if there are received
+     * messages to acknowledge. If the received messages are ordered, only one task is dispatched at a time.
+     */
+    private void dispatchReceivedMessages()
+    {
+        Executor callbackDispatcher = this.callbackDispatcher;
+        if (callbackDispatcher == null
+                || this.connectionStatus != IotHubConnectionStatus.CONNECTED
+                || this.receivedMessagesQueue.isEmpty())
+        {
+            return;
+        }
+
+        //Codes_SRS_IOTHUBTRANSPORT_41_039: [If the received messages are ordered and a task that acknowledges them is
+        // already dispatched, this function shall not dispatch another one.]
+        if (this.isReceiveOrdered && !this.isReceivedMessagesTaskDispatched.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        callbackDispatcher.execute(new ReceivedMessagesTask());
+    }
+
+    /**
+     * Acknowledges the received messages in the queue, up to one batch, while the connection is open
+     * @throws TransportException if any exception is encountered while sending an acknowledgement
+     */
+    private void acknowledgeReceivedMessages() throws TransportException
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_040: [This function shall acknowledge at most MAX_RECEIVED_MESSAGES_PER_BATCH
+        // received messages per call, so that a flood of received messages does not hold up the thread.]
+        for (int i = 0; i < MAX_RECEIVED_MESSAGES_PER_BATCH; i++)
+        {
+            if (this.connectionStatus != IotHubConnectionStatus.CONNECTED)
+            {
+                return;
+            }
+
+            IotHubTransportMessage receivedMessage = this.receivedMessagesQueue.poll();
+            if (receivedMessage == null)
+            {
+                return;
             }
+
+            this.acknowledgeReceivedMessage(receivedMessage);
         }
     }
 
@@ -451,6 +773,39 @@ public class IotHubTransport implements IotHubListener
         }
     }
 
+    /**
+     * Getter for the number of messages waiting to be sent.
+     *
+     * @return the number of packets in the waiting queue.
+     */
+    public int getOutboundQueueDepth()
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_011: [This function shall return the number of packets in the waiting queue.]
+        return this.waitingPacketsQueue.size();
+    }
+
+    /**
+     * Getter for the poller that receives the messages over HTTPS.
+     *
+     * @return the https receive poller, or null if the transport does not use an adaptive receive interval.
+     */
+    public HttpsReceivePoller getHttpsReceivePoller()
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_045: [This function shall return the saved https receive poller.]
+        return this.httpsReceivePoller;
+    }
+
+    /**
+     * Getter for the number of message body bytes waiting to be sent.
+     *
+     * @return the sum of the body sizes of the packets in the waiting queue.
+     */
+    public long getOutboundQueueSizeInBytes()
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_012: [This function shall return the number of message body bytes in the waiting queue.]
+        return this.waitingPacketsQueue.getSizeInBytes();
+    }
+
     /**
      * Registers a callback to be executed whenever the connection to the IoT Hub is lost or established.
      *
@@ -543,7 +898,12 @@ public class IotHubTransport implements IotHubListener
             {
                 //Codes_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
                 // connection as the ack to the service.]
-                this.iotHubTransportConnection.sendMessageResult(receivedMessage, result);
+                //Codes_SRS_IOTHUBTRANSPORT_41_049: [The acknowledgements shall be sent one at a time, even if the
+                // message callbacks run in parallel.]
+                synchronized (this.receivedMessagesAckLock)
+                {
+                    this.iotHubTransportConnection.sendMessageResult(receivedMessage, result);
+                }
             }
             catch (TransportException e)
             {
@@ -561,6 +921,15 @@ public class IotHubTransport implements IotHubListener
      */
     private void addReceivedMessagesOverHttpToReceivedQueue() throws TransportException
     {
+        HttpsReceivePoller httpsReceivePoller = this.httpsReceivePoller;
+        if (httpsReceivePoller != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_044: [If the transport has an https receive poller, this function shall let
+            // the poller receive the messages into the receivedMessagesQueue.]
+            httpsReceivePoller.poll((HttpsIotHubConnection) this.iotHubTransportConnection, this.receivedMessagesQueue);
+            return;
+        }
+
         //since Http behaves synchronously, we need to check synchronously for any messages it may have received
         IotHubTransportMessage transportMessage = ((HttpsIotHubConnection)this.iotHubTransportConnection).receiveMessage();
 
@@ -621,9 +990,19 @@ public class IotHubTransport implements IotHubListener
                 break;
             case MQTT:
             case MQTT_WS:
-                //Codes_SRS_IOTHUBTRANSPORT_34_036: [If the default config's protocol is MQTT or MQTT_WS, this function
-                // shall set this object's iotHubTransportConnection to a new MqttIotHubConnection object.]
-                this.iotHubTransportConnection = new MqttIotHubConnection(defaultConfig);
+                if (this.deviceClientConfigs.size() > 1)
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_41_020: [If the default config's protocol is MQTT or MQTT_WS and there
+                    // is more than one config, this function shall set this object's iotHubTransportConnection to a new
+                    // MqttMultiplexedIotHubConnection object.]
+                    this.iotHubTransportConnection = new MqttMultiplexedIotHubConnection();
+                }
+                else
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_34_036: [If the default config's protocol is MQTT or MQTT_WS, this function
+                    // shall set this object's iotHubTransportConnection to a new MqttIotHubConnection object.]
+                    this.iotHubTransportConnection = new MqttIotHubConnection(defaultConfig);
+                }
                 break;
             case AMQPS:
             case AMQPS_WS:
@@ -788,6 +1167,66 @@ public class IotHubTransport implements IotHubListener
         public void run()
         {
             this.waitingPacketsQueue.add(this.transportPacket);
+            signalSendTask();
+        }
+    }
+
+    /**
+     * Callback of a completed packet, dispatched to the callback executor
+     */
+    private static final class DispatchedCallback implements Runnable
+    {
+        private final IotHubEventCallback callback;
+        private final IotHubStatusCode status;
+        private final Object context;
+
+        private DispatchedCallback(IotHubEventCallback callback, IotHubStatusCode status, Object context)
+        {
+            this.callback = callback;
+            this.status = status;
+            this.context = context;
+        }
+
+        @Override
+        public void run()
+        {
+            this.callback.execute(this.status, this.context);
+        }
+    }
+
+    /**
+     * Acknowledges a batch of received messages on the callback executor, then dispatches itself again if more
+     * messages were received in the meantime
+     */
+    private final class ReceivedMessagesTask implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            boolean isAcknowledged = false;
+            try
+            {
+                acknowledgeReceivedMessages();
+                isAcknowledged = true;
+            }
+            catch (TransportException e)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_041: [If an acknowledgement fails, the task shall log the exception and
+                // leave the message in the queue for the next call of handleMessage.]
+                logger.LogError("Failed to acknowledge a received message, method name is %s ", logger.getMethodName());
+                logger.LogError(e);
+            }
+            finally
+            {
+                isReceivedMessagesTaskDispatched.set(false);
+            }
+
+            if (isAcknowledged)
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_042: [After a batch, the task shall dispatch a new task if received
+                // messages are left in the queue.]
+                dispatchReceivedMessages();
+            }
         }
     }
 
@@ -946,6 +1385,10 @@ public class IotHubTransport implements IotHubListener
                 //Codes_SRS_IOTHUBTRANSPORT_28_007: [This function shall reset currentReconnectionAttempt and reconnectionAttemptStartTimeMillis if connection status is changed to CONNECTED.]
                 this.currentReconnectionAttempt = 0;
                 this.reconnectionAttemptStartTimeMillis = 0;
+
+                //Codes_SRS_IOTHUBTRANSPORT_41_007: [This function shall signal the send task if connection status is
+                // changed to CONNECTED so that packets buffered while disconnected are sent.]
+                this.signalSendTask();
             }
         }
     }
@@ -1017,16 +1460,490 @@ public class IotHubTransport implements IotHubListener
     }
 
     /**
-     * Adds the packet to the callback queue if the provided packet has a callback. The packet is ignored otherwise.
+     * Adds the packet to the callback queue if the provided packet has a callback, or executes the callback right away
+     * if it is an {@link IotHubDirectEventCallback}. The packet is ignored otherwise.
      * @param packet the packet to add
      */
     private void addToCallbackQueue(IotHubTransportPacket packet)
     {
-        //Codes_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
-        if (packet.getCallback() != null)
+        if (packet.getStatus() != IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE)
         {
+            //Codes_SRS_IOTHUBTRANSPORT_41_019: [This function shall acknowledge the packet in the message spool unless
+            // it was cancelled because the transport is closing.]
+            this.acknowledgeSpooledPacket(packet);
+        }
+
+        IotHubEventCallback callback = packet.getCallback();
+        if (callback instanceof IotHubDirectEventCallback)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_033: [If the packet's callback is an IotHubDirectEventCallback, this function
+            // shall execute it with the packet's status and context instead of adding the packet to the callback queue,
+            // and shall log and ignore any exception it throws.]
+            try
+            {
+                callback.execute(packet.getStatus(), packet.getContext());
+            }
+            catch (RuntimeException e)
+            {
+                logger.LogError(e);
+            }
+        }
+        else if (callback != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_28_002: [This function shall add the packet to the callback queue if it has a callback.]
             this.callbackPacketsQueue.add(packet);
+            this.signalSendTask();
+        }
+    }
+
+    /**
+     * Removes a packet that reached its final state from the message spool, if it was spooled.
+     * @param packet the packet to acknowledge
+     */
+    private void acknowledgeSpooledPacket(IotHubTransportPacket packet)
+    {
+        IotHubMessageSpool spool = this.messageSpool;
+        if (spool != null && packet.getSpoolSequenceNumber() >= 0)
+        {
+            try
+            {
+                spool.acknowledge(packet.getSpoolSequenceNumber());
+            }
+            catch (IOException e)
+            {
+                logger.LogError(e);
+            }
+        }
+    }
+
+    /**
+     * Opens the message spool configured in the default config and queues the messages it recovered, which are
+     * sent without a callback.
+     * @throws TransportException if the spool cannot be opened
+     */
+    private void openMessageSpool() throws TransportException
+    {
+        IotHubMessageSpool spool;
+        try
+        {
+            spool = new IotHubMessageSpool(
+                    new File(this.defaultConfig.getMessageSpoolDirectory()),
+                    this.defaultConfig.getMessageSpoolMaxSizeInBytes(),
+                    this.defaultConfig.getMessageSpoolSyncPolicy());
+        }
+        catch (IOException e)
+        {
+            throw new TransportException("Could not open the message spool", e);
+        }
+
+        this.messageSpool = spool;
+
+        if (this.defaultConfig.getMessageSpoolSyncPolicy() == IotHubSpoolSyncPolicy.PERIODIC)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_050: [If the sync policy of the spool is PERIODIC, this function shall
+            // schedule a sync of the spool every sync interval, until the spool is closed.]
+            this.messageSpoolSyncFuture = this.taskScheduler.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    IotHubMessageSpool spool = messageSpool;
+                    if (spool != null)
+                    {
+                        try
+                        {
+                            spool.sync();
+                        }
+                        catch (IOException e)
+                        {
+                            logger.LogError(e);
+                        }
+                    }
+                }
+            }, IotHubMessageSpool.PERIODIC_SYNC_INTERVAL_MILLIS, IotHubMessageSpool.PERIODIC_SYNC_INTERVAL_MILLIS, MILLISECONDS);
+        }
+
+        for (IotHubMessageSpool.SpooledMessage spooledMessage : spool.takeRecoveredMessages())
+        {
+            DeviceClientConfig config = this.getConfigForDevice(spooledMessage.getDeviceId());
+            if (config == null)
+            {
+                logger.LogWarn("Discarding spooled message for device %s which is not open on this transport, method name is %s ",
+                        spooledMessage.getDeviceId(), logger.getMethodName());
+                try
+                {
+                    spool.acknowledge(spooledMessage.getSequenceNumber());
+                }
+                catch (IOException e)
+                {
+                    logger.LogError(e);
+                }
+                continue;
+            }
+
+            Message message = spooledMessage.getMessage();
+            message.setIotHubConnectionString(config.getIotHubConnectionString());
+            IotHubTransportPacket packet = new IotHubTransportPacket(message, null, null, null, System.currentTimeMillis());
+            packet.setSpoolSequenceNumber(spooledMessage.getSequenceNumber());
+            this.waitingPacketsQueue.add(packet);
+        }
+    }
+
+    /**
+     * Closes the message spool, if it is open.
+     */
+    private void closeMessageSpool()
+    {
+        if (this.messageSpoolSyncFuture != null)
+        {
+            this.messageSpoolSyncFuture.cancel(false);
+            this.messageSpoolSyncFuture = null;
+        }
+
+        IotHubMessageSpool spool = this.messageSpool;
+        this.messageSpool = null;
+        if (spool != null)
+        {
+            try
+            {
+                spool.close();
+            }
+            catch (IOException e)
+            {
+                logger.LogError(e);
+            }
+        }
+    }
+
+    /**
+     * Gets the id of the device that sends a message
+     * @param message the message
+     * @return the device id in the connection string of the message, or the id of the default device if it has none
+     */
+    private String getDeviceId(Message message)
+    {
+        IotHubConnectionString connectionString = message == null ? null : message.getIotHubConnectionString();
+        String deviceId = connectionString == null ? null : connectionString.getDeviceId();
+        return deviceId == null ? this.defaultConfig.getDeviceId() : deviceId;
+    }
+
+    /**
+     * Finds the open config of a device
+     * @param deviceId the device id, or null for the default config
+     * @return the config of that device, or null if the device is not open on this transport
+     */
+    private DeviceClientConfig getConfigForDevice(String deviceId)
+    {
+        if (deviceId == null)
+        {
+            return this.defaultConfig;
+        }
+
+        for (DeviceClientConfig config : this.deviceClientConfigs)
+        {
+            if (deviceId.equals(config.getDeviceId()))
+            {
+                return config;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Twin and method messages keep the device manageable, so they are never dropped or held back because the queue
+     * is full of telemetry.
+     * @param message the message to check
+     * @return true if the message is a twin or method message
+     */
+    private static boolean isControlPlane(Message message)
+    {
+        return message instanceof IotHubTransportMessage
+                || message.getMessageType() == MessageType.DEVICE_TWIN
+                || message.getMessageType() == MessageType.DEVICE_METHODS;
+    }
+
+    /**
+     * Only telemetry is spooled. Twin and method operations are not worth replaying after a restart.
+     * @param message the message to check
+     * @return true if the message should be written to the message spool
+     */
+    private static boolean isSpoolable(Message message)
+    {
+        return !(message instanceof IotHubTransportMessage)
+                && (message.getMessageType() == null || message.getMessageType() == MessageType.DEVICE_TELEMETRY);
+    }
+
+    /**
+     * Sets the send task to submit whenever there is new work to send, in place of waking up a thread parked in
+     * {@link #waitForSendSignal()}.
+     * @param signalledSendTask the send task to signal, or null to stop signalling it
+     */
+    public void setSignalledSendTask(IotHubSignalledSendTask signalledSendTask)
+    {
+        //Codes_SRS_IOTHUBTRANSPORT_41_023: [This function shall save the provided send task.]
+        this.signalledSendTask = signalledSendTask;
+    }
+
+    /**
+     * Wakes up the event driven send task, if it is parked in {@link #waitForSendSignal()}, and submits the
+     * signalled send task, if one is set.
+     */
+    private void signalSendTask()
+    {
+        synchronized (this.sendSignalLock)
+        {
+            this.isSendSignalled = true;
+            this.sendSignalLock.notifyAll();
+        }
+
+        IotHubSignalledSendTask signalledSendTask = this.signalledSendTask;
+        if (signalledSendTask != null)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_024: [If a signalled send task is set, signalling the send task shall
+            // signal it.]
+            signalledSendTask.signal();
+        }
+    }
+
+    /**
+     * Dequeues a single packet from the waiting queue and sends it if it is still valid
+     * @return false if the waiting queue was empty, true otherwise
+     */
+    private boolean sendNextWaitingPacket()
+    {
+        IotHubTransportPacket packet = this.pollWaitingPacket();
+        if (packet == null)
+        {
+            return false;
+        }
+
+        Message message = packet.getMessage();
+        if (message != null && this.isMessageValid(packet))
+        {
+            sendPacket(packet);
+        }
+
+        return true;
+    }
+
+    /**
+     * Dequeues as many telemetry packets from the waiting queue as fit in a single HTTPS batch and sends them in one
+     * request. If the oldest waiting packet has not lingered long enough and the batch would not be full yet, nothing
+     * is sent and the send task is signalled again once the linger time is over.
+     * @return false if nothing was dequeued, true otherwise
+     */
+    private boolean sendNextWaitingBatch()
+    {
+        int maxMessagesPerBatch = this.defaultConfig.getHttpsMaxMessagesPerBatch();
+        long lingerMillis = this.defaultConfig.getHttpsBatchLingerMillis();
+
+        IotHubTransportPacket oldestPacket = this.waitingPacketsQueue.peek();
+        if (oldestPacket == null)
+        {
+            return false;
+        }
+
+        long lingeredMillis = System.currentTimeMillis() - oldestPacket.getStartTimeMillis();
+        if (lingeredMillis < lingerMillis && this.waitingPacketsQueue.size() < maxMessagesPerBatch)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_026: [If the oldest waiting packet has waited less than the config's batch
+            // linger time and there are fewer waiting packets than the config's max messages per batch, this function
+            // shall send nothing and signal the send task again once the linger time is over.]
+            this.scheduleBatchLingerSignal(lingerMillis - lingeredMillis);
+            return false;
+        }
+
+        IotHubTransportPacket carriedPacket = null;
+        do
+        {
+            HttpsBatchMessage batchMessage = new HttpsBatchMessage();
+            List<IotHubTransportPacket> batchPackets = new ArrayList<>();
+            while (batchPackets.size() < maxMessagesPerBatch)
+            {
+                IotHubTransportPacket packet = carriedPacket != null ? carriedPacket : this.pollWaitingPacket();
+                carriedPacket = null;
+                if (packet == null)
+                {
+                    break;
+                }
+
+                Message message = packet.getMessage();
+                if (message == null || !this.isMessageValid(packet))
+                {
+                    continue;
+                }
+
+                if (!isSpoolable(message))
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_41_027: [This function shall send packets that are not telemetry on
+                    // their own.]
+                    this.sendPacket(packet);
+                    continue;
+                }
+
+                try
+                {
+                    //Codes_SRS_IOTHUBTRANSPORT_41_028: [This function shall add waiting telemetry packets to a batch
+                    // until it holds the config's max messages per batch or the waiting queue is empty.]
+                    batchMessage.addMessage(HttpsSingleMessage.parseHttpsMessage(message));
+                    batchPackets.add(packet);
+                }
+                catch (IotHubSizeExceededException e)
+                {
+                    if (batchPackets.isEmpty())
+                    {
+                        //Codes_SRS_IOTHUBTRANSPORT_41_029: [If a packet is too large for a batch of its own, this
+                        // function shall send it on its own.]
+                        this.sendPacket(packet);
+                        continue;
+                    }
+
+                    //Codes_SRS_IOTHUBTRANSPORT_41_030: [If a packet does not fit in the current batch, this function
+                    // shall send the current batch and start the next batch with that packet.]
+                    carriedPacket = packet;
+                    break;
+                }
+            }
+
+            if (!batchPackets.isEmpty())
+            {
+                this.sendBatch(batchMessage, batchPackets);
+            }
+        }
+        while (carriedPacket != null);
+
+        return true;
+    }
+
+    /**
+     * Sends a batch of packets in a single request. The connection reports the result of the batch for each of its
+     * messages through {@link #onMessageSent(Message, Throwable)}, which completes each packet as if it was sent on
+     * its own.
+     * @param batchMessage the batch built from the messages of the provided packets
+     * @param batchPackets the packets in the batch
+     */
+    private void sendBatch(HttpsBatchMessage batchMessage, List<IotHubTransportPacket> batchPackets)
+    {
+        List<Message> messages = new ArrayList<>(batchPackets.size());
+        synchronized (this.inProgressMessagesLock)
+        {
+            for (IotHubTransportPacket packet : batchPackets)
+            {
+                this.inProgressPackets.put(packet.getMessage().getMessageId(), packet);
+                messages.add(packet.getMessage());
+            }
+        }
+
+        try
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_031: [This function shall send the batch over the saved https connection.]
+            ((HttpsIotHubConnection) this.iotHubTransportConnection).sendMessages(batchMessage, messages);
+        }
+        catch (TransportException transportException)
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_032: [If an exception is encountered while sending the batch, this function
+            // shall invoke handleMessageException with each packet of the batch.]
+            for (IotHubTransportPacket packet : batchPackets)
+            {
+                IotHubTransportPacket outboundPacket;
+                synchronized (this.inProgressMessagesLock)
+                {
+                    outboundPacket = this.inProgressPackets.remove(packet.getMessage().getMessageId());
+                }
+
+                if (outboundPacket != null)
+                {
+                    this.handleMessageException(outboundPacket, transportException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Signals the send task once the provided delay is over, unless such a signal is already scheduled.
+     * @param delayMillis the delay before signalling the send task
+     */
+    private void scheduleBatchLingerSignal(long delayMillis)
+    {
+        if (this.isBatchLingerSignalScheduled.compareAndSet(false, true))
+        {
+            try
+            {
+                this.taskScheduler.schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        isBatchLingerSignalScheduled.set(false);
+                        signalSendTask();
+                    }
+                }, delayMillis, MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the transport is closing, so there is nothing left to signal
+                this.isBatchLingerSignalScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return true if the waiting telemetry shall be sent in HTTPS batches rather than one message at a time
+     */
+    private boolean isHttpsBatchingEnabled()
+    {
+        return this.iotHubTransportConnection instanceof HttpsIotHubConnection
+                && this.defaultConfig.getHttpsMaxMessagesPerBatch() > 1;
+    }
+
+    /**
+     * Sends the next waiting packet, or the next batch of waiting packets if HTTPS batching is enabled
+     * @return false if nothing was dequeued, true otherwise
+     */
+    private boolean sendNextWaiting()
+    {
+        if (this.isHttpsBatchingEnabled())
+        {
+            //Codes_SRS_IOTHUBTRANSPORT_41_025: [If the connection is an https connection and the config's max messages
+            // per batch is larger than 1, this function shall send the waiting packets in batches.]
+            return this.sendNextWaitingBatch();
         }
+
+        return this.sendNextWaitingPacket();
+    }
+
+    /**
+     * Dequeues a single packet from the waiting queue, making sure it is on disk first if it was spooled
+     * @return the dequeued packet, or null if the waiting queue was empty
+     */
+    private IotHubTransportPacket pollWaitingPacket()
+    {
+        IotHubTransportPacket packet = this.waitingPacketsQueue.poll();
+        if (packet == null)
+        {
+            return null;
+        }
+
+        logger.LogInfo("Get the message from waiting message queue to be sent to IoT Hub, method name is %s ",
+                logger.getMethodName());
+
+        IotHubMessageSpool spool = this.messageSpool;
+        if (spool != null && packet.getSpoolSequenceNumber() >= 0)
+        {
+            try
+            {
+                //Codes_SRS_IOTHUBTRANSPORT_41_018: [If the packet was spooled, this function shall make sure it is on
+                // disk, as required by the spool's sync policy, before sending it.]
+                spool.ensureDurable(packet.getSpoolSequenceNumber());
+            }
+            catch (IOException e)
+            {
+                logger.LogError(e);
+            }
+        }
+
+        return packet;
     }
 
     /**
@@ -20,6 +20,8 @@ public final class IotHubTransportPacket
     private IotHubStatusCode status;
     private final long startTimeMillis;
     private int currentRetryAttempt;
+    private int sizeInBytes = -1;
+    private long spoolSequenceNumber = -1;
 
     /**
      * Constructor.
@@ -139,4 +141,41 @@ public final class IotHubTransportPacket
         // Codes_SRS_IOTHUBTRANSPORTPACKET_34_009: [This function shall increment the saved retry attempt count by 1.]
         this.currentRetryAttempt++;
     }
+
+    /**
+     * Getter for the size of the body of the message in this packet. The size is computed the first time this is
+     * called and saved, since a message's body cannot change after it is created.
+     * @return the number of bytes in the message body
+     */
+    public int getSizeInBytes()
+    {
+        if (this.sizeInBytes < 0)
+        {
+            // Codes_SRS_IOTHUBTRANSPORTPACKET_41_001: [This function shall return the length of the message body, or 0
+            // if the message has no body.]
+            this.sizeInBytes = this.message.getBodyLength();
+        }
+
+        return this.sizeInBytes;
+    }
+
+    /**
+     * Getter for the sequence number of this packet's message in the message spool
+     * @return the spool sequence number, or -1 if the message was not spooled
+     */
+    public long getSpoolSequenceNumber()
+    {
+        // Codes_SRS_IOTHUBTRANSPORTPACKET_41_002: [This function shall return the saved spool sequence number, or -1 if none was saved.]
+        return this.spoolSequenceNumber;
+    }
+
+    /**
+     * Setter for the sequence number of this packet's message in the message spool
+     * @param spoolSequenceNumber the sequence number returned when the message was spooled
+     */
+    public void setSpoolSequenceNumber(long spoolSequenceNumber)
+    {
+        // Codes_SRS_IOTHUBTRANSPORTPACKET_41_003: [This function shall save the provided spool sequence number.]
+        this.spoolSequenceNumber = spoolSequenceNumber;
+    }
 }
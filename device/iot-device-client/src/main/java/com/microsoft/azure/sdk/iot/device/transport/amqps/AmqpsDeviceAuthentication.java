@@ -11,6 +11,9 @@ import java.util.UUID;
 
 public class AmqpsDeviceAuthentication extends AmqpsDeviceOperations
 {
+    private static final int AMQP_PORT = 5671;
+    private static final int AMQP_WEB_SOCKET_PORT = 443;
+
     AmqpsDeviceAuthentication(DeviceClientConfig deviceClientConfig)
     {
         // Codes_SRS_AMQPSDEVICEAUTHENTICATION_34_009: [This constructor shall call super with the provided user agent string.]
@@ -48,6 +51,21 @@ public class AmqpsDeviceAuthentication extends AmqpsDeviceOperations
         return domain;
     }
 
+    /**
+     * Create the Proton SslPeerDetails of the IotHub. Proton only creates the SSLEngine for the IotHub host and port
+     * if it is given the peer details, and the SSLContext can only resume a cached TLS session for a known host and
+     * port, so a reconnect with the same SSLContext gets an abbreviated handshake.
+     *
+     * @param deviceClientConfig the config to pull the IotHub host name and the protocol from.
+     * @return the created Ssl peer details
+     */
+    protected SslPeerDetails makePeerDetails(DeviceClientConfig deviceClientConfig)
+    {
+        // Codes_SRS_AMQPSDEVICEAUTHENTICATION_41_001: [The function shall create the Proton SslPeerDetails with the IotHub host name and the AMQP port, or the web socket port if web sockets are used.]
+        int port = deviceClientConfig.isUseWebsocket() ? AMQP_WEB_SOCKET_PORT : AMQP_PORT;
+        return Proton.sslPeerDetails(deviceClientConfig.getIotHubHostname(), port);
+    }
+
     /**
      * Prototype (empty) function for set the SslDomain
      *
@@ -14,7 +14,6 @@ import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 import java.io.IOException;
-import java.nio.BufferOverflowException;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingDeque;
 
@@ -40,7 +39,8 @@ public final class AmqpsDeviceAuthenticationCBS extends AmqpsDeviceAuthenticatio
 
     private final String DEVICES_PATH =  "/devices/";
 
-    private long nextTag = 0;
+    // Encodes the messages of the thread that sends the authentication messages
+    private final AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
 
     private final Queue<MessageImpl> waitingMessages = new LinkedBlockingDeque<>();
 
@@ -91,31 +91,18 @@ public final class AmqpsDeviceAuthenticationCBS extends AmqpsDeviceAuthenticatio
             // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_005: [If there is no message in the queue to send the function shall do nothing.]
             while (!this.waitingMessages.isEmpty())
             {
-                byte[] msgData = new byte[1024];
-                int length;
-
                 // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_006: [The function shall read the message from the queue.]
                 MessageImpl outgoingMessage = this.waitingMessages.remove();
 
-                while (true)
-                {
-                    try
-                    {
-                        // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_007: [The function shall encode the message to a buffer.]
-                        length = outgoingMessage.encode(msgData, 0, msgData.length);
-                        break;
-                    }
-                    catch (BufferOverflowException e)
-                    {
-                        // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_008: [The function shall double the buffer if encode throws BufferOverflowException.]
-                        msgData = new byte[msgData.length * 2];
-                    }
-                }
+                // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_007: [The function shall encode the message to a buffer.]
+                // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_008: [The function shall double the buffer if encode throws BufferOverflowException.]
+                int length = this.amqpsMessageEncoder.encode(outgoingMessage);
+
                 // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_009: [The function shall set the delivery tag for the sender.]
-                byte[] deliveryTag = String.valueOf(this.nextTag++).getBytes();
+                byte[] deliveryTag = this.amqpsMessageEncoder.nextDeliveryTag();
 
                 // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_010: [The function shall call the super class sendMessageAndGetDeliveryHash.]
-                this.sendMessageAndGetDeliveryHash(MessageType.CBS_AUTHENTICATION, msgData, 0, length, deliveryTag);
+                this.sendMessageAndGetDeliveryHash(MessageType.CBS_AUTHENTICATION, this.amqpsMessageEncoder.getBuffer(), 0, length, deliveryTag);
             }
         }
     }
@@ -210,7 +197,8 @@ public final class AmqpsDeviceAuthenticationCBS extends AmqpsDeviceAuthenticatio
             throw new TransportException(e);
         }
         // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_014: [The function shall set the domain on the transport.]
-        transport.ssl(domain);
+        // Codes_SRS_AMQPSDEVICEAUTHENTICATIONCBS_41_001: [The function shall set the peer details of the IotHub on the transport together with the domain.]
+        transport.ssl(domain, makePeerDetails(this.deviceClientConfig));
     }
 
     /**
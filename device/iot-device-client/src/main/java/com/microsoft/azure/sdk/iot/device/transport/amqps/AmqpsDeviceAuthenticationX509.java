@@ -83,7 +83,8 @@ public class AmqpsDeviceAuthenticationX509 extends AmqpsDeviceAuthentication
         }
 
         // Codes_SRS_AMQPSDEVICEAUTHENTICATIONX509_12_011: [The function shall set the domain on the transport.]
-        transport.ssl(domain);
+        // Codes_SRS_AMQPSDEVICEAUTHENTICATIONX509_41_001: [The function shall set the peer details of the IotHub on the transport together with the domain.]
+        transport.ssl(domain, makePeerDetails(this.deviceClientConfig));
     }
 
     /**
@@ -17,7 +17,6 @@ import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.engine.Session;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
-import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -92,6 +91,19 @@ public final class AmqpsDeviceMethods extends AmqpsDeviceOperations
         return false;
     }
 
+    /**
+     * Tells whether messages of the given type are sent on the sender link of this operation.
+     *
+     * @param messageType the type of the message to send.
+     * @return true if the message type is DEVICE_METHODS.
+     */
+    @Override
+    protected boolean isSenderLinkFor(MessageType messageType)
+    {
+        // Codes_SRS_AMQPSDEVICEMETHODS_41_001: [The function shall return true only if the message type is DEVICE_METHODS.]
+        return messageType == MessageType.DEVICE_METHODS;
+    }
+
     /**
      * Sends the given message and returns with the delivery hash if the message type is methods
      *
@@ -214,11 +226,8 @@ public final class AmqpsDeviceMethods extends AmqpsDeviceOperations
         Data d = (Data) protonMsg.getBody();
         if (d != null)
         {
-            // Codes_SRS_AMQPSDEVICEMETHODS_12_018: [The function shall shall create a new buffer for message body and copy the proton message body to it.]
-            Binary b = d.getValue();
-            msgBody = new byte[b.getLength()];
-            ByteBuffer buffer = b.asByteBuffer();
-            buffer.get(msgBody);
+            // Codes_SRS_AMQPSDEVICEMETHODS_12_018: [The function shall use the proton message body without copying it when it spans its whole array, and copy it otherwise.]
+            msgBody = getBinaryBytes(d.getValue());
         }
         else
         {
@@ -10,6 +10,7 @@ import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.exceptions.ProtocolException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.TransportUtils;
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
@@ -33,6 +34,10 @@ public class AmqpsDeviceOperations
     protected static final String USER_ID_KEY = "userId";
     protected static final String AMQPS_APP_PROPERTY_PREFIX = "iothub-app-";
 
+    // Initial size of the buffer that the deliveries are read into, and size of the largest buffer that is kept
+    private static final int RECEIVE_BUFFER_SIZE = 1024;
+    private static final int MAX_RECEIVE_BUFFER_SIZE = 64 * 1024;
+
     protected AmqpsDeviceOperationLinkState amqpsSendLinkState = AmqpsDeviceOperationLinkState.UNKNOWN;
     protected AmqpsDeviceOperationLinkState amqpsRecvLinkState = AmqpsDeviceOperationLinkState.UNKNOWN;
 
@@ -50,6 +55,9 @@ public class AmqpsDeviceOperations
     protected Sender senderLink;
     protected Receiver receiverLink;
 
+    // Reused from one delivery to the next, since Proton copies the decoded body out of it
+    private byte[] receiveBuffer;
+
     private CustomLogger logger;
 
     /**
@@ -102,7 +110,7 @@ public class AmqpsDeviceOperations
      */
     protected synchronized void openLinks(Session session) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_006: [The function shall throw IllegalArgumentException if the session argument is null.]
         if (session == null)
@@ -167,7 +175,7 @@ public class AmqpsDeviceOperations
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -175,7 +183,7 @@ public class AmqpsDeviceOperations
      */
     protected void closeLinks()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_011: [If the sender link is not null the function shall close it and sets it to null.]
         if (this.senderLink != null)
@@ -192,7 +200,7 @@ public class AmqpsDeviceOperations
         this.amqpsSendLinkState = AmqpsDeviceOperationLinkState.CLOSED;
         this.amqpsRecvLinkState = AmqpsDeviceOperationLinkState.CLOSED;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -203,7 +211,7 @@ public class AmqpsDeviceOperations
      */
     protected synchronized void initLink(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (link == null)
         {
@@ -257,7 +265,7 @@ public class AmqpsDeviceOperations
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -306,6 +314,18 @@ public class AmqpsDeviceOperations
         }
     }
 
+    /**
+     * Tells whether messages of the given type are sent on the sender link of this operation.
+     *
+     * @param messageType the type of the message to send.
+     * @return true if sendMessageAndGetDeliveryHash sends messages of this type on the sender link.
+     */
+    protected boolean isSenderLinkFor(MessageType messageType)
+    {
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_41_005: [The function shall return true for any message type.]
+        return true;
+    }
+
     /**
      * Reads the received buffer and handles the link
      * @param linkName The receiver link's name to read from
@@ -333,8 +353,8 @@ public class AmqpsDeviceOperations
                     if ((delivery != null) && delivery.isReadable() && !delivery.isPartial())
                     {
                         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_034: [The function shall read the full message into a buffer.]
-                        int size = delivery.pending();
-                        byte[] buffer = new byte[size];
+                        // Codes_SRS_AMQPSDEVICEOPERATIONS_41_001: [The function shall read the message into the receive buffer of the operation, which it shall grow to the size of the message if it is smaller.]
+                        byte[] buffer = getReceiveBuffer(delivery.pending());
                         int read = this.receiverLink.recv(buffer, 0, buffer.length);
 
                         // Codes_SRS_AMQPSDEVICEOPERATIONS_12_035: [The function shall advance the receiver link.]
@@ -396,6 +416,52 @@ public class AmqpsDeviceOperations
         return null;
     }
 
+    /**
+     * Get a buffer to read a delivery into. The buffer of the operation is reused, unless the delivery is larger than
+     * the largest buffer that the operation keeps.
+     *
+     * @param size the number of pending bytes of the delivery.
+     * @return a buffer of at least size bytes.
+     */
+    private byte[] getReceiveBuffer(int size)
+    {
+        if (this.receiveBuffer != null && this.receiveBuffer.length >= size)
+        {
+            return this.receiveBuffer;
+        }
+
+        if (size > MAX_RECEIVE_BUFFER_SIZE)
+        {
+            // Codes_SRS_AMQPSDEVICEOPERATIONS_41_002: [If the message is larger than 64 KB, the function shall read it into a new buffer and keep its receive buffer.]
+            return new byte[size];
+        }
+
+        this.receiveBuffer = new byte[Math.max(size, RECEIVE_BUFFER_SIZE)];
+        return this.receiveBuffer;
+    }
+
+    /**
+     * Get the bytes of a received message body. Proton decodes every binary into an array of its own, so the array is
+     * returned as is when the binary spans all of it, and copied otherwise.
+     *
+     * @param binary the binary to get the bytes of.
+     * @return the bytes of the binary.
+     */
+    static byte[] getBinaryBytes(Binary binary)
+    {
+        byte[] array = binary.getArray();
+        if (binary.getArrayOffset() == 0 && binary.getLength() == array.length)
+        {
+            // Codes_SRS_AMQPSDEVICEOPERATIONS_41_003: [If the binary spans its whole array, the function shall return the array without copying it.]
+            return array;
+        }
+
+        // Codes_SRS_AMQPSDEVICEOPERATIONS_41_004: [Otherwise, the function shall return a copy of the bytes of the binary.]
+        byte[] bytes = new byte[binary.getLength()];
+        System.arraycopy(array, binary.getArrayOffset(), bytes, 0, bytes.length);
+        return bytes;
+    }
+
     /**
      * Prototype (empty) function for operation specific implementations to convert IoTHubMessage to Proton message
      *
@@ -13,7 +13,6 @@ import org.apache.qpid.proton.amqp.messaging.Properties;
 import org.apache.qpid.proton.amqp.messaging.Section;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
-import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -80,6 +79,19 @@ public final class AmqpsDeviceTelemetry extends AmqpsDeviceOperations
         return false;
     }
 
+    /**
+     * Tells whether messages of the given type are sent on the sender link of this operation.
+     *
+     * @param messageType the type of the message to send.
+     * @return true if the message type is DEVICE_TELEMETRY.
+     */
+    @Override
+    protected boolean isSenderLinkFor(MessageType messageType)
+    {
+        // Codes_SRS_AMQPSDEVICETELEMETRY_41_001: [The function shall return true only if the message type is DEVICE_TELEMETRY.]
+        return messageType == MessageType.DEVICE_TELEMETRY;
+    }
+
     /**
      * Sends the given message and returns with the delivery hash if the message type is telemetry
      *
@@ -207,11 +219,8 @@ public final class AmqpsDeviceTelemetry extends AmqpsDeviceOperations
         Data d = (Data) protonMsg.getBody();
         if (d != null)
         {
-            // Codes_SRS_AMQPSDEVICETELEMETRY_12_024: [The function shall shall create a new buffer for message body and copy the proton message body to it.]
-            Binary b = d.getValue();
-            msgBody = new byte[b.getLength()];
-            ByteBuffer buffer = b.asByteBuffer();
-            buffer.get(msgBody);
+            // Codes_SRS_AMQPSDEVICETELEMETRY_12_024: [The function shall use the proton message body without copying it when it spans its whole array, and copy it otherwise.]
+            msgBody = getBinaryBytes(d.getValue());
         }
         else
         {
@@ -15,7 +15,6 @@ import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.*;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
-import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -110,6 +109,19 @@ public final class AmqpsDeviceTwin extends AmqpsDeviceOperations
         return false;
     }
 
+    /**
+     * Tells whether messages of the given type are sent on the sender link of this operation.
+     *
+     * @param messageType the type of the message to send.
+     * @return true if the message type is DEVICE_TWIN.
+     */
+    @Override
+    protected boolean isSenderLinkFor(MessageType messageType)
+    {
+        // Codes_SRS_AMQPSDEVICETWIN_41_001: [The function shall return true only if the message type is DEVICE_TWIN.]
+        return messageType == MessageType.DEVICE_TWIN;
+    }
+
     /**
      * Sends the given message and returns with the delivery hash if the message type is twin
      *
@@ -233,11 +245,8 @@ public final class AmqpsDeviceTwin extends AmqpsDeviceOperations
         Data d = (Data) protonMsg.getBody();
         if (d != null)
         {
-            // Codes_SRS_AMQPSDEVICETWIN_12_018: [The function shall shall create a new buffer for message body and copy the proton message body to it.]
-            Binary b = d.getValue();
-            msgBody = new byte[b.getLength()];
-            ByteBuffer buffer = b.asByteBuffer();
-            buffer.get(msgBody);
+            // Codes_SRS_AMQPSDEVICETWIN_12_018: [The function shall use the proton message body without copying it when it spans its whole array, and copy it otherwise.]
+            msgBody = getBinaryBytes(d.getValue());
         }
         else
         {
@@ -19,7 +19,6 @@ import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.engine.impl.TransportInternal;
 import org.apache.qpid.proton.message.Message;
-import org.apache.qpid.proton.reactor.FlowController;
 import org.apache.qpid.proton.reactor.Handshaker;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.apache.qpid.proton.reactor.ReactorOptions;
@@ -38,9 +37,13 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 {
     private static final int MAX_WAIT_TO_OPEN_CLOSE_CONNECTION = 90*1000; // 90 second timeout
     private static final int MAX_WAIT_TO_TERMINATE_EXECUTOR = 30;
+    private static final int MAX_WAIT_FOR_SENDER_CREDIT_MILLIS = 1000;
+    private static final int MIN_RECEIVER_CREDIT = 10;
+    private static final int MAX_RECEIVER_CREDIT = 1024;
     private IotHubConnectionStatus state;
 
-    private int linkCredit = -1;
+    private final AmqpsLinkCreditManager linkCreditManager;
+
     /** The {@link Delivery} tag. */
     private static final String WEB_SOCKET_PATH = "/$iothub/websocket";
     private static final String WEB_SOCKET_SUB_PROTOCOL = "AMQPWSB10";
@@ -139,10 +142,11 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_004: [The constructor shall initialize a new Handshaker
         // (Proton) object to handle communication handshake.]
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_005: [The constructor shall initialize a new FlowController
-        // (Proton) object to handle communication flow.]
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_41_003: [The constructor shall initialize a new AmqpsLinkCreditManager
+        // object to handle communication flow.]
         add(new Handshaker());
-        add(new FlowController());
+        this.linkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        add(this.linkCreditManager);
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_006: [The constructor shall set its state to DISCONNECTED.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
@@ -184,7 +188,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void open(Queue<DeviceClientConfig> deviceClientConfigs) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_007: [If the AMQPS connection is already open, the function shall do nothing.]
         if(this.state == IotHubConnectionStatus.DISCONNECTED)
@@ -240,7 +244,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         this.listener.onConnectionEstablished(this.connectionId);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -249,7 +253,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void openAsync() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (this.reactor == null)
         {
@@ -275,7 +279,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_020: [The function shall do nothing if the authentication is already open.]
         if (this.amqpsSessionManager.isAuthenticationOpened())
@@ -284,7 +288,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.amqpsSessionManager.authenticate();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -294,7 +298,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void openLinks() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_022: [The function shall do nothing if the authentication is already open.]
         if (this.amqpsSessionManager.isAuthenticationOpened())
@@ -303,7 +307,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.amqpsSessionManager.openDeviceOperationLinks();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -317,7 +321,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     public void close() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         closeAsync();
 
@@ -363,7 +367,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             logger.LogInfo("Shutdown of executor service completed, method name is %s ", logger.getMethodName());
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -372,7 +376,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void closeAsync()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_012: [The function shall set the status of the AMQPS connection to DISCONNECTED.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
@@ -393,7 +397,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         logger.LogInfo("Proton reactor has been stopped, method name is %s ", logger.getMethodName());
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -405,26 +409,73 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      * @throws TransportException if send message fails
      * @return An {@link Integer} representing the hash of the message, or -1 if the connection is closed.
      */
-    private synchronized Integer sendMessage(Message message, MessageType messageType, IotHubConnectionString iotHubConnectionString) throws TransportException
+    private Integer sendMessage(Message message, MessageType messageType, IotHubConnectionString iotHubConnectionString) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
+
+        String senderLinkTag;
+        synchronized (this)
+        {
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
+            // credit, the function shall return -1.]
+            if (this.state == IotHubConnectionStatus.DISCONNECTED)
+            {
+                return -1;
+            }
 
-        Integer deliveryHash = -1;
+            senderLinkTag = this.amqpsSessionManager.getSenderLinkTag(messageType, iotHubConnectionString);
+        }
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
-        // credit, the function shall return -1.]
-        if (this.state == IotHubConnectionStatus.DISCONNECTED || this.linkCredit <= 0)
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_41_004: [If the sender link of the message type and device has no credit, the
+        // function shall wait for the service to grant credit to that link, up to one second, without holding the lock of
+        // the connection, before returning -1.]
+        if (senderLinkTag != null && !this.awaitSenderCredit(senderLinkTag))
         {
-            deliveryHash = -1;
+            return -1;
         }
-        else
+
+        synchronized (this)
         {
+            if (this.state == IotHubConnectionStatus.DISCONNECTED)
+            {
+                return -1;
+            }
+
             // Codes_SRS_AMQPSIOTHUBCONNECTION_12_024: [The function shall call AmqpsSessionManager.sendMessage with the given parameters.]
-            deliveryHash = this.amqpsSessionManager.sendMessage(message, messageType, iotHubConnectionString);
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
+            return this.amqpsSessionManager.sendMessage(message, messageType, iotHubConnectionString);
+        }
+    }
+
+    /**
+     * Wait for the service to grant credit to a sender link.
+     *
+     * @param senderLinkTag the name of the sender link.
+     * @return true if the sender link has credit, false otherwise.
+     */
+    private boolean awaitSenderCredit(String senderLinkTag)
+    {
+        try
+        {
+            return this.linkCreditManager.awaitSenderCredit(senderLinkTag, MAX_WAIT_FOR_SENDER_CREDIT_MILLIS);
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
-        return deliveryHash;
+    /**
+     * Getter for the link credit manager of the connection, which exposes the sender credit and the credit counters
+     * of the links.
+     *
+     * @return the link credit manager of the connection.
+     */
+    public AmqpsLinkCreditManager getLinkCreditManager()
+    {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_41_005: [The function shall return the link credit manager of the connection.]
+        return this.linkCreditManager;
     }
 
     /**
@@ -434,7 +485,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onReactorInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_033: [The event handler shall set the current handler to handle the connection events.]
         if(this.useWebSockets)
@@ -446,7 +497,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             event.getReactor().connectionToHost(this.deviceClientConfig.getIotHubHostname(), AMQP_PORT, this);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -457,7 +508,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onReactorFinal(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_011: [The function shall call countdown on close latch and open latch.]
         closeLatch.countDown();
@@ -466,7 +517,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_012: [The function shall set the reactor member variable to null.]
         this.reactor = null;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -476,7 +527,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_025: [The event handler shall get the Connection (Proton) object from the event handler and set the host name on the connection.]
         this.connection = event.getConnection();
@@ -495,7 +546,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             logger.LogDebug("openLinks has thrown exception: %s", e.getMessage());
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -505,7 +556,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionBound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_15_030: [The event handler shall get the Transport (Proton) object from the event.]
         Transport transport = event.getConnection().getTransport();
@@ -530,7 +581,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -540,12 +591,12 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onConnectionUnbound(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_010: [The function sets the state to closed.]
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -555,14 +606,15 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onDelivery(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         AmqpsMessage amqpsMessage = null;
+        Link link = event.getLink();
+        String linkName = link.getName();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call AmqpsSessionManager.getMessageFromReceiverLink.]
         try
         {
-            String linkName = event.getLink().getName();
             amqpsMessage = this.amqpsSessionManager.getMessageFromReceiverLink(linkName);
         }
         catch (TransportException e)
@@ -572,14 +624,36 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
 
         if (amqpsMessage != null)
         {
-            // Codes_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
-            try
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_41_001: [The function shall call AmqpsSessionManager.getMessageFromReceiverLink again until it returns null, so that all the readable deliveries of the link are received in one event.]
+            while (amqpsMessage != null)
             {
-                this.messageReceivedFromServer(amqpsMessage);
+                // Codes_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
+                try
+                {
+                    this.messageReceivedFromServer(amqpsMessage);
+                }
+                catch (TransportException e)
+                {
+                    this.listener.onMessageReceived(null, e);
+                }
+
+                try
+                {
+                    amqpsMessage = this.amqpsSessionManager.getMessageFromReceiverLink(linkName);
+                }
+                catch (TransportException e)
+                {
+                    this.listener.onMessageReceived(null, e);
+                    amqpsMessage = null;
+                }
             }
-            catch (TransportException e)
+        }
+        else if (link instanceof Receiver)
+        {
+            // Codes_SRS_AMQPSIOTHUBCONNECTION_41_002: [If no message can be read from a receiver link, the function shall do nothing, since the delivery is partial or was already received with an earlier one.]
+            if (logger.isTraceEnabled())
             {
-                this.listener.onMessageReceived(null, e);
+                logger.LogTrace("No complete delivery to read on receiver link %s, method name is %s ", linkName, logger.getMethodName());
             }
         }
         else
@@ -587,13 +661,19 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             //Sender specific section for dispositions it receives
             if (event.getType() == Event.Type.DELIVERY)
             {
-                logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getMethodName());
+                if (logger.isInfoEnabled())
+                {
+                    logger.LogInfo("Reading the delivery event in Sender link, method name is %s ", logger.getMethodName());
+                }
                 // Codes_SRS_AMQPSIOTHUBCONNECTION_15_038: [If this link is the Sender link and the event type is DELIVERY, the event handler shall get the Delivery (Proton) object from the event.]
                 Delivery d = event.getDelivery();
                 DeliveryState remoteState = d.getRemoteState();
 
-                logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getMethodName());
-                logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getMethodName());
+                if (logger.isInfoEnabled())
+                {
+                    logger.LogInfo("Is state of remote Delivery COMPLETE ? %s, method name is %s ", state, logger.getMethodName());
+                    logger.LogInfo("Inform listener that a message has been sent to IoT Hub along with remote state, method name is %s ", logger.getMethodName());
+                }
 
                 if (this.inProgressMessages.containsKey(d.hashCode()))
                 {
@@ -640,7 +720,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -650,7 +730,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkInit(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_016: [The function shall get the link from the event and call device operation objects with it.]
         Link link = event.getLink();
@@ -666,24 +746,8 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             this.savedException = e;
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
-
-    }
-
-    /**
-     * Event handler for the link flow event. Handles sending a single message.
-     * @param event The Proton Event object.
-     */
-    @Override
-    public void onLinkFlow(Event event)
-    {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
-
-        // Codes_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
-        this.linkCredit = event.getLink().getCredit();
-        logger.LogDebug("The link credit value is %s, method name is %s", this.linkCredit, logger.getMethodName());
+        logger.LogMethodExit();
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
     }
 
     /**
@@ -694,7 +758,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_052: [The function shall call AmqpsSessionManager.onLinkRemoteOpen with the given link.]
         if (this.amqpsSessionManager.onLinkRemoteOpen(event))
@@ -705,7 +769,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             openLatch.countDown();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -717,7 +781,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onLinkRemoteClose(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
@@ -733,7 +797,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         this.scheduleReconnection(transportException);
         this.savedException = transportException;
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -743,7 +807,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
     @Override
     public void onTransportError(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         this.state = IotHubConnectionStatus.DISCONNECTED;
 
@@ -759,7 +823,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
         this.savedException = transportException;
         this.scheduleReconnection(transportException);
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -771,7 +835,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     protected AmqpsConvertToProtonReturnValue convertToProton(com.microsoft.azure.sdk.iot.device.Message message) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_056: [The function shall call AmqpsSessionManager.convertToProton with the given message.]
         return this.amqpsSessionManager.convertToProton(message);
@@ -787,7 +851,7 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     protected AmqpsConvertFromProtonReturnValue convertFromProton(AmqpsMessage amqpsMessage, DeviceClientConfig deviceClientConfig) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSIOTHUBCONNECTION_12_056: [*The function shall call AmqpsSessionManager.convertFromProton with the given message. ]
         return this.amqpsSessionManager.convertFromProton(amqpsMessage, deviceClientConfig);
@@ -861,9 +925,12 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      */
     private void messageReceivedFromServer(AmqpsMessage amqpsMessage) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
-        logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getMethodName());
+        if (logger.isInfoEnabled())
+        {
+            logger.LogInfo("All the listeners are informed that a message has been received, method name is %s ", logger.getMethodName());
+        }
 
         AmqpsConvertFromProtonReturnValue amqpsHandleMessageReturnValue = this.convertFromProton(amqpsMessage, amqpsMessage.getDeviceClientConfig());
 
@@ -994,8 +1061,10 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
      * @return true if the ack was sent successfully, and false otherwise
      */
     @Override
-    public boolean sendMessageResult(com.microsoft.azure.sdk.iot.device.Message message, IotHubMessageResult result)
+    public synchronized boolean sendMessageResult(com.microsoft.azure.sdk.iot.device.Message message, IotHubMessageResult result)
     {
+        // Codes_SRS_AMQPSIOTHUBCONNECTION_41_006: [The function shall hold the lock of the connection, so that the
+        // delivery is not disposed of while another thread uses the Proton objects.]
         if (this.state != IotHubConnectionStatus.CONNECTED)
         {
             // Codes_SRS_AMQPSTRANSPORT_34_073: [If this object is not CONNECTED, this function shall return false.]
@@ -1055,6 +1124,10 @@ public final class AmqpsIotHubConnection extends BaseHandler implements IotHubTr
             reconnectionScheduled = true;
             ScheduledExecutorService reconnectThread = Executors.newScheduledThreadPool(1);
             reconnectThread.schedule(new ReconnectionTask(throwable, this.listener, this.connectionId), 0, TimeUnit.MILLISECONDS);
+
+            // the reconnection task blocks for as long as the retries take, so it keeps a thread of its own rather than
+            // a shared one, but that thread has to exit once the task is done
+            reconnectThread.shutdown();
         }
     }
 
@@ -0,0 +1,326 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proton handler that manages the link credit of an AMQPS connection, in place of the Proton FlowController.
+ *
+ * <p>Each receiver link has a credit window between a minimum and a maximum. The window is doubled while the
+ * application acknowledges the received messages as fast as they arrive, and halved while the unacknowledged
+ * messages pile up, so that the service does not send more messages than the application can process. The credit
+ * of a receiver link is only topped up once half of its window is used, so that one flow frame grants the credit
+ * for many messages.</p>
+ *
+ * <p>The credit of the sender links is granted by the service, to each link separately. Senders can wait for the
+ * credit of the link they send on with {@link #awaitSenderCredit(String, long)}, which returns as soon as the service
+ * grants credit to that link.</p>
+ *
+ * <p>The Proton events are handled on the reactor thread. The counters can be read from any thread.</p>
+ */
+public final class AmqpsLinkCreditManager extends BaseHandler
+{
+    private final int minReceiverCredit;
+    private final int maxReceiverCredit;
+
+    // Only used by the reactor thread
+    private final Map<String, ReceiverCredit> receiverCredits = new HashMap<>();
+
+    private final Map<String, Sender> senders = new ConcurrentHashMap<>();
+    private final Object senderCreditLock = new Object();
+
+    private final AtomicLong flowFrameCount = new AtomicLong();
+    private final AtomicLong grantedReceiverCredit = new AtomicLong();
+    private final AtomicLong usedReceiverCredit = new AtomicLong();
+    private final AtomicLong receiverCreditStarvationCount = new AtomicLong();
+    private final AtomicLong senderCreditStarvationCount = new AtomicLong();
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    private static final class ReceiverCredit
+    {
+        // Current credit window of the link
+        private int window;
+
+        // Credit of the link after it was last topped up
+        private int credit;
+
+        private ReceiverCredit(int window)
+        {
+            this.window = window;
+        }
+    }
+
+    /**
+     * Create a link credit manager.
+     *
+     * @param minReceiverCredit the smallest credit window of a receiver link, which is also its initial window.
+     * @param maxReceiverCredit the largest credit window of a receiver link.
+     * @throws IllegalArgumentException if minReceiverCredit is less than 1, or if maxReceiverCredit is less than
+     * minReceiverCredit.
+     */
+    public AmqpsLinkCreditManager(int minReceiverCredit, int maxReceiverCredit) throws IllegalArgumentException
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_001: [If minReceiverCredit is less than 1, or if maxReceiverCredit is less than minReceiverCredit, the constructor shall throw an IllegalArgumentException.]
+        if (minReceiverCredit < 1 || maxReceiverCredit < minReceiverCredit)
+        {
+            throw new IllegalArgumentException("The receiver credit bounds must satisfy 1 <= minReceiverCredit <= maxReceiverCredit.");
+        }
+
+        this.minReceiverCredit = minReceiverCredit;
+        this.maxReceiverCredit = maxReceiverCredit;
+    }
+
+    /**
+     * Event handler for the link local open event. Grants the initial credit of a receiver link and starts tracking
+     * the credit of a sender link.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkLocalOpen(Event event)
+    {
+        Link link = event.getLink();
+        if (link instanceof Receiver)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_002: [If the link is a receiver link, the function shall grant it the minimum receiver credit.]
+            ReceiverCredit receiverCredit = new ReceiverCredit(this.minReceiverCredit);
+            this.receiverCredits.put(link.getName(), receiverCredit);
+            this.flow((Receiver) link, receiverCredit);
+        }
+        else if (link instanceof Sender)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_003: [If the link is a sender link, the function shall save it by its name, so that awaitSenderCredit can wait for its credit.]
+            this.senders.put(link.getName(), (Sender) link);
+        }
+    }
+
+    /**
+     * Event handler for the link flow event. Wakes up the senders waiting for credit.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkFlow(Event event)
+    {
+        if (event.getLink() instanceof Sender)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_004: [If the link is a sender link, the function shall wake up the threads waiting for sender credit.]
+            synchronized (this.senderCreditLock)
+            {
+                this.senderCreditLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Event handler for the delivery event. Tops up the credit of a receiver link once half of its window is used.
+     * The event is handled after the connection read the readable deliveries of the link.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onDelivery(Event event)
+    {
+        Link link = event.getLink();
+        if (!(link instanceof Receiver))
+        {
+            return;
+        }
+
+        ReceiverCredit receiverCredit = this.receiverCredits.get(link.getName());
+        if (receiverCredit == null)
+        {
+            return;
+        }
+
+        Receiver receiver = (Receiver) link;
+        int credit = receiver.getCredit();
+        if (credit > receiverCredit.window / 2)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_005: [If more than half of the credit window of the receiver link is left, the function shall not send a flow frame.]
+            return;
+        }
+
+        if (credit == 0)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_006: [If the receiver link has no credit left, the function shall count a receiver credit starvation.]
+            this.receiverCreditStarvationCount.incrementAndGet();
+        }
+
+        this.usedReceiverCredit.addAndGet(Math.max(receiverCredit.credit - credit, 0));
+        receiverCredit.credit = credit;
+
+        // Messages that were delivered to the application and that it did not acknowledge yet
+        int backlog = receiver.getUnsettled();
+        if (backlog >= receiverCredit.window)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_007: [If the receiver link has as many unsettled deliveries as its credit window, the function shall halve the window, down to the minimum receiver credit.]
+            receiverCredit.window = Math.max(receiverCredit.window / 2, this.minReceiverCredit);
+        }
+        else if (backlog <= receiverCredit.window / 4)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_008: [If the receiver link has at most a quarter of its credit window in unsettled deliveries, the function shall double the window, up to the maximum receiver credit.]
+            receiverCredit.window = Math.min(receiverCredit.window * 2, this.maxReceiverCredit);
+        }
+
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_009: [The function shall top up the credit of the receiver link to its credit window in a single flow frame.]
+        this.flow(receiver, receiverCredit);
+    }
+
+    /**
+     * Event handler for the link final event. Stops tracking the credit of the link.
+     * @param event The Proton Event object.
+     */
+    @Override
+    public void onLinkFinal(Event event)
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_010: [The function shall stop tracking the credit of the link.]
+        String linkName = event.getLink().getName();
+        this.receiverCredits.remove(linkName);
+        this.senders.remove(linkName);
+    }
+
+    /**
+     * Wait until the sender link with the provided name has credit.
+     *
+     * @param linkName the name of the sender link the message will be sent on.
+     * @param timeoutMillis the longest time to wait, in milliseconds.
+     * @return true if the sender link has credit, or false if it got no credit before the timeout.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public boolean awaitSenderCredit(String linkName, long timeoutMillis) throws InterruptedException
+    {
+        if (this.getSenderCredit(linkName) > 0)
+        {
+            // Codes_SRS_AMQPSLINKCREDITMANAGER_41_011: [If the sender link with the provided name has credit, the function shall return true without waiting.]
+            return true;
+        }
+
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_012: [Otherwise, the function shall count a sender credit starvation and wait for the service to grant credit to the sender link, up to timeoutMillis, and return whether the sender link has credit.]
+        this.senderCreditStarvationCount.incrementAndGet();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (this.senderCreditLock)
+        {
+            long remainingMillis = timeoutMillis;
+            while (this.getSenderCredit(linkName) <= 0 && remainingMillis > 0)
+            {
+                this.senderCreditLock.wait(remainingMillis);
+                remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            }
+        }
+
+        return this.getSenderCredit(linkName) > 0;
+    }
+
+    /**
+     * Getter for the credit of a sender link.
+     * @param linkName the name of the sender link.
+     * @return the credit that the service granted to the sender link, or 0 if the link is not open.
+     */
+    public int getSenderCredit(String linkName)
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_018: [The function shall return the credit of the open sender link with the provided name, or 0 if there is no such link.]
+        Sender sender = linkName == null ? null : this.senders.get(linkName);
+        if (sender == null)
+        {
+            return 0;
+        }
+
+        return Math.max(sender.getCredit(), 0);
+    }
+
+    /**
+     * Getter for the credit of all the sender links, including the links of the authentication, twin and method
+     * operations.
+     * @return the sum of the credit that the service granted to the sender links of the connection.
+     */
+    public int getSenderCredit()
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_013: [The function shall return the sum of the credit of the open sender links.]
+        int senderCredit = 0;
+        for (Sender sender : this.senders.values())
+        {
+            senderCredit += Math.max(sender.getCredit(), 0);
+        }
+
+        return senderCredit;
+    }
+
+    /**
+     * Getter for the number of flow frames sent to grant receiver credit.
+     * @return the number of flow frames sent by the manager.
+     */
+    public long getFlowFrameCount()
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_014: [The function shall return the number of flow frames sent to grant receiver credit.]
+        return this.flowFrameCount.get();
+    }
+
+    /**
+     * Getter for the number of times a receiver link used up its credit, so that the service had to wait for more
+     * credit to send the next message.
+     * @return the number of receiver credit starvations.
+     */
+    public long getReceiverCreditStarvationCount()
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_015: [The function shall return the number of receiver credit starvations.]
+        return this.receiverCreditStarvationCount.get();
+    }
+
+    /**
+     * Getter for the number of times a send had to wait for sender credit.
+     * @return the number of sender credit starvations.
+     */
+    public long getSenderCreditStarvationCount()
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_016: [The function shall return the number of sender credit starvations.]
+        return this.senderCreditStarvationCount.get();
+    }
+
+    /**
+     * Getter for the share of the granted receiver credit that was used by deliveries when the credit was topped up.
+     * @return the used receiver credit divided by the granted receiver credit, or 0 if no credit was granted.
+     */
+    public double getReceiverCreditUtilization()
+    {
+        // Codes_SRS_AMQPSLINKCREDITMANAGER_41_017: [The function shall return the used receiver credit divided by the granted receiver credit, or 0 if no credit was granted.]
+        long granted = this.grantedReceiverCredit.get();
+        if (granted == 0)
+        {
+            return 0;
+        }
+
+        return (double) this.usedReceiverCredit.get() / granted;
+    }
+
+    private void flow(Receiver receiver, ReceiverCredit receiverCredit)
+    {
+        int credit = receiver.getCredit();
+        int delta = receiverCredit.window - credit;
+        if (delta > 0)
+        {
+            receiver.flow(delta);
+            this.flowFrameCount.incrementAndGet();
+            this.grantedReceiverCredit.addAndGet(delta);
+            credit += delta;
+
+            if (logger.isTraceEnabled())
+            {
+                logger.LogTrace("Granted %s credit to receiver link %s, method name is %s ", delta, receiver.getName(), logger.getMethodName());
+            }
+        }
+
+        receiverCredit.credit = credit;
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.message.Message;
+
+import java.nio.BufferOverflowException;
+import java.util.Map;
+
+/**
+ * Encodes the Proton messages sent by one sender into a buffer that is reused from one message to the next, since
+ * Proton copies the encoded bytes into the delivery. The buffer only grows, and it is grown to an estimate of the
+ * encoded size of a message before the message is encoded, so that a large message is normally encoded once instead
+ * of once per doubling of the buffer.
+ *
+ * <p>The encoder also creates the delivery tags of the messages, as fixed width binary counters.</p>
+ *
+ * <p>An encoder is not thread safe, and the encoded bytes are only valid until it encodes the next message.</p>
+ */
+public final class AmqpsMessageEncoder
+{
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int DELIVERY_TAG_SIZE = 8;
+
+    // Encoded size of the header, the properties and the section descriptors of a message
+    private static final int MESSAGE_OVERHEAD_BYTES = 512;
+
+    // Encoded size of a map entry on top of its key and value, and of a value that is neither a string nor a binary
+    private static final int ENTRY_OVERHEAD_BYTES = 16;
+    private static final int OTHER_VALUE_BYTES = 16;
+
+    // Maximum number of UTF-8 bytes of a Java char
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 3;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private long nextTag = 0;
+
+    /**
+     * Encode the message into the buffer of the encoder.
+     *
+     * @param message the message to encode.
+     * @return the number of encoded bytes at the start of {@link #getBuffer()}.
+     */
+    int encode(Message message)
+    {
+        // Codes_SRS_AMQPSMESSAGEENCODER_41_001: [The function shall grow the buffer to the estimated encoded size of the message if the buffer is smaller.]
+        int estimatedSize = estimateEncodedSize(message);
+        if (estimatedSize > this.buffer.length)
+        {
+            this.buffer = new byte[estimatedSize];
+        }
+
+        while (true)
+        {
+            try
+            {
+                // Codes_SRS_AMQPSMESSAGEENCODER_41_002: [The function shall encode the message at the start of the buffer and return the encoded length.]
+                return message.encode(this.buffer, 0, this.buffer.length);
+            }
+            catch (BufferOverflowException e)
+            {
+                // Codes_SRS_AMQPSMESSAGEENCODER_41_003: [The function shall double the buffer and encode the message again if encode throws BufferOverflowException.]
+                this.buffer = new byte[this.buffer.length * 2];
+            }
+        }
+    }
+
+    /**
+     * Getter for the buffer that holds the last encoded message.
+     *
+     * @return the buffer of the encoder.
+     */
+    byte[] getBuffer()
+    {
+        // Codes_SRS_AMQPSMESSAGEENCODER_41_004: [The function shall return the buffer of the encoder.]
+        return this.buffer;
+    }
+
+    /**
+     * Create the delivery tag of the next message. Proton keeps a reference to the tag until the delivery is settled,
+     * so every tag is a new array.
+     *
+     * @return the next value of the counter of the encoder, as 8 big endian bytes.
+     */
+    byte[] nextDeliveryTag()
+    {
+        // Codes_SRS_AMQPSMESSAGEENCODER_41_005: [The function shall return the next value of the counter of the encoder as 8 big endian bytes.]
+        long tag = this.nextTag++;
+        byte[] deliveryTag = new byte[DELIVERY_TAG_SIZE];
+        for (int i = DELIVERY_TAG_SIZE - 1; i >= 0; i--)
+        {
+            deliveryTag[i] = (byte) tag;
+            tag >>>= 8;
+        }
+
+        return deliveryTag;
+    }
+
+    /**
+     * Estimate the encoded size of the message from the sizes of its body, application properties and message
+     * annotations, without encoding it.
+     *
+     * @param message the message to estimate the encoded size of.
+     * @return the estimated encoded size of the message, in bytes.
+     */
+    static int estimateEncodedSize(Message message)
+    {
+        // Codes_SRS_AMQPSMESSAGEENCODER_41_006: [The function shall add the sizes of the body, the application properties and the message annotations of the message to a fixed overhead.]
+        int size = MESSAGE_OVERHEAD_BYTES;
+
+        Section body = message.getBody();
+        if (body instanceof Data)
+        {
+            size += estimateValueSize(((Data) body).getValue());
+        }
+        else if (body instanceof AmqpValue)
+        {
+            size += estimateValueSize(((AmqpValue) body).getValue());
+        }
+
+        ApplicationProperties applicationProperties = message.getApplicationProperties();
+        if (applicationProperties != null && applicationProperties.getValue() != null)
+        {
+            size += estimateMapSize(applicationProperties.getValue());
+        }
+
+        MessageAnnotations messageAnnotations = message.getMessageAnnotations();
+        if (messageAnnotations != null && messageAnnotations.getValue() != null)
+        {
+            size += estimateMapSize(messageAnnotations.getValue());
+        }
+
+        return size;
+    }
+
+    private static int estimateMapSize(Map<?, ?> map)
+    {
+        int size = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet())
+        {
+            size += ENTRY_OVERHEAD_BYTES + estimateValueSize(entry.getKey()) + estimateValueSize(entry.getValue());
+        }
+
+        return size;
+    }
+
+    private static int estimateValueSize(Object value)
+    {
+        if (value instanceof Binary)
+        {
+            return ((Binary) value).getLength();
+        }
+        else if (value instanceof String)
+        {
+            return ((String) value).length() * MAX_UTF8_BYTES_PER_CHAR;
+        }
+        else if (value instanceof Symbol)
+        {
+            return ((Symbol) value).length();
+        }
+        else if (value instanceof byte[])
+        {
+            return ((byte[]) value).length;
+        }
+
+        return OTHER_VALUE_BYTES;
+    }
+}
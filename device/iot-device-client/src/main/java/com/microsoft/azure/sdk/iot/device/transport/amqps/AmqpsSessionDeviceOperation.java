@@ -4,11 +4,11 @@ import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import org.apache.qpid.proton.engine.*;
 
-import java.nio.BufferOverflowException;
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 public class AmqpsSessionDeviceOperation
@@ -20,13 +20,15 @@ public class AmqpsSessionDeviceOperation
 
     private ArrayList<AmqpsDeviceOperations> amqpsDeviceOperationsList = new ArrayList<>();;
 
-    private long nextTag = 0;
+    private final AmqpsMessageEncoder amqpsMessageEncoder;
 
     private Integer openLock = new Integer(1);
 
     private long tokenRenewalPeriodInMillisecSecs = 4000; //45*60*100;
 
     private ScheduledExecutorService taskSchedulerTokenRenewal;
+    private ScheduledFuture<?> tokenRenewalTaskFuture;
+    private boolean isTaskSchedulerTokenRenewalShared;
     private AmqpsDeviceAuthenticationCBSTokenRenewalTask tokenRenewalTask = null;
 
     private static final int MAX_WAIT_TO_AUTHENTICATE = 10*1000;
@@ -47,6 +49,20 @@ public class AmqpsSessionDeviceOperation
      * @throws IllegalArgumentException if deviceClientConfig or amqpsDeviceAuthentication is null
      */
     public AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication) throws IllegalArgumentException
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_004: [The constructor shall create an AmqpsMessageEncoder of its own if none is provided.]
+        this(deviceClientConfig, amqpsDeviceAuthentication, new AmqpsMessageEncoder());
+    }
+
+    /**
+     * Create logical device entity to handle all operation.
+     *
+     * @param deviceClientConfig the configuration of teh device.
+     * @param amqpsDeviceAuthentication the authentication object associated with the device.
+     * @param amqpsMessageEncoder the encoder of the messages of the connection, shared by the devices of the connection.
+     * @throws IllegalArgumentException if deviceClientConfig, amqpsDeviceAuthentication or amqpsMessageEncoder is null
+     */
+    public AmqpsSessionDeviceOperation(final DeviceClientConfig deviceClientConfig, AmqpsDeviceAuthentication amqpsDeviceAuthentication, AmqpsMessageEncoder amqpsMessageEncoder) throws IllegalArgumentException
     {
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
         if (deviceClientConfig == null)
@@ -57,10 +73,16 @@ public class AmqpsSessionDeviceOperation
         {
             throw new IllegalArgumentException("amqpsDeviceAuthentication cannot be null.");
         }
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_005: [The constructor shall throw IllegalArgumentException if the amqpsMessageEncoder parameter is null.]
+        if (amqpsMessageEncoder == null)
+        {
+            throw new IllegalArgumentException("amqpsMessageEncoder cannot be null.");
+        }
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
         this.deviceClientConfig = deviceClientConfig;
         this.amqpsDeviceAuthentication = amqpsDeviceAuthentication;
+        this.amqpsMessageEncoder = amqpsMessageEncoder;
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_003: [The constructor shall create AmqpsDeviceTelemetry, AmqpsDeviceMethods and AmqpsDeviceTwin and add them to the device operations list. ]
         this.amqpsDeviceOperationsList.add(new AmqpsDeviceTelemetry(this.deviceClientConfig));
@@ -113,7 +135,7 @@ public class AmqpsSessionDeviceOperation
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_006: [The function shall start the authentication if the authentication type is CBS.]
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN)
@@ -144,7 +166,7 @@ public class AmqpsSessionDeviceOperation
 
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -154,7 +176,7 @@ public class AmqpsSessionDeviceOperation
      */
     public void renewToken() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if ((this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN) &&
                 (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATED))
@@ -167,7 +189,7 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -210,7 +232,7 @@ public class AmqpsSessionDeviceOperation
      */
     void openLinks(Session session) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_042: [The function shall do nothing if the session parameter is null.]
         if (session != null)
@@ -228,7 +250,7 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -236,7 +258,7 @@ public class AmqpsSessionDeviceOperation
      */
     void closeLinks()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         for (int i = 0; i < amqpsDeviceOperationsList.size(); i++)
         {
@@ -244,7 +266,7 @@ public class AmqpsSessionDeviceOperation
             amqpsDeviceOperationsList.get(i).closeLinks();
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -256,7 +278,7 @@ public class AmqpsSessionDeviceOperation
      */
     void initLink(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_043: [The function shall do nothing if the link parameter is null.]
         if (link != null)
@@ -271,7 +293,7 @@ public class AmqpsSessionDeviceOperation
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -293,31 +315,18 @@ public class AmqpsSessionDeviceOperation
         if (this.amqpsAuthenticatorState == AmqpsDeviceAuthenticationState.AUTHENTICATED)
         {
             // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_013: [The function shall return -1 if the deviceId int he connection string is not equeal to the deviceId in the config.]
-            if (this.deviceClientConfig.getDeviceId() == iotHubConnectionString.getDeviceId())
+            if (this.deviceClientConfig.getDeviceId().equals(iotHubConnectionString.getDeviceId()))
             {
                 // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_014: [The function shall encode the message and copy the contents to the byte buffer.]
-                byte[] msgData = new byte[1024];
-                int length;
+                // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall doubles the buffer if encode throws BufferOverflowException.]
+                int length = this.amqpsMessageEncoder.encode(message);
 
-                while (true)
-                {
-                    try
-                    {
-                        length = message.encode(msgData, 0, msgData.length);
-                        break;
-                    }
-                    catch (BufferOverflowException e)
-                    {
-                        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_015: [The function shall doubles the buffer if encode throws BufferOverflowException.]
-                        msgData = new byte[msgData.length * 2];
-                    }
-                }
                 // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_017: [The function shall set the delivery tag for the sender.]
-                byte[] deliveryTag = String.valueOf(this.nextTag++).getBytes();
+                byte[] deliveryTag = this.amqpsMessageEncoder.nextDeliveryTag();
 
                 // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_018: [The function shall call sendMessageAndGetDeliveryHash on all device operation objects.]
                 // Codes_SRS_AMQPSESSIONDEVICEOPERATION_12_019: [The function shall return the delivery hash.]
-                return this.sendMessageAndGetDeliveryHash(messageType, msgData, 0, length, deliveryTag);
+                return this.sendMessageAndGetDeliveryHash(messageType, this.amqpsMessageEncoder.getBuffer(), 0, length, deliveryTag);
             }
             else
             {
@@ -330,6 +339,28 @@ public class AmqpsSessionDeviceOperation
         }
     }
 
+    /**
+     * Find the name of the sender link that messages of the given
+     * type are sent on.
+     *
+     * @param messageType the message type to find the sender.
+     * @return the tag of the sender link, or null if no device
+     *         operation sends messages of this type.
+     */
+    String getSenderLinkTag(MessageType messageType)
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_006: [The function shall return the sender link tag of the first device operation that sends messages of the given type, or null if there is none.]
+        for (AmqpsDeviceOperations amqpsDeviceOperations : this.amqpsDeviceOperationsList)
+        {
+            if (amqpsDeviceOperations.isSenderLinkFor(messageType))
+            {
+                return amqpsDeviceOperations.getSenderLinkTag();
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Delegate the send call to device operation objects.
      * Loop through the device operation list and find the sender 
@@ -425,6 +456,24 @@ public class AmqpsSessionDeviceOperation
         return amqpsMessage;
     }
 
+    /**
+     * Getter for the names of the links of the managed device operations.
+     *
+     * @return the sender and receiver link names of all device operations.
+     */
+    List<String> getLinkNames()
+    {
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_003: [The function shall return the sender and receiver link names of all device operations.]
+        List<String> linkNames = new ArrayList<>();
+        for (int i = 0; i < this.amqpsDeviceOperationsList.size(); i++)
+        {
+            linkNames.add(this.amqpsDeviceOperationsList.get(i).getSenderLinkTag());
+            linkNames.add(this.amqpsDeviceOperationsList.get(i).getReceiverLinkTag());
+        }
+
+        return linkNames;
+    }
+
     /**
      * Find the link by link name in the managed device operations. 
      *
@@ -521,11 +570,22 @@ public class AmqpsSessionDeviceOperation
             shutDownScheduler();
             if (this.taskSchedulerTokenRenewal == null)
             {
-                this.taskSchedulerTokenRenewal = Executors.newScheduledThreadPool(1);
+                SharedTransportExecutor sharedTransportExecutor = this.deviceClientConfig.getSharedTransportExecutor();
+                if (sharedTransportExecutor != null)
+                {
+                    // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_001: [If the config has a shared transport executor, the function shall schedule the token renewal on it instead of creating a scheduler of its own.]
+                    this.taskSchedulerTokenRenewal = sharedTransportExecutor.getScheduledExecutorService();
+                    this.isTaskSchedulerTokenRenewalShared = true;
+                }
+                else
+                {
+                    this.taskSchedulerTokenRenewal = Executors.newScheduledThreadPool(1);
+                    this.isTaskSchedulerTokenRenewalShared = false;
+                }
             }
 
             this.tokenRenewalPeriodInMillisecSecs = renewalPeriod;
-            this.taskSchedulerTokenRenewal.scheduleAtFixedRate(this.tokenRenewalTask, 0, tokenRenewalPeriodInMillisecSecs, TimeUnit.MILLISECONDS);
+            this.tokenRenewalTaskFuture = this.taskSchedulerTokenRenewal.scheduleAtFixedRate(this.tokenRenewalTask, 0, tokenRenewalPeriodInMillisecSecs, TimeUnit.MILLISECONDS);
 
             return true;
         }
@@ -537,7 +597,14 @@ public class AmqpsSessionDeviceOperation
      */
     private void shutDownScheduler()
     {
-        if (this.taskSchedulerTokenRenewal  != null)
+        if (this.tokenRenewalTaskFuture != null)
+        {
+            this.tokenRenewalTaskFuture.cancel(false);
+            this.tokenRenewalTaskFuture = null;
+        }
+
+        // Codes_SRS_AMQPSESSIONDEVICEOPERATION_41_002: [The function shall not shut down a shared transport executor.]
+        if (this.taskSchedulerTokenRenewal  != null && !this.isTaskSchedulerTokenRenewalShared)
         {
             taskSchedulerTokenRenewal.shutdown(); // Disable new tasks from being submitted
             try
@@ -5,9 +5,12 @@ import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.device.MessageType;
 import com.microsoft.azure.sdk.iot.device.ObjectLock;
+import com.microsoft.azure.sdk.iot.device.SharedTransportExecutor;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import org.apache.qpid.proton.engine.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.*;
 
 
@@ -23,14 +26,23 @@ public class AmqpsSessionManager
     private AmqpsDeviceAuthentication amqpsDeviceAuthentication;
     private ArrayList<AmqpsSessionDeviceOperation> amqpsDeviceSessionList = new ArrayList<>();
 
+    // Indexes of the device sessions, so that sending and dispatching a Proton event do not depend on the number of devices
+    private Map<String, AmqpsSessionDeviceOperation> amqpsDeviceSessionsByDeviceId = new HashMap<>();
+    private Map<String, AmqpsSessionDeviceOperation> amqpsDeviceSessionsByLinkName = new HashMap<>();
+
     private long SEND_PERIOD_MILLISECONDS = 300;
     private ScheduledExecutorService taskSchedulerCBSSend;
+    private ScheduledFuture<?> cbsAuthSendTaskFuture;
+    private boolean isTaskSchedulerCBSSendShared;
     private AmqpsDeviceAuthenticationCBSSendTask cbsAuthSendTask = null;
 
     private static final int MAX_WAIT_TO_AUTHENTICATE_MS = 10*1000;
 
     private final ObjectLock openLinksLock = new ObjectLock();
 
+    // Encodes the messages of all the devices, which the connection sends one at a time
+    private final AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+
     private CustomLogger logger;
 
     /**
@@ -61,8 +73,19 @@ public class AmqpsSessionManager
 
                 // Codes_SRS_AMQPSESSIONMANAGER_12_006: [The constructor shall create and start a scheduler for AmqpsDeviceAuthenticationCBSTokenRenewalTask if the authentication type is CBS.]
                 this.cbsAuthSendTask = new AmqpsDeviceAuthenticationCBSSendTask((AmqpsDeviceAuthenticationCBS) this.amqpsDeviceAuthentication);
-                this.taskSchedulerCBSSend = Executors.newScheduledThreadPool(2);
-                this.taskSchedulerCBSSend.scheduleAtFixedRate(this.cbsAuthSendTask, 0, SEND_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+                SharedTransportExecutor sharedTransportExecutor = this.deviceClientConfig.getSharedTransportExecutor();
+                if (sharedTransportExecutor != null)
+                {
+                    // Codes_SRS_AMQPSESSIONMANAGER_41_001: [If the config has a shared transport executor, the constructor shall schedule AmqpsDeviceAuthenticationCBSSendTask on it instead of creating a scheduler of its own.]
+                    this.taskSchedulerCBSSend = sharedTransportExecutor.getScheduledExecutorService();
+                    this.isTaskSchedulerCBSSendShared = true;
+                }
+                else
+                {
+                    this.taskSchedulerCBSSend = Executors.newScheduledThreadPool(2);
+                    this.isTaskSchedulerCBSSendShared = false;
+                }
+                this.cbsAuthSendTaskFuture = this.taskSchedulerCBSSend.scheduleAtFixedRate(this.cbsAuthSendTask, 0, SEND_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
 
                 break;
             case X509_CERTIFICATE:
@@ -88,8 +111,17 @@ public class AmqpsSessionManager
         }
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_009: [The function shall create a new  AmqpsSessionDeviceOperation with the given deviceClietnConfig and add it to the session list.]
-        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication);
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(deviceClientConfig, this.amqpsDeviceAuthentication, this.amqpsMessageEncoder);
         this.amqpsDeviceSessionList.add(amqpsSessionDeviceOperation);
+
+        // Codes_SRS_AMQPSESSIONMANAGER_41_003: [The function shall index the new device session by the deviceId of the given deviceClientConfig.]
+        this.amqpsDeviceSessionsByDeviceId.put(deviceClientConfig.getDeviceId(), amqpsSessionDeviceOperation);
+
+        // Codes_SRS_AMQPSESSIONMANAGER_41_004: [The function shall index the new device session by the names of the links of its device operations.]
+        for (String linkName : amqpsSessionDeviceOperation.getLinkNames())
+        {
+            this.amqpsDeviceSessionsByLinkName.put(linkName, amqpsSessionDeviceOperation);
+        }
     }
 
     /**
@@ -99,7 +131,7 @@ public class AmqpsSessionManager
      */
     void closeNow()
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_043: [THe function shall shut down the scheduler.]
         this.shutDownScheduler();
@@ -123,7 +155,7 @@ public class AmqpsSessionManager
             this.session = null;
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -133,7 +165,7 @@ public class AmqpsSessionManager
      */
     public void authenticate() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (this.deviceClientConfig.getAuthenticationType() == DeviceClientConfig.AuthType.SAS_TOKEN)
         {
@@ -151,7 +183,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -162,7 +194,7 @@ public class AmqpsSessionManager
      */
     public void openDeviceOperationLinks() throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         // Codes_SRS_AMQPSESSIONMANAGER_12_018: [The function shall do nothing if the session is not open.]
         if (this.session != null)
@@ -191,7 +223,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -202,7 +234,7 @@ public class AmqpsSessionManager
      */
     void onConnectionInit(Connection connection) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (connection != null)
         {
@@ -232,7 +264,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -243,7 +275,7 @@ public class AmqpsSessionManager
      */
     void onConnectionBound(Transport transport) throws TransportException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (this.session != null)
         {
@@ -251,7 +283,7 @@ public class AmqpsSessionManager
             this.amqpsDeviceAuthentication.setSslDomain(transport);
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -265,16 +297,18 @@ public class AmqpsSessionManager
      */
     void onLinkInit(Link link) throws TransportException, IllegalArgumentException
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         if (this.session != null)
         {
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                // Codes_SRS_AMQPSESSIONMANAGER_12_027: [The function shall call authentication initLink on all session list member if the authentication is open and the session is not null.]
+                // Codes_SRS_AMQPSESSIONMANAGER_41_007: [The function shall call initLink on the device session that owns the link if the authentication is open and the session is not null.]
+                AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByLinkName.get(link.getName());
+                if (amqpsSessionDeviceOperation != null)
                 {
-                    // Codes_SRS_AMQPSESSIONMANAGER_12_027: [The function shall call authentication initLink on all session list member if the authentication is open and the session is not null.]
-                    this.amqpsDeviceSessionList.get(i).initLink(link);
+                    amqpsSessionDeviceOperation.initLink(link);
                 }
             }
             else
@@ -284,7 +318,7 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
     }
 
     /**
@@ -300,26 +334,24 @@ public class AmqpsSessionManager
      */
     boolean onLinkRemoteOpen(Event event)
     {
-        logger.LogDebug("Entered in method %s", logger.getMethodName());
+        logger.LogMethodEntry();
 
         Boolean isLinkFound = false;
 
         String linkName = event.getLink().getName();
         if (this.isAuthenticationOpened())
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByLinkName.get(linkName);
+            if (amqpsSessionDeviceOperation != null)
             {
-                isLinkFound = this.amqpsDeviceSessionList.get(i).isLinkFound(linkName);
-                if (isLinkFound == true)
+                isLinkFound = amqpsSessionDeviceOperation.isLinkFound(linkName);
+                if (isLinkFound && amqpsSessionDeviceOperation.operationLinksOpened())
                 {
-                    if (this.amqpsDeviceSessionList.get(i).operationLinksOpened())
+                    synchronized (this.openLinksLock)
                     {
-                        synchronized (this.openLinksLock)
-                        {
-                            // Codes_SRS_AMQPSESSIONMANAGER_12_031: [The function shall call authentication isLinkFound if the authentication is not open and return true if both links are open]
-                            this.openLinksLock.notifyLock();
-                        }
-                        break;
+                        // Codes_SRS_AMQPSESSIONMANAGER_12_031: [The function shall call authentication isLinkFound if the authentication is not open and return true if both links are open]
+                        // Codes_SRS_AMQPSESSIONMANAGER_41_008: [The function shall call isLinkFound on the device session that owns the link, and if all its links are opened notify the lock.]
+                        this.openLinksLock.notifyLock();
                     }
                 }
             }
@@ -337,15 +369,15 @@ public class AmqpsSessionManager
             }
         }
 
-        logger.LogDebug("Exited from method %s", logger.getMethodName());
+        logger.LogMethodExit();
 
         return isLinkFound;
     }
 
     /**
      * Delegate the send call to device operation objects. 
-     * Loop through the device operation list and find the sender 
-     * object by message type and deviceId (connection string). 
+     * Find the device session by deviceId (connection string) and
+     * let it find the sender object by message type.
      *
      * @param message the message to send.
      * @param messageType the message type to find the sender. 
@@ -360,24 +392,50 @@ public class AmqpsSessionManager
 
         if (this.session != null)
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            // Codes_SRS_AMQPSESSIONMANAGER_12_032: [The function shall call sendMessage on all session list member and if there is a successful send return with the deliveryHash, otherwise return -1.]
+            // Codes_SRS_AMQPSESSIONMANAGER_41_009: [The function shall call sendMessage on the device session of the deviceId of the connection string and return with the deliveryHash, or return -1 if there is no such device session.]
+            AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByDeviceId.get(iotHubConnectionString.getDeviceId());
+            if (amqpsSessionDeviceOperation != null)
             {
-                // Codes_SRS_AMQPSESSIONMANAGER_12_032: [The function shall call sendMessage on all session list member and if there is a successful send return with the deliveryHash, otherwise return -1.]
-                deliveryHash = this.amqpsDeviceSessionList.get(i).sendMessage(message, messageType, iotHubConnectionString);
-                if (deliveryHash != -1)
-                {
-                    break;
-                }
+                deliveryHash = amqpsSessionDeviceOperation.sendMessage(message, messageType, iotHubConnectionString);
             }
         }
 
         return deliveryHash;
     }
 
+    /**
+     * Find the name of the sender link that sendMessage would use
+     * for the given message type and device.
+     *
+     * @param messageType the message type to find the sender.
+     * @param iotHubConnectionString the device connection string to
+     *                               find the sender.
+     *
+     * @return the tag of the sender link, or null if there is no
+     *         such sender.
+     */
+    String getSenderLinkTag(MessageType messageType, IotHubConnectionString iotHubConnectionString)
+    {
+        // Codes_SRS_AMQPSESSIONMANAGER_41_006: [The function shall return the sender link tag of the message type in the device session of the deviceId of the connection string, or null if the session is not open or there is no such device session.]
+        if (this.session == null)
+        {
+            return null;
+        }
+
+        AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByDeviceId.get(iotHubConnectionString.getDeviceId());
+        if (amqpsSessionDeviceOperation == null)
+        {
+            return null;
+        }
+
+        return amqpsSessionDeviceOperation.getSenderLinkTag(messageType);
+    }
+
     /**
      * Delegate the onDelivery call to device operation objects.
-     * Loop through the device operation list and find the receiver 
-     * object by link name. 
+     * Find the device session that owns the link. The replies on
+     * the shared CBS link are offered to every device session.
      *
      * @param linkName the link name to identify the receiver.
      *
@@ -393,13 +451,23 @@ public class AmqpsSessionManager
         {
             if (this.isAuthenticationOpened())
             {
-                for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+                AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByLinkName.get(linkName);
+                if (amqpsSessionDeviceOperation != null)
                 {
                     // Codes_SRS_AMQPSESSIONMANAGER_12_035: [The function shall call device sessions getMessageFromReceiverLink if the authentication is open.]
-                    amqpsMessage = this.amqpsDeviceSessionList.get(i).getMessageFromReceiverLink(linkName);
-                    if (amqpsMessage != null)
+                    // Codes_SRS_AMQPSESSIONMANAGER_41_010: [The function shall call getMessageFromReceiverLink on the device session that owns the link if the authentication is open.]
+                    amqpsMessage = amqpsSessionDeviceOperation.getMessageFromReceiverLink(linkName);
+                }
+                else
+                {
+                    for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
                     {
-                        break;
+                        // Codes_SRS_AMQPSESSIONMANAGER_41_005: [If no device session owns the link, the function shall call getMessageFromReceiverLink on the device sessions until one of them returns a message.]
+                        amqpsMessage = this.amqpsDeviceSessionList.get(i).getMessageFromReceiverLink(linkName);
+                        if (amqpsMessage != null)
+                        {
+                            break;
+                        }
                     }
                 }
             }
@@ -426,14 +494,12 @@ public class AmqpsSessionManager
 
         if (this.isAuthenticationOpened())
         {
-            for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+            // Codes_SRS_AMQPSESSIONMANAGER_12_038: [The function shall call all device session's isLinkFound, and if any of them true return true otherwise return false.]
+            // Codes_SRS_AMQPSESSIONMANAGER_41_011: [The function shall return the isLinkFound of the device session that owns the link, or false if there is no such device session.]
+            AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByLinkName.get(linkName);
+            if (amqpsSessionDeviceOperation != null)
             {
-                // Codes_SRS_AMQPSESSIONMANAGER_12_038: [The function shall call all device session's isLinkFound, and if any of them true return true otherwise return false.]
-                isLinkFound = this.amqpsDeviceSessionList.get(i).isLinkFound(linkName);
-                if (isLinkFound == true)
-                {
-                    break;
-                }
+                isLinkFound = amqpsSessionDeviceOperation.isLinkFound(linkName);
             }
         }
         else
@@ -504,8 +570,8 @@ public class AmqpsSessionManager
 
     /**
      * Find the converter to convert Proton message to IoTHub 
-     * message. Loop through the managed devices and find the 
-     * converter. 
+     * message. Find the device session by the deviceId of the
+     * configuration and let it find the converter.
      *
      * @param amqpsMessage the Proton message to convert.
      * @param deviceClientConfig the device client configuration for
@@ -520,13 +586,14 @@ public class AmqpsSessionManager
     {
         AmqpsConvertFromProtonReturnValue amqpsConvertFromProtonReturnValue = null;
 
-        for (int i = 0; i < this.amqpsDeviceSessionList.size(); i++)
+        if (deviceClientConfig != null)
         {
             // Codes_SRS_AMQPSESSIONMANAGER_12_041: [The function shall call all device session's convertFromProton, and if any of them not null return with the value.]
-            amqpsConvertFromProtonReturnValue = this.amqpsDeviceSessionList.get(i).convertFromProton(amqpsMessage, deviceClientConfig);
-            if (amqpsConvertFromProtonReturnValue != null)
+            // Codes_SRS_AMQPSESSIONMANAGER_41_012: [The function shall return the convertFromProton of the device session of the deviceId of the configuration, or null if there is no such device session.]
+            AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = this.amqpsDeviceSessionsByDeviceId.get(deviceClientConfig.getDeviceId());
+            if (amqpsSessionDeviceOperation != null)
             {
-                break;
+                amqpsConvertFromProtonReturnValue = amqpsSessionDeviceOperation.convertFromProton(amqpsMessage, deviceClientConfig);
             }
         }
 
@@ -538,7 +605,14 @@ public class AmqpsSessionManager
      */
     private void shutDownScheduler()
     {
-        if (this.taskSchedulerCBSSend != null)
+        if (this.cbsAuthSendTaskFuture != null)
+        {
+            this.cbsAuthSendTaskFuture.cancel(false);
+            this.cbsAuthSendTaskFuture = null;
+        }
+
+        // Codes_SRS_AMQPSESSIONMANAGER_41_002: [The function shall not shut down a shared transport executor.]
+        if (this.taskSchedulerCBSSend != null && !this.isTaskSchedulerCBSSendShared)
         {
             this.taskSchedulerCBSSend.shutdown(); // Disable new tasks from being submitted
             try
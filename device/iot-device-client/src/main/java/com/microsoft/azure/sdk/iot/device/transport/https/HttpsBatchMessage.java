@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException
 
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,8 +35,21 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     private static final Charset BATCH_CHARSET = StandardCharsets.UTF_8;
 
-    /** The current batched message body. */
-    private String batchBody;
+    private static final byte[] JSON_BODY_FIELD = "{\"body\":\"".getBytes(BATCH_CHARSET);
+    private static final byte[] JSON_BASE64_ENCODED_FIELD = "\",\"base64Encoded\":true".getBytes(BATCH_CHARSET);
+    private static final byte[] JSON_PROPERTIES_FIELD = ",\"properties\":{".getBytes(BATCH_CHARSET);
+    private static final byte[] JSON_NAME_VALUE_SEPARATOR = "\":\"".getBytes(BATCH_CHARSET);
+
+    private static final int INITIAL_BUFFER_SIZE_BYTES = 1024;
+
+    /**
+     * The current batched message body, without the closing bracket of the JSON array. Messages are written straight
+     * into this buffer, which grows geometrically, so building a batch of N messages takes time linear in its size.
+     */
+    private byte[] batchBody;
+
+    /** The number of bytes of the batch body in use. */
+    private int batchBodySize;
 
     /** The current number of messages in the batch. */
     private int numMsgs;
@@ -44,7 +58,9 @@ public final class HttpsBatchMessage implements HttpsMessage
     public HttpsBatchMessage()
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_001: [The constructor shall initialize the batch message with the body as an empty JSON array.]
-        this.batchBody = "[]";
+        this.batchBody = new byte[INITIAL_BUFFER_SIZE_BYTES];
+        this.batchBody[0] = '[';
+        this.batchBodySize = 1;
         this.numMsgs = 0;
     }
 
@@ -59,22 +75,66 @@ public final class HttpsBatchMessage implements HttpsMessage
      */
     public void addMessage(HttpsSingleMessage msg) throws IotHubSizeExceededException
     {
-        String jsonMsg = msgToJson(msg);
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
-        String newBatchBody = addJsonObjToArray(jsonMsg, this.batchBody);
+        byte[] msgBody = msg.getBody();
+        int encodedBodySize = Base64.encodedLength(msgBody.length);
+        int previousBatchBodySize = this.batchBodySize;
 
         // Codes_SRS_HTTPSBATCHMESSAGE_11_008: [If adding the message causes the batched message to exceed 256 kb in size, the function shall throw a IotHubSizeExceededException.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
-        byte[] newBatchBodyBytes = newBatchBody.getBytes(BATCH_CHARSET);
+        // The encoded body alone already decides most rejections, so they are caught before anything is written.
+        throwIfTooLarge(previousBatchBodySize + encodedBodySize + 1);
 
-        if (newBatchBodyBytes.length > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+        if (this.numMsgs > 0)
         {
-            String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.",
-                    newBatchBodyBytes.length, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
-            throw new IotHubSizeExceededException(errMsg);
+            this.write((byte) ',');
+        }
+
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
+        this.write(JSON_BODY_FIELD);
+        this.ensureCapacity(encodedBodySize);
+        this.batchBodySize += Base64.encodeBase64Local(msgBody, this.batchBody, this.batchBodySize);
+
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to true and always encode the body for a batch message.]
+        this.write(JSON_BASE64_ENCODED_FIELD);
+
+        // Codes_SRS_HTTPSBATCHMESSAGE_11_005: [The JSON object shall have the field "properties" set to a JSON object which has the field "content-type" set to the content type of the raw message.]
+        Map<String, String> allProperties = new HashMap<>(msg.getSystemProperties());
+        for (MessageProperty property : msg.getProperties())
+        {
+            allProperties.put(property.getName(), property.getValue());
+        }
+
+        if (!allProperties.isEmpty())
+        {
+            this.write(JSON_PROPERTIES_FIELD);
+            boolean isFirstProperty = true;
+            for (Map.Entry<String, String> property : allProperties.entrySet())
+            {
+                if (!isFirstProperty)
+                {
+                    this.write((byte) ',');
+                }
+
+                this.writeProperty(property.getKey(), property.getValue());
+                isFirstProperty = false;
+            }
+
+            this.write((byte) '}');
+        }
+
+        this.write((byte) '}');
+
+        try
+        {
+            throwIfTooLarge(this.batchBodySize + 1);
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            this.batchBodySize = previousBatchBodySize;
+            throw e;
         }
 
-        this.batchBody = newBatchBody;
         this.numMsgs++;
     }
 
@@ -87,7 +147,9 @@ public final class HttpsBatchMessage implements HttpsMessage
     {
         // Codes_SRS_HTTPSBATCHMESSAGE_11_006: [The function shall return the current batch message body.]
         // Codes_SRS_HTTPSBATCHMESSAGE_11_007: [The batch message body shall be encoded using UTF-8.]
-        return this.batchBody.getBytes(BATCH_CHARSET);
+        byte[] body = Arrays.copyOf(this.batchBody, this.batchBodySize + 1);
+        body[this.batchBodySize] = ']';
+        return body;
     }
 
     /**
@@ -136,72 +198,54 @@ public final class HttpsBatchMessage implements HttpsMessage
     }
 
     /**
-     * Converts a service-bound message to a JSON object with the correct
-     * format.
+     * Writes a message property as a field of the "properties" JSON object.
      *
-     * @param msg the message to be converted to a corresponding JSON object.
-     *
-     * @return the JSON string representation of the message.
+     * @param name the property name.
+     * @param value the property value.
      */
-    private static String msgToJson(HttpsSingleMessage msg)
+    private void writeProperty(String name, String value)
     {
-        StringBuilder jsonMsg = new StringBuilder("{");
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_003: [The JSON object shall have the field "body" set to the raw message encoded in Base64.]
-        jsonMsg.append("\"body\":");
-        jsonMsg.append("\"").append(Base64.encodeBase64StringLocal(msg.getBody())).append("\",");
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_004: [The JSON object shall have the field "base64Encoded" set to true and always encode the body for a batch message.]
-        jsonMsg.append("\"base64Encoded\":");
-        jsonMsg.append(true);
-        // Codes_SRS_HTTPSBATCHMESSAGE_11_005: [The JSON object shall have the field "properties" set to a JSON object which has the field "content-type" set to the content type of the raw message.]
-        MessageProperty[] properties = msg.getProperties();
-        Map<String, String> allProperties = new HashMap<>(msg.getSystemProperties());
-        for (MessageProperty p : properties)
-        {
-            allProperties.put(p.getName(), p.getValue());
-        }
-
-        int numProperties = allProperties.size();
-        if (numProperties > 0)
-        {
-            jsonMsg.append(",");
-            jsonMsg.append("\"properties\":");
-            jsonMsg.append("{");
-            for (String key : allProperties.keySet())
-            {
-                jsonMsg.append("\"").append(key).append("\":");
-                jsonMsg.append("\"").append(allProperties.get(key)).append("\",");
-            }
-
-            //remove last trailing comma
-            jsonMsg.deleteCharAt(jsonMsg.length()-1);
-
-            jsonMsg.append("}");
-        }
+        this.write((byte) '"');
+        this.write(name.getBytes(BATCH_CHARSET));
+        this.write(JSON_NAME_VALUE_SEPARATOR);
+        this.write(value.getBytes(BATCH_CHARSET));
+        this.write((byte) '"');
+    }
 
-        jsonMsg.append("}");
+    private void write(byte value)
+    {
+        this.ensureCapacity(1);
+        this.batchBody[this.batchBodySize++] = value;
+    }
 
-        return jsonMsg.toString();
+    private void write(byte[] values)
+    {
+        this.ensureCapacity(values.length);
+        System.arraycopy(values, 0, this.batchBody, this.batchBodySize, values.length);
+        this.batchBodySize += values.length;
     }
 
     /**
-     * Adds a JSON object to a JSON array.
-     *
-     * @param jsonObj the object to be added to the JSON array.
-     * @param jsonArray the JSON array.
+     * Grows the batch body buffer, if needed, so that it fits the provided number of additional bytes.
      *
-     * @return the JSON string representation of the JSON array with the object
-     * added.
+     * @param additionalBytes the number of bytes about to be written.
      */
-    private static String addJsonObjToArray(String jsonObj, String jsonArray)
+    private void ensureCapacity(int additionalBytes)
     {
-        if (jsonArray.equals("[]"))
+        int requiredCapacity = this.batchBodySize + additionalBytes;
+        if (requiredCapacity > this.batchBody.length)
         {
-            return "[" + jsonObj + "]";
+            this.batchBody = Arrays.copyOf(this.batchBody, Math.max(requiredCapacity, Math.min(this.batchBody.length * 2, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES + 1)));
         }
+    }
 
-        // removes the closing brace of the JSON array.
-        String openJsonArray = jsonArray.substring(0, jsonArray.length() - 1);
-
-        return openJsonArray + "," + jsonObj + "]";
+    private static void throwIfTooLarge(int batchBodySize) throws IotHubSizeExceededException
+    {
+        if (batchBodySize > SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)
+        {
+            String errMsg = String.format("Service-bound message size (%d bytes) cannot exceed %d bytes.",
+                    batchBodySize, SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES);
+            throw new IotHubSizeExceededException(errMsg);
+        }
     }
 }
@@ -3,6 +3,7 @@
 
 package com.microsoft.azure.sdk.iot.device.transport.https;
 
+import com.microsoft.azure.sdk.iot.deps.transport.http.HttpResponseBodyReader;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -12,7 +13,6 @@ import java.io.InputStream;
 import java.net.NoRouteToHostException;
 import java.net.URL;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -215,7 +215,7 @@ public class HttpsConnection
         {
             // Codes_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
             InputStream inputStream = this.connection.getInputStream();
-            byte[] input = readInputStream(inputStream);
+            byte[] input = HttpResponseBodyReader.readAll(inputStream, this.connection.getContentLength());
             // Codes_SRS_HTTPSCONNECTION_11_019: [The function shall close the input stream after it has been completely read.]
             inputStream.close();
 
@@ -248,7 +248,7 @@ public class HttpsConnection
             // if there is no error reason, getErrorStream() returns null.
             if (errorStream != null)
             {
-                error = readInputStream(errorStream);
+                error = HttpResponseBodyReader.readAll(errorStream, this.connection.getContentLength());
                 // Codes_SRS_HTTPSCONNECTION_11_020: [The function shall close the error stream after it has been completely read.]
                 errorStream.close();
             }
@@ -297,43 +297,6 @@ public class HttpsConnection
         return this.connection.getHeaderFields();
     }
 
-    /**
-     * Reads the input stream until the stream is empty.
-     *
-     * @param stream the input stream.
-     *
-     * @return the content of the input stream.
-     *
-     * @throws TransportException if the input stream could not be read from.
-     */
-    private static byte[] readInputStream(InputStream stream) throws TransportException
-    {
-        try
-        {
-            ArrayList<Byte> byteBuffer = new ArrayList<>();
-            int nextByte = -1;
-            // read(byte[]) reads the byte into the buffer and returns the number
-            // of bytes read, or -1 if the end of the stream has been reached.
-            while ((nextByte = stream.read()) > -1)
-            {
-                byteBuffer.add((byte) nextByte);
-            }
-
-            int bufferSize = byteBuffer.size();
-            byte[] byteArray = new byte[bufferSize];
-            for (int i = 0; i < bufferSize; ++i)
-            {
-                byteArray[i] = byteBuffer.get(i);
-            }
-
-            return byteArray;
-        }
-        catch (IOException e)
-        {
-            throw HttpsConnection.buildTransportException(e);
-        }
-    }
-
     void setSSLContext(SSLContext sslContext) throws IllegalArgumentException
     {
         if (sslContext == null)
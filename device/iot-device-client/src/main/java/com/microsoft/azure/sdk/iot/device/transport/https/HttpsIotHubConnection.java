@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
@@ -44,9 +45,11 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
     /**
      * Message e-tag is obtained when the device receives a
      * message and used when sending a message result back to
-     * the IoT Hub.
+     * the IoT Hub. Only accessed under HTTPS_CONNECTION_LOCK, since
+     * messages may be acknowledged on another thread than the one
+     * that received them.
      */
-    private Map<Message, String> messageToETagMap = new HashMap<>();
+    private final Map<Message, String> messageToETagMap = new HashMap<>();
 
     /**
      * Constructs an instance from the given {@link DeviceClientConfig}
@@ -132,6 +135,57 @@ public class HttpsIotHubConnection implements IotHubTransportConnection
         }
     }
 
+    /**
+     * Sends a batch of event messages in a single request and notifies the listener of the result for each of them.
+     *
+     * @param batchMessage the batch built from the provided messages.
+     * @param messages the messages in the batch, in the order they were added to it.
+     *
+     * @return the status code from sending the batch.
+     *
+     * @throws TransportException if the IoT Hub could not be reached.
+     * @throws IllegalArgumentException if the batch is null, or if the messages are null or empty.
+     */
+    public IotHubStatusCode sendMessages(HttpsBatchMessage batchMessage, List<Message> messages) throws TransportException
+    {
+        if (batchMessage == null || messages == null || messages.isEmpty())
+        {
+            //Codes_SRS_HTTPSIOTHUBCONNECTION_41_001: [If the provided batch is null, or the provided messages are null or empty, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Batch and messages cannot be null or empty");
+        }
+
+        synchronized (HTTPS_CONNECTION_LOCK)
+        {
+            //Codes_SRS_HTTPSIOTHUBCONNECTION_41_002: [The function shall send a POST request to the URL 'https://[iotHubHostname]/devices/[deviceId]/messages/events?api-version=2016-02-03' with the batch body.]
+            IotHubEventUri iotHubEventUri = new IotHubEventUri(this.config.getIotHubHostname(), this.config.getDeviceId());
+            URL eventUrl = this.buildUrlFromString(HTTPS_HEAD_TAG + iotHubEventUri.toString());
+            HttpsRequest request = new HttpsRequest(eventUrl, HttpsMethod.POST, batchMessage.getBody(), this.config.getProductInfo().getUserAgentString());
+
+            //Codes_SRS_HTTPSIOTHUBCONNECTION_41_003: [The function shall set the header field 'iothub-to' to be '/devices/[deviceId]/messages/events' and the header field 'content-type' to be the batch content type.]
+            request.setHeaderField(HTTPS_PROPERTY_IOTHUB_TO_TAG, iotHubEventUri.getPath())
+                    .setHeaderField(HTTPS_PROPERTY_CONTENT_TYPE_TAG, batchMessage.getContentType());
+
+            HttpsResponse response = this.sendRequest(request);
+
+            IotHubStatusCode status = IotHubStatusCode.getIotHubStatusCode(response.getStatus());
+            for (Message message : messages)
+            {
+                if (status == IotHubStatusCode.OK || status == IotHubStatusCode.OK_EMPTY)
+                {
+                    //Codes_SRS_HTTPSIOTHUBCONNECTION_41_004: [If the response from the service is OK or OK_EMPTY, this function shall notify its listener that each message was sent with no exception.]
+                    this.listener.onMessageSent(message, null);
+                }
+                else
+                {
+                    //Codes_SRS_HTTPSIOTHUBCONNECTION_41_005: [If the response from the service is not OK or OK_EMPTY, this function shall notify its listener that each message was sent with the mapped IotHubServiceException.]
+                    this.listener.onMessageSent(message, IotHubStatusCode.getConnectionStatusException(status, ""));
+                }
+            }
+
+            return status;
+        }
+    }
+
     /**
      * Sends an generic https message.
      *
@@ -0,0 +1,196 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.CustomLogger;
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a device polls the IoT Hub for cloud to device messages over HTTPS, in place of a fixed receive period.
+ *
+ * <p>Once a poll returns a message, the following messages are requested back to back, and the next poll happens on the
+ * next run of the receive task. Every poll that returns no message doubles the interval until the next poll, from the
+ * minimum interval up to the maximum interval, so that an idle device sends few requests while a busy device receives
+ * its messages with little delay.</p>
+ *
+ * <p>The poller is only used by the receive task. The statistics can be read from any thread.</p>
+ */
+public final class HttpsReceivePoller
+{
+    // the messages requested back to back in one poll, so that the locks of the received messages do not expire
+    // before they are acknowledged
+    private static final int MAX_MESSAGES_PER_POLL = 10;
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+
+    private volatile long currentIntervalMillis;
+    private long nextPollNanos;
+    private boolean isPollScheduled;
+
+    private final AtomicLong requestCount = new AtomicLong(0);
+    private final AtomicLong receivedMessageCount = new AtomicLong(0);
+    private final AtomicLong totalRequestNanos = new AtomicLong(0);
+    private final AtomicLong maxRequestNanos = new AtomicLong(0);
+
+    private final CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Create a poller.
+     *
+     * @param minIntervalMillis the interval between polls once a poll returned a message, in milliseconds.
+     * @param maxIntervalMillis the longest interval between polls, in milliseconds.
+     * @throws IllegalArgumentException if minIntervalMillis is less than 1, or if maxIntervalMillis is less than
+     * minIntervalMillis.
+     */
+    public HttpsReceivePoller(long minIntervalMillis, long maxIntervalMillis) throws IllegalArgumentException
+    {
+        if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis)
+        {
+            // Codes_SRS_HTTPSRECEIVEPOLLER_41_001: [If minIntervalMillis is less than 1, or if maxIntervalMillis is less than minIntervalMillis, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("The receive intervals must satisfy 1 <= minIntervalMillis <= maxIntervalMillis.");
+        }
+
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_002: [The constructor shall start with the minimum interval, and with a poll due on the first call of poll.]
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.currentIntervalMillis = minIntervalMillis;
+    }
+
+    /**
+     * Polls the IoT Hub for messages if the next poll is due, and adds the received messages to the provided queue.
+     *
+     * @param connection the connection to receive the messages from.
+     * @param receivedMessagesQueue the queue to add the received messages to.
+     * @return the number of received messages.
+     * @throws TransportException if the IoT Hub could not be reached.
+     */
+    public int poll(HttpsIotHubConnection connection, Queue<IotHubTransportMessage> receivedMessagesQueue) throws TransportException
+    {
+        if (this.isPollScheduled && System.nanoTime() - this.nextPollNanos < 0)
+        {
+            // Codes_SRS_HTTPSRECEIVEPOLLER_41_003: [If the next poll is not due, the function shall not send a request and shall return 0.]
+            return 0;
+        }
+
+        int receivedMessages = 0;
+        while (receivedMessages < MAX_MESSAGES_PER_POLL)
+        {
+            // Codes_SRS_HTTPSRECEIVEPOLLER_41_004: [The function shall receive messages from the connection back to back, up to MAX_MESSAGES_PER_POLL, until the connection returns no message, and add them to the queue.]
+            IotHubTransportMessage message = this.receiveMessage(connection);
+            if (message == null)
+            {
+                break;
+            }
+
+            receivedMessagesQueue.add(message);
+            receivedMessages++;
+        }
+
+        if (receivedMessages > 0)
+        {
+            // Codes_SRS_HTTPSRECEIVEPOLLER_41_005: [If a message was received, the function shall reset the interval to the minimum interval and make the next poll due on the next call.]
+            this.currentIntervalMillis = this.minIntervalMillis;
+            this.isPollScheduled = false;
+            this.receivedMessageCount.addAndGet(receivedMessages);
+        }
+        else
+        {
+            // Codes_SRS_HTTPSRECEIVEPOLLER_41_006: [If no message was received, the function shall make the next poll due after the current interval, and double the interval up to the maximum interval.]
+            this.nextPollNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.currentIntervalMillis);
+            this.isPollScheduled = true;
+            this.currentIntervalMillis = Math.min(this.currentIntervalMillis * 2, this.maxIntervalMillis);
+
+            if (logger.isTraceEnabled())
+            {
+                logger.LogTrace("No message received over HTTPS, next poll in %s milliseconds, method name is %s ",
+                        TimeUnit.NANOSECONDS.toMillis(this.nextPollNanos - System.nanoTime()), logger.getMethodName());
+            }
+        }
+
+        return receivedMessages;
+    }
+
+    /**
+     * Getter for the number of receive requests sent to the IoT Hub.
+     * @return the number of receive requests, including the failed ones.
+     */
+    public long getRequestCount()
+    {
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_007: [The function shall return the number of receive requests sent.]
+        return this.requestCount.get();
+    }
+
+    /**
+     * Getter for the number of messages received from the IoT Hub.
+     * @return the number of received messages.
+     */
+    public long getReceivedMessageCount()
+    {
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_008: [The function shall return the number of received messages.]
+        return this.receivedMessageCount.get();
+    }
+
+    /**
+     * Getter for the average time a receive request took.
+     * @return the average request latency in milliseconds, or 0 if no request was sent.
+     */
+    public double getAverageRequestLatencyMillis()
+    {
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_009: [The function shall return the average request latency in milliseconds, or 0 if no request was sent.]
+        long requests = this.requestCount.get();
+        if (requests == 0)
+        {
+            return 0;
+        }
+
+        return this.totalRequestNanos.get() / 1e6 / requests;
+    }
+
+    /**
+     * Getter for the longest time a receive request took.
+     * @return the longest request latency in milliseconds.
+     */
+    public double getMaxRequestLatencyMillis()
+    {
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_010: [The function shall return the longest request latency in milliseconds.]
+        return this.maxRequestNanos.get() / 1e6;
+    }
+
+    /**
+     * Getter for the interval the poller waits after the next poll that returns no message.
+     * @return the current interval in milliseconds.
+     */
+    public long getCurrentIntervalMillis()
+    {
+        // Codes_SRS_HTTPSRECEIVEPOLLER_41_011: [The function shall return the current interval in milliseconds.]
+        return this.currentIntervalMillis;
+    }
+
+    private IotHubTransportMessage receiveMessage(HttpsIotHubConnection connection) throws TransportException
+    {
+        long startNanos = System.nanoTime();
+        try
+        {
+            return connection.receiveMessage();
+        }
+        finally
+        {
+            long requestNanos = System.nanoTime() - startNanos;
+            this.requestCount.incrementAndGet();
+            this.totalRequestNanos.addAndGet(requestNanos);
+
+            long maxNanos = this.maxRequestNanos.get();
+            while (requestNanos > maxNanos && !this.maxRequestNanos.compareAndSet(maxNanos, requestNanos))
+            {
+                maxNanos = this.maxRequestNanos.get();
+            }
+        }
+    }
+}
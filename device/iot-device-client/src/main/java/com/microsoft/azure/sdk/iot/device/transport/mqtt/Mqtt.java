@@ -16,8 +16,6 @@ import org.eclipse.paho.client.mqttv3.*;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 abstract public class Mqtt implements MqttCallback
@@ -30,8 +28,6 @@ abstract public class Mqtt implements MqttCallback
     ConcurrentLinkedQueue<Pair<String, byte[]>> allReceivedMessages;
     Object mqttLock;
 
-    private static Map<Integer, Message> unacknowledgedSentMessages = new ConcurrentHashMap<>();
-
     // SAS token expiration check on retry
     private boolean userSpecifiedSASTokenExpiredOnRetry = false;
 
@@ -154,78 +150,112 @@ abstract public class Mqtt implements MqttCallback
      */
     protected void publish(String publishTopic, Message message) throws TransportException
     {
-        synchronized (this.mqttLock)
+        if (this.mqttConnection.getMqttAsyncClient() == null)
         {
-            try
-            {
-                if (this.mqttConnection.getMqttAsyncClient() == null)
-                {
-                    TransportException transportException = new TransportException("Need to open first!");
-                    transportException.setRetryable(true);
-                    throw transportException;
-                }
+            TransportException transportException = new TransportException("Need to open first!");
+            transportException.setRetryable(true);
+            throw transportException;
+        }
 
-                if (this.userSpecifiedSASTokenExpiredOnRetry)
-                {
-                    //Codes_SRS_Mqtt_99_049: [If the user supplied SAS token has expired, the function shall throw a TransportException.]
-                    throw new TransportException("Cannot publish when user supplied SAS token has expired");
-                }
+        if (this.userSpecifiedSASTokenExpiredOnRetry)
+        {
+            //Codes_SRS_Mqtt_99_049: [If the user supplied SAS token has expired, the function shall throw a TransportException.]
+            throw new TransportException("Cannot publish when user supplied SAS token has expired");
+        }
 
-                if (!this.mqttConnection.getMqttAsyncClient().isConnected())
+        if (!this.mqttConnection.getMqttAsyncClient().isConnected())
+        {
+            //Codes_SRS_Mqtt_25_012: [If the MQTT connection is closed, the function shall throw a TransportException.]
+            TransportException transportException = new TransportException("Cannot publish when mqtt client is disconnected");
+            transportException.setRetryable(true);
+            throw transportException;
+        }
+
+        if (message == null || publishTopic == null || publishTopic.length() == 0 || message.getBytes() == null)
+        {
+            //Codes_SRS_Mqtt_25_013: [If the either publishTopic is null or empty or if payload is null, the function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Cannot publish on null or empty publish topic");
+        }
+
+        byte[] payload = message.getBytes();
+
+        // Wait for room in the in flight window without holding the mqtt lock, so that other publishers, subscribes
+        // and receives are not held up behind a full window
+        this.acquireInFlightSlot(publishTopic);
+
+        boolean published = false;
+        try
+        {
+            synchronized (this.mqttLock)
+            {
+                if (this.mqttConnection.getMqttAsyncClient() == null || !this.mqttConnection.getMqttAsyncClient().isConnected())
                 {
                     //Codes_SRS_Mqtt_25_012: [If the MQTT connection is closed, the function shall throw a TransportException.]
-                    TransportException transportException = new TransportException("Cannot publish when mqtt client is disconnected");
+                    TransportException transportException = new TransportException("Connection was lost while waiting for mqtt deliveries to finish");
                     transportException.setRetryable(true);
                     throw transportException;
                 }
 
-                if (message == null || publishTopic == null || publishTopic.length() == 0 || message.getBytes() == null)
-                {
-                    //Codes_SRS_Mqtt_25_013: [If the either publishTopic is null or empty or if payload is null, the function shall throw an IllegalArgumentException.]
-                    throw new IllegalArgumentException("Cannot publish on null or empty publish topic");
-                }
+                MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
 
-                byte[] payload = message.getBytes();
+                mqttMessage.setQos(MqttConnection.QOS);
 
-                while (this.mqttConnection.getMqttAsyncClient().getPendingDeliveryTokens().length >= MqttConnection.MAX_IN_FLIGHT_COUNT)
+                // The delivery can complete on the paho callback thread before publish returns, so the message is
+                // saved while holding the lock that deliveryComplete takes to remove it
+                MqttPendingDeliveries pendingDeliveries = this.mqttConnection.getPendingDeliveries();
+                synchronized (pendingDeliveries)
                 {
-                    //Codes_SRS_Mqtt_25_048: [publish shall check for pending publish tokens by calling getPendingDeliveryTokens. And if there are pending tokens publish shall sleep until the number of pending tokens are less than 10 as per paho limitations]
-                    Thread.sleep(10);
-
-                    if (this.mqttConnection.getMqttAsyncClient() == null)
-                    {
-                        TransportException transportException = new TransportException("Connection was lost while waiting for mqtt deliveries to finish");
-                        transportException.setRetryable(true);
-                        throw transportException;
-                    }
+                    //Codes_SRS_Mqtt_25_014: [The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.]
+                    IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, mqttMessage);
 
-                    if (!this.mqttConnection.getMqttAsyncClient().isConnected())
-                    {
-                        //Codes_SRS_Mqtt_25_012: [If the MQTT connection is closed, the function shall throw a ProtocolException.]
-                        TransportException transportException = new TransportException("Cannot publish when mqtt client is holding 10 tokens and is disconnected");
-                        transportException.setRetryable(true);
-                        throw transportException;
-                    }
+                    //Codes_SRS_Mqtt_41_004: [The function shall save the message in the connection's pending deliveries under the packet id of the publish.]
+                    pendingDeliveries.put(publishToken.getMessageId(), message);
                 }
-
-                MqttMessage mqttMessage = (payload.length == 0) ? new MqttMessage() : new MqttMessage(payload);
-
-                mqttMessage.setQos(MqttConnection.QOS);
-
-                //Codes_SRS_Mqtt_25_014: [The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.]
-                IMqttDeliveryToken publishToken = this.mqttConnection.getMqttAsyncClient().publish(publishTopic, mqttMessage);
-                this.unacknowledgedSentMessages.put(publishToken.getMessageId(), message);
+                published = true;
             }
-            catch (MqttException e)
+        }
+        catch (MqttException e)
+        {
+            //Codes_SRS_Mqtt_25_047: [If the Mqtt Client Async throws MqttException, the function shall throw a ProtocolException with the message.]
+            throw PahoExceptionTranslator.convertToMqttException(e, "Unable to publish message on topic : " + publishTopic);
+        }
+        finally
+        {
+            if (!published)
             {
-                //Codes_SRS_Mqtt_25_047: [If the Mqtt Client Async throws MqttException, the function shall throw a ProtocolException with the message.]
-                throw PahoExceptionTranslator.convertToMqttException(e, "Unable to publish message on topic : " + publishTopic);
+                //Codes_SRS_Mqtt_41_003: [If the message could not be published, the function shall release its slot in the in flight window.]
+                this.mqttConnection.releaseInFlightSlot();
             }
-            catch (InterruptedException e)
+        }
+    }
+
+    /**
+     * Takes a slot in the connection's in flight window, waiting for deliveries to complete while the window is full.
+     *
+     * @param publishTopic the topic the slot is taken for, used in error messages.
+     * @throws TransportException if the connection is lost while waiting or if the thread is interrupted
+     */
+    private void acquireInFlightSlot(String publishTopic) throws TransportException
+    {
+        try
+        {
+            //Codes_SRS_Mqtt_41_001: [If the connection's in flight window is full, publish shall wait until a delivery completes and releases a slot.]
+            while (!this.mqttConnection.acquireInFlightSlot(MqttConnection.MAX_WAIT_TIME))
             {
-                throw new TransportException("Interrupted, Unable to publish message on topic : " + publishTopic, e);
+                if (this.mqttConnection.getMqttAsyncClient() == null || !this.mqttConnection.getMqttAsyncClient().isConnected())
+                {
+                    //Codes_SRS_Mqtt_25_012: [If the MQTT connection is closed, the function shall throw a TransportException.]
+                    TransportException transportException = new TransportException("Cannot publish when the mqtt in flight window is full and the client is disconnected");
+                    transportException.setRetryable(true);
+                    throw transportException;
+                }
             }
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new TransportException("Interrupted, Unable to publish message on topic : " + publishTopic, e);
+        }
     }
 
     /**
@@ -330,6 +360,20 @@ abstract public class Mqtt implements MqttCallback
     @Override
     public void connectionLost(Throwable throwable)
     {
+        //Codes_SRS_Mqtt_41_007: [This function shall remove all messages from the connection's pending deliveries, release
+        // their in flight window slots, and notify the listener that each of them failed with a retryable TransportException
+        // before notifying it that the connection was lost.]
+        for (Message pendingMessage : this.mqttConnection.getPendingDeliveries().removeAll())
+        {
+            this.mqttConnection.releaseInFlightSlot();
+            if (this.listener != null)
+            {
+                TransportException transportException = new TransportException("Mqtt connection lost before the message was acknowledged", throwable);
+                transportException.setRetryable(true);
+                this.listener.onMessageSent(pendingMessage, transportException);
+            }
+        }
+
         if (this.listener != null)
         {
             if (throwable instanceof MqttException)
@@ -372,13 +416,21 @@ abstract public class Mqtt implements MqttCallback
     @Override
     public void deliveryComplete(IMqttDeliveryToken iMqttDeliveryToken)
     {
+        //Codes_SRS_Mqtt_41_005: [This function shall remove the delivered message from the connection's pending deliveries.]
+        Message deliveredMessage = this.mqttConnection.getPendingDeliveries().remove(iMqttDeliveryToken.getMessageId());
+        if (deliveredMessage == null)
+        {
+            //Codes_SRS_Mqtt_41_006: [If the delivered message is not pending on this connection, this function shall do nothing.]
+            return;
+        }
+
+        //Codes_SRS_Mqtt_41_002: [This function shall release a slot in the connection's in flight window.]
+        this.mqttConnection.releaseInFlightSlot();
+
         if (this.listener != null)
         {
-            if (this.unacknowledgedSentMessages.containsKey(iMqttDeliveryToken.getMessageId()))
-            {
-                //Codes_SRS_Mqtt_34_042: [If this object has a saved listener, that listener shall be notified of the successfully delivered message.]
-                this.listener.onMessageSent(this.unacknowledgedSentMessages.get(iMqttDeliveryToken.getMessageId()), null);
-            }
+            //Codes_SRS_Mqtt_34_042: [If this object has a saved listener, that listener shall be notified of the successfully delivered message.]
+            this.listener.onMessageSent(deliveredMessage, null);
         }
     }
 
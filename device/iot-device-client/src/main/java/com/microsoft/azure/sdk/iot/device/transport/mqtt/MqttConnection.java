@@ -14,6 +14,7 @@ import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class MqttConnection
 {
@@ -30,8 +31,15 @@ public class MqttConnection
     static final int QOS = 1;
     static final int MAX_WAIT_TIME = 1000;
 
-    // paho mqtt only supports 10 messages in flight at the same time
-    static final int MAX_IN_FLIGHT_COUNT = 10;
+    // paho mqtt allows 10 messages in flight at the same time unless told otherwise, and packet ids are 16 bit
+    static final int DEFAULT_MAX_IN_FLIGHT_COUNT = 10;
+    static final int MAX_IN_FLIGHT_COUNT_LIMIT = 65535;
+
+    // publishes sent but not yet acknowledged by the broker, guarded by inFlightLock
+    private final Object inFlightLock = new Object();
+    private int inFlightCount;
+    private int maxInFlightCount = DEFAULT_MAX_IN_FLIGHT_COUNT;
+    private volatile MqttPendingDeliveries pendingDeliveries = new MqttPendingDeliveries(DEFAULT_MAX_IN_FLIGHT_COUNT);
 
     /**
      * Constructor to create MqttAsync Client with Paho
@@ -44,6 +52,23 @@ public class MqttConnection
      * @throws TransportException when Mqtt async client cannot be instantiated
      */
     MqttConnection(String serverURI, String clientId, String userName, String password, SSLContext iotHubSSLContext) throws TransportException, IllegalArgumentException
+    {
+        this(serverURI, clientId, userName, password, iotHubSSLContext, null);
+    }
+
+    /**
+     * Constructor to create MqttAsync Client with Paho that sends its keep alive pings from the provided scheduler
+     * instead of from a timer thread of its own.
+     * @param serverURI Uri to connect to
+     * @param clientId Client Id to connect to
+     * @param userName Username
+     * @param password password
+     * @param iotHubSSLContext SSLContext for the connection
+     * @param pingScheduler the scheduler shared by the connections of a transport client, or null for a timer thread
+     * @throws IllegalArgumentException is thrown if any of the parameters are null or empty
+     * @throws TransportException when Mqtt async client cannot be instantiated
+     */
+    MqttConnection(String serverURI, String clientId, String userName, String password, SSLContext iotHubSSLContext, ScheduledExecutorService pingScheduler) throws TransportException, IllegalArgumentException
     {
         if (serverURI == null || clientId == null || userName == null || iotHubSSLContext == null)
         {
@@ -60,7 +85,15 @@ public class MqttConnection
         try
         {
             //Codes_SRS_MQTTCONNECTION_25_004: [The constructor shall create an MqttAsync client and update the connection options using the provided serverUri, clientId, userName, password and sslContext.]
-            this.mqttAsyncClient = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence());
+            if (pingScheduler == null)
+            {
+                this.mqttAsyncClient = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence());
+            }
+            else
+            {
+                //Codes_SRS_MQTTCONNECTION_41_011: [If a ping scheduler is provided, the constructor shall create the MqttAsync client with a ping sender that uses that scheduler.]
+                this.mqttAsyncClient = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence(), new ScheduledExecutorPingSender(pingScheduler), null);
+            }
             this.mqttAsyncClient.setManualAcks(true);
             this.connectionOptions = new MqttConnectOptions();
             this.updateConnectionOptions(userName, password, iotHubSSLContext);
@@ -78,6 +111,115 @@ public class MqttConnection
         this.mqttLock = new Object();
     }
 
+    /**
+     * Sets the number of publishes that may be waiting for an acknowledgement from the broker at once. Must be called
+     * before connecting.
+     * @param maxInFlightCount the size of the in flight window
+     * @throws IllegalArgumentException if maxInFlightCount is smaller than 1 or larger than the number of mqtt packet ids
+     */
+    void setMaxInFlightCount(int maxInFlightCount) throws IllegalArgumentException
+    {
+        if (maxInFlightCount < 1 || maxInFlightCount > MAX_IN_FLIGHT_COUNT_LIMIT)
+        {
+            //Codes_SRS_MQTTCONNECTION_41_001: [If the provided maxInFlightCount is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max in flight count must be between 1 and " + MAX_IN_FLIGHT_COUNT_LIMIT);
+        }
+
+        synchronized (this.inFlightLock)
+        {
+            //Codes_SRS_MQTTCONNECTION_41_002: [This function shall save the provided maxInFlightCount and set it as the max inflight of the connection options.]
+            this.maxInFlightCount = maxInFlightCount;
+            this.connectionOptions.setMaxInflight(maxInFlightCount);
+
+            //Codes_SRS_MQTTCONNECTION_41_009: [This function shall size the table of pending deliveries for the provided maxInFlightCount.]
+            this.pendingDeliveries = new MqttPendingDeliveries(maxInFlightCount);
+            this.inFlightLock.notifyAll();
+        }
+    }
+
+    /**
+     * Getter for the size of the in flight window
+     * @return the number of publishes that may be waiting for an acknowledgement at once
+     */
+    int getMaxInFlightCount()
+    {
+        synchronized (this.inFlightLock)
+        {
+            //Codes_SRS_MQTTCONNECTION_41_003: [This function shall return the saved maxInFlightCount.]
+            return this.maxInFlightCount;
+        }
+    }
+
+    /**
+     * Takes a slot in the in flight window, waiting for one to be released if the window is full.
+     * @param timeoutMillis how long to wait for a free slot
+     * @return true if a slot was taken, false if the window was still full after the timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean acquireInFlightSlot(long timeoutMillis) throws InterruptedException
+    {
+        synchronized (this.inFlightLock)
+        {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+            while (this.inFlightCount >= this.maxInFlightCount)
+            {
+                if (remaining <= 0)
+                {
+                    //Codes_SRS_MQTTCONNECTION_41_005: [If the window is still full once the timeout has passed, this function shall return false.]
+                    return false;
+                }
+
+                //Codes_SRS_MQTTCONNECTION_41_004: [If the in flight window is full, this function shall wait until a slot is released or the timeout has passed.]
+                this.inFlightLock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+
+            //Codes_SRS_MQTTCONNECTION_41_006: [If the window has room, this function shall take a slot and return true.]
+            this.inFlightCount++;
+            return true;
+        }
+    }
+
+    /**
+     * Gives back a slot taken with {@link #acquireInFlightSlot(long)}, waking up a publisher waiting for one.
+     */
+    void releaseInFlightSlot()
+    {
+        synchronized (this.inFlightLock)
+        {
+            //Codes_SRS_MQTTCONNECTION_41_007: [This function shall release a slot of the in flight window, if any is taken, and wake up a waiting publisher.]
+            if (this.inFlightCount > 0)
+            {
+                this.inFlightCount--;
+                this.inFlightLock.notify();
+            }
+        }
+    }
+
+    /**
+     * Getter for the messages published on this connection that the broker has not acknowledged yet
+     * @return the pending deliveries of this connection
+     */
+    MqttPendingDeliveries getPendingDeliveries()
+    {
+        //Codes_SRS_MQTTCONNECTION_41_010: [This function shall return the pending deliveries of this connection.]
+        return this.pendingDeliveries;
+    }
+
+    /**
+     * Getter for the number of publishes waiting for an acknowledgement
+     * @return the number of taken slots in the in flight window
+     */
+    int getInFlightCount()
+    {
+        synchronized (this.inFlightLock)
+        {
+            //Codes_SRS_MQTTCONNECTION_41_008: [This function shall return the number of taken slots in the in flight window.]
+            return this.inFlightCount;
+        }
+    }
+
     /**
      * Generates the connection options for the mqtt broker connection.
      *
@@ -17,6 +17,7 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static com.microsoft.azure.sdk.iot.device.MessageType.DEVICE_METHODS;
 import static com.microsoft.azure.sdk.iot.device.MessageType.DEVICE_TWIN;
@@ -27,6 +28,7 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
     private final Object MQTT_CONNECTION_LOCK = new Object();
 
     private final DeviceClientConfig config;
+    private final ScheduledExecutorService pingScheduler;
     private IotHubConnectionStatus state = IotHubConnectionStatus.DISCONNECTED;
 
     private String iotHubUserName;
@@ -65,6 +67,18 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
      * @param config the client configuration.
      */
     public MqttIotHubConnection(DeviceClientConfig config) throws IllegalArgumentException
+    {
+        this(config, null);
+    }
+
+    /**
+     * Constructs an instance from the given {@link DeviceClientConfig} object whose mqtt connection sends its keep
+     * alive pings from the provided scheduler.
+     *
+     * @param config the client configuration.
+     * @param pingScheduler the scheduler shared by the connections of a transport client, or null for a timer thread
+     */
+    MqttIotHubConnection(DeviceClientConfig config, ScheduledExecutorService pingScheduler) throws IllegalArgumentException
     {
         synchronized (MQTT_CONNECTION_LOCK)
         {
@@ -100,6 +114,7 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
 
             // Codes_SRS_MQTTIOTHUBCONNECTION_15_001: [The constructor shall save the configuration.]
             this.config = config;
+            this.pingScheduler = pingScheduler;
             this.deviceMessaging = null;
             this.deviceMethod = null;
             this.deviceTwin = null;
@@ -162,16 +177,19 @@ public class MqttIotHubConnection implements IotHubTransportConnection, MqttMess
                     //Codes_SRS_MQTTIOTHUBCONNECTION_25_018: [The function shall establish an MQTT WS connection with a server uri as wss://<hostName>/$iothub/websocket?iothub-no-client-cert=true if websocket was enabled.]
                     final String wsServerUri = WS_SSL_PREFIX + this.config.getIotHubHostname() + WEBSOCKET_RAW_PATH + WEBSOCKET_QUERY ;
                     mqttConnection = new MqttConnection(wsServerUri,
-                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext);
+                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext, this.pingScheduler);
                 }
                 else
                 {
                     //Codes_SRS_MQTTIOTHUBCONNECTION_25_019: [The function shall establish an MQTT connection with a server uri as ssl://<hostName>:8883 if websocket was not enabled.]
                     final String serverUri = SSL_PREFIX + this.config.getIotHubHostname() + SSL_PORT_SUFFIX;
                     mqttConnection = new MqttConnection(serverUri,
-                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext);
+                            this.config.getDeviceId(), this.iotHubUserName, this.iotHubUserPassword, sslContext, this.pingScheduler);
                 }
 
+                //Codes_SRS_MQTTIOTHUBCONNECTION_41_001: [The function shall size the in flight window of the mqtt connection from the config's max mqtt in flight publishes.]
+                mqttConnection.setMaxInFlightCount(this.config.getMqttMaxInFlightPublishes());
+
                 //Codes_SRS_MQTTIOTHUBCONNECTION_34_030: [This function shall instantiate this object's MqttMessaging object with this object as the listener.]
                 this.deviceMessaging = new MqttMessaging(mqttConnection, this.config.getDeviceId(), this.listener, this, this.connectionId);
                 this.mqttConnection.setMqttCallback(this.deviceMessaging);
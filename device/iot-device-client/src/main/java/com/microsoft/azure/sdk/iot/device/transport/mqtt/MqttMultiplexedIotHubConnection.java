@@ -0,0 +1,581 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenSoftwareAuthenticationProvider;
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubConnectionStatus;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubListener;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportConnection;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
+import com.microsoft.azure.sdk.iot.device.transport.RetryDecision;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Connects the devices of a transport client to the IoT Hub over mqtt. The IoT Hub only accepts one device per mqtt
+ * connection, so this object keeps one {@link MqttIotHubConnection} per device and presents them to the transport as
+ * a single connection. The device connections share the transport's send and receive threads, one SSLContext for the
+ * devices that trust the same certificates, and one scheduler for their keep alive pings.
+ *
+ * <p>A device whose connection could not be opened or was lost is reconnected on its own, following the retry policy
+ * of its config, while the other devices keep sending. Until it is reconnected, its messages fail with a retryable
+ * {@link TransportException}, and it is listed by {@link #getDisconnectedDeviceIds()}.</p>
+ */
+public class MqttMultiplexedIotHubConnection implements IotHubTransportConnection
+{
+    // tls handshakes are slow, so the devices connect a few at a time instead of one after the other
+    private static final int MAX_CONCURRENT_OPENS = 8;
+    private static final int PING_THREAD_COUNT = 1;
+
+    private final Object MQTT_MULTIPLEXED_CONNECTION_LOCK = new Object();
+
+    private volatile IotHubConnectionStatus state = IotHubConnectionStatus.DISCONNECTED;
+    private String connectionId = UUID.randomUUID().toString();
+    private IotHubListener listener;
+
+    private Map<String, MqttIotHubConnection> deviceConnections = new ConcurrentHashMap<>();
+    private MqttIotHubConnection defaultDeviceConnection;
+    private String defaultDeviceId;
+    private Map<String, DeviceClientConfig> deviceConfigs = new ConcurrentHashMap<>();
+    private Map<IotHubTransportMessage, MqttIotHubConnection> receivedMessageConnections = new ConcurrentHashMap<>();
+    private ScheduledExecutorService pingScheduler;
+
+    // devices whose connection is down, with the exception their messages fail with until they are reconnected
+    private Map<String, TransportException> disconnectedDevices = new ConcurrentHashMap<>();
+    private ScheduledExecutorService reconnectScheduler;
+    private Map<String, ScheduledFuture<?>> reconnectFutures = new ConcurrentHashMap<>();
+
+    // the schedulers are owned by the shared transport executor when there is one, and must not be shut down here
+    private boolean isSchedulerShared;
+
+    private CustomLogger logger = new CustomLogger(this.getClass());
+
+    /**
+     * Connects every device in the provided list, each over its own mqtt connection. If the connection is already
+     * open, the function shall do nothing. The devices that could not be connected are reconnected in the background,
+     * as long as at least one device is connected.
+     *
+     * @param deviceClientConfigs the configs of the devices to connect
+     * @throws TransportException if none of the devices could be connected
+     */
+    @Override
+    public void open(Queue<DeviceClientConfig> deviceClientConfigs) throws TransportException
+    {
+        if (deviceClientConfigs == null || deviceClientConfigs.isEmpty())
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_001: [If the provided list of configs is null or empty, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("deviceClientConfigs cannot be null or empty");
+        }
+
+        synchronized (MQTT_MULTIPLEXED_CONNECTION_LOCK)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_002: [If the connection is already open, this function shall do nothing.]
+            if (this.state == IotHubConnectionStatus.CONNECTED)
+            {
+                return;
+            }
+
+            try
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_003: [This function shall share one SSLContext between the sas token authenticated devices that trust the same certificates.]
+                shareSSLContexts(deviceClientConfigs);
+            }
+            catch (IOException e)
+            {
+                throw new TransportException(e);
+            }
+
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_004: [This function shall create one MqttIotHubConnection per config, all sending their keep alive pings from one shared scheduler.]
+            SharedTransportExecutor sharedTransportExecutor = deviceClientConfigs.peek().getSharedTransportExecutor();
+            if (sharedTransportExecutor != null)
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_026: [If the config has a shared transport executor, this function shall send the keep alive pings and schedule the reconnects on its scheduled executor instead of creating schedulers of its own.]
+                this.pingScheduler = sharedTransportExecutor.getScheduledExecutorService();
+                this.reconnectScheduler = this.pingScheduler;
+                this.isSchedulerShared = true;
+            }
+            else
+            {
+                this.pingScheduler = Executors.newScheduledThreadPool(PING_THREAD_COUNT);
+                this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor();
+                this.isSchedulerShared = false;
+            }
+            Map<MqttIotHubConnection, DeviceClientConfig> connectionsToOpen = new LinkedHashMap<>();
+            for (DeviceClientConfig config : deviceClientConfigs)
+            {
+                if (this.deviceConnections.containsKey(config.getDeviceId()))
+                {
+                    //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_020: [If two configs are for the same device, this function shall throw an IllegalArgumentException.]
+                    closeDeviceConnections();
+                    throw new IllegalArgumentException("Device " + config.getDeviceId() + " can only be connected once");
+                }
+
+                MqttIotHubConnection deviceConnection = new MqttIotHubConnection(config, this.pingScheduler);
+                deviceConnection.setListener(new DeviceConnectionListener(config.getDeviceId(), deviceConnection));
+                connectionsToOpen.put(deviceConnection, config);
+                this.deviceConnections.put(config.getDeviceId(), deviceConnection);
+                this.deviceConfigs.put(config.getDeviceId(), config);
+                if (this.defaultDeviceConnection == null)
+                {
+                    this.defaultDeviceConnection = deviceConnection;
+                    this.defaultDeviceId = config.getDeviceId();
+                }
+            }
+
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_005: [This function shall open the device connections, at most MAX_CONCURRENT_OPENS at a time.]
+            Map<String, TransportException> openFailures = openDeviceConnections(connectionsToOpen);
+            if (openFailures.size() == connectionsToOpen.size())
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_006: [If no device connection could be opened, this function shall close all device connections and throw the exception of the first device.]
+                TransportException firstFailure = openFailures.get(this.defaultDeviceId);
+                closeDeviceConnections();
+                throw firstFailure;
+            }
+
+            this.state = IotHubConnectionStatus.CONNECTED;
+
+            for (Map.Entry<String, TransportException> openFailure : openFailures.entrySet())
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_021: [If some device connections could not be opened, this function shall keep the other device connections open and reconnect the failed devices in the background.]
+                logger.LogError("Mqtt connection of device %s could not be opened, method name is %s ", openFailure.getKey(), logger.getMethodName());
+                logger.LogError(openFailure.getValue());
+                this.disconnectedDevices.put(openFailure.getKey(), openFailure.getValue());
+                scheduleReconnect(openFailure.getKey(), 1, openFailure.getValue());
+            }
+        }
+
+        logger.LogInfo("Opened %d multiplexed mqtt device connections, method name is %s ", deviceClientConfigs.size(), logger.getMethodName());
+    }
+
+    /**
+     * Closes the connection of every device. If the connection is already closed, the function shall do nothing.
+     *
+     * @throws TransportException if any of the device connections could not be closed
+     */
+    @Override
+    public void close() throws TransportException
+    {
+        synchronized (MQTT_MULTIPLEXED_CONNECTION_LOCK)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_007: [If the connection is closed, this function shall do nothing.]
+            if (this.state == IotHubConnectionStatus.DISCONNECTED)
+            {
+                return;
+            }
+
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_008: [This function shall close every device connection and the ping scheduler it created, and then rethrow the first TransportException encountered, if any.]
+            this.state = IotHubConnectionStatus.DISCONNECTED;
+            closeDeviceConnections();
+        }
+    }
+
+    @Override
+    public void setListener(IotHubListener listener) throws IllegalArgumentException
+    {
+        if (listener == null)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_009: [If the provided listener object is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_010: [This function shall save the provided listener object.]
+        this.listener = listener;
+    }
+
+    /**
+     * Sends a message over the connection of the device it belongs to.
+     *
+     * @param message the message to send
+     * @return the status code from sending the message
+     * @throws TransportException if the message belongs to a device that is not connected through this object
+     */
+    @Override
+    public IotHubStatusCode sendMessage(Message message) throws TransportException
+    {
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_011: [This function shall send the message over the connection of the device in the message's connection string, or over the first device's connection if the message has no connection string.]
+        return getDeviceConnection(message).sendMessage(message);
+    }
+
+    /**
+     * Sends an acknowledgement for a message over the connection that received it.
+     *
+     * @param message the message to acknowledge
+     * @param result the acknowledgement value to notify the service of
+     * @return true if the acknowledgement was sent successfully, and false otherwise
+     * @throws TransportException if the message was not received through this object, or the ack could not be sent
+     */
+    @Override
+    public boolean sendMessageResult(Message message, IotHubMessageResult result) throws TransportException
+    {
+        MqttIotHubConnection deviceConnection = (message == null) ? null : this.receivedMessageConnections.get(message);
+        if (deviceConnection == null)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_012: [If the provided message was not received through this object, this function shall throw a TransportException.]
+            throw new TransportException(new IllegalArgumentException("Provided message cannot be acknowledged because it was already acknowledged or was never received from service"));
+        }
+
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_013: [This function shall send the acknowledgement over the connection that received the message, and forget the message once the ack was sent.]
+        boolean ackSent = deviceConnection.sendMessageResult(message, result);
+        if (ackSent)
+        {
+            this.receivedMessageConnections.remove(message);
+        }
+
+        return ackSent;
+    }
+
+    @Override
+    public String getConnectionId()
+    {
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_014: [This function shall return the saved connectionId.]
+        return this.connectionId;
+    }
+
+    /**
+     * Getter for the devices whose connection is down, because it could not be opened or was lost.
+     *
+     * @return the ids of the devices that are not connected
+     */
+    public Set<String> getDisconnectedDeviceIds()
+    {
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_022: [This function shall return the ids of the devices whose connection is down.]
+        return Collections.unmodifiableSet(new HashSet<>(this.disconnectedDevices.keySet()));
+    }
+
+    private MqttIotHubConnection getDeviceConnection(Message message) throws TransportException
+    {
+        if (this.state == IotHubConnectionStatus.DISCONNECTED)
+        {
+            throw new IllegalStateException("Cannot send using a closed MQTT connection");
+        }
+
+        String deviceId;
+        MqttIotHubConnection deviceConnection;
+        if (message == null || message.getIotHubConnectionString() == null)
+        {
+            deviceId = this.defaultDeviceId;
+            deviceConnection = this.defaultDeviceConnection;
+        }
+        else
+        {
+            deviceId = message.getIotHubConnectionString().getDeviceId();
+            deviceConnection = this.deviceConnections.get(deviceId);
+            if (deviceConnection == null)
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_015: [If the message belongs to a device that is not connected through this object, this function shall throw a TransportException.]
+                throw new TransportException("No mqtt connection is open for device " + deviceId);
+            }
+        }
+
+        TransportException disconnectedException = (deviceId == null) ? null : this.disconnectedDevices.get(deviceId);
+        if (disconnectedException != null)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_023: [If the connection of the message's device is down, this function shall throw a TransportException that is retryable while the device is being reconnected.]
+            TransportException transportException = new TransportException("The mqtt connection of device " + deviceId + " is down", disconnectedException);
+            transportException.setRetryable(disconnectedException.isRetryable());
+            throw transportException;
+        }
+
+        return deviceConnection;
+    }
+
+    /**
+     * Reconnects one device in the background, after the delay that the retry policy of its config asks for. The
+     * device is given up on if its last exception is not retryable or if the retry policy stops retrying.
+     */
+    private void scheduleReconnect(final String deviceId, final int retryCount, TransportException lastException)
+    {
+        ScheduledExecutorService scheduler = this.reconnectScheduler;
+        DeviceClientConfig config = this.deviceConfigs.get(deviceId);
+        final MqttIotHubConnection deviceConnection = this.deviceConnections.get(deviceId);
+        if (scheduler == null || config == null || deviceConnection == null)
+        {
+            return;
+        }
+
+        RetryDecision retryDecision = lastException.isRetryable()
+                ? config.getRetryPolicy().getRetryDecision(retryCount, lastException)
+                : null;
+        if (retryDecision == null || !retryDecision.shouldRetry())
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_024: [If the exception is not retryable or the retry policy of the device stops retrying, the device shall stay disconnected and its messages shall fail with a non retryable TransportException.]
+            logger.LogError("Giving up reconnecting the mqtt connection of device %s, method name is %s ", deviceId, logger.getMethodName());
+            TransportException terminalException = new TransportException("Gave up reconnecting the mqtt connection of device " + deviceId, lastException);
+            terminalException.setRetryable(false);
+            this.disconnectedDevices.put(deviceId, terminalException);
+            return;
+        }
+
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_025: [A device shall be reconnected by closing and reopening its own connection only, after the delay of the retry policy of its config.]
+        try
+        {
+            this.reconnectFutures.put(deviceId, scheduler.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    reconnectDevice(deviceId, deviceConnection, retryCount);
+                }
+            }, retryDecision.getDuration(), TimeUnit.MILLISECONDS));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // the connection was closed in the meantime
+        }
+    }
+
+    private void reconnectDevice(String deviceId, MqttIotHubConnection deviceConnection, int retryCount)
+    {
+        this.reconnectFutures.remove(deviceId);
+        if (this.state != IotHubConnectionStatus.CONNECTED || this.deviceConnections.get(deviceId) != deviceConnection)
+        {
+            // closed, or closed and opened again with a new connection for the device
+            return;
+        }
+
+        try
+        {
+            deviceConnection.close();
+        }
+        catch (TransportException e)
+        {
+            logger.LogDebug("Closing the lost mqtt connection of device %s failed, method name is %s ", deviceId, logger.getMethodName());
+        }
+
+        try
+        {
+            Queue<DeviceClientConfig> deviceClientConfig = new LinkedList<>();
+            deviceClientConfig.add(this.deviceConfigs.get(deviceId));
+            deviceConnection.open(deviceClientConfig);
+        }
+        catch (TransportException e)
+        {
+            this.disconnectedDevices.put(deviceId, e);
+            scheduleReconnect(deviceId, retryCount + 1, e);
+            return;
+        }
+
+        if (this.state != IotHubConnectionStatus.CONNECTED)
+        {
+            // closed while the device was reconnecting
+            try
+            {
+                deviceConnection.close();
+            }
+            catch (TransportException e)
+            {
+                logger.LogDebug("Closing the reconnected mqtt connection of device %s failed, method name is %s ", deviceId, logger.getMethodName());
+            }
+
+            return;
+        }
+
+        this.disconnectedDevices.remove(deviceId);
+        logger.LogInfo("Reconnected the mqtt connection of device %s, method name is %s ", deviceId, logger.getMethodName());
+    }
+
+    /**
+     * Makes every sas token device use the SSLContext of the first device that trusts the same certificates. x509
+     * devices present their own client certificate, so they keep their own SSLContext.
+     */
+    private static void shareSSLContexts(Queue<DeviceClientConfig> deviceClientConfigs) throws IOException
+    {
+        List<IotHubSasTokenSoftwareAuthenticationProvider> owners = new ArrayList<>();
+        for (DeviceClientConfig config : deviceClientConfigs)
+        {
+            if (config.getAuthenticationType() != DeviceClientConfig.AuthType.SAS_TOKEN
+                    || !(config.getSasTokenAuthentication() instanceof IotHubSasTokenSoftwareAuthenticationProvider))
+            {
+                continue;
+            }
+
+            IotHubSasTokenSoftwareAuthenticationProvider provider = (IotHubSasTokenSoftwareAuthenticationProvider) config.getSasTokenAuthentication();
+            boolean shared = false;
+            for (IotHubSasTokenSoftwareAuthenticationProvider owner : owners)
+            {
+                if (owner.shareSSLContext(provider))
+                {
+                    shared = true;
+                    break;
+                }
+            }
+
+            if (!shared)
+            {
+                owners.add(provider);
+            }
+        }
+    }
+
+    /**
+     * Opens the provided device connections, a few at a time.
+     *
+     * @return the exception of each device whose connection could not be opened, by device id
+     */
+    private static Map<String, TransportException> openDeviceConnections(Map<MqttIotHubConnection, DeviceClientConfig> connectionsToOpen) throws TransportException
+    {
+        Map<String, TransportException> openFailures = new LinkedHashMap<>();
+        ExecutorService openExecutor = Executors.newFixedThreadPool(Math.min(connectionsToOpen.size(), MAX_CONCURRENT_OPENS));
+        try
+        {
+            Map<String, Future<Void>> opens = new LinkedHashMap<>();
+            for (final Map.Entry<MqttIotHubConnection, DeviceClientConfig> connectionToOpen : connectionsToOpen.entrySet())
+            {
+                opens.put(connectionToOpen.getValue().getDeviceId(), openExecutor.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws TransportException
+                    {
+                        Queue<DeviceClientConfig> deviceClientConfig = new LinkedList<>();
+                        deviceClientConfig.add(connectionToOpen.getValue());
+                        connectionToOpen.getKey().open(deviceClientConfig);
+                        return null;
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<Void>> open : opens.entrySet())
+            {
+                try
+                {
+                    open.getValue().get();
+                }
+                catch (ExecutionException e)
+                {
+                    openFailures.put(open.getKey(), e.getCause() instanceof TransportException
+                            ? (TransportException) e.getCause()
+                            : new TransportException(e.getCause()));
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new TransportException("Interrupted while opening the mqtt device connections", e);
+        }
+        finally
+        {
+            openExecutor.shutdownNow();
+        }
+
+        return openFailures;
+    }
+
+    private void closeDeviceConnections() throws TransportException
+    {
+        TransportException firstException = null;
+        for (MqttIotHubConnection deviceConnection : this.deviceConnections.values())
+        {
+            try
+            {
+                deviceConnection.close();
+            }
+            catch (TransportException e)
+            {
+                if (firstException == null)
+                {
+                    firstException = e;
+                }
+            }
+        }
+
+        this.deviceConnections.clear();
+        this.deviceConfigs.clear();
+        this.disconnectedDevices.clear();
+        this.defaultDeviceConnection = null;
+        this.defaultDeviceId = null;
+        this.receivedMessageConnections.clear();
+
+        for (ScheduledFuture<?> reconnectFuture : this.reconnectFutures.values())
+        {
+            reconnectFuture.cancel(false);
+        }
+        this.reconnectFutures.clear();
+
+        //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_027: [This function shall not shut down the schedulers of a shared transport executor.]
+        if (this.reconnectScheduler != null && !this.isSchedulerShared)
+        {
+            this.reconnectScheduler.shutdownNow();
+        }
+        this.reconnectScheduler = null;
+
+        if (this.pingScheduler != null && !this.isSchedulerShared)
+        {
+            this.pingScheduler.shutdownNow();
+        }
+        this.pingScheduler = null;
+
+        if (firstException != null)
+        {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Passes the events of one device connection on to the transport, as events of this connection.
+     */
+    private class DeviceConnectionListener implements IotHubListener
+    {
+        private final String deviceId;
+        private final MqttIotHubConnection deviceConnection;
+
+        DeviceConnectionListener(String deviceId, MqttIotHubConnection deviceConnection)
+        {
+            this.deviceId = deviceId;
+            this.deviceConnection = deviceConnection;
+        }
+
+        @Override
+        public void onMessageSent(Message message, Throwable e)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_016: [When a device connection reports a sent message, the listener shall be notified.]
+            listener.onMessageSent(message, e);
+        }
+
+        @Override
+        public void onMessageReceived(IotHubTransportMessage transportMessage, Throwable e)
+        {
+            if (transportMessage != null)
+            {
+                //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_017: [When a device connection receives a message, this object shall remember which connection received it and notify the listener.]
+                receivedMessageConnections.put(transportMessage, this.deviceConnection);
+            }
+
+            listener.onMessageReceived(transportMessage, e);
+        }
+
+        @Override
+        public void onConnectionLost(Throwable e, String deviceConnectionId)
+        {
+            if (state != IotHubConnectionStatus.CONNECTED)
+            {
+                return;
+            }
+
+            TransportException transportException = (e instanceof TransportException) ? (TransportException) e : new TransportException(e);
+            if (transportException != e)
+            {
+                transportException.setRetryable(true);
+            }
+
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_018: [When a device connection is lost, only that device shall be reconnected, and the listener shall not be notified, so that the other devices keep their connections.]
+            logger.LogError("Mqtt connection of device %s was lost, method name is %s ", this.deviceId, logger.getMethodName());
+            if (disconnectedDevices.put(this.deviceId, transportException) == null)
+            {
+                scheduleReconnect(this.deviceId, 0, transportException);
+            }
+        }
+
+        @Override
+        public void onConnectionEstablished(String deviceConnectionId)
+        {
+            //Codes_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_019: [When a device connection is established, the listener shall not be notified, because the connection of this object was never reported lost.]
+            logger.LogDebug("Mqtt connection of device %s was established, method name is %s ", this.deviceId, logger.getMethodName());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages published on a single mqtt connection that the broker has not acknowledged yet, keyed by their mqtt
+ * packet id. Packet ids are 16 bit and handed out mostly in sequence, so the table is a pair of arrays indexed by the
+ * low bits of the packet id, with linear probing for the ids that collide. The table is sized for the connection's in
+ * flight window and never grows.
+ */
+public final class MqttPendingDeliveries
+{
+    private static final int MAX_PACKET_ID = 65535;
+    private static final int MIN_CAPACITY = 16;
+    private static final int EMPTY = -1;
+
+    private final int[] packetIds;
+    private final Message[] messages;
+    private final int mask;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param maxPendingDeliveries the maximum number of messages this table holds at once
+     * @throws IllegalArgumentException if maxPendingDeliveries is smaller than 1 or larger than the number of packet ids
+     */
+    MqttPendingDeliveries(int maxPendingDeliveries) throws IllegalArgumentException
+    {
+        if (maxPendingDeliveries < 1 || maxPendingDeliveries > MAX_PACKET_ID)
+        {
+            //Codes_SRS_MQTTPENDINGDELIVERIES_41_001: [If the provided maxPendingDeliveries is smaller than 1 or larger than 65535, the constructor shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Max pending deliveries must be between 1 and " + MAX_PACKET_ID);
+        }
+
+        //Codes_SRS_MQTTPENDINGDELIVERIES_41_002: [The constructor shall create a table with room for at least twice maxPendingDeliveries entries.]
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(maxPendingDeliveries * 2 - 1) << 1);
+        this.packetIds = new int[capacity];
+        this.messages = new Message[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++)
+        {
+            this.packetIds[i] = EMPTY;
+        }
+    }
+
+    /**
+     * Saves a published message until the broker acknowledges it.
+     * @param packetId the mqtt packet id the message was published with
+     * @param message the published message
+     * @throws IllegalArgumentException if the packet id is not a valid mqtt packet id or if message is null
+     * @throws IllegalStateException if the table is full
+     */
+    synchronized void put(int packetId, Message message) throws IllegalArgumentException, IllegalStateException
+    {
+        if (packetId < 0 || packetId > MAX_PACKET_ID || message == null)
+        {
+            //Codes_SRS_MQTTPENDINGDELIVERIES_41_003: [If the provided packetId is not between 0 and 65535, or the provided message is null, this function shall throw an IllegalArgumentException.]
+            throw new IllegalArgumentException("Packet id must be between 0 and " + MAX_PACKET_ID + " and message cannot be null");
+        }
+
+        int index = this.indexOf(packetId);
+        if (this.packetIds[index] == packetId)
+        {
+            //Codes_SRS_MQTTPENDINGDELIVERIES_41_005: [If a message is already saved for the provided packetId, this function shall replace it.]
+            this.messages[index] = message;
+            return;
+        }
+
+        if (this.size == this.mask)
+        {
+            //Codes_SRS_MQTTPENDINGDELIVERIES_41_006: [If the table is full, this function shall throw an IllegalStateException.]
+            throw new IllegalStateException("Too many mqtt messages waiting for an acknowledgement");
+        }
+
+        //Codes_SRS_MQTTPENDINGDELIVERIES_41_004: [This function shall save the provided message for the provided packetId.]
+        this.packetIds[index] = packetId;
+        this.messages[index] = message;
+        this.size++;
+    }
+
+    /**
+     * Removes the message saved for a packet id.
+     * @param packetId the mqtt packet id the broker acknowledged
+     * @return the message published with that packet id, or null if there is none
+     */
+    synchronized Message remove(int packetId)
+    {
+        int index = this.indexOf(packetId);
+        if (this.packetIds[index] != packetId)
+        {
+            //Codes_SRS_MQTTPENDINGDELIVERIES_41_008: [If no message is saved for the provided packetId, this function shall return null.]
+            return null;
+        }
+
+        //Codes_SRS_MQTTPENDINGDELIVERIES_41_007: [This function shall remove and return the message saved for the provided packetId.]
+        Message message = this.messages[index];
+        this.clearSlot(index);
+        this.size--;
+        return message;
+    }
+
+    /**
+     * Removes every saved message.
+     * @return the removed messages, in no particular order
+     */
+    synchronized List<Message> removeAll()
+    {
+        //Codes_SRS_MQTTPENDINGDELIVERIES_41_009: [This function shall remove and return all saved messages.]
+        List<Message> removedMessages = new ArrayList<>(this.size);
+        for (int i = 0; i < this.packetIds.length; i++)
+        {
+            if (this.packetIds[i] != EMPTY)
+            {
+                removedMessages.add(this.messages[i]);
+                this.packetIds[i] = EMPTY;
+                this.messages[i] = null;
+            }
+        }
+
+        this.size = 0;
+        return removedMessages;
+    }
+
+    /**
+     * Getter for the number of saved messages
+     * @return the number of messages waiting for an acknowledgement
+     */
+    synchronized int size()
+    {
+        //Codes_SRS_MQTTPENDINGDELIVERIES_41_010: [This function shall return the number of saved messages.]
+        return this.size;
+    }
+
+    /**
+     * Finds the slot holding the provided packet id, or the empty slot where it would be saved.
+     */
+    private int indexOf(int packetId)
+    {
+        int index = packetId & this.mask;
+        while (this.packetIds[index] != EMPTY && this.packetIds[index] != packetId)
+        {
+            index = (index + 1) & this.mask;
+        }
+
+        return index;
+    }
+
+    /**
+     * Empties a slot and moves back the entries that probed past it, so that lookups never stop at a hole.
+     */
+    private void clearSlot(int index)
+    {
+        int hole = index;
+        int next = index;
+        while (true)
+        {
+            next = (next + 1) & this.mask;
+            if (this.packetIds[next] == EMPTY)
+            {
+                break;
+            }
+
+            int home = this.packetIds[next] & this.mask;
+            boolean homeIsBetweenHoleAndNext = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!homeIsBetweenHoleAndNext)
+            {
+                this.packetIds[hole] = this.packetIds[next];
+                this.messages[hole] = this.messages[next];
+                hole = next;
+            }
+        }
+
+        this.packetIds[hole] = EMPTY;
+        this.messages[hole] = null;
+    }
+}
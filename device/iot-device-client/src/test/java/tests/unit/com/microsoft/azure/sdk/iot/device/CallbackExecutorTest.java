@@ -0,0 +1,319 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.CallbackExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for CallbackExecutor.
+ */
+public class CallbackExecutorTest
+{
+    private static final String DEVICE_ID = "device1";
+    private static final String OTHER_DEVICE_ID = "device2";
+
+    private static final Executor DIRECT_EXECUTOR = new Executor()
+    {
+        @Override
+        public void execute(Runnable command)
+        {
+            command.run();
+        }
+    };
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_001: [If the provided threadCount is less than 1, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZeroThreads()
+    {
+        new CallbackExecutor(0, true);
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_003: [If the provided executor is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullExecutor()
+    {
+        new CallbackExecutor(null, true);
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_002: [The constructor shall create a pool of threadCount daemon threads, which close shuts down.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_013: [This function shall shut down the pool created by the constructor, if any.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_005: [If the callbacks are ordered per device, this function shall return the executor of the provided device id, which runs its callbacks one at a time, in the order they were dispatched.]
+    @Test
+    public void orderedDeviceExecutorRunsCallbacksInOrder() throws InterruptedException
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(4, true);
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(100);
+
+        //act
+        for (int i = 0; i < 100; i++)
+        {
+            final int index = i;
+            deviceExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    order.add(index);
+                    done.countDown();
+                }
+            });
+        }
+
+        //assert
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals(i, (int) order.get(i));
+        }
+        callbackExecutor.close();
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_005: [If the callbacks are ordered per device, this function shall return the executor of the provided device id, which runs its callbacks one at a time, in the order they were dispatched.]
+    @Test
+    public void slowDeviceDoesNotBlockOtherDevice() throws InterruptedException
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(2, true);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch otherDeviceDone = new CountDownLatch(1);
+        callbackExecutor.getDeviceExecutor(DEVICE_ID).execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        //act
+        callbackExecutor.getDeviceExecutor(OTHER_DEVICE_ID).execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                otherDeviceDone.countDown();
+            }
+        });
+
+        //assert
+        assertTrue(otherDeviceDone.await(10, TimeUnit.SECONDS));
+        // the callback is counted as completed just after it returns
+        long deadline = System.currentTimeMillis() + 10000;
+        while (callbackExecutor.getPendingCallbackCount() > 1 && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(1);
+        }
+        assertEquals(1, callbackExecutor.getPendingCallbackCount());
+        release.countDown();
+        callbackExecutor.close();
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_005: [If the callbacks are ordered per device, this function shall return the executor of the provided device id, which runs its callbacks one at a time, in the order they were dispatched.]
+    @Test
+    public void orderedDeviceExecutorIsSharedPerDeviceId()
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(DIRECT_EXECUTOR, true);
+
+        //act
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+
+        //assert
+        assertSame(deviceExecutor, callbackExecutor.getDeviceExecutor(DEVICE_ID));
+        assertNotSame(deviceExecutor, callbackExecutor.getDeviceExecutor(OTHER_DEVICE_ID));
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_017: [If the provided deviceId is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void getDeviceExecutorThrowsForNullDeviceId()
+    {
+        new CallbackExecutor(DIRECT_EXECUTOR, true).getDeviceExecutor(null);
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_016: [If a callback throws an Error, the callbacks of the device dispatched after it shall still run.]
+    @Test
+    public void orderedDeviceExecutorKeepsRunningCallbacksAfterError()
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(DIRECT_EXECUTOR, true);
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+        final List<Integer> ran = new ArrayList<>();
+        try
+        {
+            deviceExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    throw new Error("callback failed");
+                }
+            });
+            fail("the error should have reached the executor");
+        }
+        catch (Error e)
+        {
+            // expected
+        }
+
+        //act
+        deviceExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.add(1);
+            }
+        });
+
+        //assert
+        assertEquals(1, ran.size());
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_004: [The constructor shall save the provided executor, which close does not shut down.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_006: [If the callbacks are not ordered per device, this function shall return an executor that runs each callback on the executor as soon as it is dispatched.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_007: [This function shall return whether the callbacks are ordered per device.]
+    @Test
+    public void unorderedDeviceExecutorSubmitsEachCallback()
+    {
+        //arrange
+        final List<Runnable> submitted = new ArrayList<>();
+        CallbackExecutor callbackExecutor = new CallbackExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                submitted.add(command);
+            }
+        }, false);
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+        Runnable callback = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        //act
+        deviceExecutor.execute(callback);
+        deviceExecutor.execute(callback);
+
+        //assert
+        assertFalse(callbackExecutor.isOrderedPerDevice());
+        assertEquals(2, submitted.size());
+        assertEquals(2, callbackExecutor.getPendingCallbackCount());
+        submitted.get(0).run();
+        assertEquals(1, callbackExecutor.getPendingCallbackCount());
+        callbackExecutor.close();
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_008: [This function shall return the number of dispatched callbacks minus the number of completed callbacks.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_009: [This function shall return the number of completed callbacks.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_010: [This function shall return the average time the completed callbacks waited to start, in milliseconds, or 0 if none completed.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_011: [This function shall return the average run time of the completed callbacks, in milliseconds, or 0 if none completed.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_012: [This function shall return the longest run time of the completed callbacks, in milliseconds.]
+    @Test
+    public void metricsReflectCallbackRunTimes()
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(DIRECT_EXECUTOR, true);
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+        assertEquals(0, callbackExecutor.getAverageCallbackRunMillis(), 0);
+        assertEquals(0, callbackExecutor.getAverageCallbackWaitMillis(), 0);
+
+        //act
+        deviceExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(20);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        deviceExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        });
+
+        //assert
+        assertEquals(0, callbackExecutor.getPendingCallbackCount());
+        assertEquals(2, callbackExecutor.getCompletedCallbackCount());
+        assertTrue(callbackExecutor.getMaxCallbackRunMillis() >= 20);
+        assertTrue(callbackExecutor.getAverageCallbackRunMillis() >= 10);
+        assertTrue(callbackExecutor.getAverageCallbackRunMillis() < callbackExecutor.getMaxCallbackRunMillis());
+        assertTrue(callbackExecutor.getAverageCallbackWaitMillis() >= 0);
+    }
+
+    // Tests_SRS_CALLBACKEXECUTOR_41_014: [If the executor rejects a callback, it shall run on the dispatching thread, so that no callback is lost.]
+    // Tests_SRS_CALLBACKEXECUTOR_41_015: [An exception thrown by a callback shall be logged and ignored.]
+    @Test
+    public void rejectedCallbacksRunOnDispatchingThreadAndExceptionsAreIgnored()
+    {
+        //arrange
+        CallbackExecutor callbackExecutor = new CallbackExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                throw new RejectedExecutionException();
+            }
+        }, true);
+        Executor deviceExecutor = callbackExecutor.getDeviceExecutor(DEVICE_ID);
+        final List<Thread> threads = new ArrayList<>();
+
+        //act
+        deviceExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException();
+            }
+        });
+        deviceExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        //assert
+        assertEquals(1, threads.size());
+        assertEquals(Thread.currentThread(), threads.get(0));
+        assertEquals(2, callbackExecutor.getCompletedCallbackCount());
+    }
+}
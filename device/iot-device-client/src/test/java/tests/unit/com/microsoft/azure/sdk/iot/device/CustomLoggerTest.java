@@ -51,11 +51,85 @@ public class CustomLoggerTest
 
     // Tests_SRS_CUSTOMERLOGGER_25_002: [The function shall log message for all levels.]
     @Test
-    public void getExecutingMethodName()
+    public void getExecutingMethodName(@Mocked final Logger mockLogger)
     {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor(Level.INFO);
+                result = true;
+            }
+        };
+
+        CustomLogger logger = new CustomLogger(this.getClass());
+        logger.LogInfo("method name is %s", logger.getMethodName());
+
+        new Verifications()
+        {
+            {
+                mockLogger.info("method name is getExecutingMethodName");
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void logMethodEntryAndExitLogCallingMethod(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor(Level.DEBUG);
+                result = true;
+            }
+        };
+
+        CustomLogger logger = new CustomLogger(this.getClass());
+        logger.LogMethodEntry();
+        logger.LogMethodExit();
+
+        new Verifications()
+        {
+            {
+                mockLogger.debug("Entered in method logMethodEntryAndExitLogCallingMethod");
+                times = 1;
+                mockLogger.debug("Exited from method logMethodEntryAndExitLogCallingMethod");
+                times = 1;
+            }
+        };
+    }
+
+    @Test
+    public void disabledLevelDoesNotLog(@Mocked final Logger mockLogger)
+    {
+        new NonStrictExpectations()
+        {
+            {
+                Logger.getLogger((Class)any);
+                result = mockLogger;
+                mockLogger.isEnabledFor((Level)any);
+                result = false;
+            }
+        };
+
         CustomLogger logger = new CustomLogger(this.getClass());
-        String methodName = logger.getMethodName();
-        assertThat("getExecutingMethodName", is(equalTo(methodName)));
+        logger.LogMethodEntry();
+        logger.LogInfo("method name is %s", logger.getMethodName());
+
+        assertThat(logger.isInfoEnabled(), is(false));
+        new Verifications()
+        {
+            {
+                mockLogger.debug(any);
+                times = 0;
+                mockLogger.info(any);
+                times = 0;
+            }
+        };
     }
 
     // Tests_SRS_CUSTOMERLOGGER_25_002: [The function shall print message for INFO level.]
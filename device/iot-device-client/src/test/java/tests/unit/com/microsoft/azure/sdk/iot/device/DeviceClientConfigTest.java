@@ -3,12 +3,17 @@
 
 package tests.unit.com.microsoft.azure.sdk.iot.device;
 
+import com.microsoft.azure.sdk.iot.device.CallbackExecutor;
 import com.microsoft.azure.sdk.iot.device.DeviceClientConfig;
 import com.microsoft.azure.sdk.iot.device.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.device.IotHubQueueOverflowPolicy;
+import com.microsoft.azure.sdk.iot.device.IotHubSpoolSyncPolicy;
 import com.microsoft.azure.sdk.iot.device.MessageCallback;
 import com.microsoft.azure.sdk.iot.device.ProductInfo;
+import com.microsoft.azure.sdk.iot.device.SharedTransportExecutor;
 import com.microsoft.azure.sdk.iot.device.auth.*;
 import com.microsoft.azure.sdk.iot.device.transport.ExponentialBackoffWithJitter;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubMessageSpool;
 import com.microsoft.azure.sdk.iot.device.transport.RetryPolicy;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProvider;
 import com.microsoft.azure.sdk.iot.provisioning.security.SecurityProviderTpm;
@@ -773,6 +778,304 @@ public class DeviceClientConfigTest
         assertEquals(expectedOperationTimeout, actual);
     }
 
+    //Tests_SRS_DEVICECLIENTCONFIG_41_001: [If the provided maxMessagesInFlight is 0 or negative, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxMessagesInFlightThrowsForZero()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMaxMessagesInFlight(0);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_002: [This function shall save the provided maxMessagesInFlight.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_003: [This function shall return the saved maxMessagesInFlight.]
+    @Test
+    public void setMaxMessagesInFlightSavesWindow()
+    {
+        //arrange
+        final int expectedMaxMessagesInFlight = 250;
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMaxMessagesInFlight(expectedMaxMessagesInFlight);
+
+        //assert
+        assertEquals(expectedMaxMessagesInFlight, config.getMaxMessagesInFlight());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_024: [If the provided maxMessagesPerBatch is 0 or negative, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setHttpsBatchingThrowsForZeroMessagesPerBatch()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setHttpsBatching(0, 100);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_025: [If the provided lingerMillis is negative, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setHttpsBatchingThrowsForNegativeLinger()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setHttpsBatching(10, -1);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_026: [This function shall save the provided maxMessagesPerBatch and lingerMillis.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_027: [This function shall return the saved maxMessagesPerBatch.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_028: [This function shall return the saved lingerMillis.]
+    @Test
+    public void setHttpsBatchingSavesBatchSizeAndLinger()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertEquals(1, config.getHttpsMaxMessagesPerBatch());
+
+        //act
+        config.setHttpsBatching(50, 200);
+
+        //assert
+        assertEquals(50, config.getHttpsMaxMessagesPerBatch());
+        assertEquals(200L, config.getHttpsBatchLingerMillis());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_031: [If the provided minIntervalMillis is 0 or negative, or if the provided maxIntervalMillis is smaller than minIntervalMillis, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setHttpsReceiveIntervalThrowsForZeroMinInterval()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setHttpsReceiveInterval(0, 1000);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_031: [If the provided minIntervalMillis is 0 or negative, or if the provided maxIntervalMillis is smaller than minIntervalMillis, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setHttpsReceiveIntervalThrowsForMaxIntervalSmallerThanMinInterval()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setHttpsReceiveInterval(1000, 999);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_032: [This function shall save the provided minIntervalMillis and maxIntervalMillis.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_033: [This function shall return the saved minIntervalMillis, or 0 if none was set.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_034: [This function shall return the saved maxIntervalMillis, or 0 if none was set.]
+    @Test
+    public void setHttpsReceiveIntervalSavesIntervals()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertEquals(0L, config.getHttpsReceiveMinIntervalMillis());
+        assertEquals(0L, config.getHttpsReceiveMaxIntervalMillis());
+
+        //act
+        config.setHttpsReceiveInterval(1000, 60000);
+
+        //assert
+        assertEquals(1000L, config.getHttpsReceiveMinIntervalMillis());
+        assertEquals(60000L, config.getHttpsReceiveMaxIntervalMillis());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_004: [If the provided maxMessages or maxBytes is 0 or negative, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueueCapacityThrowsForZeroBytes()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setOutboundQueueCapacity(10, 0);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_005: [This function shall save the provided maxMessages and maxBytes.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_006: [This function shall return the saved maximum number of queued messages.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_007: [This function shall return the saved maximum number of queued bytes.]
+    @Test
+    public void setOutboundQueueCapacitySavesCapacity()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setOutboundQueueCapacity(10, 2048);
+
+        //assert
+        assertEquals(10, config.getMaxQueuedMessages());
+        assertEquals(2048, config.getMaxQueuedBytes());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_008: [If the provided overflowPolicy is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueueOverflowPolicyThrowsForNullPolicy()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setOutboundQueueOverflowPolicy(null, 0);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_009: [If the provided blockTimeoutMillis is negative, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setOutboundQueueOverflowPolicyThrowsForNegativeTimeout()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setOutboundQueueOverflowPolicy(IotHubQueueOverflowPolicy.BLOCK, -1);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_010: [This function shall save the provided overflowPolicy and blockTimeoutMillis.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_011: [This function shall return the saved overflow policy.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_012: [This function shall return the saved block timeout.]
+    @Test
+    public void setOutboundQueueOverflowPolicySavesPolicy()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setOutboundQueueOverflowPolicy(IotHubQueueOverflowPolicy.BLOCK, 500);
+
+        //assert
+        assertEquals(IotHubQueueOverflowPolicy.BLOCK, config.getOutboundQueueOverflowPolicy());
+        assertEquals(500, config.getOutboundQueueBlockTimeout());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_019: [If the provided maxInFlightPublishes is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMqttMaxInFlightPublishesThrowsForZero()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMqttMaxInFlightPublishes(0);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_019: [If the provided maxInFlightPublishes is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMqttMaxInFlightPublishesThrowsForMoreThanPacketIds()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMqttMaxInFlightPublishes(65536);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_020: [This function shall save the provided maxInFlightPublishes.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_021: [This function shall return the saved maxInFlightPublishes.]
+    @Test
+    public void setMqttMaxInFlightPublishesSavesWindow()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertEquals(10, config.getMqttMaxInFlightPublishes());
+
+        //act
+        config.setMqttMaxInFlightPublishes(500);
+
+        //assert
+        assertEquals(500, config.getMqttMaxInFlightPublishes());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_013: [If the provided directory is null or empty, or the provided syncPolicy is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMessageSpoolThrowsForEmptyDirectory()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMessageSpool("", IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES, IotHubSpoolSyncPolicy.PER_MESSAGE);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_013: [If the provided directory is null or empty, or the provided syncPolicy is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMessageSpoolThrowsForNullSyncPolicy()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMessageSpool("spool", IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES, null);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_014: [If the provided maxSizeInBytes is smaller than the minimum spool size, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMessageSpoolThrowsForTooSmallSpool()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+
+        //act
+        config.setMessageSpool("spool", IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES - 1, IotHubSpoolSyncPolicy.PER_MESSAGE);
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_015: [This function shall save the provided directory, maxSizeInBytes, and syncPolicy.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_016: [This function shall return the saved spool directory.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_017: [This function shall return the saved spool maximum size.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_018: [This function shall return the saved spool sync policy.]
+    @Test
+    public void setMessageSpoolSavesSettings()
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertNull(config.getMessageSpoolDirectory());
+
+        //act
+        config.setMessageSpool("spool", 1024 * 1024, IotHubSpoolSyncPolicy.GROUP_COMMIT);
+
+        //assert
+        assertEquals("spool", config.getMessageSpoolDirectory());
+        assertEquals(1024 * 1024, config.getMessageSpoolMaxSizeInBytes());
+        assertEquals(IotHubSpoolSyncPolicy.GROUP_COMMIT, config.getMessageSpoolSyncPolicy());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_022: [This function shall save the provided sharedTransportExecutor.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_023: [This function shall return the saved sharedTransportExecutor.]
+    @Test
+    public void setSharedTransportExecutorSavesExecutor(@Mocked final SharedTransportExecutor mockSharedTransportExecutor)
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertNull(config.getSharedTransportExecutor());
+
+        //act
+        config.setSharedTransportExecutor(mockSharedTransportExecutor);
+
+        //assert
+        assertEquals(mockSharedTransportExecutor, config.getSharedTransportExecutor());
+    }
+
+    //Tests_SRS_DEVICECLIENTCONFIG_41_029: [This function shall save the provided callbackExecutor.]
+    //Tests_SRS_DEVICECLIENTCONFIG_41_030: [This function shall return the saved callbackExecutor.]
+    @Test
+    public void setCallbackExecutorSavesExecutor(@Mocked final CallbackExecutor mockCallbackExecutor)
+    {
+        //arrange
+        DeviceClientConfig config = Deencapsulation.newInstance(DeviceClientConfig.class, mockIotHubConnectionString, DeviceClientConfig.AuthType.SAS_TOKEN);
+        assertNull(config.getCallbackExecutor());
+
+        //act
+        config.setCallbackExecutor(mockCallbackExecutor);
+
+        //assert
+        assertEquals(mockCallbackExecutor, config.getCallbackExecutor());
+    }
+
     //Tests_SRS_DEVICECLIENTCONFIG_34_040: [This function shall return the saved product info.]
     @Test
     public void getProductInfoReturnsSavedProductInfo()
@@ -1336,6 +1336,111 @@ public class DeviceClientTest
         };
     }
 
+    /*
+     **Tests_SRS_DEVICECLIENT_41_011: [**The function shall send the reported properties by calling updateReportedProperties on the twin object with the version, the request status callback and its context.**]**
+     */
+    @Test
+    public void sendRPWithRequestCallbackSucceeds(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                  @Mocked final IotHubEventCallback mockedStatusCB,
+                                                  @Mocked final PropertyCallBack mockedPropertyCB,
+                                                  @Mocked final Set<Property> mockSet) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        client.sendReportedProperties(mockSet, null, mockedStatusCB, context);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.updateReportedProperties(mockSet, null, mockedStatusCB, context);
+                times = 1;
+            }
+        };
+    }
+
+    /*
+     **Tests_SRS_DEVICECLIENT_41_009: [**If the request status callback is null, the function shall throw an IllegalArgumentException.**]**
+     */
+    @Test (expected = IllegalArgumentException.class)
+    public void sendRPWithNullRequestCallbackThrows(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                    @Mocked final IotHubEventCallback mockedStatusCB,
+                                                    @Mocked final PropertyCallBack mockedPropertyCB,
+                                                    @Mocked final Set<Property> mockSet) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+                mockSet.isEmpty();
+                result = false;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        client.sendReportedProperties(mockSet, 10, null, null);
+    }
+
+    /*
+     **Tests_SRS_DEVICECLIENT_41_010: [**The function shall get the twin by calling getDeviceTwin on the twin object with the request status callback and its context.**]**
+     */
+    @Test
+    public void getTwinWithRequestCallbackSucceeds(@Mocked final DeviceTwin mockedDeviceTwin,
+                                                   @Mocked final IotHubEventCallback mockedStatusCB,
+                                                   @Mocked final PropertyCallBack mockedPropertyCB) throws IOException, URISyntaxException
+    {
+        //arrange
+        final String connString = "HostName=iothub.device.com;CredentialType=SharedAccessKey;DeviceId=testdevice;"
+                + "SharedAccessKey=adjkl234j52=";
+        final IotHubClientProtocol protocol = IotHubClientProtocol.AMQPS;
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceIO.isOpen();
+                result = true;
+            }
+        };
+        DeviceClient client = new DeviceClient(connString, protocol);
+        client.open();
+        client.startDeviceTwin(mockedStatusCB, null, mockedPropertyCB, null);
+
+        //act
+        client.getDeviceTwin(mockedStatusCB, context);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedDeviceTwin.getDeviceTwin(mockedStatusCB, context);
+                times = 1;
+            }
+        };
+    }
+
     /*
     **Tests_SRS_DEVICECLIENT_25_032: [**If the client has not started twin before calling this method, the function shall throw an IOException.**]**
      */
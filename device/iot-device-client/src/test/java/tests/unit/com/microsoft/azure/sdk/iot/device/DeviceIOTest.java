@@ -6,10 +6,14 @@ package tests.unit.com.microsoft.azure.sdk.iot.device;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubReceiveTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubSignalledSendTask;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
 import mockit.*;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -20,8 +24,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.junit.Assert.*;
 
@@ -38,6 +46,12 @@ public class DeviceIOTest
     @Mocked
     IotHubSendTask mockIotHubSendTask;
 
+    @Mocked
+    IotHubEventDrivenSendTask mockIotHubEventDrivenSendTask;
+
+    @Mocked
+    Future mockFuture;
+
     @Mocked
     IotHubReceiveTask mockIotHubReceiveTask;
 
@@ -63,6 +77,19 @@ public class DeviceIOTest
     private final static long RECEIVE_PERIOD_MILLIS_MQTT = 10L;
     private final static long RECEIVE_PERIOD_MILLIS_HTTPS = 25*60*1000; /*25 minutes*/
 
+    @Before
+    public void setup()
+    {
+        // clients get a scheduler of their own unless a test gives them a shared transport executor
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getSharedTransportExecutor();
+                result = null;
+            }
+        };
+    }
+
     private DeviceIO newDeviceIO()
     {
         new NonStrictExpectations()
@@ -93,6 +120,8 @@ public class DeviceIOTest
             {
                 new IotHubSendTask(transport);
                 result = mockIotHubSendTask;
+                new IotHubEventDrivenSendTask(transport);
+                result = mockIotHubEventDrivenSendTask;
                 new IotHubReceiveTask(transport);
                 result = mockIotHubReceiveTask;
                 executors.newScheduledThreadPool(2);
@@ -305,7 +334,7 @@ public class DeviceIOTest
     }
 
     /* Tests_SRS_DEVICE_IO_21_012: [The open shall open the transport to communicate with an IoT Hub.] */
-    /* Tests_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
+    /* Tests_SRS_DEVICE_IO_41_001: [If no send period was explicitly set, the open shall start the event driven send task instead of scheduling the send task.] */
     /* Tests_SRS_DEVICE_IO_21_014: [The open shall schedule receive tasks to run every RECEIVE_PERIOD_MILLIS milliseconds.] */
     /* Tests_SRS_DEVICE_IO_21_016: [The open shall set the `state` as `CONNECTED`.] */
     @Test
@@ -321,6 +350,8 @@ public class DeviceIOTest
             {
                 new IotHubSendTask(mockedTransport);
                 result = mockIotHubSendTask;
+                new IotHubEventDrivenSendTask(mockedTransport);
+                result = mockIotHubEventDrivenSendTask;
                 new IotHubReceiveTask(mockedTransport);
                 result = mockIotHubReceiveTask;
                 mockExecutors.newScheduledThreadPool(2);
@@ -336,9 +367,12 @@ public class DeviceIOTest
         {
             {
                 mockedTransport.open(configs);
+                mockScheduler.submit(mockIotHubEventDrivenSendTask);
+                times = 1;
                 mockScheduler.scheduleAtFixedRate(mockIotHubSendTask,
-                        0, SEND_PERIOD_MILLIS,
-                        TimeUnit.MILLISECONDS);
+                        anyLong, anyLong,
+                        (TimeUnit) any);
+                times = 0;
                 mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask,
                         0, RECEIVE_PERIOD_MILLIS_AMQPS,
                         TimeUnit.MILLISECONDS);
@@ -347,6 +381,104 @@ public class DeviceIOTest
         };
     }
 
+    /* Tests_SRS_DEVICE_IO_21_013: [The open shall schedule send tasks to run every SEND_PERIOD_MILLIS milliseconds.] */
+    /* Tests_SRS_DEVICE_IO_41_004: [The setSendPeriodInMilliseconds shall switch the client to polling the send queue.] */
+    @Test
+    public void openWithSendPeriodSchedulesPollingSendTask() throws DeviceClientException, IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        configs.add(mockConfig);
+        Deencapsulation.setField(deviceIO, "deviceClientConfigs", configs);
+        Deencapsulation.invoke(deviceIO, "setSendPeriodInMilliseconds", SEND_PERIOD_MILLIS);
+
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubSendTask(mockedTransport);
+                result = mockIotHubSendTask;
+                new IotHubEventDrivenSendTask(mockedTransport);
+                result = mockIotHubEventDrivenSendTask;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduler.scheduleAtFixedRate(mockIotHubSendTask,
+                        0, SEND_PERIOD_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                times = 1;
+                mockScheduler.submit(mockIotHubEventDrivenSendTask);
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_41_010: [If the protocol is HTTPS and the config has an adaptive receive interval, the open shall run the receive task every minimum receive interval, and let the transport decide when to poll.] */
+    @Test
+    public void openWithHttpsReceiveIntervalSchedulesReceiveTaskAtMinInterval() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        Deencapsulation.setField(deviceIO, "protocol", IotHubClientProtocol.HTTPS);
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getHttpsReceiveMinIntervalMillis();
+                result = 1000L;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        assertEquals(1000L, (long) Deencapsulation.getField(deviceIO, "receivePeriodInMilliseconds"));
+        new Verifications()
+        {
+            {
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask,
+                        0, 1000L,
+                        TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_41_011: [The getHttpsReceivePoller shall return the https receive poller of the transport.] */
+    @Test
+    public void getHttpsReceivePollerReturnsPollerOfTransport(@Mocked final HttpsReceivePoller mockHttpsReceivePoller)
+    {
+        // arrange
+        final DeviceIO deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransport.getHttpsReceivePoller();
+                result = mockHttpsReceivePoller;
+            }
+        };
+
+        // act
+        HttpsReceivePoller poller = deviceIO.getHttpsReceivePoller();
+
+        // assert
+        assertEquals(mockHttpsReceivePoller, poller);
+    }
+
     /* Tests_SRS_DEVICE_IO_21_015: [If an error occurs in opening the transport, the open shall throw an IOException.] */
     @Test (expected = IOException.class)
     public void openThrowsIOExceptionIfTransportOpenThrows() throws DeviceClientException
@@ -395,6 +527,128 @@ public class DeviceIOTest
         };
     }
 
+    /* Tests_SRS_DEVICE_IO_41_002: [The close shall stop the event driven send task if it is running.] */
+    @Test
+    public void closeInterruptsEventDrivenSendTask() throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockScheduler.submit(mockIotHubEventDrivenSendTask);
+                result = mockFuture;
+            }
+        };
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+
+        // act
+        Deencapsulation.invoke(deviceIO, "close");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockFuture.cancel(true);
+                times = 1;
+                mockScheduler.shutdown();
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_41_005: [If the config has a shared transport executor, the open shall schedule the send and receive tasks on it instead of creating a scheduler of its own.] */
+    /* Tests_SRS_DEVICE_IO_41_006: [If no send period was explicitly set and the scheduler is shared, the open shall register a signalled send task with the transport and signal it once.] */
+    @Test
+    public void openWithSharedTransportExecutorUsesSharedScheduler(
+            @Mocked final SharedTransportExecutor mockSharedTransportExecutor,
+            @Mocked final IotHubSignalledSendTask mockSignalledSendTask) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getSharedTransportExecutor();
+                result = mockSharedTransportExecutor;
+                mockSharedTransportExecutor.getScheduledExecutorService();
+                result = mockScheduler;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                new IotHubSignalledSendTask(mockedTransport, mockScheduler);
+                result = mockSignalledSendTask;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockExecutors.newScheduledThreadPool(anyInt);
+                times = 0;
+                mockScheduler.submit((Runnable) any);
+                times = 0;
+                mockedTransport.setSignalledSendTask(mockSignalledSendTask);
+                times = 1;
+                mockSignalledSendTask.signal();
+                times = 1;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask,
+                        0, RECEIVE_PERIOD_MILLIS_AMQPS,
+                        TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_41_007: [The close shall unregister and stop the signalled send task if there is one.] */
+    /* Tests_SRS_DEVICE_IO_41_008: [The close shall not shut down a shared transport executor.] */
+    @Test
+    public void closeWithSharedTransportExecutorDoesNotShutDownSharedScheduler(
+            @Mocked final SharedTransportExecutor mockSharedTransportExecutor,
+            @Mocked final IotHubSignalledSendTask mockSignalledSendTask,
+            @Mocked final ScheduledFuture mockReceiveTaskFuture) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getSharedTransportExecutor();
+                result = mockSharedTransportExecutor;
+                mockSharedTransportExecutor.getScheduledExecutorService();
+                result = mockScheduler;
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask, anyLong, anyLong, (TimeUnit) any);
+                result = mockReceiveTaskFuture;
+                new IotHubSignalledSendTask(mockedTransport, mockScheduler);
+                result = mockSignalledSendTask;
+            }
+        };
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // act
+        Deencapsulation.invoke(deviceIO, "close");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockedTransport.setSignalledSendTask(null);
+                times = 1;
+                mockSignalledSendTask.stop();
+                times = 1;
+                mockReceiveTaskFuture.cancel(false);
+                times = 1;
+                mockScheduler.shutdown();
+                times = 0;
+            }
+        };
+    }
+
     /* Tests_SRS_DEVICE_IO_21_019: [The close shall close the transport.] */
     @Test
     public void closeClosesTransportSuccess() throws IOException, DeviceClientException
@@ -593,6 +847,92 @@ public class DeviceIOTest
         Deencapsulation.invoke(deviceIO, "sendEventAsync", mockMsg, mockCallback, context, mockConfig.getIotHubConnectionString());
     }
 
+    /* Tests_SRS_DEVICE_IO_41_012: [The close shall wait for the sends that are in progress, and block new sends until the client is closed.] */
+    @Test
+    public void sendEventAsyncRacingCloseThrowsInsteadOfQueueing(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException, InterruptedException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+        final ReentrantReadWriteLock closeLock = Deencapsulation.getField(deviceIO, "closeLock");
+        final AtomicReference<Throwable> sendFailure = new AtomicReference<>();
+        Thread sender = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Deencapsulation.invoke(deviceIO, "sendEventAsync",
+                            new Class[] {Message.class, IotHubEventCallback.class, Object.class, IotHubConnectionString.class},
+                            mockMsg, mockCallback, context, null);
+                }
+                catch (Throwable t)
+                {
+                    sendFailure.set(t);
+                }
+            }
+        });
+
+        // act
+        closeLock.writeLock().lock();
+        try
+        {
+            sender.start();
+            while (!closeLock.hasQueuedThread(sender))
+            {
+                Thread.sleep(1);
+            }
+            Deencapsulation.invoke(deviceIO, "close");
+        }
+        finally
+        {
+            closeLock.writeLock().unlock();
+        }
+        sender.join();
+
+        // assert
+        assertTrue(sendFailure.get() instanceof IllegalStateException);
+        new Verifications()
+        {
+            {
+                mockedTransport.addMessage(mockMsg, mockCallback, context);
+                times = 0;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICE_IO_41_013: [If the client is being closed by the calling thread, for instance from a callback invoked by close, the sendEventAsync shall throw an IllegalStateException.] */
+    @Test (expected = IllegalStateException.class)
+    public void sendEventAsyncFromClosingThreadThrows(
+            @Mocked final Message mockMsg,
+            @Mocked final IotHubEventCallback mockCallback)
+            throws IOException
+    {
+        // arrange
+        final Map<String, Object> context = new HashMap<>();
+        final Object deviceIO = newDeviceIO();
+        openDeviceIO(deviceIO, mockedTransport, mockExecutors, mockScheduler);
+        final ReentrantReadWriteLock closeLock = Deencapsulation.getField(deviceIO, "closeLock");
+        closeLock.writeLock().lock();
+
+        try
+        {
+            // act
+            Deencapsulation.invoke(deviceIO, "sendEventAsync",
+                    new Class[] {Message.class, IotHubEventCallback.class, Object.class, IotHubConnectionString.class},
+                    mockMsg, mockCallback, context, null);
+        }
+        finally
+        {
+            closeLock.writeLock().unlock();
+        }
+    }
+
     /* Tests_SRS_DEVICE_IO_21_025: [The getProtocol shall return the protocol for transport.] */
     @Test
     public void getTransportProtocolSuccess()
@@ -697,6 +1037,41 @@ public class DeviceIOTest
         assertEquals(interval, Deencapsulation.getField(deviceIO, "receivePeriodInMilliseconds"));
     }
 
+    /* Tests_SRS_DEVICE_IO_41_009: [The setReceivePeriodInMilliseconds shall cancel the receive task that is currently scheduled before scheduling it again.] */
+    @Test
+    public void setReceivePeriodInMillisecondsCancelsScheduledReceiveTask(
+            @Mocked final ScheduledFuture mockReceiveTaskFuture) throws IOException
+    {
+        // arrange
+        final Object deviceIO = newDeviceIO();
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubReceiveTask(mockedTransport);
+                result = mockIotHubReceiveTask;
+                mockExecutors.newScheduledThreadPool(2);
+                result = mockScheduler;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask, anyLong, anyLong, (TimeUnit) any);
+                result = mockReceiveTaskFuture;
+            }
+        };
+        Deencapsulation.invoke(deviceIO, "open");
+
+        // act
+        Deencapsulation.invoke(deviceIO, "setReceivePeriodInMilliseconds",  1234L);
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockReceiveTaskFuture.cancel(false);
+                times = 1;
+                mockScheduler.scheduleAtFixedRate(mockIotHubReceiveTask, anyLong, anyLong, (TimeUnit) any);
+                times = 2;
+            }
+        };
+    }
+
     /* Tests_SRS_DEVICE_IO_21_029: [If the `receiveTask` is null, the setReceivePeriodInMilliseconds shall throw IOException.] */
     @Test (expected = IOException.class)
     public void setReceivePeriodInMillisecondsNullReceiveTaskThrows()
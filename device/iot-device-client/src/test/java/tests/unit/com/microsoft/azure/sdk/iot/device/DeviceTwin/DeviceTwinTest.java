@@ -12,11 +12,15 @@ import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.*;
 
@@ -1322,4 +1326,258 @@ public class DeviceTwinTest
 
         // assert
     }
+
+    /* Request status callback that records the statuses it is called with */
+    private static final long OPERATION_TIMEOUT_MILLIS = 60000;
+
+    private static final class RecordingStatusCallback implements IotHubEventCallback
+    {
+        private final List<IotHubStatusCode> statuses = new ArrayList<>();
+
+        @Override
+        public synchronized void execute(IotHubStatusCode responseStatus, Object callbackContext)
+        {
+            statuses.add(responseStatus);
+            notifyAll();
+        }
+
+        private synchronized void awaitStatus(long timeoutMillis) throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (statuses.isEmpty() && System.currentTimeMillis() < deadline)
+            {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private IotHubTransportMessage updateReportedPropertiesWithCallback(DeviceTwin testTwin, RecordingStatusCallback requestCallback,
+                                                                        final List<Object> sentContexts) throws IOException
+    {
+        return updateReportedPropertiesWithCallback(testTwin, requestCallback, sentContexts, OPERATION_TIMEOUT_MILLIS);
+    }
+
+    private IotHubTransportMessage updateReportedPropertiesWithCallback(DeviceTwin testTwin, RecordingStatusCallback requestCallback,
+                                                                        final List<Object> sentContexts, final long operationTimeoutMillis) throws IOException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getOperationTimeout();
+                result = operationTimeoutMillis;
+            }
+        };
+        HashSet<Property> reportedProperties = new HashSet<>();
+        reportedProperties.add(new Property("key", "value"));
+        testTwin.updateReportedProperties(reportedProperties, null, requestCallback, null);
+
+        final List<Message> sentMessages = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync(withCapture(sentMessages), (IotHubEventCallback) any, withCapture(sentContexts), (IotHubConnectionString) any);
+            }
+        };
+        return (IotHubTransportMessage) sentMessages.get(0);
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_41_001: [**If a request status callback is provided, the method shall save it by the request id and correlation id of the message before sending it.**]**
+     **Tests_SRS_DEVICETWIN_41_002: [**On a GET or UPDATE_REPORTED_PROPERTIES response, the status callback of the request with the request id or correlation id of the response, if any, shall be removed and invoked with the response status.**]**
+     */
+    @Test
+    public void updateReportedPropWithCallbackCallsItOnceOnResponseWithRequestId() throws IOException
+    {
+        //arrange
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        MessageCallback deviceTwinResponseMessageCallback = Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        RecordingStatusCallback requestCallback = new RecordingStatusCallback();
+        IotHubTransportMessage request = updateReportedPropertiesWithCallback(testTwin, requestCallback, new ArrayList<Object>());
+
+        final IotHubTransportMessage response = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        response.setStatus(String.valueOf(200));
+        response.setRequestId(request.getRequestId());
+        response.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+
+        //act
+        deviceTwinResponseMessageCallback.execute(response, null);
+        deviceTwinResponseMessageCallback.execute(response, null);
+
+        //assert
+        assertEquals(1, requestCallback.statuses.size());
+        assertEquals(IotHubStatusCode.OK, requestCallback.statuses.get(0));
+        Map<String, ?> pendingRequests = Deencapsulation.getField(testTwin, "pendingRequests");
+        assertTrue(pendingRequests.isEmpty());
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_41_002: [**On a GET or UPDATE_REPORTED_PROPERTIES response, the status callback of the request with the request id or correlation id of the response, if any, shall be removed and invoked with the response status.**]**
+     */
+    @Test
+    public void updateReportedPropWithCallbackCallsItOnResponseWithCorrelationId() throws IOException
+    {
+        //arrange
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        MessageCallback deviceTwinResponseMessageCallback = Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        RecordingStatusCallback requestCallback = new RecordingStatusCallback();
+        IotHubTransportMessage request = updateReportedPropertiesWithCallback(testTwin, requestCallback, new ArrayList<Object>());
+
+        final IotHubTransportMessage otherResponse = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        otherResponse.setStatus(String.valueOf(400));
+        otherResponse.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+        final IotHubTransportMessage response = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        response.setStatus(String.valueOf(204));
+        response.setCorrelationId(request.getCorrelationId());
+        response.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+
+        //act
+        deviceTwinResponseMessageCallback.execute(otherResponse, null);
+        deviceTwinResponseMessageCallback.execute(response, null);
+
+        //assert
+        assertEquals(1, requestCallback.statuses.size());
+        assertEquals(IotHubStatusCode.OK_EMPTY, requestCallback.statuses.get(0));
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_41_003: [**If a request that has its own status callback could not be delivered, the callback shall be removed and invoked with the delivery status.**]**
+     */
+    @Test
+    public void updateReportedPropWithCallbackCallsItOnDeliveryFailure() throws IOException
+    {
+        //arrange
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        IotHubEventCallback deviceTwinRequestMessageCallback = Deencapsulation.newInnerInstance("deviceTwinRequestMessageCallback", testTwin);
+        MessageCallback deviceTwinResponseMessageCallback = Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        RecordingStatusCallback requestCallback = new RecordingStatusCallback();
+        List<Object> sentContexts = new ArrayList<>();
+        IotHubTransportMessage request = updateReportedPropertiesWithCallback(testTwin, requestCallback, sentContexts);
+
+        final IotHubTransportMessage lateResponse = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        lateResponse.setStatus(String.valueOf(200));
+        lateResponse.setRequestId(request.getRequestId());
+        lateResponse.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+
+        //act
+        deviceTwinRequestMessageCallback.execute(IotHubStatusCode.MESSAGE_EXPIRED, sentContexts.get(0));
+        deviceTwinResponseMessageCallback.execute(lateResponse, null);
+
+        //assert
+        assertEquals(1, requestCallback.statuses.size());
+        assertEquals(IotHubStatusCode.MESSAGE_EXPIRED, requestCallback.statuses.get(0));
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_41_004: [**If a request that has its own status callback gets no response within the operation timeout of the config, the callback shall be removed and invoked with MESSAGE_EXPIRED.**]**
+     */
+    @Test
+    public void updateReportedPropWithCallbackCallsItOnceIfResponseTimesOut() throws IOException, InterruptedException
+    {
+        //arrange
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        MessageCallback deviceTwinResponseMessageCallback = Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        RecordingStatusCallback requestCallback = new RecordingStatusCallback();
+
+        //act
+        IotHubTransportMessage request = updateReportedPropertiesWithCallback(testTwin, requestCallback, new ArrayList<Object>(), 1);
+        requestCallback.awaitStatus(10000);
+
+        final IotHubTransportMessage lateResponse = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        lateResponse.setStatus(String.valueOf(200));
+        lateResponse.setRequestId(request.getRequestId());
+        lateResponse.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+        deviceTwinResponseMessageCallback.execute(lateResponse, null);
+
+        //assert
+        assertEquals(1, requestCallback.statuses.size());
+        assertEquals(IotHubStatusCode.MESSAGE_EXPIRED, requestCallback.statuses.get(0));
+        Map<String, ?> pendingRequests = Deencapsulation.getField(testTwin, "pendingRequests");
+        assertTrue(pendingRequests.isEmpty());
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_41_002: [**On a GET or UPDATE_REPORTED_PROPERTIES response, the status callback of the request with the request id or correlation id of the response, if any, shall be removed and invoked with the response status.**]**
+     */
+    @Test
+    public void responseCancelsExpiryOfPendingRequest() throws IOException
+    {
+        //arrange
+        DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        MessageCallback deviceTwinResponseMessageCallback = Deencapsulation.newInnerInstance("deviceTwinResponseMessageCallback", testTwin);
+        RecordingStatusCallback requestCallback = new RecordingStatusCallback();
+        List<Object> sentContexts = new ArrayList<>();
+        IotHubTransportMessage request = updateReportedPropertiesWithCallback(testTwin, requestCallback, sentContexts);
+        Future<?> expiryTask = Deencapsulation.getField(sentContexts.get(0), "expiryTask");
+
+        final IotHubTransportMessage response = new IotHubTransportMessage(new byte[0], MessageType.DEVICE_TWIN);
+        response.setStatus(String.valueOf(200));
+        response.setRequestId(request.getRequestId());
+        response.setDeviceOperationType(DeviceOperations.DEVICE_OPERATION_TWIN_UPDATE_REPORTED_PROPERTIES_RESPONSE);
+
+        //act
+        deviceTwinResponseMessageCallback.execute(response, null);
+
+        //assert
+        assertTrue(expiryTask.isCancelled());
+        assertEquals(1, requestCallback.statuses.size());
+        assertEquals(IotHubStatusCode.OK, requestCallback.statuses.get(0));
+    }
+
+    /*
+     **Tests_SRS_DEVICETWIN_25_007: [**This method shall set the request id for the message by calling setRequestId .**]**
+     */
+    @Test
+    public void getDeviceTwinFromManyThreadsUsesUniqueRequestIds() throws InterruptedException
+    {
+        //arrange
+        final int threadCount = 4;
+        final int requestsPerThread = 100;
+        final DeviceTwin testTwin = new DeviceTwin(mockedDeviceIO, mockedConfig,
+                mockedStatusCB, null, mockedGenericPropertyCB, null);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < requestsPerThread; j++)
+                    {
+                        testTwin.getDeviceTwin();
+                    }
+                }
+            });
+        }
+
+        //act
+        for (Thread thread : threads)
+        {
+            thread.start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        //assert
+        final List<Message> sentMessages = new ArrayList<>();
+        new Verifications()
+        {
+            {
+                mockedDeviceIO.sendEventAsync(withCapture(sentMessages), (IotHubEventCallback) any, any, (IotHubConnectionString) any);
+            }
+        };
+        Set<String> requestIds = new HashSet<>();
+        for (Message sentMessage : sentMessages)
+        {
+            requestIds.add(((IotHubTransportMessage) sentMessage).getRequestId());
+        }
+        assertEquals(threadCount * requestsPerThread, requestIds.size());
+    }
 }
@@ -12,6 +12,7 @@ import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
@@ -42,6 +43,34 @@ public class MessageTest
         assertThat(testBody, is(expectedBody));
     }
 
+    // Tests_SRS_MESSAGE_41_002: [The function shall return a read-only view of the message body, or null if the message has no body.]
+    @Test
+    public void getBodyAsReadOnlyBufferReturnsViewOfBody()
+    {
+        final byte[] body = { 1, 2, 3 };
+
+        Message msg = new Message(body);
+        ByteBuffer testBody = msg.getBodyAsReadOnlyBuffer();
+
+        assertTrue(testBody.isReadOnly());
+        assertEquals(3, testBody.remaining());
+        body[0] = 4;
+        assertEquals(4, testBody.get(0));
+        assertNull(new Message().getBodyAsReadOnlyBuffer());
+    }
+
+    // Tests_SRS_MESSAGE_41_003: [The function shall return the length of the message body, or 0 if the message has no body.]
+    @Test
+    public void getBodyLengthReturnsLengthOfBody()
+    {
+        final byte[] body = { 1, 2, 3 };
+
+        Message msg = new Message(body);
+
+        assertEquals(3, msg.getBodyLength());
+        assertEquals(0, new Message().getBodyLength());
+    }
+
     // Tests_SRS_MESSAGE_11_025: [If the message body is null, the constructor shall throw an IllegalArgumentException.]
     @Test(expected = IllegalArgumentException.class)
     public void constructorRejectsNullBody()
@@ -282,6 +311,17 @@ public class MessageTest
         assertFalse(msg.isExpired());
     }
 
+    // Tests_SRS_MESSAGE_41_001: [The function shall return the message's absolute expiry time.]
+    @Test
+    public void getExpiryTimeReturnsAbsoluteExpiryTime()
+    {
+        Message msg = new Message("body");
+
+        msg.setAbsoluteExpiryTime(1234L);
+
+        assertEquals(1234L, msg.getExpiryTime());
+    }
+
     // Tests_SRS_MESSAGE_34_038: [If the provided absolute expiry time is negative, an IllegalArgumentException shall be thrown.]
     @Test (expected = IllegalArgumentException.class)
     public void setAbsoluteTimeWithNegativeTimeThrowsIllegalArgumentException()
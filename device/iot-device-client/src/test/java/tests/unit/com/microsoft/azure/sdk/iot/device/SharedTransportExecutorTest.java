@@ -0,0 +1,123 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device;
+
+import com.microsoft.azure.sdk.iot.device.SharedTransportExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for SharedTransportExecutor.
+ */
+public class SharedTransportExecutorTest
+{
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_001: [If the provided threadCount is less than 1, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZeroThreads()
+    {
+        new SharedTransportExecutor(0);
+    }
+
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_002: [The constructor shall create a scheduler with threadCount threads that removes cancelled tasks from its queue.]
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_003: [This function shall return the scheduler.]
+    @Test
+    public void constructorCreatesSchedulerWithThreadCount()
+    {
+        //act
+        SharedTransportExecutor sharedTransportExecutor = new SharedTransportExecutor(3);
+
+        //assert
+        ScheduledThreadPoolExecutor scheduler = (ScheduledThreadPoolExecutor) sharedTransportExecutor.getScheduledExecutorService();
+        assertEquals(3, scheduler.getCorePoolSize());
+        assertTrue(scheduler.getRemoveOnCancelPolicy());
+        sharedTransportExecutor.close();
+    }
+
+    @Test
+    public void defaultConstructorUsesAtLeastTwoThreads()
+    {
+        //act
+        SharedTransportExecutor sharedTransportExecutor = new SharedTransportExecutor();
+
+        //assert
+        ScheduledThreadPoolExecutor scheduler = (ScheduledThreadPoolExecutor) sharedTransportExecutor.getScheduledExecutorService();
+        assertEquals(Math.max(2, Runtime.getRuntime().availableProcessors()), scheduler.getCorePoolSize());
+        sharedTransportExecutor.close();
+    }
+
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_004: [This function shall return the current pool size of the scheduler.]
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_005: [This function shall return the number of threads of the scheduler that are running a task.]
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_006: [This function shall return the size of the scheduler's queue.]
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_007: [This function shall return the number of completed tasks of the scheduler.]
+    @Test
+    public void metricsReflectSchedulerUtilization() throws InterruptedException
+    {
+        //arrange
+        SharedTransportExecutor sharedTransportExecutor = new SharedTransportExecutor(1);
+        ScheduledExecutorService scheduler = sharedTransportExecutor.getScheduledExecutorService();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        //act
+        scheduler.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        ScheduledFuture<?> delayed = scheduler.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        }, 1, TimeUnit.HOURS);
+
+        //assert
+        assertEquals(1, sharedTransportExecutor.getThreadCount());
+        assertEquals(1, sharedTransportExecutor.getActiveThreadCount());
+        assertEquals(1, sharedTransportExecutor.getQueuedTaskCount());
+        assertEquals(0, sharedTransportExecutor.getCompletedTaskCount());
+
+        delayed.cancel(false);
+        assertEquals(0, sharedTransportExecutor.getQueuedTaskCount());
+
+        release.countDown();
+        sharedTransportExecutor.close();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1, sharedTransportExecutor.getCompletedTaskCount());
+    }
+
+    // Tests_SRS_SHAREDTRANSPORTEXECUTOR_41_008: [This function shall shut down the scheduler.]
+    @Test
+    public void closeShutsDownScheduler()
+    {
+        //arrange
+        SharedTransportExecutor sharedTransportExecutor = new SharedTransportExecutor(1);
+
+        //act
+        sharedTransportExecutor.close();
+
+        //assert
+        assertTrue(sharedTransportExecutor.getScheduledExecutorService().isShutdown());
+    }
+}
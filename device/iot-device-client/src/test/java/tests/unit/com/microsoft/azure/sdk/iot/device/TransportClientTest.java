@@ -37,26 +37,32 @@ public class TransportClientTest
     @Mocked
     RetryPolicy mockRetryPolicy;
 
-    // Tests_SRS_TRANSPORTCLIENT_12_001: [If the `protocol` is not valid, the constructor shall throw an IllegalArgumentException.]
-    @Test (expected = IllegalArgumentException.class)
-    public void constructorThrowsProtocolMQTT()
+    // Tests_SRS_TRANSPORTCLIENT_12_002: [The constructor shall store the provided protocol.]
+    @Test
+    public void constructorSuccessMQTT()
     {
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.MQTT;
 
         // act
-        new TransportClient(iotHubClientProtocol);
+        TransportClient transportClient = new TransportClient(iotHubClientProtocol);
+
+        // assert
+        assertEquals(iotHubClientProtocol, Deencapsulation.getField(transportClient, "iotHubClientProtocol"));
     }
 
-    // Tests_SRS_TRANSPORTCLIENT_12_001: [If the `protocol` is not valid, the constructor shall throw an IllegalArgumentException.]
-    @Test (expected = IllegalArgumentException.class)
-    public void constructorThrowsProtocolMQTT_WS()
+    // Tests_SRS_TRANSPORTCLIENT_12_002: [The constructor shall store the provided protocol.]
+    @Test
+    public void constructorSuccessMQTT_WS()
     {
         // arrange
         IotHubClientProtocol iotHubClientProtocol = IotHubClientProtocol.MQTT_WS;
 
         // act
-        new TransportClient(iotHubClientProtocol);
+        TransportClient transportClient = new TransportClient(iotHubClientProtocol);
+
+        // assert
+        assertEquals(iotHubClientProtocol, Deencapsulation.getField(transportClient, "iotHubClientProtocol"));
     }
 
     // Tests_SRS_TRANSPORTCLIENT_12_001: [If the `protocol` is not valid, the constructor shall throw an IllegalArgumentException.]
@@ -191,6 +197,70 @@ public class TransportClientTest
         };
     }
 
+    // Tests_SRS_TRANSPORTCLIENT_41_004: [The function shall set the shared transport executor, if any, on each device client's config.]
+    // Tests_SRS_TRANSPORTCLIENT_41_005: [The function shall save the provided sharedTransportExecutor.]
+    @Test
+    public void openSetsSharedTransportExecutorOnEachConfig(@Mocked final SharedTransportExecutor mockSharedTransportExecutor) throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        transportClient.setSharedTransportExecutor(mockSharedTransportExecutor);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+            }
+        };
+
+        // act
+        transportClient.open();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceClientConfig.setSharedTransportExecutor(mockSharedTransportExecutor);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_41_006: [The function shall set the callback executor, if any, on each device client's config.]
+    // Tests_SRS_TRANSPORTCLIENT_41_007: [The function shall save the provided callbackExecutor.]
+    @Test
+    public void openSetsCallbackExecutorOnEachConfig(@Mocked final CallbackExecutor mockCallbackExecutor) throws IOException
+    {
+        // arrange
+        final TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        transportClient.setCallbackExecutor(mockCallbackExecutor);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClient.getConfig();
+                result = mockDeviceClientConfig;
+            }
+        };
+
+        // act
+        transportClient.open();
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockDeviceClientConfig.setCallbackExecutor(mockCallbackExecutor);
+                times = 2;
+            }
+        };
+    }
+
     // Tests_SRS_TRANSPORTCLIENT_12_015: [If the registered device list is not empty the function shall call closeFileUpload on all devices.]
     @Test
     public void closeNowNoDevice() throws IOException
@@ -363,6 +433,63 @@ public class TransportClientTest
     }
 
 
+    // Tests_SRS_TRANSPORTCLIENT_41_003: [The function shall throw IllegalStateException if the protocol is MQTT or MQTT_WS and maxMqttDeviceCount device clients are already registered.]
+    @Test (expected = IllegalStateException.class)
+    public void registerDeviceClientThrowsIfMqttDeviceCountIsReached()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.MQTT);
+        transportClient.setMaxMqttDeviceCount(1);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        // act
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_41_003: [The function shall throw IllegalStateException if the protocol is MQTT or MQTT_WS and maxMqttDeviceCount device clients are already registered.]
+    @Test
+    public void registerDeviceClientIgnoresMqttDeviceCountForAmqps()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.AMQPS);
+        transportClient.setMaxMqttDeviceCount(1);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        // act
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        // assert
+        ArrayList<DeviceClient> actualDeviceClientList = Deencapsulation.getField(transportClient, "deviceClientList");
+        assertEquals(2, actualDeviceClientList.size());
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_41_001: [The function shall throw IllegalArgumentException if the maxMqttDeviceCount parameter is less than 1 or less than the number of registered device clients.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxMqttDeviceCountThrowsBelowRegisteredDeviceCount()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.MQTT);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+        Deencapsulation.invoke(transportClient, "registerDeviceClient", mockDeviceClient);
+
+        // act
+        transportClient.setMaxMqttDeviceCount(1);
+    }
+
+    // Tests_SRS_TRANSPORTCLIENT_41_002: [The function shall save the provided maxMqttDeviceCount.]
+    @Test
+    public void setMaxMqttDeviceCountSavesCount()
+    {
+        // arrange
+        TransportClient transportClient = new TransportClient(IotHubClientProtocol.MQTT);
+
+        // act
+        transportClient.setMaxMqttDeviceCount(2000);
+
+        // assert
+        assertEquals(2000, (int) Deencapsulation.getField(transportClient, "maxMqttDeviceCount"));
+    }
+
     // Tests_SRS_TRANSPORTCLIENT_12_020: [The function shall call the underlying deviceIO updateDeviceConfig with the given config.]
     // Tests_SRS_TRANSPORTCLIENT_12_019: [The getter shall return with the value of the transportClientState.]
     @Test
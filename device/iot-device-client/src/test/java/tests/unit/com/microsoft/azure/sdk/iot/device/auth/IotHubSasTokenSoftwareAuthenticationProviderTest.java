@@ -347,4 +347,67 @@ public class IotHubSasTokenSoftwareAuthenticationProviderTest
         //assert
         assertEquals(mockSSLContext, actualSSLContext);
     }
+
+    //Tests_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_001: [If the provided authentication provider is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void shareSSLContextThrowsForNullProvider() throws IOException
+    {
+        //arrange
+        IotHubSasTokenSoftwareAuthenticationProvider sasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+
+        //act
+        sasAuth.shareSSLContext(null);
+    }
+
+    //Tests_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_002: [If the provided authentication provider trusts a different certificate or certificate path than this object, this function shall return false.]
+    @Test
+    public void shareSSLContextDoesNotShareWithDifferentTrustedCert() throws IOException
+    {
+        //arrange
+        IotHubSasTokenSoftwareAuthenticationProvider sasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+        IotHubSasTokenSoftwareAuthenticationProvider otherSasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, "otherDeviceId", expectedDeviceKey, expectedSasToken);
+        otherSasAuth.setIotHubTrustedCert("someCertificate");
+
+        //act
+        boolean shared = sasAuth.shareSSLContext(otherSasAuth);
+
+        //assert
+        assertFalse(shared);
+        assertEquals(null, Deencapsulation.getField(otherSasAuth, "iotHubSSLContext"));
+        assertTrue((boolean) Deencapsulation.getField(otherSasAuth, "sslContextNeedsUpdate"));
+    }
+
+    //Tests_SRS_IOTHUBSASTOKENSOFTWAREAUTHENTICATION_41_003: [This function shall generate this object's ssl context if needed, save it in the provided authentication provider, and return true.]
+    @Test
+    public void shareSSLContextSavesSSLContextInOtherProvider() throws IOException
+    {
+        //arrange
+        IotHubSasTokenSoftwareAuthenticationProvider sasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, expectedDeviceId, expectedDeviceKey, expectedSasToken);
+        IotHubSasTokenSoftwareAuthenticationProvider otherSasAuth = new IotHubSasTokenSoftwareAuthenticationProvider(expectedHostname, "otherDeviceId", expectedDeviceKey, expectedSasToken);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.newInstance(IotHubSSLContext.class);
+                result = mockIotHubSSLContext;
+
+                Deencapsulation.invoke(mockIotHubSSLContext, "getSSLContext");
+                result = mockSSLContext;
+            }
+        };
+
+        //act
+        boolean shared = sasAuth.shareSSLContext(otherSasAuth);
+
+        //assert
+        assertTrue(shared);
+        assertEquals(mockSSLContext, otherSasAuth.getSSLContext());
+        new Verifications()
+        {
+            {
+                Deencapsulation.newInstance(IotHubSSLContext.class);
+                times = 1;
+            }
+        };
+    }
 }
@@ -0,0 +1,112 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubEventDrivenSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.After;
+import org.junit.Test;
+
+/** Unit tests for IotHubEventDrivenSendTask. */
+public class IotHubEventDrivenSendTaskTest
+{
+    @Mocked
+    IotHubTransport mockTransport;
+
+    @After
+    public void clearInterruptedFlag()
+    {
+        // the task re-asserts the interrupt before returning, so the test thread has to clear it
+        Thread.interrupted();
+    }
+
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_001: [If the provided transport is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullTransport()
+    {
+        new IotHubEventDrivenSendTask(null);
+    }
+
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_002: [The constructor shall save the transport.]
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_004: [The function shall send all messages on the transport queue that fit in the in flight window.]
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_005: [The function shall invoke all callbacks on the transport's callback queue.]
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_007: [The function shall wait for the transport to signal new work before sending again.]
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_008: [If the thread is interrupted while waiting, the function shall return.]
+    @Test
+    public void runSendsAndInvokesCallbacksUntilInterrupted() throws InterruptedException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.waitForSendSignal();
+                result = null;
+                result = new InterruptedException();
+            }
+        };
+
+        IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        sendTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 2;
+                mockTransport.invokeCallbacks();
+                times = 2;
+                mockTransport.waitForSendSignal();
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_003: [The function shall run until the thread it runs on is interrupted.]
+    @Test
+    public void runReturnsImmediatelyIfAlreadyInterrupted() throws InterruptedException
+    {
+        IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        Thread.currentThread().interrupt();
+
+        sendTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 0;
+                mockTransport.waitForSendSignal();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBEVENTDRIVENSENDTASK_41_006: [The function shall not crash because of any error or exception thrown by the transport.]
+    @Test
+    public void runDoesNotCrashFromThrowable() throws InterruptedException
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.sendAllMessages();
+                result = new Throwable("Test that send does not crash.");
+                mockTransport.waitForSendSignal();
+                result = new InterruptedException();
+            }
+        };
+
+        IotHubEventDrivenSendTask sendTask = new IotHubEventDrivenSendTask(mockTransport);
+        sendTask.run();
+
+        new Verifications()
+        {
+            {
+                mockTransport.waitForSendSignal();
+                times = 1;
+            }
+        };
+    }
+}
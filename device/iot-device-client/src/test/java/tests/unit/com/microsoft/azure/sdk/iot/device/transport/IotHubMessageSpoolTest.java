@@ -0,0 +1,321 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.IotHubSpoolSyncPolicy;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubMessageSpool;
+import mockit.Deencapsulation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IotHubMessageSpool. The spool is exercised against a temporary directory.
+ */
+public class IotHubMessageSpoolTest
+{
+    private static final long SPOOL_SIZE = IotHubMessageSpool.MIN_SPOOL_SIZE_IN_BYTES;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException
+    {
+        directory = Files.createTempDirectory("spooltest").toFile();
+    }
+
+    @After
+    public void deleteDirectory()
+    {
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private long totalSizeOnDisk()
+    {
+        long total = 0;
+        for (File file : directory.listFiles())
+        {
+            total += file.length();
+        }
+        return total;
+    }
+
+    private static int availableInActiveSegment(IotHubMessageSpool spool)
+    {
+        Object activeSegment = Deencapsulation.getField(spool, "activeSegment");
+        return Deencapsulation.invoke(activeSegment, "available");
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_001: [If the provided directory or sync policy is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullSyncPolicy() throws IOException
+    {
+        new IotHubMessageSpool(directory, SPOOL_SIZE, null);
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_002: [If the provided maximum size is smaller than MIN_SPOOL_SIZE_IN_BYTES, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForTooSmallSpool() throws IOException
+    {
+        new IotHubMessageSpool(directory, SPOOL_SIZE - 1, IotHubSpoolSyncPolicy.PER_MESSAGE);
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_003: [If the directory does not exist and cannot be created, the constructor shall throw an IOException.]
+    @Test (expected = IOException.class)
+    public void constructorThrowsIfDirectoryIsAFile() throws IOException
+    {
+        File file = new File(directory, "notADirectory");
+        assertTrue(file.createNewFile());
+
+        new IotHubMessageSpool(file, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_004: [The constructor shall read every segment file in the directory and keep the messages that were not acknowledged.]
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_005: [This function shall return the recovered messages in the order they were appended, and return an empty list on later calls.]
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_008: [This function shall write the message to the active segment with the next sequence number and return that sequence number.]
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_016: [This function shall record the acknowledgement in the segment that holds the message.]
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_015: [This function shall force the active segment to disk and close all segment files.]
+    @Test
+    public void reopenedSpoolRecoversUnacknowledgedMessagesInOrder() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+        Message first = new Message("first");
+        first.setProperty("name", "value");
+        first.setAbsoluteExpiryTime(System.currentTimeMillis() + 60000);
+        long firstSequenceNumber = spool.append(first);
+        long secondSequenceNumber = spool.append(new Message("second"));
+        long thirdSequenceNumber = spool.append(new Message("third"));
+        spool.acknowledge(secondSequenceNumber);
+        spool.close();
+
+        //act
+        IotHubMessageSpool reopenedSpool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+        List<IotHubMessageSpool.SpooledMessage> recovered = reopenedSpool.takeRecoveredMessages();
+
+        //assert
+        assertEquals(2, recovered.size());
+        assertEquals(firstSequenceNumber, recovered.get(0).getSequenceNumber());
+        assertEquals(thirdSequenceNumber, recovered.get(1).getSequenceNumber());
+        Message recoveredFirst = recovered.get(0).getMessage();
+        assertArrayEquals("first".getBytes(), recoveredFirst.getBytes());
+        assertEquals(first.getMessageId(), recoveredFirst.getMessageId());
+        assertEquals(first.getCorrelationId(), recoveredFirst.getCorrelationId());
+        assertEquals(first.getExpiryTime(), recoveredFirst.getExpiryTime());
+        assertEquals("value", recoveredFirst.getProperty("name"));
+        assertTrue(reopenedSpool.takeRecoveredMessages().isEmpty());
+        assertEquals(thirdSequenceNumber + 1, reopenedSpool.append(new Message("fourth")));
+        reopenedSpool.close();
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_006: [If the provided message is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void appendThrowsForNullMessage() throws IOException
+    {
+        new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE).append(null);
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_007: [If the message does not fit in a segment, this function shall throw an IOException.]
+    @Test (expected = IOException.class)
+    public void appendThrowsForMessageLargerThanASegment() throws IOException
+    {
+        new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE).append(new Message(new byte[(int) SPOOL_SIZE]));
+    }
+
+    @Test (expected = IOException.class)
+    public void appendThrowsIfClosed() throws IOException
+    {
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+        spool.close();
+
+        spool.append(new Message("message"));
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_010: [If the sync policy is GROUP_COMMIT and the provided sequence number is not on disk yet, this function shall force every appended message to disk.]
+    @Test
+    public void groupCommitMessagesAreRecovered() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.GROUP_COMMIT);
+        spool.append(new Message("first"));
+        long lastSequenceNumber = spool.append(new Message("second"));
+
+        //act
+        spool.ensureDurable(lastSequenceNumber);
+        spool.close();
+
+        //assert
+        assertEquals(2, new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.GROUP_COMMIT).takeRecoveredMessages().size());
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_012: [If the sequence number is not in the spool, this function shall do nothing.]
+    @Test
+    public void acknowledgeIgnoresUnknownSequenceNumbers() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+        long sequenceNumber = spool.append(new Message("message"));
+
+        //act
+        spool.acknowledge(sequenceNumber + 100);
+        spool.acknowledge(-1);
+        spool.close();
+
+        //assert
+        assertEquals(1, new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE).takeRecoveredMessages().size());
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_014: [This function shall delete the oldest segments, other than the active one, whose messages are all acknowledged.]
+    @Test
+    public void acknowledgingEverySegmentMessageDeletesTheSegment() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC);
+        long firstSequenceNumber = spool.append(new Message(new byte[1024]));
+        long lastSequenceNumber = firstSequenceNumber;
+        while (directory.listFiles().length < 3)
+        {
+            lastSequenceNumber = spool.append(new Message(new byte[1024]));
+        }
+
+        //act
+        for (long sequenceNumber = firstSequenceNumber; sequenceNumber <= lastSequenceNumber; sequenceNumber++)
+        {
+            spool.acknowledge(sequenceNumber);
+        }
+
+        //assert
+        assertEquals(1, directory.listFiles().length);
+        spool.close();
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_017: [This function shall not create a segment, nor delete a segment that holds unacknowledged messages.]
+    @Test
+    public void acknowledgingInAFullSpoolKeepsUnacknowledgedMessages() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC);
+        List<Long> sequenceNumbers = new ArrayList<>();
+        sequenceNumbers.add(spool.append(new Message(new byte[1024])));
+        File firstSegment = directory.listFiles()[0];
+        int maxSegments = (int) (SPOOL_SIZE / firstSegment.length());
+        // fill every segment, the last one up to the point where one more message would need a new segment
+        while (directory.listFiles().length < maxSegments || availableInActiveSegment(spool) > 2 * 1024)
+        {
+            sequenceNumbers.add(spool.append(new Message(new byte[1024])));
+        }
+
+        //act
+        for (long sequenceNumber : sequenceNumbers.subList(1, sequenceNumbers.size()))
+        {
+            spool.acknowledge(sequenceNumber);
+        }
+        spool.close();
+
+        //assert
+        assertTrue(firstSegment.exists());
+        assertEquals(maxSegments, directory.listFiles().length);
+        List<IotHubMessageSpool.SpooledMessage> recovered = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC).takeRecoveredMessages();
+        assertEquals(1, recovered.size());
+        assertEquals((long) sequenceNumbers.get(0), recovered.get(0).getSequenceNumber());
+    }
+
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_018: [If the spool is closed or every appended message is on disk, this function shall do nothing.]
+    // Tests_SRS_IOTHUBMESSAGESPOOL_41_019: [This function shall force every appended message to disk.]
+    @Test
+    public void syncForcesMessagesAppendedWithPeriodicPolicy() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC);
+        long sequenceNumber = spool.append(new Message("first"));
+
+        //act
+        spool.sync();
+        spool.sync();
+        spool.close();
+        spool.sync();
+
+        //assert
+        List<IotHubMessageSpool.SpooledMessage> recovered = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC).takeRecoveredMessages();
+        assertEquals(1, recovered.size());
+        assertEquals(sequenceNumber, recovered.get(0).getSequenceNumber());
+    }
+
+    @Test
+    public void spoolNeverExceedsItsMaximumSize() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC);
+        long lastSequenceNumber = 0;
+
+        //act
+        for (int i = 0; i < 1000; i++)
+        {
+            lastSequenceNumber = spool.append(new Message(new byte[1024]));
+        }
+        spool.close();
+
+        //assert
+        assertTrue(totalSizeOnDisk() <= SPOOL_SIZE);
+        List<IotHubMessageSpool.SpooledMessage> recovered = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PERIODIC).takeRecoveredMessages();
+        assertEquals(lastSequenceNumber, recovered.get(recovered.size() - 1).getSequenceNumber());
+    }
+
+    @Test
+    public void recoveryStopsAtCorruptedRecord() throws IOException
+    {
+        //arrange
+        IotHubMessageSpool spool = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE);
+        spool.append(new Message("first"));
+        spool.append(new Message("second"));
+        spool.close();
+
+        // flip the last byte of the second record's body
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw"))
+        {
+            long position = 0;
+            while (file.length() > position && readByteAt(file, position) != 0)
+            {
+                file.seek(position + 1);
+                int length = file.readInt();
+                position += 17 + length;
+            }
+            int lastByte = readByteAt(file, position - 1);
+            file.seek(position - 1);
+            file.write(lastByte ^ 0xFF);
+        }
+
+        //act
+        List<IotHubMessageSpool.SpooledMessage> recovered = new IotHubMessageSpool(directory, SPOOL_SIZE, IotHubSpoolSyncPolicy.PER_MESSAGE).takeRecoveredMessages();
+
+        //assert
+        assertEquals(1, recovered.size());
+        assertArrayEquals("first".getBytes(), recovered.get(0).getMessage().getBytes());
+    }
+
+    private static int readByteAt(RandomAccessFile file, long position) throws IOException
+    {
+        file.seek(position);
+        return file.read();
+    }
+}
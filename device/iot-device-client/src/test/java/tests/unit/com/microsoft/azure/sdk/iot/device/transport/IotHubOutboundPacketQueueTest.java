@@ -0,0 +1,224 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.IotHubQueueOverflowPolicy;
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubOutboundPacketQueue;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportPacket;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for IotHubOutboundPacketQueue.
+ */
+public class IotHubOutboundPacketQueueTest
+{
+    private static IotHubTransportPacket packetOfSize(int size)
+    {
+        return new IotHubTransportPacket(new Message(new byte[size]), null, null, null, System.currentTimeMillis());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_001: [If the provided overflow policy is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullPolicy()
+    {
+        new IotHubOutboundPacketQueue(1, 1, null, 0);
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_002: [The constructor shall save the capacity, overflow policy, and block timeout.]
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_013: [This function shall return the saved overflow policy.]
+    @Test
+    public void constructorSavesPolicy()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, 1, IotHubQueueOverflowPolicy.DROP_NEWEST, 0);
+
+        assertEquals(IotHubQueueOverflowPolicy.DROP_NEWEST, queue.getOverflowPolicy());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_003: [If the provided packet is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void admitThrowsForNullPacket()
+    {
+        new IotHubOutboundPacketQueue().admit(null);
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_004: [If the queue has room for the packet, this function shall add it to the queue and return an empty list.]
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_012: [This function shall return the sum of the body sizes of all queued packets.]
+    @Test
+    public void admitAddsPacketIfThereIsRoom()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(2, 100, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+
+        List<IotHubTransportPacket> dropped = queue.admit(packetOfSize(10));
+
+        assertTrue(dropped.isEmpty());
+        assertEquals(1, queue.size());
+        assertEquals(10, queue.getSizeInBytes());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_005: [If the packet is larger than the byte capacity of the queue, this function shall reject it regardless of the overflow policy.]
+    @Test
+    public void admitRejectsPacketLargerThanByteCapacity()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(10, 5, IotHubQueueOverflowPolicy.DROP_OLDEST, 0);
+        IotHubTransportPacket oldPacket = packetOfSize(5);
+        IotHubTransportPacket bigPacket = packetOfSize(6);
+        queue.admit(oldPacket);
+
+        List<IotHubTransportPacket> dropped = queue.admit(bigPacket);
+
+        assertEquals(1, dropped.size());
+        assertSame(bigPacket, dropped.get(0));
+        assertSame(oldPacket, queue.peek());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_006: [If the overflow policy is BLOCK, this function shall wait up to the block timeout for room in the queue, and reject the packet if there is still no room.]
+    @Test
+    public void admitBlockRejectsPacketAfterTimeout()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.BLOCK, 10);
+        IotHubTransportPacket newPacket = packetOfSize(1);
+        queue.admit(packetOfSize(1));
+
+        List<IotHubTransportPacket> dropped = queue.admit(newPacket);
+
+        assertEquals(1, dropped.size());
+        assertSame(newPacket, dropped.get(0));
+        assertEquals(1, queue.size());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_006: [If the overflow policy is BLOCK, this function shall wait up to the block timeout for room in the queue, and reject the packet if there is still no room.]
+    @Test
+    public void admitBlockAddsPacketOnceThereIsRoom() throws InterruptedException
+    {
+        final IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.BLOCK, 10000);
+        IotHubTransportPacket oldPacket = packetOfSize(1);
+        IotHubTransportPacket newPacket = packetOfSize(1);
+        queue.admit(oldPacket);
+
+        Thread consumer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                queue.poll();
+            }
+        });
+        consumer.start();
+
+        List<IotHubTransportPacket> dropped = queue.admit(newPacket);
+        consumer.join();
+
+        assertTrue(dropped.isEmpty());
+        assertSame(newPacket, queue.peek());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_014: [If the overflow policy is BLOCK and the caller may not block, this function shall reject the packet without waiting.]
+    @Test
+    public void admitBlockRejectsPacketRightAwayIfCallerMayNotBlock()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.BLOCK, 60000);
+        IotHubTransportPacket newPacket = packetOfSize(1);
+        queue.admit(packetOfSize(1));
+        long startTime = System.currentTimeMillis();
+
+        List<IotHubTransportPacket> dropped = queue.admit(newPacket, false);
+
+        assertTrue(System.currentTimeMillis() - startTime < 60000);
+        assertEquals(1, dropped.size());
+        assertSame(newPacket, dropped.get(0));
+        assertEquals(1, queue.size());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_007: [If the overflow policy is DROP_OLDEST, this function shall remove packets from the head of the queue until there is room, add the packet, and return the removed packets.]
+    @Test
+    public void admitDropOldestEvictsHeadPackets()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(10, 10, IotHubQueueOverflowPolicy.DROP_OLDEST, 0);
+        IotHubTransportPacket first = packetOfSize(4);
+        IotHubTransportPacket second = packetOfSize(4);
+        IotHubTransportPacket third = packetOfSize(2);
+        IotHubTransportPacket newPacket = packetOfSize(7);
+        queue.admit(first);
+        queue.admit(second);
+        queue.admit(third);
+
+        List<IotHubTransportPacket> dropped = queue.admit(newPacket);
+
+        assertEquals(2, dropped.size());
+        assertSame(first, dropped.get(0));
+        assertSame(second, dropped.get(1));
+        assertEquals(2, queue.size());
+        assertEquals(9, queue.getSizeInBytes());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_008: [If the overflow policy is FAIL_FAST or DROP_NEWEST, this function shall reject the packet.]
+    @Test
+    public void admitDropNewestRejectsPacket()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.DROP_NEWEST, 0);
+        IotHubTransportPacket oldPacket = packetOfSize(1);
+        IotHubTransportPacket newPacket = packetOfSize(1);
+        queue.admit(oldPacket);
+
+        List<IotHubTransportPacket> dropped = queue.admit(newPacket);
+
+        assertEquals(1, dropped.size());
+        assertSame(newPacket, dropped.get(0));
+        assertSame(oldPacket, queue.peek());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_009: [If the provided packet is null, this function shall throw a NullPointerException.]
+    @Test (expected = NullPointerException.class)
+    public void offerThrowsForNullPacket()
+    {
+        new IotHubOutboundPacketQueue().offer(null);
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_010: [This function shall add the packet to the queue even if the queue is at capacity.]
+    @Test
+    public void offerIgnoresCapacity()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue(1, 1, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+        queue.admit(packetOfSize(1));
+
+        assertTrue(queue.offer(packetOfSize(5)));
+
+        assertEquals(2, queue.size());
+        assertEquals(6, queue.getSizeInBytes());
+    }
+
+    // Tests_SRS_IOTHUBOUTBOUNDPACKETQUEUE_41_011: [This function shall remove and return the packet at the head of the queue, or null if the queue is empty.]
+    @Test
+    public void pollRemovesPacketsInOrder()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue();
+        IotHubTransportPacket first = packetOfSize(3);
+        IotHubTransportPacket second = packetOfSize(4);
+        queue.add(first);
+        queue.add(second);
+
+        assertSame(first, queue.poll());
+        assertEquals(4, queue.getSizeInBytes());
+        assertSame(second, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getSizeInBytes());
+    }
+
+    @Test (expected = UnsupportedOperationException.class)
+    public void iteratorDoesNotSupportRemoval()
+    {
+        IotHubOutboundPacketQueue queue = new IotHubOutboundPacketQueue();
+        queue.add(packetOfSize(1));
+
+        Iterator<IotHubTransportPacket> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+    }
+}
@@ -0,0 +1,197 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
+
+import com.microsoft.azure.sdk.iot.device.transport.IotHubSignalledSendTask;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransport;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/** Unit tests for IotHubSignalledSendTask. */
+public class IotHubSignalledSendTaskTest
+{
+    private static final int RUNNING = 2;
+    private static final int RUNNING_SIGNALLED = 3;
+    private static final int STOPPED = 4;
+
+    @Mocked
+    IotHubTransport mockTransport;
+
+    /** Executor that only records the tasks submitted to it, so that the test decides when they run. */
+    private static class RecordingExecutor implements Executor
+    {
+        final List<Runnable> submitted = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command)
+        {
+            submitted.add(command);
+        }
+    }
+
+    private static AtomicInteger getState(IotHubSignalledSendTask sendTask)
+    {
+        return Deencapsulation.getField(sendTask, "state");
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_001: [If the provided transport or executor is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullTransport()
+    {
+        new IotHubSignalledSendTask(null, new RecordingExecutor());
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_001: [If the provided transport or executor is null, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForNullExecutor()
+    {
+        new IotHubSignalledSendTask(mockTransport, null);
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_002: [The constructor shall save the transport and the executor.]
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_003: [If no run is scheduled or in progress, this function shall submit this task to the executor.]
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_005: [If a run is already scheduled or the task is stopped, this function shall do nothing.]
+    @Test
+    public void signalSubmitsOnceUntilTheTaskRuns()
+    {
+        //arrange
+        RecordingExecutor executor = new RecordingExecutor();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, executor);
+
+        //act
+        sendTask.signal();
+        sendTask.signal();
+
+        //assert
+        assertEquals(1, executor.submitted.size());
+        assertSame(sendTask, executor.submitted.get(0));
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_007: [The function shall send all messages on the transport queue that fit in the in flight window and invoke all callbacks on the transport's callback queue.]
+    @Test
+    public void runSendsAndInvokesCallbacksThenAcceptsNewSignals()
+    {
+        //arrange
+        RecordingExecutor executor = new RecordingExecutor();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, executor);
+        sendTask.signal();
+
+        //act
+        executor.submitted.get(0).run();
+        sendTask.signal();
+
+        //assert
+        assertEquals(2, executor.submitted.size());
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 1;
+                mockTransport.invokeCallbacks();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_004: [If a run is in progress, this function shall make that run send again once it is done.]
+    @Test
+    public void signalWhileRunningDoesNotSubmitAgain()
+    {
+        //arrange
+        RecordingExecutor executor = new RecordingExecutor();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, executor);
+        getState(sendTask).set(RUNNING);
+
+        //act
+        sendTask.signal();
+
+        //assert
+        assertEquals(0, executor.submitted.size());
+        assertEquals(RUNNING_SIGNALLED, getState(sendTask).get());
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_006: [This function shall make all later signals do nothing.]
+    @Test
+    public void stopIgnoresLaterSignalsAndSkipsScheduledRun()
+    {
+        //arrange
+        RecordingExecutor executor = new RecordingExecutor();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, executor);
+        sendTask.signal();
+
+        //act
+        sendTask.stop();
+        sendTask.signal();
+        executor.submitted.get(0).run();
+
+        //assert
+        assertEquals(1, executor.submitted.size());
+        new Verifications()
+        {
+            {
+                mockTransport.sendAllMessages();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBSIGNALLEDSENDTASK_41_008: [The function shall not crash because of any error or exception thrown by the transport.]
+    @Test
+    public void runDoesNotCrashIfTransportThrows()
+    {
+        //arrange
+        RecordingExecutor executor = new RecordingExecutor();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, executor);
+        new NonStrictExpectations()
+        {
+            {
+                mockTransport.sendAllMessages();
+                result = new IllegalStateException();
+            }
+        };
+        sendTask.signal();
+
+        //act
+        executor.submitted.get(0).run();
+
+        //assert
+        sendTask.signal();
+        assertEquals(2, executor.submitted.size());
+    }
+
+    @Test
+    public void signalStopsTaskIfExecutorRejectsIt()
+    {
+        //arrange
+        final AtomicInteger executeCount = new AtomicInteger();
+        IotHubSignalledSendTask sendTask = new IotHubSignalledSendTask(mockTransport, new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                executeCount.incrementAndGet();
+                throw new RejectedExecutionException();
+            }
+        });
+
+        //act
+        sendTask.signal();
+        sendTask.signal();
+
+        //assert
+        assertEquals(1, executeCount.get());
+        assertEquals(STOPPED, getState(sendTask).get());
+    }
+}
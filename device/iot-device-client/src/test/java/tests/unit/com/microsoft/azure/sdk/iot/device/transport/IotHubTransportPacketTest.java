@@ -10,6 +10,8 @@ import com.microsoft.azure.sdk.iot.device.Message;
 import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportPacket;
 import mockit.Deencapsulation;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import org.junit.Test;
 
 import java.util.HashMap;
@@ -200,4 +202,72 @@ public class IotHubTransportPacketTest
         //act
         new IotHubTransportPacket(mockMsg, mockCallback, new Object(), IotHubStatusCode.OK_EMPTY, -1);
     }
+
+    // Tests_SRS_IOTHUBTRANSPORTPACKET_41_001: [This function shall return the length of the message body, or 0 if the message has no body.]
+    @Test
+    public void getSizeInBytesReturnsBodyLengthAndReadsItOnce()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyLength();
+                result = 7;
+            }
+        };
+        IotHubTransportPacket packet = new IotHubTransportPacket(mockMsg, mockCallback, new Object(), null, 1);
+
+        //act
+        packet.getSizeInBytes();
+        int actualSize = packet.getSizeInBytes();
+
+        //assert
+        assertEquals(7, actualSize);
+        new Verifications()
+        {
+            {
+                mockMsg.getBodyLength();
+                times = 1;
+                mockMsg.getBytes();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTPACKET_41_001: [This function shall return the length of the message body, or 0 if the message has no body.]
+    @Test
+    public void getSizeInBytesReturnsZeroForNullBody()
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBodyLength();
+                result = 0;
+            }
+        };
+        IotHubTransportPacket packet = new IotHubTransportPacket(mockMsg, mockCallback, new Object(), null, 1);
+
+        //act
+        int actualSize = packet.getSizeInBytes();
+
+        //assert
+        assertEquals(0, actualSize);
+    }
+
+    // Tests_SRS_IOTHUBTRANSPORTPACKET_41_002: [This function shall return the saved spool sequence number, or -1 if none was saved.]
+    // Tests_SRS_IOTHUBTRANSPORTPACKET_41_003: [This function shall save the provided spool sequence number.]
+    @Test
+    public void setSpoolSequenceNumberSavesSequenceNumber()
+    {
+        //arrange
+        IotHubTransportPacket packet = new IotHubTransportPacket(mockMsg, mockCallback, new Object(), null, 1);
+        assertEquals(-1, packet.getSpoolSequenceNumber());
+
+        //act
+        packet.setSpoolSequenceNumber(12);
+
+        //assert
+        assertEquals(12, packet.getSpoolSequenceNumber());
+    }
 }
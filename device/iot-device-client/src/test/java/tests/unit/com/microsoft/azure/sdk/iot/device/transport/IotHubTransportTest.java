@@ -6,23 +6,34 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport;
 import com.microsoft.azure.sdk.iot.device.*;
 import com.microsoft.azure.sdk.iot.device.exceptions.DeviceClientException;
 import com.microsoft.azure.sdk.iot.device.exceptions.IotHubServiceException;
+import com.microsoft.azure.sdk.iot.device.exceptions.IotHubSizeExceededException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.exceptions.UnauthorizedException;
 import com.microsoft.azure.sdk.iot.device.transport.*;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.exceptions.AmqpUnauthorizedAccessException;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsBatchMessage;
 import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsSingleMessage;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMultiplexedIotHubConnection;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.exceptions.MqttUnauthorizedException;
 import mockit.*;
 import org.junit.Test;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.microsoft.azure.sdk.iot.device.IotHubConnectionStatusChangeReason.*;
 import static com.microsoft.azure.sdk.iot.device.transport.IotHubConnectionStatus.*;
@@ -72,6 +83,9 @@ public class IotHubTransportTest
     @Mocked
     MqttIotHubConnection mockedMqttIotHubConnection;
 
+    @Mocked
+    MqttMultiplexedIotHubConnection mockedMqttMultiplexedIotHubConnection;
+
     @Mocked
     IotHubConnectionStateCallback mockedIotHubConnectionStateCallback;
 
@@ -517,6 +531,7 @@ public class IotHubTransportTest
     }
 
     //Tests_SRS_IOTHUBTRANSPORT_34_019: [This function shall open the invoke the method openConnection.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_008: [This function shall create the waiting queue with the capacity and overflow policy of the default config.]
     @Test
     public void openCallsOpenConnection() throws DeviceClientException
     {
@@ -532,6 +547,11 @@ public class IotHubTransportTest
                 Deencapsulation.invoke(transport, "isSasTokenExpired");
                 result = false;
 
+                mockedConfig.getMaxQueuedMessages();
+                result = 5;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.DROP_OLDEST;
+
                 Deencapsulation.invoke(transport, "openConnection");
             }
         };
@@ -547,6 +567,8 @@ public class IotHubTransportTest
                 times = 1;
             }
         };
+        IotHubOutboundPacketQueue waitingPacketsQueue = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals(IotHubQueueOverflowPolicy.DROP_OLDEST, waitingPacketsQueue.getOverflowPolicy());
     }
 
     //Tests_SRS_IOTHUBTRANSPORT_34_017: [If the connection status of this object is CONNECTED, this function shall do nothing.]
@@ -601,7 +623,7 @@ public class IotHubTransportTest
     public void closeMovesAllWaitingAndInProgressMessagesToCallbackQueueWithStatusMessageCancelledOnClose() throws DeviceClientException
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         waitingPacketsQueue.add(mockedPacket);
@@ -663,7 +685,7 @@ public class IotHubTransportTest
     public void closeWhenDisconnectedDoesNothing() throws DeviceClientException
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
@@ -868,6 +890,46 @@ public class IotHubTransportTest
         };
     }
 
+    //Tests_SRS_IOTHUBTRANSPORT_41_020: [If the default config's protocol is MQTT or MQTT_WS and there is more than one config, this function shall set this object's iotHubTransportConnection to a new MqttMultiplexedIotHubConnection object.]
+    @Test
+    public void openConnectionWithMqttMultiplexing() throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockedConfig);
+        configs.add(mockedConfig);
+        Deencapsulation.setField(transport, "deviceClientConfigs", configs);
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+
+                new MqttMultiplexedIotHubConnection();
+                result = mockedMqttMultiplexedIotHubConnection;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "openConnection");
+
+        //assert
+        new Verifications()
+        {
+            {
+                new MqttIotHubConnection((DeviceClientConfig) any);
+                times = 0;
+
+                mockedMqttMultiplexedIotHubConnection.setListener(transport);
+                times = 1;
+
+                mockedMqttMultiplexedIotHubConnection.open(configs);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_34_036: [If the default config's protocol is MQTT or MQTT_WS, this function shall set this object's iotHubTransportConnection to a new MqttIotHubConnection object.]
     @Test
     public void openConnectionWithMqttWS() throws TransportException
@@ -981,7 +1043,7 @@ public class IotHubTransportTest
     public void isEmptyReturnsTrueIfAllQueuesEmpty()
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
@@ -1001,7 +1063,7 @@ public class IotHubTransportTest
     public void isEmptyReturnsFalseIfWaitingQueueNotEmpty()
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         waitingPacketsQueue.add(mockedPacket);
@@ -1023,7 +1085,7 @@ public class IotHubTransportTest
     public void isEmptyReturnsFalseIfInProgressMapNotEmpty()
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         inProgressPackets.put("asdf", mockedPacket);
@@ -1045,7 +1107,7 @@ public class IotHubTransportTest
     public void isEmptyReturnsFalseIfCallbackQueueNotEmpty()
     {
         //arrange
-        final Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        final IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         final Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
         final Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
         callbackPacketsQueue.add(mockedPacket);
@@ -1144,7 +1206,7 @@ public class IotHubTransportTest
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
         Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
-        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
 
         new NonStrictExpectations()
@@ -1169,7 +1231,7 @@ public class IotHubTransportTest
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
         Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
-        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         waitingPacketsQueue.add(mockedPacket);
         Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
 
@@ -1189,7 +1251,7 @@ public class IotHubTransportTest
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
         final int MAX_MESSAGES_TO_SEND_PER_THREAD = Deencapsulation.getField(transport, "MAX_MESSAGES_TO_SEND_PER_THREAD");
         Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
-        Queue<IotHubTransportPacket> waitingPacketsQueue = new ConcurrentLinkedQueue<>();
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
         for (int i = 0; i < MAX_MESSAGES_TO_SEND_PER_THREAD + 1; i++)
         {
             waitingPacketsQueue.add(mockedPacket);
@@ -1218,256 +1280,1683 @@ public class IotHubTransportTest
         assertEquals(1, waitingPacketsQueue.size());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and execute
-    // their saved callback with their saved status and context]
+    //Tests_SRS_IOTHUBTRANSPORT_41_003: [If the connection status of this object is not CONNECTED, this function shall do nothing.]
     @Test
-    public void invokeCallbacksInvokesAllCallbacks()
+    public void sendAllMessagesDoesNothingIfNotConnected()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED_RETRYING);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertFalse(waitingPacketsQueue.isEmpty());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_004: [This function shall dequeue packets saved in the waiting queue and send
+    // them until the waiting queue is empty, the connection status isn't CONNECTED, or the number of in progress
+    // packets reaches the config's max messages in flight.]
+    @Test
+    public void sendAllMessagesDrainsWaitingQueue()
     {
         //arrange
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
-        callbackPacketsQueue.add(mockedPacket);
-        callbackPacketsQueue.add(mockedPacket);
-        callbackPacketsQueue.add(mockedPacket);
-        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
-        final Object context = new Object();
-        new NonStrictExpectations()
+        final int MAX_MESSAGES_TO_SEND_PER_THREAD = Deencapsulation.getField(transport, "MAX_MESSAGES_TO_SEND_PER_THREAD");
+        final int messageCount = MAX_MESSAGES_TO_SEND_PER_THREAD * 3;
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        for (int i = 0; i < messageCount; i++)
         {
-            {
-                mockedPacket.getCallback();
-                result = mockedEventCallback;
+            waitingPacketsQueue.add(mockedPacket);
+        }
 
-                mockedPacket.getContext();
-                result = context;
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
 
-                mockedPacket.getStatus();
-                result = mockedStatus;
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = messageCount;
+                Deencapsulation.invoke(transport, "sendPacket", new Class[] {IotHubTransportPacket.class}, mockedPacket);
             }
         };
 
         //act
-        transport.invokeCallbacks();
+        transport.sendAllMessages();
 
         //assert
-        assertTrue(callbackPacketsQueue.isEmpty());
         new Verifications()
         {
             {
-                mockedEventCallback.execute(mockedStatus, context);
-                times = 3;
+                Deencapsulation.invoke(transport, "sendPacket", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+                times = messageCount;
             }
         };
+        assertTrue(waitingPacketsQueue.isEmpty());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_046: [If this object's connection status is not CONNEECTED, this function shall do nothing.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_004: [This function shall dequeue packets saved in the waiting queue and send
+    // them until the waiting queue is empty, the connection status isn't CONNECTED, or the number of in progress
+    // packets reaches the config's max messages in flight.]
     @Test
-    public void handleMessageDoesNothingIfNotConnected() throws DeviceClientException
+    public void sendAllMessagesStopsWhenInFlightWindowIsFull()
     {
         //arrange
         final IotHubTransport transport = new IotHubTransport(mockedConfig);
-        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
-        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
-        receivedMessagesQueue.add(mockedTransportMessage);
-        receivedMessagesQueue.add(mockedTransportMessage);
-        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
-
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
-
-        //act
-        transport.handleMessage();
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+        inProgressPackets.put("1", mockedPacket);
+        inProgressPackets.put("2", mockedPacket);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressPackets);
 
-        //assert
-        assertEquals(2, receivedMessagesQueue.size());
-        new Verifications()
+        new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
-                times = 0;
+                mockedConfig.getMaxMessagesInFlight();
+                result = 2;
             }
         };
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertEquals(1, waitingPacketsQueue.size());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_047: [If this object's connection status is CONNECTED and is using HTTPS,
-    // this function shall invoke addReceivedMessagesOverHttpToReceivedQueue.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_002: [This function shall signal the send task that there is a packet waiting to be sent.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_005: [If the send task has not been signalled since the last call, this function shall block until it is.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_006: [This function shall consume the signal before returning.]
     @Test
-    public void handleMessageChecksForHttpMessages() throws DeviceClientException
+    public void addMessageSignalsSendTask() throws InterruptedException
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
         Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
-        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
-        receivedMessagesQueue.add(mockedTransportMessage);
-        receivedMessagesQueue.add(mockedTransportMessage);
-        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
 
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
 
-        new Expectations(IotHubTransport.class)
-        {
-            {
-                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+        //assert
+        assertTrue((boolean) Deencapsulation.getField(transport, "isSendSignalled"));
+        transport.waitForSendSignal();
+        assertFalse((boolean) Deencapsulation.getField(transport, "isSendSignalled"));
+    }
 
-                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
-            }
-        };
+    //Tests_SRS_IOTHUBTRANSPORT_41_023: [This function shall save the provided send task.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_024: [If a signalled send task is set, signalling the send task shall signal it.]
+    @Test
+    public void addMessageSignalsSignalledSendTask(@Mocked final IotHubSignalledSendTask mockedSignalledSendTask)
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        transport.setSignalledSendTask(mockedSignalledSendTask);
 
         //act
-        transport.handleMessage();
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
 
         //assert
-        assertEquals(1, receivedMessagesQueue.size());
         new Verifications()
         {
             {
-                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
+                mockedSignalledSendTask.signal();
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_048: [If this object's connection status is CONNECTED and there is a
-    // received message in the queue, this function shall acknowledge the received message
+    //Tests_SRS_IOTHUBTRANSPORT_41_009: [If the waiting queue rejects the packet and the overflow policy is FAIL_FAST,
+    // this function shall invoke the packet's callback with status OUTBOUND_QUEUE_FULL before returning.]
     @Test
-    public void handleMessageAcknowledgesAReceivedMessages() throws DeviceClientException
+    public void addMessageInvokesCallbackIfQueueIsFullAndPolicyIsFailFast()
     {
         //arrange
-        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
         Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
-        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
-        receivedMessagesQueue.add(mockedTransportMessage);
-        receivedMessagesQueue.add(mockedTransportMessage);
-        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
-
-        new Expectations(IotHubTransport.class)
-        {
-            {
-                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
-            }
-        };
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        final Object context = new Object();
 
         //act
-        transport.handleMessage();
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
 
         //assert
-        assertEquals(1, receivedMessagesQueue.size());
+        assertEquals(1, waitingPacketsQueue.size());
         new Verifications()
         {
             {
-                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+                mockedEventCallback.execute(IotHubStatusCode.OUTBOUND_QUEUE_FULL, context);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_049: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
-    @Test (expected = IllegalArgumentException.class)
-    public void registerConnectionStateCallbackThrowsForNullCallback()
-    {
-        //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-
-        //act
-        transport.registerConnectionStateCallback(null, new Object());
-    }
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_050: [This function shall save the provided callback and context.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_047: [If the message is a twin or method message, this function shall add the
+    // packet to the waiting queue without applying the overflow policy.]
     @Test
-    public void registerConnectionStateCallbackSavesProvidedCallbackAndContext()
+    public void addMessageQueuesTwinAndMethodMessagesEvenIfQueueIsFull()
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
         final Object context = new Object();
 
         //act
-        transport.registerConnectionStateCallback(mockedIotHubConnectionStateCallback, context);
+        transport.addMessage(mockedTransportMessage, mockedEventCallback, context);
 
         //assert
-        assertEquals(mockedIotHubConnectionStateCallback, Deencapsulation.getField(transport, "stateCallback"));
-        assertEquals(context, Deencapsulation.getField(transport, "stateCallbackContext"));
-    }
-
-    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
-    @Test(expected = IllegalArgumentException.class)
-    public void registerConnectionStatusChangeCallbackThrowsForNullCallback()
-    {
-        //arrange
-        IotHubTransport transport = new IotHubTransport(mockedConfig);
-
-        //act
-        transport.registerConnectionStatusChangeCallback(null, new Object());
+        assertEquals(2, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockedEventCallback.execute(IotHubStatusCode.OUTBOUND_QUEUE_FULL, context);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_052: [This function shall save the provided callback and context.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_048: [If this function is called from the thread that sends the queued messages,
+    // for instance from an event callback, it shall not wait for room in the waiting queue.]
     @Test
-    public void registerConnectionStatusChangeCallbackSavesProvidedCallbackAndContext()
+    public void addMessageFromSendThreadDoesNotBlockOnFullQueue()
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final Object context = new Object();
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "sendThread", Thread.currentThread());
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.BLOCK, 60000);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        long startTime = System.currentTimeMillis();
 
         //act
-        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, context);
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
 
         //assert
-        assertEquals(mockedIotHubConnectionStatusChangeCallback, Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
-        assertEquals(context, Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+        assertTrue(System.currentTimeMillis() - startTime < 60000);
+        assertEquals(1, waitingPacketsQueue.size());
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(1, callbackPacketsQueue.size());
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_053: [This function shall execute the callback associate with the provided
-    // transport message with the provided message and its saved callback context.]
-    //Tests_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
-    // connection as the ack to the service.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_046: [If the waiting queue rejects the packet and the overflow policy is FAIL_FAST,
+    // this function shall acknowledge the packet in the message spool, so that the rejected message is not sent again
+    // the next time the transport is opened.]
     @Test
-    public void acknowledgeReceivedMessageSendsAck() throws TransportException
+    public void addMessageAcknowledgesSpooledMessageIfQueueIsFullAndPolicyIsFailFast(@Mocked final IotHubMessageSpool mockedSpool) throws IOException
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.FAIL_FAST, 0);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
         final Object context = new Object();
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
-        new Expectations()
+
+        new NonStrictExpectations()
         {
             {
-                mockedTransportMessage.getMessageCallback();
-                result = mockedMessageCallback;
-
-                mockedTransportMessage.getMessageCallbackContext();
-                result = context;
-
-                mockedMessageCallback.execute(mockedTransportMessage, context);
-                result = IotHubMessageResult.COMPLETE;
+                mockedSpool.append(mockedMessage);
+                result = 9L;
+                mockedPacket.getSpoolSequenceNumber();
+                result = 9L;
             }
         };
 
         //act
-        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+        transport.addMessage(mockedMessage, mockedEventCallback, context);
 
         //assert
+        assertEquals(1, waitingPacketsQueue.size());
         new Verifications()
         {
             {
-                mockedMessageCallback.execute(mockedTransportMessage, context);
+                mockedSpool.acknowledge(9L);
                 times = 1;
-
-                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                mockedEventCallback.execute(IotHubStatusCode.OUTBOUND_QUEUE_FULL, context);
                 times = 1;
             }
         };
     }
 
-    //Tests_SRS_IOTHUBTRANSPORT_34_055: [If an exception is thrown while acknowledging the received message,
-    // this function shall add the received message back into the receivedMessagesQueue and then rethrow the exception.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_010: [Any other packet dropped by the waiting queue shall be added to the callback
+    // queue with status OUTBOUND_QUEUE_FULL.]
     @Test
-    public void acknowledgeReceivedMessageReQueuesFailedMessages() throws TransportException
+    public void addMessageQueuesCallbacksForEvictedPacketsIfPolicyIsDropOldest()
     {
         //arrange
         IotHubTransport transport = new IotHubTransport(mockedConfig);
-        final Object context = new Object();
-        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
-        new Expectations()
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue(1, Long.MAX_VALUE, IotHubQueueOverflowPolicy.DROP_OLDEST, 0);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+
+        new NonStrictExpectations()
         {
             {
-                mockedTransportMessage.getMessageCallback();
-                result = mockedMessageCallback;
+                mockedPacket.getCallback();
+                result = mockedEventCallback;
+            }
+        };
+
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
+
+        //assert
+        assertEquals(1, waitingPacketsQueue.size());
+        assertEquals(1, callbackPacketsQueue.size());
+        assertTrue(callbackPacketsQueue.contains(mockedPacket));
+        new Verifications()
+        {
+            {
+                mockedPacket.setStatus(IotHubStatusCode.OUTBOUND_QUEUE_FULL);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_013: [If the default config enables the message spool, this function shall open
+    // the spool and add the messages it recovered to the waiting queue.]
+    @Test
+    public void openQueuesMessagesRecoveredFromSpool(@Mocked final IotHubMessageSpool mockedSpool,
+                                                     @Mocked final IotHubMessageSpool.SpooledMessage mockedSpooledMessage) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getMessageSpoolDirectory();
+                result = "spool";
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+                new IotHubMessageSpool((File) any, anyLong, (IotHubSpoolSyncPolicy) any);
+                result = mockedSpool;
+                mockedSpool.takeRecoveredMessages();
+                result = Collections.singletonList(mockedSpooledMessage);
+                mockedSpooledMessage.getDeviceId();
+                result = null;
+                mockedSpooledMessage.getMessage();
+                result = mockedMessage;
+                mockedSpooledMessage.getSequenceNumber();
+                result = 4L;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        IotHubOutboundPacketQueue waitingPacketsQueue = Deencapsulation.getField(transport, "waitingPacketsQueue");
+        assertEquals(1, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                new IotHubTransportPacket(mockedMessage, null, null, null, anyLong);
+                times = 1;
+                mockedPacket.setSpoolSequenceNumber(4L);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_050: [If the sync policy of the spool is PERIODIC, this function shall
+    // schedule a sync of the spool every sync interval, until the spool is closed.]
+    @Test
+    public void openWithPeriodicSpoolSyncPolicySchedulesSync(@Mocked final IotHubMessageSpool mockedSpool,
+                                                             @Mocked final SharedTransportExecutor mockedSharedTransportExecutor) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getSharedTransportExecutor();
+                result = mockedSharedTransportExecutor;
+                mockedSharedTransportExecutor.getScheduledExecutorService();
+                result = mockedTaskScheduler;
+                mockedConfig.getMessageSpoolDirectory();
+                result = "spool";
+                mockedConfig.getMessageSpoolSyncPolicy();
+                result = IotHubSpoolSyncPolicy.PERIODIC;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+                new IotHubMessageSpool((File) any, anyLong, (IotHubSpoolSyncPolicy) any);
+                result = mockedSpool;
+                mockedSpool.takeRecoveredMessages();
+                result = Collections.emptyList();
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedTaskScheduler.scheduleWithFixedDelay((Runnable) any, IotHubMessageSpool.PERIODIC_SYNC_INTERVAL_MILLIS,
+                        IotHubMessageSpool.PERIODIC_SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_015: [This function shall close the message spool. Cancelled messages stay in the
+    // spool so that they are sent again the next time the transport is opened.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_019: [This function shall acknowledge the packet in the message spool unless it was
+    // cancelled because the transport is closing.]
+    @Test
+    public void closeClosesSpoolWithoutAcknowledgingCancelledPackets(@Mocked final IotHubMessageSpool mockedSpool) throws DeviceClientException, IOException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.MESSAGE_CANCELLED_ONCLOSE;
+                mockedPacket.getSpoolSequenceNumber();
+                result = 2L;
+            }
+        };
+
+        //act
+        transport.close(IotHubConnectionStatusChangeReason.CLIENT_CLOSE, null);
+
+        //assert
+        assertNull(Deencapsulation.getField(transport, "messageSpool"));
+        new Verifications()
+        {
+            {
+                mockedSpool.acknowledge(anyLong);
+                times = 0;
+                mockedSpool.close();
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_021: [If the default config has a shared transport executor, this function
+    // shall schedule message retries on it instead of creating a scheduler of its own.]
+    @Test
+    public void openWithSharedTransportExecutorSchedulesRetriesOnIt(@Mocked final SharedTransportExecutor mockedSharedTransportExecutor) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getSharedTransportExecutor();
+                result = mockedSharedTransportExecutor;
+                mockedSharedTransportExecutor.getScheduledExecutorService();
+                result = mockedTaskScheduler;
+                mockedConfig.getMessageSpoolDirectory();
+                result = null;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        assertEquals(mockedTaskScheduler, Deencapsulation.getField(transport, "taskScheduler"));
+        assertTrue((boolean) Deencapsulation.getField(transport, "isTaskSchedulerShared"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_034: [If the default config has a callback executor, this function shall save
+    // it, and get the device executor of the default device from it to dispatch the received messages to.]
+    @Test
+    public void openWithCallbackExecutorGetsDeviceExecutor(@Mocked final CallbackExecutor mockedCallbackExecutor,
+                                                           @Mocked final Executor mockedDeviceExecutor) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getCallbackExecutor();
+                result = mockedCallbackExecutor;
+                mockedConfig.getDeviceId();
+                result = "device1";
+                mockedCallbackExecutor.getDeviceExecutor("device1");
+                result = mockedDeviceExecutor;
+                mockedConfig.getMessageSpoolDirectory();
+                result = null;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        assertEquals(mockedCallbackExecutor, Deencapsulation.getField(transport, "callbackExecutor"));
+        assertEquals(mockedDeviceExecutor, Deencapsulation.getField(transport, "callbackDispatcher"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_037: [The received messages shall be acknowledged in order if the callback
+    // executor orders the callbacks per device or if the protocol is MQTT or MQTT_WS, which acknowledges the
+    // messages in the order they were received.]
+    @Test
+    public void openOrdersReceivedMessagesOverMqttWithUnorderedCallbackExecutor(@Mocked final CallbackExecutor mockedCallbackExecutor) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getCallbackExecutor();
+                result = mockedCallbackExecutor;
+                mockedCallbackExecutor.isOrderedPerDevice();
+                result = false;
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.MQTT;
+                mockedConfig.getMessageSpoolDirectory();
+                result = null;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        assertTrue((boolean) Deencapsulation.getField(transport, "isReceiveOrdered"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_043: [If the protocol is HTTPS and the default config has an adaptive receive
+    // interval, this function shall create a poller with the configured intervals to receive the messages with.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_045: [This function shall return the saved https receive poller.]
+    @Test
+    public void openWithHttpsReceiveIntervalCreatesPoller(@Mocked final HttpsReceivePoller mockedPoller) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.HTTPS;
+                mockedConfig.getHttpsReceiveMinIntervalMillis();
+                result = 1000L;
+                mockedConfig.getHttpsReceiveMaxIntervalMillis();
+                result = 60000L;
+                new HttpsReceivePoller(1000L, 60000L);
+                result = mockedPoller;
+                mockedConfig.getMessageSpoolDirectory();
+                result = null;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        assertEquals(mockedPoller, transport.getHttpsReceivePoller());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_044: [If the transport has an https receive poller, this function shall let
+    // the poller receive the messages into the receivedMessagesQueue.]
+    @Test
+    public void handleMessageReceivesHttpMessagesWithPoller(@Mocked final HttpsReceivePoller mockedPoller) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        Deencapsulation.setField(transport, "httpsReceivePoller", mockedPoller);
+        final Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedPoller.poll(mockedHttpsIotHubConnection, receivedMessagesQueue);
+                times = 1;
+                mockedHttpsIotHubConnection.receiveMessage();
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_037: [The received messages shall be acknowledged in order if the callback
+    // executor orders the callbacks per device or if the protocol is MQTT or MQTT_WS, which acknowledges the
+    // messages in the order they were received.]
+    @Test
+    public void openDoesNotOrderReceivedMessagesOverAmqpsWithUnorderedCallbackExecutor(@Mocked final CallbackExecutor mockedCallbackExecutor) throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Collection<DeviceClientConfig> configs = new ArrayList<>();
+        configs.add(mockedConfig);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "isSasTokenExpired");
+                result = false;
+                Deencapsulation.invoke(transport, "openConnection");
+
+                mockedConfig.getCallbackExecutor();
+                result = mockedCallbackExecutor;
+                mockedCallbackExecutor.isOrderedPerDevice();
+                result = false;
+                mockedConfig.getProtocol();
+                result = IotHubClientProtocol.AMQPS;
+                mockedConfig.getMessageSpoolDirectory();
+                result = null;
+                mockedConfig.getOutboundQueueOverflowPolicy();
+                result = IotHubQueueOverflowPolicy.FAIL_FAST;
+                mockedConfig.getMaxQueuedMessages();
+                result = 10;
+                mockedConfig.getMaxQueuedBytes();
+                result = Long.MAX_VALUE;
+            }
+        };
+
+        //act
+        transport.open(configs);
+
+        //assert
+        assertFalse((boolean) Deencapsulation.getField(transport, "isReceiveOrdered"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_022: [This function shall not shut down a shared transport executor.]
+    @Test
+    public void closeDoesNotShutDownSharedTaskScheduler() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        Deencapsulation.setField(transport, "isTaskSchedulerShared", true);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", new IotHubOutboundPacketQueue());
+
+        //act
+        transport.close(IotHubConnectionStatusChangeReason.CLIENT_CLOSE, null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedTaskScheduler.shutdown();
+                times = 0;
+                mockedIotHubTransportConnection.close();
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_016: [If the message spool is open and the message is telemetry, this function
+    // shall append the message to the spool before adding the packet to the waiting queue.]
+    @Test
+    public void addMessageAppendsTelemetryToSpool(@Mocked final IotHubMessageSpool mockedSpool) throws IOException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedSpool.append(mockedMessage);
+                result = 9L;
+            }
+        };
+
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedPacket.setSpoolSequenceNumber(9L);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_017: [If the message cannot be spooled, this function shall log the error and queue
+    // the message without spooling it.]
+    @Test
+    public void addMessageQueuesMessageIfSpoolFails(@Mocked final IotHubMessageSpool mockedSpool) throws IOException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedSpool.append(mockedMessage);
+                result = new IOException("disk full");
+            }
+        };
+
+        //act
+        transport.addMessage(mockedMessage, mockedEventCallback, new Object());
+
+        //assert
+        assertEquals(1, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockedPacket.setSpoolSequenceNumber(anyLong);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_025: [If the connection is an https connection and the config's max messages
+    // per batch is larger than 1, this function shall send the waiting packets in batches.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_028: [This function shall add waiting telemetry packets to a batch until it holds
+    // the config's max messages per batch or the waiting queue is empty.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_031: [This function shall send the batch over the saved https connection.]
+    @Test
+    public void sendAllMessagesSendsWaitingTelemetryInHttpsBatches(@Mocked final HttpsBatchMessage mockedBatch,
+                                                                   @Mocked final HttpsSingleMessage mockedSingleMessage) throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        for (int i = 0; i < 3; i++)
+        {
+            waitingPacketsQueue.add(mockedPacket);
+        }
+
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = 10;
+                mockedConfig.getHttpsMaxMessagesPerBatch();
+                result = 2;
+                mockedConfig.getHttpsBatchLingerMillis();
+                result = 0L;
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedMessage.getMessageId();
+                result = "1";
+            }
+        };
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertTrue(waitingPacketsQueue.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedBatch.addMessage((HttpsSingleMessage) any);
+                times = 3;
+                mockedHttpsIotHubConnection.sendMessages((HttpsBatchMessage) any, (List<Message>) any);
+                times = 2;
+                mockedHttpsIotHubConnection.sendMessage((Message) any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_026: [If the oldest waiting packet has waited less than the config's batch linger
+    // time and there are fewer waiting packets than the config's max messages per batch, this function shall send
+    // nothing and signal the send task again once the linger time is over.]
+    @Test
+    public void sendAllMessagesLingersUntilHttpsBatchIsFull(@Mocked final HttpsBatchMessage mockedBatch) throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        Deencapsulation.setField(transport, "taskScheduler", mockedTaskScheduler);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = 10;
+                mockedConfig.getHttpsMaxMessagesPerBatch();
+                result = 5;
+                mockedConfig.getHttpsBatchLingerMillis();
+                result = 60000L;
+                mockedPacket.getStartTimeMillis();
+                result = System.currentTimeMillis();
+            }
+        };
+
+        //act
+        transport.sendAllMessages();
+        transport.sendAllMessages();
+
+        //assert
+        assertEquals(1, waitingPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockedHttpsIotHubConnection.sendMessages((HttpsBatchMessage) any, (List<Message>) any);
+                times = 0;
+                mockedTaskScheduler.schedule((Runnable) any, anyLong, TimeUnit.MILLISECONDS);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_030: [If a packet does not fit in the current batch, this function shall send the
+    // current batch and start the next batch with that packet.]
+    @Test
+    public void sendAllMessagesStartsNextHttpsBatchWithPacketThatDoesNotFit(@Mocked final HttpsBatchMessage mockedBatch,
+                                                                            @Mocked final HttpsSingleMessage mockedSingleMessage) throws Exception
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = 10;
+                mockedConfig.getHttpsMaxMessagesPerBatch();
+                result = 10;
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedMessage.getMessageId();
+                result = "1";
+                mockedBatch.addMessage((HttpsSingleMessage) any);
+                result = null;
+                result = new IotHubSizeExceededException("too large");
+                result = null;
+            }
+        };
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        assertTrue(waitingPacketsQueue.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedHttpsIotHubConnection.sendMessages((HttpsBatchMessage) any, (List<Message>) any);
+                times = 2;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_032: [If an exception is encountered while sending the batch, this function shall
+    // invoke handleMessageException with each packet of the batch.]
+    @Test
+    public void sendAllMessagesHandlesHttpsBatchTransportException(@Mocked final HttpsBatchMessage mockedBatch,
+                                                                   @Mocked final HttpsSingleMessage mockedSingleMessage) throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = 10;
+                mockedConfig.getHttpsMaxMessagesPerBatch();
+                result = 2;
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.getMessageType();
+                result = MessageType.DEVICE_TELEMETRY;
+                mockedMessage.getMessageId();
+                result = "1";
+                mockedHttpsIotHubConnection.sendMessages((HttpsBatchMessage) any, (List<Message>) any);
+                result = mockedTransportException;
+                Deencapsulation.invoke(transport, "handleMessageException", new Class[] {IotHubTransportPacket.class, TransportException.class}, mockedPacket, mockedTransportException);
+            }
+        };
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "handleMessageException", new Class[] {IotHubTransportPacket.class, TransportException.class}, mockedPacket, mockedTransportException);
+                times = 1;
+            }
+        };
+        Map<String, IotHubTransportPacket> inProgressPackets = Deencapsulation.getField(transport, "inProgressPackets");
+        assertTrue(inProgressPackets.isEmpty());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_018: [If the packet was spooled, this function shall make sure it is on disk, as
+    // required by the spool's sync policy, before sending it.]
+    @Test
+    public void sendAllMessagesMakesSpooledPacketsDurableBeforeSending(@Mocked final IotHubMessageSpool mockedSpool) throws IOException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+        IotHubOutboundPacketQueue waitingPacketsQueue = new IotHubOutboundPacketQueue();
+        waitingPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "waitingPacketsQueue", waitingPacketsQueue);
+
+        new NonStrictExpectations(IotHubTransport.class)
+        {
+            {
+                mockedConfig.getMaxMessagesInFlight();
+                result = 10;
+                mockedPacket.getSpoolSequenceNumber();
+                result = 3L;
+                Deencapsulation.invoke(transport, "sendPacket", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+            }
+        };
+
+        //act
+        transport.sendAllMessages();
+
+        //assert
+        new VerificationsInOrder()
+        {
+            {
+                mockedSpool.ensureDurable(3L);
+                Deencapsulation.invoke(transport, "sendPacket", new Class[] {IotHubTransportPacket.class}, mockedPacket);
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_019: [This function shall acknowledge the packet in the message spool unless it was
+    // cancelled because the transport is closing.]
+    @Test
+    public void onMessageSentAcknowledgesSpooledPacket(@Mocked final IotHubMessageSpool mockedSpool) throws IOException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "messageSpool", mockedSpool);
+        final String messageId = "1234";
+        Map<String, IotHubTransportPacket> inProgressPackets = new ConcurrentHashMap<>();
+        inProgressPackets.put(messageId, mockedPacket);
+        Deencapsulation.setField(transport, "inProgressPackets", inProgressPackets);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedMessage.getMessageId();
+                result = messageId;
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.OK_EMPTY;
+                mockedPacket.getSpoolSequenceNumber();
+                result = 6L;
+            }
+        };
+
+        //act
+        transport.onMessageSent(mockedMessage, null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedSpool.acknowledge(6L);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_045: [This function shall dequeue each packet in the callback queue and execute
+    // their saved callback with their saved status and context]
+    @Test
+    public void invokeCallbacksInvokesAllCallbacks()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        callbackPacketsQueue.add(mockedPacket);
+        callbackPacketsQueue.add(mockedPacket);
+        callbackPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = mockedEventCallback;
+
+                mockedPacket.getContext();
+                result = context;
+
+                mockedPacket.getStatus();
+                result = mockedStatus;
+            }
+        };
+
+        //act
+        transport.invokeCallbacks();
+
+        //assert
+        assertTrue(callbackPacketsQueue.isEmpty());
+        new Verifications()
+        {
+            {
+                mockedEventCallback.execute(mockedStatus, context);
+                times = 3;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_035: [If the transport has a callback executor, this function shall
+    // dispatch each callback to the device executor of the device that sent the message instead of
+    // executing it, so that the devices of a multiplexed connection do not wait for each other.]
+    @Test
+    public void invokeCallbacksDispatchesCallbacksToExecutorOfTheirDevice(@Mocked final CallbackExecutor mockedCallbackExecutor,
+                                                                         @Mocked final IotHubConnectionString mockedConnectionString)
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Queue<IotHubTransportPacket> callbackPacketsQueue = new ConcurrentLinkedQueue<>();
+        callbackPacketsQueue.add(mockedPacket);
+        callbackPacketsQueue.add(mockedPacket);
+        Deencapsulation.setField(transport, "callbackPacketsQueue", callbackPacketsQueue);
+        Deencapsulation.setField(transport, "callbackExecutor", mockedCallbackExecutor);
+        final List<Runnable> dispatchedCallbacks = new ArrayList<>();
+        final List<Runnable> otherDeviceDispatchedCallbacks = new ArrayList<>();
+        final Object context = new Object();
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = mockedEventCallback;
+                mockedPacket.getContext();
+                result = context;
+                mockedPacket.getStatus();
+                result = mockedStatus;
+                mockedPacket.getMessage();
+                result = mockedMessage;
+                mockedMessage.getIotHubConnectionString();
+                result = mockedConnectionString;
+                mockedConnectionString.getDeviceId();
+                returns("device1", "device2");
+
+                mockedCallbackExecutor.getDeviceExecutor("device1");
+                result = new Executor()
+                {
+                    @Override
+                    public void execute(Runnable command)
+                    {
+                        dispatchedCallbacks.add(command);
+                    }
+                };
+                mockedCallbackExecutor.getDeviceExecutor("device2");
+                result = new Executor()
+                {
+                    @Override
+                    public void execute(Runnable command)
+                    {
+                        otherDeviceDispatchedCallbacks.add(command);
+                    }
+                };
+            }
+        };
+
+        //act
+        transport.invokeCallbacks();
+
+        //assert
+        assertTrue(callbackPacketsQueue.isEmpty());
+        assertEquals(1, dispatchedCallbacks.size());
+        assertEquals(1, otherDeviceDispatchedCallbacks.size());
+        new Verifications()
+        {
+            {
+                mockedEventCallback.execute(mockedStatus, context);
+                times = 0;
+            }
+        };
+
+        dispatchedCallbacks.get(0).run();
+        new Verifications()
+        {
+            {
+                mockedEventCallback.execute(mockedStatus, context);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_046: [If this object's connection status is not CONNEECTED, this function shall do nothing.]
+    @Test
+    public void handleMessageDoesNothingIfNotConnected() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", DISCONNECTED);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        assertEquals(2, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_047: [If this object's connection status is CONNECTED and is using HTTPS,
+    // this function shall invoke addReceivedMessagesOverHttpToReceivedQueue.]
+    @Test
+    public void handleMessageChecksForHttpMessages() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedHttpsIotHubConnection);
+
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+
+                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
+            }
+        };
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        assertEquals(0, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "addReceivedMessagesOverHttpToReceivedQueue");
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_048: [If this object's connection status is CONNECTED and there is a
+    // received message in the queue, this function shall acknowledge the received message
+    @Test
+    public void handleMessageAcknowledgesAReceivedMessages() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+            }
+        };
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        assertEquals(0, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+                times = 2;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_040: [This function shall acknowledge at most MAX_RECEIVED_MESSAGES_PER_BATCH
+    // received messages per call, so that a flood of received messages does not hold up the thread.]
+    @Test
+    public void handleMessageAcknowledgesAtMostOneBatchOfReceivedMessages() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        final int maxReceivedMessagesPerBatch = Deencapsulation.getField(IotHubTransport.class, "MAX_RECEIVED_MESSAGES_PER_BATCH");
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < maxReceivedMessagesPerBatch + 3; i++)
+        {
+            receivedMessagesQueue.add(mockedTransportMessage);
+        }
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+            }
+        };
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        assertEquals(3, receivedMessagesQueue.size());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+                times = maxReceivedMessagesPerBatch;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_038: [If the transport has a callback executor, this function shall
+    // dispatch a task that acknowledges the received messages to it instead of acknowledging them.]
+    @Test
+    public void handleMessageDispatchesReceivedMessagesToCallbackExecutor() throws DeviceClientException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        receivedMessagesQueue.add(mockedTransportMessage);
+        Deencapsulation.setField(transport, "receivedMessagesQueue", receivedMessagesQueue);
+        final List<Runnable> dispatchedTasks = new ArrayList<>();
+        Deencapsulation.setField(transport, "callbackDispatcher", new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                dispatchedTasks.add(command);
+            }
+        });
+
+        //act
+        transport.handleMessage();
+
+        //assert
+        assertEquals(1, dispatchedTasks.size());
+        assertEquals(1, receivedMessagesQueue.size());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_036: [If the transport has a callback executor, this function shall
+    // dispatch a task that acknowledges the received messages to it.]
+    //Tests_SRS_IOTHUBTRANSPORT_41_042: [After a batch, the task shall dispatch a new task if received
+    // messages are left in the queue.]
+    @Test
+    public void onMessageReceivedDispatchesTaskThatAcknowledgesReceivedMessages() throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "isReceiveOrdered", true);
+        final List<Runnable> dispatchedTasks = new ArrayList<>();
+        Deencapsulation.setField(transport, "callbackDispatcher", new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                dispatchedTasks.add(command);
+            }
+        });
+
+        new Expectations(IotHubTransport.class)
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+            }
+        };
+
+        //act
+        transport.onMessageReceived(mockedTransportMessage, null);
+        dispatchedTasks.get(0).run();
+
+        //assert
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertTrue(receivedMessagesQueue.isEmpty());
+        assertEquals(1, dispatchedTasks.size());
+        assertFalse(((AtomicBoolean) Deencapsulation.getField(transport, "isReceivedMessagesTaskDispatched")).get());
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_039: [If the received messages are ordered and a task that acknowledges them is
+    // already dispatched, this function shall not dispatch another one.]
+    @Test
+    public void onMessageReceivedDispatchesOneTaskAtATimeIfReceiveIsOrdered()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "isReceiveOrdered", true);
+        final List<Runnable> dispatchedTasks = new ArrayList<>();
+        Deencapsulation.setField(transport, "callbackDispatcher", new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                dispatchedTasks.add(command);
+            }
+        });
+
+        //act
+        transport.onMessageReceived(mockedTransportMessage, null);
+        transport.onMessageReceived(mockedTransportMessage, null);
+
+        //assert
+        assertEquals(1, dispatchedTasks.size());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_039: [If the received messages are ordered and a task that acknowledges them is
+    // already dispatched, this function shall not dispatch another one.]
+    @Test
+    public void onMessageReceivedDispatchesTasksInParallelIfReceiveIsNotOrdered()
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "isReceiveOrdered", false);
+        final List<Runnable> dispatchedTasks = new ArrayList<>();
+        Deencapsulation.setField(transport, "callbackDispatcher", new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                dispatchedTasks.add(command);
+            }
+        });
+
+        //act
+        transport.onMessageReceived(mockedTransportMessage, null);
+        transport.onMessageReceived(mockedTransportMessage, null);
+
+        //assert
+        assertEquals(2, dispatchedTasks.size());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_049: [The acknowledgements shall be sent one at a time, even if the
+    // message callbacks run in parallel.]
+    @Test
+    public void onMessageReceivedSendsAcknowledgementsOneAtATimeFromMultiThreadedExecutor() throws InterruptedException
+    {
+        //arrange
+        final int receivedMessageCount = 50;
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final AtomicInteger acknowledgementsInProgress = new AtomicInteger();
+        final AtomicInteger maxAcknowledgementsInProgress = new AtomicInteger();
+        final AtomicInteger acknowledgementCount = new AtomicInteger();
+        IotHubTransportConnection connection = new IotHubTransportConnection()
+        {
+            @Override
+            public void open(Queue<DeviceClientConfig> deviceClientConfigs) {}
+
+            @Override
+            public void setListener(IotHubListener listener) {}
+
+            @Override
+            public void close() {}
+
+            @Override
+            public IotHubStatusCode sendMessage(Message message)
+            {
+                return null;
+            }
+
+            @Override
+            public boolean sendMessageResult(Message message, IotHubMessageResult result)
+            {
+                int inProgress = acknowledgementsInProgress.incrementAndGet();
+                if (inProgress > maxAcknowledgementsInProgress.get())
+                {
+                    maxAcknowledgementsInProgress.set(inProgress);
+                }
+
+                try
+                {
+                    Thread.sleep(1);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+
+                acknowledgementCount.incrementAndGet();
+                acknowledgementsInProgress.decrementAndGet();
+                return true;
+            }
+
+            @Override
+            public String getConnectionId()
+            {
+                return null;
+            }
+        };
+        final MessageCallback messageCallback = new MessageCallback()
+        {
+            @Override
+            public IotHubMessageResult execute(Message message, Object callbackContext)
+            {
+                return IotHubMessageResult.COMPLETE;
+            }
+        };
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = messageCallback;
+            }
+        };
+        ExecutorService multiThreadedExecutor = Executors.newFixedThreadPool(4);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", connection);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "isReceiveOrdered", false);
+        Deencapsulation.setField(transport, "callbackDispatcher", multiThreadedExecutor);
+
+        //act
+        for (int i = 0; i < receivedMessageCount; i++)
+        {
+            transport.onMessageReceived(mockedTransportMessage, null);
+        }
+        multiThreadedExecutor.shutdown();
+        assertTrue(multiThreadedExecutor.awaitTermination(10, TimeUnit.SECONDS));
+
+        //assert
+        assertEquals(receivedMessageCount, acknowledgementCount.get());
+        assertEquals(1, maxAcknowledgementsInProgress.get());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_041: [If an acknowledgement fails, the task shall log the exception and
+    // leave the message in the queue for the next call of handleMessage.]
+    @Test
+    public void receivedMessagesTaskLeavesMessageQueuedIfAcknowledgementFails() throws TransportException
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        Deencapsulation.setField(transport, "connectionStatus", CONNECTED);
+        Deencapsulation.setField(transport, "isReceiveOrdered", true);
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        final List<Runnable> dispatchedTasks = new ArrayList<>();
+        Deencapsulation.setField(transport, "callbackDispatcher", new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                dispatchedTasks.add(command);
+            }
+        });
+
+        new NonStrictExpectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+                mockedMessageCallback.execute(mockedTransportMessage, any);
+                result = IotHubMessageResult.COMPLETE;
+                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                result = mockedTransportException;
+            }
+        };
+
+        //act
+        transport.onMessageReceived(mockedTransportMessage, null);
+        dispatchedTasks.get(0).run();
+
+        //assert
+        Queue<IotHubTransportMessage> receivedMessagesQueue = Deencapsulation.getField(transport, "receivedMessagesQueue");
+        assertEquals(1, receivedMessagesQueue.size());
+        assertEquals(1, dispatchedTasks.size());
+        assertFalse(((AtomicBoolean) Deencapsulation.getField(transport, "isReceivedMessagesTaskDispatched")).get());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_049: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void registerConnectionStateCallbackThrowsForNullCallback()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.registerConnectionStateCallback(null, new Object());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_050: [This function shall save the provided callback and context.]
+    @Test
+    public void registerConnectionStateCallbackSavesProvidedCallbackAndContext()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+
+        //act
+        transport.registerConnectionStateCallback(mockedIotHubConnectionStateCallback, context);
+
+        //assert
+        assertEquals(mockedIotHubConnectionStateCallback, Deencapsulation.getField(transport, "stateCallback"));
+        assertEquals(context, Deencapsulation.getField(transport, "stateCallbackContext"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_051: [If the provided callback is null, this function shall throw an IllegalArgumentException.]
+    @Test(expected = IllegalArgumentException.class)
+    public void registerConnectionStatusChangeCallbackThrowsForNullCallback()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+
+        //act
+        transport.registerConnectionStatusChangeCallback(null, new Object());
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_052: [This function shall save the provided callback and context.]
+    @Test
+    public void registerConnectionStatusChangeCallbackSavesProvidedCallbackAndContext()
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+
+        //act
+        transport.registerConnectionStatusChangeCallback(mockedIotHubConnectionStatusChangeCallback, context);
+
+        //assert
+        assertEquals(mockedIotHubConnectionStatusChangeCallback, Deencapsulation.getField(transport, "connectionStatusChangeCallback"));
+        assertEquals(context, Deencapsulation.getField(transport, "connectionStatusChangeCallbackContext"));
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_053: [This function shall execute the callback associate with the provided
+    // transport message with the provided message and its saved callback context.]
+    //Tests_SRS_IOTHUBTRANSPORT_34_054: [This function shall send the message callback result along the
+    // connection as the ack to the service.]
+    @Test
+    public void acknowledgeReceivedMessageSendsAck() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        new Expectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
+
+                mockedTransportMessage.getMessageCallbackContext();
+                result = context;
+
+                mockedMessageCallback.execute(mockedTransportMessage, context);
+                result = IotHubMessageResult.COMPLETE;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "acknowledgeReceivedMessage", mockedTransportMessage);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedMessageCallback.execute(mockedTransportMessage, context);
+                times = 1;
+
+                mockedIotHubTransportConnection.sendMessageResult(mockedTransportMessage, IotHubMessageResult.COMPLETE);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_34_055: [If an exception is thrown while acknowledging the received message,
+    // this function shall add the received message back into the receivedMessagesQueue and then rethrow the exception.]
+    @Test
+    public void acknowledgeReceivedMessageReQueuesFailedMessages() throws TransportException
+    {
+        //arrange
+        IotHubTransport transport = new IotHubTransport(mockedConfig);
+        final Object context = new Object();
+        Deencapsulation.setField(transport, "iotHubTransportConnection", mockedIotHubTransportConnection);
+        new Expectations()
+        {
+            {
+                mockedTransportMessage.getMessageCallback();
+                result = mockedMessageCallback;
 
                 mockedTransportMessage.getMessageCallbackContext();
                 result = context;
@@ -2426,6 +3915,70 @@ public class IotHubTransportTest
         assertEquals(0, callbackPacketsQueue.size());
     }
 
+    //Tests_SRS_IOTHUBTRANSPORT_41_033: [If the packet's callback is an IotHubDirectEventCallback, this function
+    // shall execute it with the packet's status and context instead of adding the packet to the callback queue,
+    // and shall log and ignore any exception it throws.]
+    @Test
+    public void addToCallbackQueueExecutesDirectCallback(@Mocked final IotHubDirectEventCallback mockCallback)
+    {
+        //arrange
+        final Object context = new Object();
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = mockCallback;
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.OK_EMPTY;
+                mockedPacket.getContext();
+                result = context;
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(0, callbackPacketsQueue.size());
+        new Verifications()
+        {
+            {
+                mockCallback.execute(IotHubStatusCode.OK_EMPTY, context);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_IOTHUBTRANSPORT_41_033: [If the packet's callback is an IotHubDirectEventCallback, this function
+    // shall execute it with the packet's status and context instead of adding the packet to the callback queue,
+    // and shall log and ignore any exception it throws.]
+    @Test
+    public void addToCallbackQueueIgnoresDirectCallbackException(@Mocked final IotHubDirectEventCallback mockCallback)
+    {
+        //arrange
+        final IotHubTransport transport = new IotHubTransport(mockedConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockedPacket.getCallback();
+                result = mockCallback;
+                mockedPacket.getStatus();
+                result = IotHubStatusCode.OK_EMPTY;
+                mockCallback.execute((IotHubStatusCode) any, any);
+                result = new IllegalStateException();
+            }
+        };
+
+        //act
+        Deencapsulation.invoke(transport, "addToCallbackQueue", mockedPacket);
+
+        //assert
+        Queue<IotHubTransportPacket> callbackPacketsQueue = Deencapsulation.getField(transport, "callbackPacketsQueue");
+        assertEquals(0, callbackPacketsQueue.size());
+    }
+
     //Tests_SRS_IOTHUBTRANSPORT_28_001: [This function shall set the MqttUnauthorizedException as retryable if the sas token has not expired.]
     @Test
     public void checkForUnauthorizedExceptionInMqttUnauthroizedException()
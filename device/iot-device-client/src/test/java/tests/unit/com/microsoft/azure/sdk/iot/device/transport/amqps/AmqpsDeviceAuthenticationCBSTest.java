@@ -180,6 +180,12 @@ public class AmqpsDeviceAuthenticationCBSTest
                 result = false;
                 mockQueue.remove();
                 result = mockMessageImpl;
+                mockMessageImpl.getBody();
+                result = null;
+                mockMessageImpl.getApplicationProperties();
+                result = null;
+                mockMessageImpl.getMessageAnnotations();
+                result = null;
                 mockMessageImpl.encode(bytes, anyInt, anyInt);
                 result = new BufferOverflowException();
                 mockMessageImpl.encode((byte[])any, anyInt, anyInt);
@@ -212,6 +218,12 @@ public class AmqpsDeviceAuthenticationCBSTest
                 result = false;
                 mockQueue.remove();
                 result = mockMessageImpl;
+                mockMessageImpl.getBody();
+                result = null;
+                mockMessageImpl.getApplicationProperties();
+                result = null;
+                mockMessageImpl.getMessageAnnotations();
+                result = null;
                 mockMessageImpl.encode(bytes, anyInt, anyInt);
                 mockQueue.isEmpty();
                 result = true;
@@ -445,6 +457,7 @@ public class AmqpsDeviceAuthenticationCBSTest
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_012: [The function shall set the sasl mechanism to PLAIN.]
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_013: [The function shall set the SslContext on the domain.]
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_12_014: [The function shall set the domain on the transport.]
+    // Tests_SRS_AMQPSDEVICEAUTHENTICATIONCBS_41_001: [The function shall set the peer details of the IotHub on the transport together with the domain.]
     @Test
     public void setSslDomain()
     {
@@ -470,7 +483,7 @@ public class AmqpsDeviceAuthenticationCBSTest
                 times = 1;
                 mockSasl.setMechanisms("ANONYMOUS");
                 times = 1;
-                mockTransport.ssl((SslDomain)any);
+                mockTransport.ssl((SslDomain)any, (SslPeerDetails)any);
                 times = 1;
             }
         };
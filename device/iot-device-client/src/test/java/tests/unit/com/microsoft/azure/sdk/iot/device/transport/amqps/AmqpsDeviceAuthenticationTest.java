@@ -10,6 +10,7 @@ import mockit.Verifications;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.engine.SslDomain;
+import org.apache.qpid.proton.engine.SslPeerDetails;
 import org.apache.qpid.proton.engine.Transport;
 import org.junit.Test;
 
@@ -37,6 +38,9 @@ public class AmqpsDeviceAuthenticationTest
     @Mocked
     SslDomain mockDomain;
 
+    @Mocked
+    SslPeerDetails mockSslPeerDetails;
+
     @Mocked
     Transport mockTransport;
 
@@ -88,6 +92,69 @@ public class AmqpsDeviceAuthenticationTest
         };
     }
 
+    // Tests_SRS_AMQPSDEVICEAUTHENTICATION_41_001: [The function shall create the Proton SslPeerDetails with the IotHub host name and the AMQP port, or the web socket port if web sockets are used.]
+    @Test
+    public void makePeerDetailsUsesAmqpPort()
+    {
+        // arrange
+        final AmqpsDeviceAuthentication amqpsDeviceAuthentication = Deencapsulation.newInstance(AmqpsDeviceAuthentication.class, mockDeviceClientConfig);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getIotHubHostname();
+                result = "hostName";
+                mockDeviceClientConfig.isUseWebsocket();
+                result = false;
+                Proton.sslPeerDetails(anyString, anyInt);
+                result = mockSslPeerDetails;
+            }
+        };
+
+        // act
+        SslPeerDetails actualPeerDetails = Deencapsulation.invoke(amqpsDeviceAuthentication, "makePeerDetails", mockDeviceClientConfig);
+
+        // assert
+        assertEquals(mockSslPeerDetails, actualPeerDetails);
+        new Verifications()
+        {
+            {
+                Proton.sslPeerDetails("hostName", 5671);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSDEVICEAUTHENTICATION_41_001: [The function shall create the Proton SslPeerDetails with the IotHub host name and the AMQP port, or the web socket port if web sockets are used.]
+    @Test
+    public void makePeerDetailsUsesWebSocketPort()
+    {
+        // arrange
+        final AmqpsDeviceAuthentication amqpsDeviceAuthentication = Deencapsulation.newInstance(AmqpsDeviceAuthentication.class, mockDeviceClientConfig);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getIotHubHostname();
+                result = "hostName";
+                mockDeviceClientConfig.isUseWebsocket();
+                result = true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(amqpsDeviceAuthentication, "makePeerDetails", mockDeviceClientConfig);
+
+        // assert
+        new Verifications()
+        {
+            {
+                Proton.sslPeerDetails("hostName", 443);
+                times = 1;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSDEVICEAUTHENTICATION_12_006: [The prototype function does nothing.]
     @Test
     public void setSslDomain()
@@ -109,6 +109,9 @@ public class AmqpsDeviceAuthenticationX509Test
     @Mocked
     SslDomain mockSSLDomain;
 
+    @Mocked
+    SslPeerDetails mockSslPeerDetails;
+
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONX509_34_007: [This constructor shall call super with the provided user agent string.]
     @Test
     public void constructorCallsSuperWithConfigUserAgentString()
@@ -202,6 +205,7 @@ public class AmqpsDeviceAuthenticationX509Test
 
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONX509_12_010: [The function shall call the prototype class makeDomain function with the sslContext.]
     // Tests_SRS_AMQPSDEVICEAUTHENTICATIONX509_12_011: [The function shall set the domain on the transport.]
+    // Tests_SRS_AMQPSDEVICEAUTHENTICATIONX509_41_001: [The function shall set the peer details of the IotHub on the transport together with the domain.]
     @Test
     public void setSSLContextCallsMakeDomainAndSetsDomain() throws IOException
     {
@@ -216,6 +220,9 @@ public class AmqpsDeviceAuthenticationX509Test
 
                 Deencapsulation.invoke(auth, "makeDomain", mockSSLContext);
                 result = mockSSLDomain;
+
+                Deencapsulation.invoke(auth, "makePeerDetails", mockDeviceClientConfig);
+                result = mockSslPeerDetails;
             }
         };
 
@@ -226,7 +233,7 @@ public class AmqpsDeviceAuthenticationX509Test
         new Verifications()
         {
             {
-                mockTransport.ssl(mockSSLDomain);
+                mockTransport.ssl(mockSSLDomain, mockSslPeerDetails);
                 times = 1;
             }
         };
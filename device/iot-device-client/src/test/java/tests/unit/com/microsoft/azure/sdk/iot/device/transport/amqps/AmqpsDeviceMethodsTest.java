@@ -948,4 +948,22 @@ public class AmqpsDeviceMethodsTest
         assertNotNull(Deencapsulation.invoke(amqpsConvertToProtonReturnValue, "getMessageImpl"));
         assertEquals(MessageType.DEVICE_METHODS, Deencapsulation.invoke(amqpsConvertToProtonReturnValue, "getMessageType"));
     }
+
+    /*
+    **Tests_SRS_AMQPSDEVICEMETHODS_41_001: [**The function shall return true only if the message type is DEVICE_METHODS.**]**
+    */
+    @Test
+    public void isSenderLinkForReturnsTrueOnlyForDeviceMethods()
+    {
+        //arrange
+        AmqpsDeviceMethods amqpsDeviceMethods = Deencapsulation.newInstance(AmqpsDeviceMethods.class, mockDeviceClientConfig);
+
+        //act
+        boolean isSenderLinkForOwnType = Deencapsulation.invoke(amqpsDeviceMethods, "isSenderLinkFor", MessageType.DEVICE_METHODS);
+        boolean isSenderLinkForOtherType = Deencapsulation.invoke(amqpsDeviceMethods, "isSenderLinkFor", MessageType.DEVICE_TELEMETRY);
+
+        //assert
+        assertTrue(isSenderLinkForOwnType);
+        assertFalse(isSenderLinkForOtherType);
+    }
 }
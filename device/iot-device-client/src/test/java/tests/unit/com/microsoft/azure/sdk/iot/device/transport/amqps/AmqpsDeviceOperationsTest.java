@@ -14,6 +14,7 @@ import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
+import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.Source;
 import org.apache.qpid.proton.amqp.messaging.Target;
@@ -791,6 +792,74 @@ public class AmqpsDeviceOperationsTest
         };
     }
 
+    // Tests_SRS_AMQPSDEVICEOPERATIONS_41_001: [The function shall read the message into the receive buffer of the operation, which it shall grow to the size of the message if it is smaller.]
+    @Test
+    public void getReceiveBufferReusesBufferOfOperation()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig);
+
+        //act
+        byte[] smallBuffer = Deencapsulation.invoke(amqpsDeviceOperations, "getReceiveBuffer", 10);
+        byte[] reusedBuffer = Deencapsulation.invoke(amqpsDeviceOperations, "getReceiveBuffer", 1024);
+        byte[] grownBuffer = Deencapsulation.invoke(amqpsDeviceOperations, "getReceiveBuffer", 2048);
+
+        //assert
+        assertEquals(1024, smallBuffer.length);
+        assertSame(smallBuffer, reusedBuffer);
+        assertEquals(2048, grownBuffer.length);
+        assertSame(grownBuffer, Deencapsulation.getField(amqpsDeviceOperations, "receiveBuffer"));
+    }
+
+    // Tests_SRS_AMQPSDEVICEOPERATIONS_41_002: [If the message is larger than 64 KB, the function shall read it into a new buffer and keep its receive buffer.]
+    @Test
+    public void getReceiveBufferDoesNotKeepLargeBuffer()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig);
+        byte[] buffer = Deencapsulation.invoke(amqpsDeviceOperations, "getReceiveBuffer", 10);
+
+        //act
+        byte[] largeBuffer = Deencapsulation.invoke(amqpsDeviceOperations, "getReceiveBuffer", 64 * 1024 + 1);
+
+        //assert
+        assertEquals(64 * 1024 + 1, largeBuffer.length);
+        assertSame(buffer, Deencapsulation.getField(amqpsDeviceOperations, "receiveBuffer"));
+    }
+
+    // Tests_SRS_AMQPSDEVICEOPERATIONS_41_003: [If the binary spans its whole array, the function shall return the array without copying it.]
+    // Tests_SRS_AMQPSDEVICEOPERATIONS_41_004: [Otherwise, the function shall return a copy of the bytes of the binary.]
+    @Test
+    public void getBinaryBytesCopiesOnlyPartOfArray()
+    {
+        //arrange
+        byte[] array = { 1, 2, 3, 4 };
+
+        //act
+        byte[] wholeBytes = Deencapsulation.invoke(AmqpsDeviceOperations.class, "getBinaryBytes", new Binary(array));
+        byte[] partBytes = Deencapsulation.invoke(AmqpsDeviceOperations.class, "getBinaryBytes", new Binary(array, 1, 2));
+
+        //assert
+        assertSame(array, wholeBytes);
+        assertArrayEquals(new byte[] { 2, 3 }, partBytes);
+    }
+
+    // Tests_SRS_AMQPSDEVICEOPERATIONS_41_005: [The function shall return true for any message type.]
+    @Test
+    public void isSenderLinkForReturnsTrueForAnyMessageType()
+    {
+        //arrange
+        AmqpsDeviceOperations amqpsDeviceOperations = Deencapsulation.newInstance(AmqpsDeviceOperations.class, mockDeviceClientConfig);
+
+        //act
+        boolean isSenderLinkForTelemetry = Deencapsulation.invoke(amqpsDeviceOperations, "isSenderLinkFor", MessageType.DEVICE_TELEMETRY);
+        boolean isSenderLinkForTwin = Deencapsulation.invoke(amqpsDeviceOperations, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+
+        //assert
+        assertTrue(isSenderLinkForTelemetry);
+        assertTrue(isSenderLinkForTwin);
+    }
+
     // Tests_SRS_AMQPSDEVICEOPERATIONS_12_047: [The function shall return true if all link are opened, false otherwise.]
     @Test
     public void operationLinksOpenedTrue()
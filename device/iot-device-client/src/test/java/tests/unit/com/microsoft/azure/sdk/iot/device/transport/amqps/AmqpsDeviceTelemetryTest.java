@@ -599,6 +599,22 @@ public class AmqpsDeviceTelemetryTest
             }
         };
     }
-}
 
+    /*
+    **Tests_SRS_AMQPSDEVICETELEMETRY_41_001: [**The function shall return true only if the message type is DEVICE_TELEMETRY.**]**
+    */
+    @Test
+    public void isSenderLinkForReturnsTrueOnlyForDeviceTelemetry()
+    {
+        //arrange
+        AmqpsDeviceTelemetry amqpsDeviceTelemetry = Deencapsulation.newInstance(AmqpsDeviceTelemetry.class, mockDeviceClientConfig);
+
+        //act
+        boolean isSenderLinkForOwnType = Deencapsulation.invoke(amqpsDeviceTelemetry, "isSenderLinkFor", MessageType.DEVICE_TELEMETRY);
+        boolean isSenderLinkForOtherType = Deencapsulation.invoke(amqpsDeviceTelemetry, "isSenderLinkFor", MessageType.DEVICE_TWIN);
 
+        //assert
+        assertTrue(isSenderLinkForOwnType);
+        assertFalse(isSenderLinkForOtherType);
+    }
+}
@@ -1869,4 +1869,22 @@ public class AmqpsDeviceTwinTest
         // act - assert
         Deencapsulation.invoke(amqpsDeviceTwin, "iotHubMessageToProtonMessage", mockedIotHubTransportMessage);
     }
+
+    /*
+    **Tests_SRS_AMQPSDEVICETWIN_41_001: [**The function shall return true only if the message type is DEVICE_TWIN.**]**
+    */
+    @Test
+    public void isSenderLinkForReturnsTrueOnlyForDeviceTwin()
+    {
+        //arrange
+        AmqpsDeviceTwin amqpsDeviceTwin = Deencapsulation.newInstance(AmqpsDeviceTwin.class, mockDeviceClientConfig);
+
+        //act
+        boolean isSenderLinkForOwnType = Deencapsulation.invoke(amqpsDeviceTwin, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+        boolean isSenderLinkForOtherType = Deencapsulation.invoke(amqpsDeviceTwin, "isSenderLinkFor", MessageType.DEVICE_TELEMETRY);
+
+        //assert
+        assertTrue(isSenderLinkForOwnType);
+        assertFalse(isSenderLinkForOtherType);
+    }
 }
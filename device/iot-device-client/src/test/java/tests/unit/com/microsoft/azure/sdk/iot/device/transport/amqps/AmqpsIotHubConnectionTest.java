@@ -30,7 +30,6 @@ import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.engine.impl.TransportInternal;
 import org.apache.qpid.proton.message.Message;
 import org.apache.qpid.proton.message.impl.MessageImpl;
-import org.apache.qpid.proton.reactor.FlowController;
 import org.apache.qpid.proton.reactor.Handshaker;
 import org.apache.qpid.proton.reactor.Reactor;
 import org.junit.Assert;
@@ -38,7 +37,9 @@ import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.*;
@@ -76,7 +77,7 @@ public class AmqpsIotHubConnectionTest {
     protected Handshaker mockHandshaker;
 
     @Mocked
-    protected FlowController mockFlowController;
+    protected AmqpsLinkCreditManager mockLinkCreditManager;
 
     @Mocked
     protected Proton mockProton;
@@ -386,8 +387,8 @@ public class AmqpsIotHubConnectionTest {
     // endpoint private member variables using the send/receiveEndpointFormat constants and device id.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_004: [The constructor shall initialize a new Handshaker
     // (Proton) object to handle communication handshake.]
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_005: [The constructor shall initialize a new FlowController
-    // (Proton) object to handle communication flow.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_003: [The constructor shall initialize a new AmqpsLinkCreditManager
+    // object to handle communication flow.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_006: [The constructor shall set its state to DISCONNECTED.]
     @Test
     public void constructorCopiesAllData() throws TransportException
@@ -414,7 +415,7 @@ public class AmqpsIotHubConnectionTest {
             {
                 new Handshaker();
                 times = 1;
-                new FlowController();
+                new AmqpsLinkCreditManager(anyInt, anyInt);
                 times = 1;
             }
         };
@@ -1012,7 +1013,6 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
 
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.DISCONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
 
         Integer expectedDeliveryHash = -1;
         Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", Message.Factory.create(), MessageType.DEVICE_TELEMETRY, mockConnectionString);
@@ -1022,26 +1022,87 @@ public class AmqpsIotHubConnectionTest {
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_015: [If the state of the connection is DISCONNECTED or there is not enough
     // credit, the function shall return -1.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_004: [If the sender link of the message type and device has no credit, the
+    // function shall wait for the service to grant credit to that link, up to one second, without holding the lock of
+    // the connection, before returning -1.]
     @Test
-    public void sendMessageDoesNothingIfNotEnoughLinkCredit() throws TransportException
+    public void sendMessageDoesNothingIfNotEnoughLinkCredit() throws TransportException, InterruptedException
     {
         baseExpectations();
 
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
-
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", -1);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "getSenderLinkTag", MessageType.DEVICE_TELEMETRY, mockConnectionString);
+                result = "telemetrySenderLink";
+                mockLinkCreditManager.awaitSenderCredit("telemetrySenderLink", 1000);
+                result = false;
+            }
+        };
 
         Integer expectedDeliveryHash = -1;
         Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", Message.Factory.create(), MessageType.DEVICE_TELEMETRY, mockConnectionString);
 
         assertEquals(expectedDeliveryHash, actualDeliveryHash);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "sendMessage", new Class[] {Message.class, MessageType.class, IotHubConnectionString.class}, any, MessageType.DEVICE_TELEMETRY, mockConnectionString);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_004: [If the sender link of the message type and device has no credit, the
+    // function shall wait for the service to grant credit to that link, up to one second, without holding the lock of
+    // the connection, before returning -1.]
+    @Test
+    public void sendMessageWaitsForCreditWithoutHoldingConnectionLock() throws TransportException
+    {
+        // arrange
+        baseExpectations();
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
+        Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionManager, "getSenderLinkTag", MessageType.DEVICE_TWIN, mockConnectionString);
+                result = "twinSenderLink";
+            }
+        };
+
+        final List<String> awaitedLinks = new ArrayList<>();
+        final List<Boolean> heldLocks = new ArrayList<>();
+        new MockUp<AmqpsIotHubConnection>()
+        {
+            @Mock
+            boolean awaitSenderCredit(String senderLinkTag)
+            {
+                awaitedLinks.add(senderLinkTag);
+                heldLocks.add(Thread.holdsLock(connection));
+                return true;
+            }
+        };
+
+        // act
+        Deencapsulation.invoke(connection, "sendMessage", mockProtonMessage, MessageType.DEVICE_TWIN, mockConnectionString);
+
+        // assert
+        assertEquals(1, awaitedLinks.size());
+        assertEquals("twinSenderLink", awaitedLinks.get(0));
+        assertFalse(heldLocks.get(0));
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_12_024: [The function shall call AmqpsSessionManager.sendMessage with the given parameters.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_021: [The function shall return the delivery hash.]
     @Test
-    public void sendMessage() throws TransportException
+    public void sendMessage() throws TransportException, InterruptedException
     {
         // arrange
         baseExpectations();
@@ -1060,7 +1121,13 @@ public class AmqpsIotHubConnectionTest {
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
         Deencapsulation.setField(connection, "amqpsSessionManager", mockAmqpsSessionManager);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 100);
+        new NonStrictExpectations()
+        {
+            {
+                mockLinkCreditManager.awaitSenderCredit(anyString, anyLong);
+                result = true;
+            }
+        };
 
         // act
         Integer actualDeliveryHash = Deencapsulation.invoke(connection, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockConnectionString);
@@ -1367,6 +1434,7 @@ public class AmqpsIotHubConnectionTest {
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_12_015: [The function shall call AmqpsSessionManager.getMessageFromReceiverLink.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_001: [The function shall call AmqpsSessionManager.getMessageFromReceiverLink again until it returns null, so that all the readable deliveries of the link are received in one event.]
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_050: [All the listeners shall be notified that a message was received from the server.]
     @Test
     public void onDeliveryReceive() throws TransportException
@@ -1385,6 +1453,8 @@ public class AmqpsIotHubConnectionTest {
                 result = receiverLinkName;
                 Deencapsulation.invoke(mockAmqpsSessionManager, "getMessageFromReceiverLink", receiverLinkName);
                 result = mockAmqpsMessage;
+                result = mockAmqpsMessage;
+                result = null;
             }
         };
 
@@ -1398,7 +1468,45 @@ public class AmqpsIotHubConnectionTest {
                 mockEvent.getLink();
                 times = 1;
                 Deencapsulation.invoke(mockAmqpsSessionManager, "getMessageFromReceiverLink", receiverLinkName);
-                times = 1;
+                times = 3;
+                mockEvent.getDelivery();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_002: [If no message can be read from a receiver link, the function shall do nothing, since the delivery is partial or was already received with an earlier one.]
+    @Test
+    public void onDeliveryIgnoresReceiverLinkWithoutMessage() throws TransportException
+    {
+        baseExpectations();
+
+        final String receiverLinkName = "receiver";
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockReceiver;
+                mockReceiver.getName();
+                result = receiverLinkName;
+                Deencapsulation.invoke(mockAmqpsSessionManager, "getMessageFromReceiverLink", receiverLinkName);
+                result = null;
+                mockEvent.getType();
+                result = Event.Type.DELIVERY;
+            }
+        };
+
+        final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
+        connection.setListener(mockedIotHubListener);
+        connection.onDelivery(mockEvent);
+
+        new Verifications()
+        {
+            {
+                mockEvent.getDelivery();
+                times = 0;
+                mockedIotHubListener.onMessageReceived((IotHubTransportMessage) any, (Throwable) any);
+                times = 0;
             }
         };
     }
@@ -1865,39 +1973,18 @@ public class AmqpsIotHubConnectionTest {
         assertNotNull(savedException);
     }
 
-    // Tests_SRS_AMQPSIOTHUBCONNECTION_15_040: [The event handler shall save the remaining link credit.]
+    // Tests_SRS_AMQPSIOTHUBCONNECTION_41_005: [The function shall return the link credit manager of the connection.]
     @Test
-    public void onLinkFlow() throws TransportException
+    public void getLinkCreditManagerReturnsManagerOfConnection() throws TransportException
     {
         baseExpectations();
 
-        new NonStrictExpectations()
-        {
-            {
-                mockEvent.getLink();
-                result = mockSender;
-                mockSender.getCredit();
-                result = 100;
-            }
-        };
-
         final AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
-        connection.onLinkFlow(mockEvent);
 
-        Integer expectedLinkCredit = 100;
-        Integer actualLinkCredit = Deencapsulation.getField(connection, "linkCredit");
+        AmqpsLinkCreditManager expectedLinkCreditManager = Deencapsulation.getField(connection, "linkCreditManager");
+        AmqpsLinkCreditManager actualLinkCreditManager = connection.getLinkCreditManager();
 
-        assertEquals(expectedLinkCredit, actualLinkCredit);
-
-        new Verifications()
-        {
-            {
-                mockEvent.getLink();
-                times = 1;
-                mockSender.getCredit();
-                times = 1;
-            }
-        };
+        assertEquals(expectedLinkCreditManager, actualLinkCreditManager);
     }
 
     // Tests_SRS_AMQPSIOTHUBCONNECTION_15_041: [The connection state shall be considered CONNECTED when the sender link is open remotely.]
@@ -2362,14 +2449,20 @@ public class AmqpsIotHubConnectionTest {
     // Tests_SRS_AMQPSTRANSPORT_34_077: [The function shall attempt to send the Proton message to IoTHub using the underlying AMQPS connection.]
     // Tests_SRS_AMQPSTRANSPORT_34_078: [If the sent message hash is valid, it shall be added to the in progress map and this function shall return OK.]
     @Test
-    public void sendMessageGetsHash() throws TransportException
+    public void sendMessageGetsHash() throws TransportException, InterruptedException
     {
         //arrange
         baseExpectations();
         final int expectedHash = 40;
         AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 20);
+        new NonStrictExpectations()
+        {
+            {
+                mockLinkCreditManager.awaitSenderCredit(anyString, anyLong);
+                result = true;
+            }
+        };
         new NonStrictExpectations()
         {
             {
@@ -2401,14 +2494,20 @@ public class AmqpsIotHubConnectionTest {
 
     // Tests_SRS_AMQPSTRANSPORT_34_079: [If the sent message hash is -1, this function shall throw a retriable ProtocolException.]
     @Test
-    public void sendMessageThrowsForNegativeHash() throws TransportException
+    public void sendMessageThrowsForNegativeHash() throws TransportException, InterruptedException
     {
         //arrange
         baseExpectations();
         final int expectedHash = -1;
         AmqpsIotHubConnection connection = new AmqpsIotHubConnection(mockConfig);
         Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
-        Deencapsulation.setField(connection, "linkCredit", 20);
+        new NonStrictExpectations()
+        {
+            {
+                mockLinkCreditManager.awaitSenderCredit(anyString, anyLong);
+                result = true;
+            }
+        };
         new NonStrictExpectations()
         {
             {
@@ -0,0 +1,358 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsLinkCreditManager;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import mockit.VerificationsInOrder;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AmqpsLinkCreditManager.
+ */
+public class AmqpsLinkCreditManagerTest
+{
+    private static final int MIN_RECEIVER_CREDIT = 10;
+    private static final int MAX_RECEIVER_CREDIT = 40;
+
+    @Mocked
+    Event mockEvent;
+
+    @Mocked
+    Receiver mockReceiver;
+
+    @Mocked
+    Sender mockSender;
+
+    private void receiverLinkExpectations()
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockReceiver;
+                mockReceiver.getName();
+                result = "receiver";
+            }
+        };
+    }
+
+    private void senderLinkExpectations()
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockEvent.getLink();
+                result = mockSender;
+                mockSender.getName();
+                result = "sender";
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_001: [If minReceiverCredit is less than 1, or if maxReceiverCredit is less than minReceiverCredit, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZeroMinReceiverCredit()
+    {
+        new AmqpsLinkCreditManager(0, MAX_RECEIVER_CREDIT);
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_001: [If minReceiverCredit is less than 1, or if maxReceiverCredit is less than minReceiverCredit, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForMaxLessThanMinReceiverCredit()
+    {
+        new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MIN_RECEIVER_CREDIT - 1);
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_002: [If the link is a receiver link, the function shall grant it the minimum receiver credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_014: [The function shall return the number of flow frames sent to grant receiver credit.]
+    @Test
+    public void onLinkLocalOpenGrantsMinimumCreditToReceiver()
+    {
+        //arrange
+        receiverLinkExpectations();
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+
+        //act
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //assert
+        assertEquals(1, amqpsLinkCreditManager.getFlowFrameCount());
+        new Verifications()
+        {
+            {
+                mockReceiver.flow(MIN_RECEIVER_CREDIT);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_005: [If more than half of the credit window of the receiver link is left, the function shall not send a flow frame.]
+    @Test
+    public void onDeliveryDoesNotFlowWhileHalfOfWindowIsLeft()
+    {
+        //arrange
+        receiverLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockReceiver.getCredit();
+                result = 0;
+                result = MIN_RECEIVER_CREDIT / 2 + 1;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //act
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+
+        //assert
+        assertEquals(1, amqpsLinkCreditManager.getFlowFrameCount());
+        new Verifications()
+        {
+            {
+                mockReceiver.flow(anyInt);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_006: [If the receiver link has no credit left, the function shall count a receiver credit starvation.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_008: [If the receiver link has at most a quarter of its credit window in unsettled deliveries, the function shall double the window, up to the maximum receiver credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_009: [The function shall top up the credit of the receiver link to its credit window in a single flow frame.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_015: [The function shall return the number of receiver credit starvations.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_017: [The function shall return the used receiver credit divided by the granted receiver credit, or 0 if no credit was granted.]
+    @Test
+    public void onDeliveryDoublesWindowWhileConsumerKeepsUp()
+    {
+        //arrange
+        receiverLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockReceiver.getCredit();
+                result = 0;
+                mockReceiver.getUnsettled();
+                result = 0;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        assertEquals(0, amqpsLinkCreditManager.getReceiverCreditUtilization(), 0);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //act
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+
+        //assert
+        assertEquals(4, amqpsLinkCreditManager.getFlowFrameCount());
+        assertEquals(3, amqpsLinkCreditManager.getReceiverCreditStarvationCount());
+        assertEquals(70.0 / 110.0, amqpsLinkCreditManager.getReceiverCreditUtilization(), 0.0001);
+        new VerificationsInOrder()
+        {
+            {
+                mockReceiver.flow(MIN_RECEIVER_CREDIT);
+                mockReceiver.flow(2 * MIN_RECEIVER_CREDIT);
+                mockReceiver.flow(MAX_RECEIVER_CREDIT);
+                mockReceiver.flow(MAX_RECEIVER_CREDIT);
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_007: [If the receiver link has as many unsettled deliveries as its credit window, the function shall halve the window, down to the minimum receiver credit.]
+    @Test
+    public void onDeliveryHalvesWindowWhileBacklogGrows()
+    {
+        //arrange
+        receiverLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockReceiver.getCredit();
+                result = 0;
+                result = 0;
+                result = 0;
+                result = 2;
+                result = 2;
+                mockReceiver.getUnsettled();
+                result = 0;
+                result = 20;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+
+        //act
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+
+        //assert
+        new VerificationsInOrder()
+        {
+            {
+                mockReceiver.flow(MIN_RECEIVER_CREDIT);
+                mockReceiver.flow(2 * MIN_RECEIVER_CREDIT);
+                mockReceiver.flow(MIN_RECEIVER_CREDIT - 2);
+            }
+        };
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_003: [If the link is a sender link, the function shall save it by its name, so that awaitSenderCredit can wait for its credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_011: [If the sender link with the provided name has credit, the function shall return true without waiting.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_013: [The function shall return the sum of the credit of the open sender links.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_018: [The function shall return the credit of the open sender link with the provided name, or 0 if there is no such link.]
+    @Test
+    public void awaitSenderCreditReturnsIfSenderHasCredit() throws InterruptedException
+    {
+        //arrange
+        senderLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.getCredit();
+                result = 5;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        assertEquals(0, amqpsLinkCreditManager.getSenderCredit());
+
+        //act
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //assert
+        assertEquals(5, amqpsLinkCreditManager.getSenderCredit());
+        assertEquals(5, amqpsLinkCreditManager.getSenderCredit("sender"));
+        assertTrue(amqpsLinkCreditManager.awaitSenderCredit("sender", 0));
+        assertEquals(0, amqpsLinkCreditManager.getSenderCreditStarvationCount());
+        assertEquals(0, amqpsLinkCreditManager.getFlowFrameCount());
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_004: [If the link is a sender link, the function shall wake up the threads waiting for sender credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_012: [Otherwise, the function shall count a sender credit starvation and wait for the service to grant credit to the sender link, up to timeoutMillis, and return whether the sender link has credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_016: [The function shall return the number of sender credit starvations.]
+    @Test
+    public void awaitSenderCreditWaitsForLinkFlow() throws InterruptedException
+    {
+        //arrange
+        senderLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.getCredit();
+                result = 0;
+                result = 0;
+                result = 5;
+            }
+        };
+        final AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+        Thread flowThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    Thread.sleep(50);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                amqpsLinkCreditManager.onLinkFlow(mockEvent);
+            }
+        });
+        flowThread.start();
+
+        //act
+        boolean hasSenderCredit = amqpsLinkCreditManager.awaitSenderCredit("sender", 10000);
+
+        //assert
+        flowThread.join();
+        assertTrue(hasSenderCredit);
+        assertEquals(1, amqpsLinkCreditManager.getSenderCreditStarvationCount());
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_012: [Otherwise, the function shall count a sender credit starvation and wait for the service to grant credit to the sender link, up to timeoutMillis, and return whether the sender link has credit.]
+    @Test
+    public void awaitSenderCreditReturnsFalseWithoutSender() throws InterruptedException
+    {
+        //arrange
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+
+        //act
+        boolean hasSenderCredit = amqpsLinkCreditManager.awaitSenderCredit("sender", 10);
+
+        //assert
+        assertFalse(hasSenderCredit);
+        assertEquals(1, amqpsLinkCreditManager.getSenderCreditStarvationCount());
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_012: [Otherwise, the function shall count a sender credit starvation and wait for the service to grant credit to the sender link, up to timeoutMillis, and return whether the sender link has credit.]
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_018: [The function shall return the credit of the open sender link with the provided name, or 0 if there is no such link.]
+    @Test
+    public void awaitSenderCreditIgnoresCreditOfOtherSenderLinks() throws InterruptedException
+    {
+        //arrange
+        senderLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockSender.getCredit();
+                result = 5;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //act
+        boolean hasSenderCredit = amqpsLinkCreditManager.awaitSenderCredit("otherSender", 10);
+
+        //assert
+        assertFalse(hasSenderCredit);
+        assertEquals(0, amqpsLinkCreditManager.getSenderCredit("otherSender"));
+        assertEquals(5, amqpsLinkCreditManager.getSenderCredit());
+        assertEquals(1, amqpsLinkCreditManager.getSenderCreditStarvationCount());
+    }
+
+    // Tests_SRS_AMQPSLINKCREDITMANAGER_41_010: [The function shall stop tracking the credit of the link.]
+    @Test
+    public void onLinkFinalStopsTrackingLink()
+    {
+        //arrange
+        receiverLinkExpectations();
+        new NonStrictExpectations()
+        {
+            {
+                mockReceiver.getCredit();
+                result = 0;
+            }
+        };
+        AmqpsLinkCreditManager amqpsLinkCreditManager = new AmqpsLinkCreditManager(MIN_RECEIVER_CREDIT, MAX_RECEIVER_CREDIT);
+        amqpsLinkCreditManager.onLinkLocalOpen(mockEvent);
+
+        //act
+        amqpsLinkCreditManager.onLinkFinal(mockEvent);
+        amqpsLinkCreditManager.onDelivery(mockEvent);
+
+        //assert
+        assertEquals(1, amqpsLinkCreditManager.getFlowFrameCount());
+        new Verifications()
+        {
+            {
+                mockReceiver.flow(anyInt);
+                times = 1;
+            }
+        };
+    }
+}
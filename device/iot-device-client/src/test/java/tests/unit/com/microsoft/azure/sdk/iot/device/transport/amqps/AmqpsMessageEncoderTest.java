@@ -0,0 +1,120 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.amqps;
+
+import com.microsoft.azure.sdk.iot.device.transport.amqps.AmqpsMessageEncoder;
+import mockit.Deencapsulation;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.message.Message;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AmqpsMessageEncoder.
+ */
+public class AmqpsMessageEncoderTest
+{
+    private static Message createMessage(int bodySize)
+    {
+        Message message = Proton.message();
+        message.setBody(new Data(new Binary(new byte[bodySize])));
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("key", "value");
+        message.setApplicationProperties(new ApplicationProperties(properties));
+        return message;
+    }
+
+    private static Message decode(byte[] buffer, int length)
+    {
+        Message message = Proton.message();
+        message.decode(buffer, 0, length);
+        return message;
+    }
+
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_002: [The function shall encode the message at the start of the buffer and return the encoded length.]
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_004: [The function shall return the buffer of the encoder.]
+    @Test
+    public void encodeWritesMessageAtStartOfBuffer()
+    {
+        // arrange
+        AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+        Message message = createMessage(100);
+
+        // act
+        int length = Deencapsulation.invoke(amqpsMessageEncoder, "encode", message);
+
+        // assert
+        byte[] buffer = Deencapsulation.invoke(amqpsMessageEncoder, "getBuffer");
+        Message decoded = decode(buffer, length);
+        assertEquals(100, ((Data) decoded.getBody()).getValue().getLength());
+        assertEquals("value", decoded.getApplicationProperties().getValue().get("key"));
+    }
+
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_001: [The function shall grow the buffer to the estimated encoded size of the message if the buffer is smaller.]
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_006: [The function shall add the sizes of the body, the application properties and the message annotations of the message to a fixed overhead.]
+    @Test
+    public void encodeGrowsBufferToEstimateAndReusesIt()
+    {
+        // arrange
+        AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+        Message largeMessage = createMessage(100 * 1024);
+        int estimatedSize = Deencapsulation.invoke(AmqpsMessageEncoder.class, "estimateEncodedSize", largeMessage);
+
+        // act
+        int largeLength = Deencapsulation.invoke(amqpsMessageEncoder, "encode", largeMessage);
+        byte[] largeBuffer = Deencapsulation.invoke(amqpsMessageEncoder, "getBuffer");
+        Deencapsulation.invoke(amqpsMessageEncoder, "encode", createMessage(10));
+        byte[] smallBuffer = Deencapsulation.invoke(amqpsMessageEncoder, "getBuffer");
+
+        // assert
+        assertTrue(estimatedSize >= largeLength);
+        assertEquals(estimatedSize, largeBuffer.length);
+        assertSame(largeBuffer, smallBuffer);
+    }
+
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_003: [The function shall double the buffer and encode the message again if encode throws BufferOverflowException.]
+    @Test
+    public void encodeDoublesBufferIfEstimateIsTooSmall()
+    {
+        // arrange
+        AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+        Message message = Proton.message();
+        char[] messageId = new char[4096];
+        Arrays.fill(messageId, 'a');
+        message.setMessageId(new String(messageId));
+
+        // act
+        int length = Deencapsulation.invoke(amqpsMessageEncoder, "encode", message);
+
+        // assert
+        byte[] buffer = Deencapsulation.invoke(amqpsMessageEncoder, "getBuffer");
+        assertEquals(8192, buffer.length);
+        assertEquals(new String(messageId), decode(buffer, length).getMessageId());
+    }
+
+    // Tests_SRS_AMQPSMESSAGEENCODER_41_005: [The function shall return the next value of the counter of the encoder as 8 big endian bytes.]
+    @Test
+    public void nextDeliveryTagReturnsFixedWidthCounter()
+    {
+        // arrange
+        AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+        Deencapsulation.setField(amqpsMessageEncoder, "nextTag", 0x0102L);
+
+        // act
+        byte[] firstTag = Deencapsulation.invoke(amqpsMessageEncoder, "nextDeliveryTag");
+        byte[] secondTag = Deencapsulation.invoke(amqpsMessageEncoder, "nextDeliveryTag");
+
+        // assert
+        assertArrayEquals(new byte[] {0, 0, 0, 0, 0, 0, 1, 2}, firstTag);
+        assertArrayEquals(new byte[] {0, 0, 0, 0, 0, 0, 1, 3}, secondTag);
+    }
+}
@@ -11,6 +11,7 @@ import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import org.apache.qpid.proton.engine.Link;
 import org.apache.qpid.proton.engine.Session;
+import org.junit.Before;
 import org.junit.Test;
 
 import java.nio.BufferOverflowException;
@@ -104,6 +105,19 @@ public class AmqpsSessionDeviceOperationTest
     List<UUID> mockListUUID;
 
 
+    @Before
+    public void setup()
+    {
+        // clients get a scheduler of their own unless a test gives them a shared transport executor
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getSharedTransportExecutor();
+                result = null;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig or the amqpsDeviceAuthentication parameter is null.]
     @Test (expected = IllegalArgumentException.class)
     public void constructorThrowsIfDeviceClientIsNull() throws IllegalArgumentException, TransportException
@@ -122,6 +136,32 @@ public class AmqpsSessionDeviceOperationTest
         new AmqpsSessionDeviceOperation(mockDeviceClientConfig, null);
     }
 
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_41_005: [The constructor shall throw IllegalArgumentException if the amqpsMessageEncoder parameter is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsIfEncoderIsNull() throws IllegalArgumentException
+    {
+        // act
+        new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, null);
+    }
+
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_41_004: [The constructor shall create an AmqpsMessageEncoder of its own if none is provided.]
+    @Test
+    public void constructorSavesProvidedOrOwnEncoder() throws IllegalArgumentException
+    {
+        // arrange
+        AmqpsMessageEncoder amqpsMessageEncoder = new AmqpsMessageEncoder();
+
+        // act
+        AmqpsSessionDeviceOperation sharingOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication, amqpsMessageEncoder);
+        AmqpsSessionDeviceOperation owningOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+
+        // assert
+        assertEquals(amqpsMessageEncoder, Deencapsulation.getField(sharingOperation, "amqpsMessageEncoder"));
+        AmqpsMessageEncoder ownEncoder = Deencapsulation.getField(owningOperation, "amqpsMessageEncoder");
+        assertNotNull(ownEncoder);
+        assertNotEquals(amqpsMessageEncoder, ownEncoder);
+    }
+
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_002: [The constructor shall save the deviceClientConfig and amqpsDeviceAuthentication parameter value to a member variable.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_003: [The constructor shall create AmqpsDeviceTelemetry, AmqpsDeviceMethods and AmqpsDeviceTwin and add them to the device operations list.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_047: [The constructor shall set the authentication state to authenticated if the authentication type is not CBS.]
@@ -1008,6 +1048,44 @@ public class AmqpsSessionDeviceOperationTest
         assertFalse(isFound);
     }
 
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_41_003: [The function shall return the sender and receiver link names of all device operations.]
+    @Test
+    public void getLinkNamesReturnsLinkNamesOfAllOperations() throws TransportException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getSenderLinkTag");
+                result = "telemetrySender";
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "getReceiverLinkTag");
+                result = "telemetryReceiver";
+                Deencapsulation.invoke(mockAmqpsDeviceMethods, "getSenderLinkTag");
+                result = "methodsSender";
+                Deencapsulation.invoke(mockAmqpsDeviceMethods, "getReceiverLinkTag");
+                result = "methodsReceiver";
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "getSenderLinkTag");
+                result = "twinSender";
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "getReceiverLinkTag");
+                result = "twinReceiver";
+            }
+        };
+
+        // act
+        List<String> linkNames = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getLinkNames");
+
+        // assert
+        assertEquals(6, linkNames.size());
+        assertTrue(linkNames.contains("telemetrySender"));
+        assertTrue(linkNames.contains("telemetryReceiver"));
+        assertTrue(linkNames.contains("methodsSender"));
+        assertTrue(linkNames.contains("methodsReceiver"));
+        assertTrue(linkNames.contains("twinSender"));
+        assertTrue(linkNames.contains("twinReceiver"));
+    }
+
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_040: [The function shall call all device operation's convertToProton, and if any of them not null return with the value.]
     // Tests_SRS_AMQPSESSIONDEVICEOPERATION_12_041: [The function shall call all device operation's convertFromProton, and if any of them not null return with the value.]
     @Test
@@ -1053,4 +1131,62 @@ public class AmqpsSessionDeviceOperationTest
         // assert
         assertTrue(mockAmqpsConvertFromProtonReturnValue == actualAmqpsConvertFromProtonReturnValue);
     }
+
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_41_006: [The function shall return the sender link tag of the first device operation that sends messages of the given type, or null if there is none.]
+    @Test
+    public void getSenderLinkTagReturnsTagOfOperationSendingTheMessageType() throws IllegalArgumentException, TransportException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
+        operationList.add(mockAmqpsDeviceTelemetry);
+        operationList.add(mockAmqpsDeviceMethods);
+        operationList.add(mockAmqpsDeviceTwin);
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceOperationsList", operationList);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsDeviceMethods, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+                result = false;
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+                result = true;
+                Deencapsulation.invoke(mockAmqpsDeviceTwin, "getSenderLinkTag");
+                result = "twinSenderLink";
+            }
+        };
+
+        // act
+        String senderLinkTag = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getSenderLinkTag", MessageType.DEVICE_TWIN);
+
+        // assert
+        assertEquals("twinSenderLink", senderLinkTag);
+    }
+
+    // Tests_SRS_AMQPSESSIONDEVICEOPERATION_41_006: [The function shall return the sender link tag of the first device operation that sends messages of the given type, or null if there is none.]
+    @Test
+    public void getSenderLinkTagReturnsNullIfNoOperationSendsTheMessageType() throws IllegalArgumentException, TransportException
+    {
+        // arrange
+        final AmqpsSessionDeviceOperation amqpsSessionDeviceOperation = new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthentication);
+        ArrayList<AmqpsDeviceOperations> operationList = new ArrayList<>();
+        operationList.add(mockAmqpsDeviceTelemetry);
+        Deencapsulation.setField(amqpsSessionDeviceOperation, "amqpsDeviceOperationsList", operationList);
+
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsDeviceTelemetry, "isSenderLinkFor", MessageType.DEVICE_TWIN);
+                result = false;
+            }
+        };
+
+        // act
+        String senderLinkTag = Deencapsulation.invoke(amqpsSessionDeviceOperation, "getSenderLinkTag", MessageType.DEVICE_TWIN);
+
+        // assert
+        assertNull(senderLinkTag);
+    }
 }
@@ -6,11 +6,15 @@ import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.amqps.*;
 import mockit.*;
 import org.apache.qpid.proton.engine.*;
+import org.junit.Before;
 import org.junit.Test;
 
 import javax.net.ssl.SSLContext;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
@@ -79,6 +83,19 @@ public class AmqpsSessionManagerTest
     @Mocked
     AmqpsConvertFromProtonReturnValue mockAmqpsConvertFromProtonReturnValue;
 
+    @Before
+    public void setup()
+    {
+        // clients get a scheduler of their own unless a test gives them a shared transport executor
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getSharedTransportExecutor();
+                result = null;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONMANAGER_12_001: [The constructor shall throw IllegalArgumentException if the deviceClientConfig parameter is null.]
     @Test (expected = IllegalArgumentException.class)
     public void constructorThrowsIfDeviceClientIsNull() throws IllegalArgumentException, TransportException
@@ -112,7 +129,7 @@ public class AmqpsSessionManagerTest
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
                 new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
                 result = mockAmqpsDeviceAuthenticationCBS;
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, (AmqpsMessageEncoder) any);
                 result = mockAmqpsSessionDeviceOperation;
             }
         };
@@ -141,7 +158,7 @@ public class AmqpsSessionManagerTest
                 result = DeviceClientConfig.AuthType.SAS_TOKEN;
                 new AmqpsDeviceAuthenticationCBS(mockDeviceClientConfig);
                 result = mockAmqpsDeviceAuthenticationCBS;
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, (AmqpsMessageEncoder) any);
                 result = mockAmqpsSessionDeviceOperation;
             }
         };
@@ -176,11 +193,19 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_009: [The function shall create a new  AmqpsSessionDeviceOperation with the given deviceClietnConfig and add it to the session list.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_003: [The function shall index the new device session by the deviceId of the given deviceClientConfig.]
     @Test
     public void addDeviceOperationSessionSuccess() throws IllegalArgumentException, TransportException
     {
         // arrange
         AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getDeviceId();
+                result = "deviceId";
+            }
+        };
 
         // act
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
@@ -189,11 +214,13 @@ public class AmqpsSessionManagerTest
         // assert
         ArrayList<AmqpsSessionDeviceOperation> actualList =  Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionList");
         assertEquals(actualList.size(), 2);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = Deencapsulation.getField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId");
+        assertEquals(actualList.get(1), sessionsByDeviceId.get("deviceId"));
 
         new Verifications()
         {
             {
-                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS);
+                new AmqpsSessionDeviceOperation(mockDeviceClientConfig, mockAmqpsDeviceAuthenticationCBS, (AmqpsMessageEncoder) any);
                 times = 1;
             }
         };
@@ -256,6 +283,47 @@ public class AmqpsSessionManagerTest
         };
     }
 
+    // Tests_SRS_AMQPSESSIONMANAGER_41_001: [If the config has a shared transport executor, the constructor shall schedule AmqpsDeviceAuthenticationCBSSendTask on it instead of creating a scheduler of its own.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_002: [The function shall not shut down a shared transport executor.]
+    @Test
+    public void closeNowWithSharedTransportExecutorCancelsTaskWithoutShuttingDownScheduler(
+            @Mocked final SharedTransportExecutor mockSharedTransportExecutor,
+            @Mocked final ScheduledFuture mockScheduledFuture) throws TransportException
+    {
+        // arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceClientConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockDeviceClientConfig.getSharedTransportExecutor();
+                result = mockSharedTransportExecutor;
+                mockSharedTransportExecutor.getScheduledExecutorService();
+                result = mockScheduledExecutorService;
+                mockScheduledExecutorService.scheduleAtFixedRate((Runnable) any, anyLong, anyLong, (TimeUnit) any);
+                result = mockScheduledFuture;
+            }
+        };
+        AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+
+        // act
+        Deencapsulation.invoke(amqpsSessionManager, "closeNow");
+
+        // assert
+        new Verifications()
+        {
+            {
+                mockScheduledExecutorService.scheduleAtFixedRate((Runnable) any, anyLong, anyLong, (TimeUnit) any);
+                times = 1;
+                mockScheduledFuture.cancel(false);
+                times = 1;
+                mockScheduledExecutorService.shutdown();
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_AMQPSESSIONMANAGER_12_014: [The function shall do nothing if the authentication is not open.]
     @Test
     public void authenticateDoesNothing() throws IllegalArgumentException, InterruptedException, TransportException
@@ -512,24 +580,27 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_027: [The function shall call authentication initLink on all session list member if the authentication is open and the session is not null.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_007: [The function shall call initLink on the device session that owns the link if the authentication is open and the session is not null.]
     @Test
     public void onLinkInitCallsDeviceSessionInitLink() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
+        final String linkName = "linkName";
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
         Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByLinkName = new HashMap<>();
+        sessionsByLinkName.put(linkName, mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByLinkName", sessionsByLinkName);
 
         new NonStrictExpectations()
         {
             {
                 mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
                 result = true;
+                mockLink.getName();
+                result = linkName;
             }
         };
 
@@ -541,7 +612,7 @@ public class AmqpsSessionManagerTest
         {
             {
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "initLink", mockLink);
-                times = 1;
+                times = 0;
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "initLink", mockLink);
                 times = 1;
             }
@@ -661,6 +732,7 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_031: [The function shall call all all device session's isLinkFound, and if both links are opened notify the lock.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_008: [The function shall call isLinkFound on the device session that owns the link, and if all its links are opened notify the lock.]
     @Test
     public void onLinkRemoteOpenNotify() throws IllegalArgumentException, InterruptedException, TransportException
     {
@@ -669,10 +741,9 @@ public class AmqpsSessionManagerTest
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByLinkName = new HashMap<>();
+        sessionsByLinkName.put(linkName, mockAmqpsSessionDeviceOperation);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByLinkName", sessionsByLinkName);
 
         Deencapsulation.setField(amqpsSessionManager, "openLinksLock", mockObjectLock);
 
@@ -713,27 +784,24 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_032: [The function shall call sendMessage on all session list member and if there is a successful send return with the deliveryHash, otherwise return -1.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_009: [The function shall call sendMessage on the device session of the deviceId of the connection string and return with the deliveryHash, or return -1 if there is no such device session.]
     @Test
     public void sendMessageNoSender() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
-        final String linkName = "linkName";
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
         Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
 
-        new StrictExpectations()
+        new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
-                result = -1;
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
-                result = -1;
+                mockIotHubConnectionString.getDeviceId();
+                result = "otherDeviceId";
             }
         };
 
@@ -742,28 +810,35 @@ public class AmqpsSessionManagerTest
 
         // assert
         assertTrue(deliveryHash == -1);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
+                times = 0;
+            }
+        };
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_032: [The function shall call sendMessage on all session list member and if there is a successful send return with the deliveryHash, otherwise return -1.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_009: [The function shall call sendMessage on the device session of the deviceId of the connection string and return with the deliveryHash, or return -1 if there is no such device session.]
     @Test
     public void sendMessageSuccess() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
-        final String linkName = "linkName";
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
         Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        sessionsByDeviceId.put("deviceId1", mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
 
-        new StrictExpectations()
+        new NonStrictExpectations()
         {
             {
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
-                result = -1;
+                mockIotHubConnectionString.getDeviceId();
+                result = "deviceId1";
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
                 result = 42;
             }
@@ -774,6 +849,13 @@ public class AmqpsSessionManagerTest
 
         // assert
         assertEquals((Integer)42, deliveryHash);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "sendMessage", mockProtonMessage, MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
+                times = 0;
+            }
+        };
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_033: [The function shall do nothing and return null if the session is not open.]
@@ -822,6 +904,7 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_035: [The function shall call device sessions getMessageFromReceiverLink if the authentication is open.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_010: [The function shall call getMessageFromReceiverLink on the device session that owns the link if the authentication is open.]
     @Test
     public void getMessageFromReceiverLinkCallsDeviceSessionsAuthenticated() throws IllegalArgumentException, InterruptedException, TransportException
     {
@@ -836,12 +919,16 @@ public class AmqpsSessionManagerTest
         sessionList.add(mockAmqpsSessionDeviceOperation1);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
 
+        Map<String, AmqpsSessionDeviceOperation> sessionsByLinkName = new HashMap<>();
+        sessionsByLinkName.put(linkName, mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByLinkName", sessionsByLinkName);
+
         new Expectations()
         {
             {
                 mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
                 result = true;
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "getMessageFromReceiverLink", linkName);
                 result = mockAmqpsMessage;
             }
         };
@@ -856,11 +943,48 @@ public class AmqpsSessionManagerTest
         {
             {
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getMessageFromReceiverLink", linkName);
+                times = 0;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "getMessageFromReceiverLink", linkName);
                 times = 1;
             }
         };
     }
 
+    // Tests_SRS_AMQPSESSIONMANAGER_41_005: [If no device session owns the link, the function shall call getMessageFromReceiverLink on the device sessions until one of them returns a message.]
+    @Test
+    public void getMessageFromReceiverLinkOffersUnownedLinkToDeviceSessions() throws IllegalArgumentException, InterruptedException, TransportException
+    {
+        // arrange
+        final String cbsLinkName = "cbsLinkName";
+        final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
+
+        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
+        sessionList.add(mockAmqpsSessionDeviceOperation);
+        sessionList.add(mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByLinkName", new HashMap<String, AmqpsSessionDeviceOperation>());
+
+        new Expectations()
+        {
+            {
+                mockAmqpsDeviceAuthenticationCBS.operationLinksOpened();
+                result = true;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "getMessageFromReceiverLink", cbsLinkName);
+                result = null;
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "getMessageFromReceiverLink", cbsLinkName);
+                result = mockAmqpsMessage;
+            }
+        };
+
+        // act
+        AmqpsMessage amqpsMessage = Deencapsulation.invoke(amqpsSessionManager, "getMessageFromReceiverLink", cbsLinkName);
+
+        // assert
+        assertEquals(mockAmqpsMessage, amqpsMessage);
+    }
+
     // Tests_SRS_AMQPSESSIONMANAGER_12_037: [The function shall return with the authentication isLinkFound's return value if the authentication is not open.]
     @Test
     public void isLinkFoundCallsAuth() throws IllegalArgumentException, InterruptedException, TransportException
@@ -894,6 +1018,7 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_038: [The function shall call all device session's isLinkFound, and if any of them true return true otherwise return false.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_011: [The function shall return the isLinkFound of the device session that owns the link, or false if there is no such device session.]
     @Test
     public void isLinkFoundCallsDeviceSessions() throws IllegalArgumentException, InterruptedException, TransportException
     {
@@ -903,10 +1028,9 @@ public class AmqpsSessionManagerTest
         Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByLinkName = new HashMap<>();
+        sessionsByLinkName.put(linkName, mockAmqpsSessionDeviceOperation);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByLinkName", sessionsByLinkName);
 
         new Expectations()
         {
@@ -920,9 +1044,11 @@ public class AmqpsSessionManagerTest
 
         // act
         Boolean isFound = Deencapsulation.invoke(amqpsSessionManager, "isLinkFound", linkName);
+        Boolean isOtherFound = Deencapsulation.invoke(amqpsSessionManager, "isLinkFound", "otherLinkName");
 
         // assert
         assertEquals(true, isFound);
+        assertEquals(false, isOtherFound);
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_039: [The function shall return with the return value of authentication.operationLinksOpened.]
@@ -1055,23 +1181,24 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_041: [The function shall call all device session's convertFromProton, and if any of them not null return with the value.]
-
+    // Tests_SRS_AMQPSESSIONMANAGER_41_012: [The function shall return the convertFromProton of the device session of the deviceId of the configuration, or null if there is no such device session.]
     @Test
     public void convertFromProtonSuccess() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
-        final String linkName = "linkName";
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        sessionsByDeviceId.put("deviceId1", mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
 
         new Expectations()
         {
             {
+                mockDeviceClientConfig.getDeviceId();
+                result = "deviceId";
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "convertFromProton", mockAmqpsMessage, mockDeviceClientConfig);
                 result = mockAmqpsConvertFromProtonReturnValue;
             }
@@ -1095,26 +1222,23 @@ public class AmqpsSessionManagerTest
     }
 
     // Tests_SRS_AMQPSESSIONMANAGER_12_041: [The function shall call all device session's convertFromProton, and if any of them not null return with the value.]
+    // Tests_SRS_AMQPSESSIONMANAGER_41_012: [The function shall return the convertFromProton of the device session of the deviceId of the configuration, or null if there is no such device session.]
     @Test
     public void convertFromProtonNull() throws IllegalArgumentException, InterruptedException, TransportException
     {
         // arrange
-        final String linkName = "linkName";
         final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
         Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceAuthentication", mockAmqpsDeviceAuthenticationCBS);
 
-        ArrayList<AmqpsSessionDeviceOperation> sessionList = new ArrayList<>();
-        sessionList.add(mockAmqpsSessionDeviceOperation);
-        sessionList.add(mockAmqpsSessionDeviceOperation1);
-        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionList", sessionList);
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
 
         new Expectations()
         {
             {
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "convertFromProton", mockAmqpsMessage, mockDeviceClientConfig);
-                result = null;
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "convertFromProton", mockAmqpsMessage, mockDeviceClientConfig);
-                result = null;
+                mockDeviceClientConfig.getDeviceId();
+                result = "otherDeviceId";
             }
         };
 
@@ -1128,9 +1252,7 @@ public class AmqpsSessionManagerTest
         {
             {
                 Deencapsulation.invoke(mockAmqpsSessionDeviceOperation, "convertFromProton", mockAmqpsMessage, mockDeviceClientConfig);
-                times = 1;
-                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "convertFromProton", mockAmqpsMessage, mockDeviceClientConfig);
-                times = 1;
+                times = 0;
             }
         };
     }
@@ -1238,4 +1360,61 @@ public class AmqpsSessionManagerTest
             }
         };
     }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_41_006: [The function shall return the sender link tag of the message type in the device session of the deviceId of the connection string, or null if the session is not open or there is no such device session.]
+    @Test
+    public void getSenderLinkTagReturnsTagOfDeviceSession() throws IllegalArgumentException, TransportException
+    {
+        // arrange
+        final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        sessionsByDeviceId.put("deviceId1", mockAmqpsSessionDeviceOperation1);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.getDeviceId();
+                result = "deviceId1";
+                Deencapsulation.invoke(mockAmqpsSessionDeviceOperation1, "getSenderLinkTag", MessageType.DEVICE_TELEMETRY);
+                result = "telemetrySenderLink";
+            }
+        };
+
+        // act
+        String senderLinkTag = Deencapsulation.invoke(amqpsSessionManager, "getSenderLinkTag", MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
+
+        // assert
+        assertEquals("telemetrySenderLink", senderLinkTag);
+    }
+
+    // Tests_SRS_AMQPSESSIONMANAGER_41_006: [The function shall return the sender link tag of the message type in the device session of the deviceId of the connection string, or null if the session is not open or there is no such device session.]
+    @Test
+    public void getSenderLinkTagReturnsNullForUnknownDevice() throws IllegalArgumentException, TransportException
+    {
+        // arrange
+        final AmqpsSessionManager amqpsSessionManager = new AmqpsSessionManager(mockDeviceClientConfig);
+        Deencapsulation.setField(amqpsSessionManager, "session", mockSession);
+
+        Map<String, AmqpsSessionDeviceOperation> sessionsByDeviceId = new HashMap<>();
+        sessionsByDeviceId.put("deviceId", mockAmqpsSessionDeviceOperation);
+        Deencapsulation.setField(amqpsSessionManager, "amqpsDeviceSessionsByDeviceId", sessionsByDeviceId);
+
+        new NonStrictExpectations()
+        {
+            {
+                mockIotHubConnectionString.getDeviceId();
+                result = "otherDeviceId";
+            }
+        };
+
+        // act
+        String senderLinkTag = Deencapsulation.invoke(amqpsSessionManager, "getSenderLinkTag", MessageType.DEVICE_TELEMETRY, mockIotHubConnectionString);
+
+        // assert
+        assertNull(senderLinkTag);
+    }
 }
@@ -212,6 +212,71 @@ public class HttpsBatchMessageTest
         assertThat(testBatchBody, containsString(expectedMessageIdString));
     }
 
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+    @Test
+    public void addMessageAppendsJsonObjectsToArray(
+            @Mocked final HttpsSingleMessage mockMsg) throws IotHubSizeExceededException
+    {
+        final String msgBody = "test-msg-body";
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                result = msgBody.getBytes();
+                mockMsg.getProperties();
+                result = new MessageProperty[0];
+                mockMsg.getSystemProperties();
+                result = new HashMap<String, String>();
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        batchMsg.addMessage(mockMsg);
+        batchMsg.addMessage(mockMsg);
+        String testBatchBody = new String(batchMsg.getBody(), UTF8);
+
+        final String expectedMsgJson = "{\"body\":\"" + Base64.encodeBase64StringLocal(msgBody.getBytes()) + "\",\"base64Encoded\":true}";
+        assertThat(testBatchBody, is("[" + expectedMsgJson + "," + expectedMsgJson + "]"));
+    }
+
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_002: [The function shall add the message as a JSON object appended to the current JSON array.]
+    // Tests_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
+    @Test
+    public void addMessageKeepsAllMessagesUntilBatchIsFull(
+            @Mocked final HttpsSingleMessage mockMsg)
+    {
+        final byte[] msgBodyBytes = new byte[1024];
+        new NonStrictExpectations()
+        {
+            {
+                mockMsg.getBody();
+                result = msgBodyBytes;
+            }
+        };
+
+        HttpsBatchMessage batchMsg = new HttpsBatchMessage();
+        int addedMessages = 0;
+        try
+        {
+            while (true)
+            {
+                batchMsg.addMessage(mockMsg);
+                addedMessages++;
+            }
+        }
+        catch (IotHubSizeExceededException e)
+        {
+            byte[] testBatchBody = batchMsg.getBody();
+            final String expectedMsgBody = Base64.encodeBase64StringLocal(msgBodyBytes);
+            String batchBody = new String(testBatchBody, UTF8);
+
+            assertThat(batchMsg.numMessages(), is(addedMessages));
+            assertThat(batchBody.split(expectedMsgBody, -1).length - 1, is(addedMessages));
+            assertThat(batchBody.endsWith("}]"), is(true));
+            assertThat(testBatchBody.length, is(lessThan(SERVICEBOUND_MESSAGE_MAX_SIZE_BYTES)));
+        }
+    }
+
     // Tests_SRS_HTTPSBATCHMESSAGE_11_009: [If the function throws a IotHubSizeExceededException, the batched message shall remain as if the message was never added.]
     @Test
     public void addMessageRejectsOverflowingMessageAndPreservesOldBatchState(
@@ -15,6 +15,7 @@ import org.junit.Test;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.NoRouteToHostException;
@@ -426,8 +427,7 @@ public class HttpsConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_11_011: [The function shall read from the input stream (response stream) and return the response.]
     @Test
-    public void readInputCompletelyReadsInputStream(
-            @Mocked final InputStream mockIs) throws IOException, TransportException
+    public void readInputCompletelyReadsInputStream() throws IOException, TransportException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
         new NonStrictExpectations()
@@ -440,9 +440,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -534,6 +532,8 @@ public class HttpsConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -551,8 +551,7 @@ public class HttpsConnectionTest
 
     // Tests_SRS_HTTPSCONNECTION_11_013: [The function shall read from the error stream and return the response.]
     @Test
-    public void readErrorCompletelyReadsErrorStream(
-            @Mocked final InputStream mockIs) throws IOException, TransportException
+    public void readErrorCompletelyReadsErrorStream() throws IOException, TransportException
     {
         final HttpsMethod httpsMethod = HttpsMethod.GET;
         new NonStrictExpectations()
@@ -565,9 +564,7 @@ public class HttpsConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
@@ -648,6 +645,8 @@ public class HttpsConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpsConnection conn = new HttpsConnection(mockUrl, httpsMethod);
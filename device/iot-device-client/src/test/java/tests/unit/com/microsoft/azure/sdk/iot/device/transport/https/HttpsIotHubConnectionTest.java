@@ -21,6 +21,8 @@ import org.junit.Test;
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -1910,6 +1912,137 @@ public class HttpsIotHubConnectionTest
         };
     }
 
+    //Tests_SRS_HTTPSIOTHUBCONNECTION_41_001: [If the provided batch is null, or the provided messages are null or empty, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void sendMessagesThrowsForEmptyMessages(final @Mocked HttpsBatchMessage mockBatch) throws TransportException
+    {
+        //arrange
+        HttpsIotHubConnection conn = new HttpsIotHubConnection(mockConfig);
+
+        //act
+        conn.sendMessages(mockBatch, new ArrayList<Message>());
+    }
+
+    //Tests_SRS_HTTPSIOTHUBCONNECTION_41_002: [The function shall send a POST request to the URL 'https://[iotHubHostname]/devices/[deviceId]/messages/events?api-version=2016-02-03' with the batch body.]
+    //Tests_SRS_HTTPSIOTHUBCONNECTION_41_003: [The function shall set the header field 'iothub-to' to be '/devices/[deviceId]/messages/events' and the header field 'content-type' to be the batch content type.]
+    @Test
+    public void sendMessagesPostsBatchBody(final @Mocked IotHubEventUri mockUri, final @Mocked HttpsBatchMessage mockBatch) throws IOException, TransportException
+    {
+        //arrange
+        final String eventUri = "test-event-uri";
+        final String eventPath = "/devices/test-device-id/messages/events";
+        final byte[] body = { 1, 2, 3 };
+        final String contentType = "application/vnd.microsoft.iothub.json";
+        new NonStrictExpectations()
+        {
+            {
+                new IotHubEventUri(anyString, anyString);
+                result = mockUri;
+                mockUri.toString();
+                result = eventUri;
+                mockUri.getPath();
+                result = eventPath;
+                mockBatch.getBody();
+                result = body;
+                mockBatch.getContentType();
+                result = contentType;
+                mockRequest.send();
+                result = mockResponse;
+                mockResponse.getStatus();
+                result = 204;
+            }
+        };
+
+        HttpsIotHubConnection conn = new HttpsIotHubConnection(mockConfig);
+        conn.setListener(mockedListener);
+
+        //act
+        conn.sendMessages(mockBatch, Arrays.asList(mockedMessage));
+
+        //assert
+        new Verifications()
+        {
+            {
+                new URL("https://" + eventUri);
+                new HttpsRequest((URL) any, HttpsMethod.POST, body, anyString);
+                times = 1;
+                mockRequest.setHeaderField("iothub-to", eventPath);
+                times = 1;
+                mockRequest.setHeaderField("content-type", contentType);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_HTTPSIOTHUBCONNECTION_41_004: [If the response from the service is OK or OK_EMPTY, this function shall notify its listener that each message was sent with no exception.]
+    @Test
+    public void sendMessagesNotifiesListenerForEachMessage(final @Mocked IotHubEventUri mockUri, final @Mocked HttpsBatchMessage mockBatch,
+                                                            final @Mocked Message otherMessage) throws TransportException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = mockResponse;
+                mockResponse.getStatus();
+                result = 204;
+            }
+        };
+
+        HttpsIotHubConnection conn = new HttpsIotHubConnection(mockConfig);
+        conn.setListener(mockedListener);
+
+        //act
+        IotHubStatusCode status = conn.sendMessages(mockBatch, Arrays.asList(mockedMessage, otherMessage));
+
+        //assert
+        assertEquals(IotHubStatusCode.OK_EMPTY, status);
+        new Verifications()
+        {
+            {
+                mockedListener.onMessageSent(mockedMessage, null);
+                times = 1;
+                mockedListener.onMessageSent(otherMessage, null);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_HTTPSIOTHUBCONNECTION_41_005: [If the response from the service is not OK or OK_EMPTY, this function shall notify its listener that each message was sent with the mapped IotHubServiceException.]
+    @Test
+    public void sendMessagesNotifiesListenerOfIotHubServiceExceptionForEachMessage(final @Mocked IotHubEventUri mockUri, final @Mocked HttpsBatchMessage mockBatch,
+                                                                                   final @Mocked Message otherMessage) throws TransportException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockRequest.send();
+                result = mockResponse;
+                mockResponse.getStatus();
+                result = 400;
+            }
+        };
+
+        HttpsIotHubConnection conn = new HttpsIotHubConnection(mockConfig);
+        conn.setListener(mockedListener);
+
+        //act
+        conn.sendMessages(mockBatch, Arrays.asList(mockedMessage, otherMessage));
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedListener.onMessageSent(mockedMessage, (TransportException) any);
+                times = 1;
+                mockedListener.onMessageSent(otherMessage, (TransportException) any);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_HTTPSIOTHUBCONNECTION_34_071: [This function shall return the empty string.]
     @Test
     public void getConnectionIdReturnsEmptyString()
@@ -0,0 +1,237 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.https;
+
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.https.HttpsReceivePoller;
+import mockit.Deencapsulation;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
+import org.junit.Test;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for HttpsReceivePoller.
+ */
+public class HttpsReceivePollerTest
+{
+    private static final long MIN_INTERVAL_MILLIS = 1000;
+    private static final long MAX_INTERVAL_MILLIS = 3000;
+
+    @Mocked
+    HttpsIotHubConnection mockConnection;
+
+    @Mocked
+    IotHubTransportMessage mockMessage;
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_001: [If minIntervalMillis is less than 1, or if maxIntervalMillis is less than minIntervalMillis, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZeroMinInterval()
+    {
+        new HttpsReceivePoller(0, MAX_INTERVAL_MILLIS);
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_001: [If minIntervalMillis is less than 1, or if maxIntervalMillis is less than minIntervalMillis, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForMaxLessThanMinInterval()
+    {
+        new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MIN_INTERVAL_MILLIS - 1);
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_002: [The constructor shall start with the minimum interval, and with a poll due on the first call of poll.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_004: [The function shall receive messages from the connection back to back, up to MAX_MESSAGES_PER_POLL, until the connection returns no message, and add them to the queue.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_007: [The function shall return the number of receive requests sent.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_008: [The function shall return the number of received messages.]
+    @Test
+    public void pollReceivesMessagesBackToBack() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                returns(mockMessage, mockMessage, null);
+            }
+        };
+
+        //act
+        int receivedMessages = poller.poll(mockConnection, receivedMessagesQueue);
+
+        //assert
+        assertEquals(2, receivedMessages);
+        assertEquals(2, receivedMessagesQueue.size());
+        assertEquals(3L, poller.getRequestCount());
+        assertEquals(2L, poller.getReceivedMessageCount());
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_004: [The function shall receive messages from the connection back to back, up to MAX_MESSAGES_PER_POLL, until the connection returns no message, and add them to the queue.]
+    @Test
+    public void pollReceivesAtMostMaxMessagesPerPoll() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        final int maxMessagesPerPoll = Deencapsulation.getField(HttpsReceivePoller.class, "MAX_MESSAGES_PER_POLL");
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                result = mockMessage;
+            }
+        };
+
+        //act
+        int receivedMessages = poller.poll(mockConnection, receivedMessagesQueue);
+
+        //assert
+        assertEquals(maxMessagesPerPoll, receivedMessages);
+        assertEquals(maxMessagesPerPoll, receivedMessagesQueue.size());
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_003: [If the next poll is not due, the function shall not send a request and shall return 0.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_006: [If no message was received, the function shall make the next poll due after the current interval, and double the interval up to the maximum interval.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_011: [The function shall return the current interval in milliseconds.]
+    @Test
+    public void pollBacksOffAfterMiss() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                result = null;
+            }
+        };
+
+        //act
+        int firstReceivedMessages = poller.poll(mockConnection, receivedMessagesQueue);
+        int secondReceivedMessages = poller.poll(mockConnection, receivedMessagesQueue);
+
+        //assert
+        assertEquals(0, firstReceivedMessages);
+        assertEquals(0, secondReceivedMessages);
+        assertEquals(2 * MIN_INTERVAL_MILLIS, poller.getCurrentIntervalMillis());
+        new Verifications()
+        {
+            {
+                mockConnection.receiveMessage();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_006: [If no message was received, the function shall make the next poll due after the current interval, and double the interval up to the maximum interval.]
+    @Test
+    public void pollDoublesIntervalUpToMaxInterval() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                result = null;
+            }
+        };
+
+        //act
+        poller.poll(mockConnection, receivedMessagesQueue);
+        Deencapsulation.setField(poller, "isPollScheduled", false);
+        poller.poll(mockConnection, receivedMessagesQueue);
+
+        //assert
+        assertEquals(MAX_INTERVAL_MILLIS, poller.getCurrentIntervalMillis());
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_005: [If a message was received, the function shall reset the interval to the minimum interval and make the next poll due on the next call.]
+    @Test
+    public void pollResetsIntervalAfterHit() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        Deencapsulation.setField(poller, "currentIntervalMillis", MAX_INTERVAL_MILLIS);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                returns(mockMessage, null, mockMessage, null);
+            }
+        };
+
+        //act
+        poller.poll(mockConnection, receivedMessagesQueue);
+        int receivedMessages = poller.poll(mockConnection, receivedMessagesQueue);
+
+        //assert
+        assertEquals(1, receivedMessages);
+        assertEquals(MIN_INTERVAL_MILLIS, poller.getCurrentIntervalMillis());
+        assertEquals(4L, poller.getRequestCount());
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_007: [The function shall return the number of receive requests sent.]
+    @Test
+    public void pollCountsFailedRequests() throws TransportException
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        Queue<IotHubTransportMessage> receivedMessagesQueue = new ConcurrentLinkedQueue<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockConnection.receiveMessage();
+                result = new TransportException("test");
+            }
+        };
+
+        //act
+        try
+        {
+            poller.poll(mockConnection, receivedMessagesQueue);
+            fail("poll should have thrown");
+        }
+        catch (TransportException e)
+        {
+            // expected
+        }
+
+        //assert
+        assertEquals(1L, poller.getRequestCount());
+        assertEquals(0L, poller.getReceivedMessageCount());
+    }
+
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_009: [The function shall return the average request latency in milliseconds, or 0 if no request was sent.]
+    // Tests_SRS_HTTPSRECEIVEPOLLER_41_010: [The function shall return the longest request latency in milliseconds.]
+    @Test
+    public void latencyGettersReturnRecordedLatency()
+    {
+        //arrange
+        HttpsReceivePoller poller = new HttpsReceivePoller(MIN_INTERVAL_MILLIS, MAX_INTERVAL_MILLIS);
+        assertEquals(0, poller.getAverageRequestLatencyMillis(), 0);
+        Deencapsulation.setField(poller, "requestCount", new AtomicLong(2));
+        Deencapsulation.setField(poller, "totalRequestNanos", new AtomicLong(6000000));
+        Deencapsulation.setField(poller, "maxRequestNanos", new AtomicLong(4000000));
+
+        //act
+        double averageLatencyMillis = poller.getAverageRequestLatencyMillis();
+        double maxLatencyMillis = poller.getMaxRequestLatencyMillis();
+
+        //assert
+        assertEquals(3, averageLatencyMillis, 0.001);
+        assertEquals(4, maxLatencyMillis, 0.001);
+    }
+}
@@ -8,6 +8,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
 import com.microsoft.azure.sdk.iot.device.exceptions.ProtocolException;
 import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
 import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttConnection;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttPendingDeliveries;
 import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
@@ -21,6 +22,7 @@ import javax.net.ssl.SSLContext;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.Assert.*;
 
@@ -50,6 +52,12 @@ public class MqttConnectionTest
     @Mocked
     private IMqttToken mockMqttToken;
 
+    @Mocked
+    private ScheduledExecutorService mockPingScheduler;
+
+    @Mocked
+    private ScheduledExecutorPingSender mockPingSender;
+
     private void baseConstructorExpectations() throws MqttException
     {
         new NonStrictExpectations()
@@ -115,6 +123,30 @@ public class MqttConnectionTest
         assertNotNull(actualLock);
     }
 
+    //Tests_SRS_MQTTCONNECTION_41_011: [If a ping scheduler is provided, the constructor shall create the MqttAsync client with a ping sender that uses that scheduler.]
+    @Test
+    public void constructorWithPingSchedulerUsesScheduledPingSender() throws Exception
+    {
+        //arrange
+        baseConstructorExpectations();
+
+        //act
+        Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class, ScheduledExecutorService.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext, mockPingScheduler);
+
+        //assert
+        new Verifications()
+        {
+            {
+                new ScheduledExecutorPingSender(mockPingScheduler);
+                times = 1;
+                new MqttAsyncClient(SERVER_URI, CLIENT_ID, mockMemoryPersistence, (MqttPingSender) any, null);
+                times = 1;
+                new MqttAsyncClient(SERVER_URI, CLIENT_ID, mockMemoryPersistence);
+                times = 0;
+            }
+        };
+    }
+
     @Test (expected = ProtocolException.class)
     public void constructorThrowsOnAsyncClientFailure() throws Exception
     {
@@ -472,4 +504,133 @@ public class MqttConnectionTest
             }
         };
     }
+
+    //Tests_SRS_MQTTCONNECTION_41_001: [If the provided maxInFlightCount is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxInFlightCountThrowsForZero()
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 0);
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_001: [If the provided maxInFlightCount is smaller than 1 or larger than 65535, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setMaxInFlightCountThrowsForMoreThanPacketIds()
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 65536);
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_002: [This function shall save the provided maxInFlightCount and set it as the max inflight of the connection options.]
+    //Tests_SRS_MQTTCONNECTION_41_003: [This function shall return the saved maxInFlightCount.]
+    @Test
+    public void setMaxInFlightCountSavesCountAndSetsConnectionOption() throws MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 500);
+
+        //assert
+        assertEquals(500, (int) Deencapsulation.invoke(mqttConnection, "getMaxInFlightCount"));
+        new Verifications()
+        {
+            {
+                mockMqttConnectionOptions.setMaxInflight(500);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_005: [If the window is still full once the timeout has passed, this function shall return false.]
+    //Tests_SRS_MQTTCONNECTION_41_006: [If the window has room, this function shall take a slot and return true.]
+    //Tests_SRS_MQTTCONNECTION_41_008: [This function shall return the number of taken slots in the in flight window.]
+    @Test
+    public void acquireInFlightSlotReturnsFalseWhenWindowIsFull()
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 2);
+
+        //act
+        boolean first = Deencapsulation.invoke(mqttConnection, "acquireInFlightSlot", 0L);
+        boolean second = Deencapsulation.invoke(mqttConnection, "acquireInFlightSlot", 0L);
+        boolean third = Deencapsulation.invoke(mqttConnection, "acquireInFlightSlot", 10L);
+
+        //assert
+        assertTrue(first);
+        assertTrue(second);
+        assertFalse(third);
+        assertEquals(2, (int) Deencapsulation.invoke(mqttConnection, "getInFlightCount"));
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_004: [If the in flight window is full, this function shall wait until a slot is released or the timeout has passed.]
+    //Tests_SRS_MQTTCONNECTION_41_007: [This function shall release a slot of the in flight window, if any is taken, and wake up a waiting publisher.]
+    @Test
+    public void acquireInFlightSlotWaitsForReleasedSlot() throws InterruptedException
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 1);
+        Deencapsulation.invoke(mqttConnection, "acquireInFlightSlot", 0L);
+        Thread releaser = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Deencapsulation.invoke(mqttConnection, "releaseInFlightSlot");
+            }
+        });
+
+        //act
+        releaser.start();
+        boolean acquired = Deencapsulation.invoke(mqttConnection, "acquireInFlightSlot", 10000L);
+        releaser.join();
+
+        //assert
+        assertTrue(acquired);
+        assertEquals(1, (int) Deencapsulation.invoke(mqttConnection, "getInFlightCount"));
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_007: [This function shall release a slot of the in flight window, if any is taken, and wake up a waiting publisher.]
+    @Test
+    public void releaseInFlightSlotDoesNothingIfNoSlotIsTaken()
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "releaseInFlightSlot");
+
+        //assert
+        assertEquals(0, (int) Deencapsulation.invoke(mqttConnection, "getInFlightCount"));
+    }
+
+    //Tests_SRS_MQTTCONNECTION_41_009: [This function shall size the table of pending deliveries for the provided maxInFlightCount.]
+    //Tests_SRS_MQTTCONNECTION_41_010: [This function shall return the pending deliveries of this connection.]
+    @Test
+    public void setMaxInFlightCountResizesPendingDeliveries()
+    {
+        //arrange
+        final MqttConnection mqttConnection = Deencapsulation.newInstance(MqttConnection.class, new Class[] {String.class, String.class, String.class, String.class, SSLContext.class}, SERVER_URI, CLIENT_ID, USER_NAME, PASSWORD, mockIotHubSSLContext);
+        MqttPendingDeliveries defaultPendingDeliveries = Deencapsulation.invoke(mqttConnection, "getPendingDeliveries");
+
+        //act
+        Deencapsulation.invoke(mqttConnection, "setMaxInFlightCount", 1000);
+
+        //assert
+        MqttPendingDeliveries actualPendingDeliveries = Deencapsulation.invoke(mqttConnection, "getPendingDeliveries");
+        assertNotNull(defaultPendingDeliveries);
+        assertNotSame(defaultPendingDeliveries, actualPendingDeliveries);
+        int[] packetIds = Deencapsulation.getField(actualPendingDeliveries, "packetIds");
+        assertTrue(packetIds.length >= 2000);
+    }
 }
@@ -316,6 +316,39 @@ public class MqttIotHubConnectionTest
         };
     }
 
+    //Tests_SRS_MQTTIOTHUBCONNECTION_41_001: [The function shall size the in flight window of the mqtt connection from the config's max mqtt in flight publishes.]
+    @Test
+    public void openSetsMqttInFlightWindowFromConfig() throws IOException, TransportException
+    {
+        baseExpectations();
+        openExpectations();
+
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockConfig.getSasTokenAuthentication().getRenewedSasToken();
+                result = expectedToken;
+                mockConfig.isUseWebsocket();
+                result = false;
+                mockConfig.getMqttMaxInFlightPublishes();
+                result = 200;
+            }
+        };
+
+        MqttIotHubConnection connection = new MqttIotHubConnection(mockConfig);
+        connection.open(mockedQueue);
+
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "setMaxInFlightCount", 200);
+                times = 1;
+            }
+        };
+    }
+
     //Tests_SRS_MQTTIOTHUBCONNECTION_25_018: [The function shall establish an MQTT WS connection with a server uri as wss://<hostName>/$iothub/websocket?iothub-no-client-cert=true if websocket was enabled.]
     @Test
     public void openEstablishesWSConnectionUsingCorrectConfig() throws IOException, TransportException
@@ -0,0 +1,656 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.*;
+import com.microsoft.azure.sdk.iot.device.auth.IotHubSasTokenSoftwareAuthenticationProvider;
+import com.microsoft.azure.sdk.iot.device.exceptions.TransportException;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubConnectionStatus;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubListener;
+import com.microsoft.azure.sdk.iot.device.transport.IotHubTransportMessage;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttIotHubConnection;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttMultiplexedIotHubConnection;
+import mockit.*;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/*
+ * Unit tests for MqttMultiplexedIotHubConnection
+ */
+public class MqttMultiplexedIotHubConnectionTest
+{
+    private static final String DEVICE_ID = "device1";
+    private static final String OTHER_DEVICE_ID = "device2";
+
+    @Mocked
+    private DeviceClientConfig mockConfig;
+
+    @Mocked
+    private DeviceClientConfig mockOtherConfig;
+
+    @Mocked
+    private IotHubSasTokenSoftwareAuthenticationProvider mockSasTokenAuthentication;
+
+    @Mocked
+    private MqttIotHubConnection mockDeviceConnection;
+
+    @Mocked
+    private MqttIotHubConnection mockOtherDeviceConnection;
+
+    @Mocked
+    private IotHubListener mockListener;
+
+    @Mocked
+    private Message mockMessage;
+
+    @Mocked
+    private IotHubTransportMessage mockTransportMessage;
+
+    @Mocked
+    private IotHubConnectionString mockConnectionString;
+
+    private Queue<DeviceClientConfig> twoDeviceConfigs()
+    {
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceId();
+                result = DEVICE_ID;
+                mockOtherConfig.getDeviceId();
+                result = OTHER_DEVICE_ID;
+                mockConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockOtherConfig.getAuthenticationType();
+                result = DeviceClientConfig.AuthType.SAS_TOKEN;
+                mockConfig.getSasTokenAuthentication();
+                result = mockSasTokenAuthentication;
+                mockOtherConfig.getSasTokenAuthentication();
+                result = mockSasTokenAuthentication;
+            }
+        };
+
+        Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockConfig);
+        configs.add(mockOtherConfig);
+        return configs;
+    }
+
+    private MqttMultiplexedIotHubConnection openedConnection()
+    {
+        MqttMultiplexedIotHubConnection connection = new MqttMultiplexedIotHubConnection();
+        Map<String, MqttIotHubConnection> deviceConnections = new HashMap<>();
+        deviceConnections.put(DEVICE_ID, mockDeviceConnection);
+        deviceConnections.put(OTHER_DEVICE_ID, mockOtherDeviceConnection);
+        Deencapsulation.setField(connection, "deviceConnections", deviceConnections);
+        Deencapsulation.setField(connection, "defaultDeviceConnection", mockDeviceConnection);
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.CONNECTED);
+        connection.setListener(mockListener);
+        return connection;
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_001: [If the provided list of configs is null or empty, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void openThrowsForEmptyConfigs() throws TransportException
+    {
+        new MqttMultiplexedIotHubConnection().open(new ConcurrentLinkedQueue<DeviceClientConfig>());
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_003: [This function shall share one SSLContext between the sas token authenticated devices that trust the same certificates.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_004: [This function shall create one MqttIotHubConnection per config, all sending their keep alive pings from one shared scheduler.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_005: [This function shall open the device connections, at most MAX_CONCURRENT_OPENS at a time.]
+    @Test
+    public void openSharesSSLContextAndOpensConnectionPerDevice() throws Exception
+    {
+        //arrange
+        Queue<DeviceClientConfig> configs = twoDeviceConfigs();
+        new NonStrictExpectations()
+        {
+            {
+                mockSasTokenAuthentication.shareSSLContext((IotHubSasTokenSoftwareAuthenticationProvider) any);
+                result = true;
+            }
+        };
+        MqttMultiplexedIotHubConnection connection = new MqttMultiplexedIotHubConnection();
+        connection.setListener(mockListener);
+
+        //act
+        connection.open(configs);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(connection, "state"));
+        Map<String, MqttIotHubConnection> deviceConnections = Deencapsulation.getField(connection, "deviceConnections");
+        assertEquals(2, deviceConnections.size());
+        new Verifications()
+        {
+            {
+                mockSasTokenAuthentication.shareSSLContext(mockSasTokenAuthentication);
+                times = 1;
+                mockDeviceConnection.setListener((IotHubListener) any);
+                times = 2;
+                mockDeviceConnection.open((Queue<DeviceClientConfig>) any);
+                times = 2;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_006: [If no device connection could be opened, this function shall close all device connections and throw the exception of the first device.]
+    @Test
+    public void openClosesAllDeviceConnectionsIfAllFail() throws Exception
+    {
+        //arrange
+        Queue<DeviceClientConfig> configs = twoDeviceConfigs();
+        final TransportException openException = new TransportException("open failed");
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceConnection.open((Queue<DeviceClientConfig>) any);
+                result = openException;
+            }
+        };
+        MqttMultiplexedIotHubConnection connection = new MqttMultiplexedIotHubConnection();
+        connection.setListener(mockListener);
+
+        //act
+        try
+        {
+            connection.open(configs);
+            fail("open should have thrown");
+        }
+        catch (TransportException e)
+        {
+            assertSame(openException, e);
+        }
+
+        //assert
+        assertEquals(IotHubConnectionStatus.DISCONNECTED, Deencapsulation.getField(connection, "state"));
+        Map<String, MqttIotHubConnection> deviceConnections = Deencapsulation.getField(connection, "deviceConnections");
+        assertTrue(deviceConnections.isEmpty());
+        new Verifications()
+        {
+            {
+                mockDeviceConnection.close();
+                times = 2;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_021: [If some device connections could not be opened, this function shall keep the other device connections open and reconnect the failed devices in the background.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_022: [This function shall return the ids of the devices whose connection is down.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_024: [If the exception is not retryable or the retry policy of the device stops retrying, the device shall stay disconnected and its messages shall fail with a non retryable TransportException.]
+    @Test
+    public void openKeepsOtherDevicesConnectedIfOneFails() throws Exception
+    {
+        //arrange
+        Queue<DeviceClientConfig> configs = twoDeviceConfigs();
+        final TransportException openException = new TransportException("open failed");
+        openException.setRetryable(false);
+        final Queue<DeviceClientConfig> otherDeviceConfigs = new LinkedList<>();
+        otherDeviceConfigs.add(mockOtherConfig);
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceConnection.open(otherDeviceConfigs);
+                result = openException;
+                mockMessage.getIotHubConnectionString();
+                result = mockConnectionString;
+                mockConnectionString.getDeviceId();
+                result = OTHER_DEVICE_ID;
+            }
+        };
+        MqttMultiplexedIotHubConnection connection = new MqttMultiplexedIotHubConnection();
+        connection.setListener(mockListener);
+
+        //act
+        connection.open(configs);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(connection, "state"));
+        assertEquals(1, connection.getDisconnectedDeviceIds().size());
+        assertTrue(connection.getDisconnectedDeviceIds().contains(OTHER_DEVICE_ID));
+        try
+        {
+            connection.sendMessage(mockMessage);
+            fail("sendMessage should have thrown");
+        }
+        catch (TransportException e)
+        {
+            assertFalse(e.isRetryable());
+        }
+
+        connection.close();
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_020: [If two configs are for the same device, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void openThrowsForDuplicateDevice() throws TransportException
+    {
+        //arrange
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getDeviceId();
+                result = DEVICE_ID;
+            }
+        };
+        Queue<DeviceClientConfig> configs = new ConcurrentLinkedQueue<>();
+        configs.add(mockConfig);
+        configs.add(mockConfig);
+
+        //act
+        new MqttMultiplexedIotHubConnection().open(configs);
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_002: [If the connection is already open, this function shall do nothing.]
+    @Test
+    public void openDoesNothingIfAlreadyOpen() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+
+        //act
+        connection.open(twoDeviceConfigs());
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockDeviceConnection.open((Queue<DeviceClientConfig>) any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_026: [If the config has a shared transport executor, this function shall send the keep alive pings and schedule the reconnects on its scheduled executor instead of creating schedulers of its own.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_027: [This function shall not shut down the schedulers of a shared transport executor.]
+    @Test
+    public void openWithSharedTransportExecutorUsesItsSchedulerAndCloseKeepsItRunning(@Mocked final SharedTransportExecutor mockSharedTransportExecutor,
+                                                                                     @Mocked final ScheduledExecutorService mockScheduledExecutorService) throws TransportException
+    {
+        //arrange
+        Queue<DeviceClientConfig> configs = twoDeviceConfigs();
+        new NonStrictExpectations()
+        {
+            {
+                mockConfig.getSharedTransportExecutor();
+                result = mockSharedTransportExecutor;
+                mockSharedTransportExecutor.getScheduledExecutorService();
+                result = mockScheduledExecutorService;
+            }
+        };
+        MqttMultiplexedIotHubConnection connection = new MqttMultiplexedIotHubConnection();
+        connection.setListener(mockListener);
+
+        //act
+        connection.open(configs);
+
+        //assert
+        assertEquals(mockScheduledExecutorService, Deencapsulation.getField(connection, "pingScheduler"));
+        assertEquals(mockScheduledExecutorService, Deencapsulation.getField(connection, "reconnectScheduler"));
+
+        //act
+        connection.close();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockScheduledExecutorService.shutdownNow();
+                times = 0;
+                mockScheduledExecutorService.shutdown();
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_008: [This function shall close every device connection and the ping scheduler it created, and then rethrow the first TransportException encountered, if any.]
+    @Test
+    public void closeClosesEveryDeviceConnection() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        new NonStrictExpectations()
+        {
+            {
+                mockDeviceConnection.close();
+                result = new TransportException("close failed");
+            }
+        };
+
+        //act
+        try
+        {
+            connection.close();
+            fail("close should have thrown");
+        }
+        catch (TransportException e)
+        {
+            // expected
+        }
+
+        //assert
+        assertEquals(IotHubConnectionStatus.DISCONNECTED, Deencapsulation.getField(connection, "state"));
+        new Verifications()
+        {
+            {
+                mockOtherDeviceConnection.close();
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_007: [If the connection is closed, this function shall do nothing.]
+    @Test
+    public void closeDoesNothingIfClosed() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        Deencapsulation.setField(connection, "state", IotHubConnectionStatus.DISCONNECTED);
+
+        //act
+        connection.close();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockDeviceConnection.close();
+                times = 0;
+                mockOtherDeviceConnection.close();
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_009: [If the provided listener object is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void setListenerThrowsForNullListener()
+    {
+        new MqttMultiplexedIotHubConnection().setListener(null);
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_011: [This function shall send the message over the connection of the device in the message's connection string, or over the first device's connection if the message has no connection string.]
+    @Test
+    public void sendMessageUsesConnectionOfMessageDevice() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getIotHubConnectionString();
+                result = mockConnectionString;
+                mockConnectionString.getDeviceId();
+                result = OTHER_DEVICE_ID;
+            }
+        };
+
+        //act
+        connection.sendMessage(mockMessage);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockOtherDeviceConnection.sendMessage(mockMessage);
+                times = 1;
+                mockDeviceConnection.sendMessage((Message) any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_011: [This function shall send the message over the connection of the device in the message's connection string, or over the first device's connection if the message has no connection string.]
+    @Test
+    public void sendMessageWithoutConnectionStringUsesFirstDevice() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getIotHubConnectionString();
+                result = null;
+            }
+        };
+
+        //act
+        connection.sendMessage(mockMessage);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockDeviceConnection.sendMessage(mockMessage);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_015: [If the message belongs to a device that is not connected through this object, this function shall throw a TransportException.]
+    @Test (expected = TransportException.class)
+    public void sendMessageThrowsForUnknownDevice() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getIotHubConnectionString();
+                result = mockConnectionString;
+                mockConnectionString.getDeviceId();
+                result = "unknownDevice";
+            }
+        };
+
+        //act
+        connection.sendMessage(mockMessage);
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_012: [If the provided message was not received through this object, this function shall throw a TransportException.]
+    @Test (expected = TransportException.class)
+    public void sendMessageResultThrowsForUnknownMessage() throws TransportException
+    {
+        openedConnection().sendMessageResult(mockTransportMessage, IotHubMessageResult.COMPLETE);
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_013: [This function shall send the acknowledgement over the connection that received the message, and forget the message once the ack was sent.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_017: [When a device connection receives a message, this object shall remember which connection received it and notify the listener.]
+    @Test
+    public void sendMessageResultUsesConnectionThatReceivedMessage() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, OTHER_DEVICE_ID, mockOtherDeviceConnection);
+        deviceListener.onMessageReceived(mockTransportMessage, null);
+        new NonStrictExpectations()
+        {
+            {
+                mockOtherDeviceConnection.sendMessageResult(mockTransportMessage, IotHubMessageResult.COMPLETE);
+                result = true;
+            }
+        };
+
+        //act
+        boolean ackSent = connection.sendMessageResult(mockTransportMessage, IotHubMessageResult.COMPLETE);
+
+        //assert
+        assertTrue(ackSent);
+        Map<IotHubTransportMessage, MqttIotHubConnection> receivedMessageConnections = Deencapsulation.getField(connection, "receivedMessageConnections");
+        assertTrue(receivedMessageConnections.isEmpty());
+        new Verifications()
+        {
+            {
+                mockListener.onMessageReceived(mockTransportMessage, null);
+                times = 1;
+                mockDeviceConnection.sendMessageResult((Message) any, (IotHubMessageResult) any);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_014: [This function shall return the saved connectionId.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_018: [When a device connection is lost, only that device shall be reconnected, and the listener shall not be notified, so that the other devices keep their connections.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_022: [This function shall return the ids of the devices whose connection is down.]
+    @Test
+    public void deviceConnectionLostIsNotReportedAsThisConnectionLost() throws TransportException
+    {
+        //arrange
+        final MqttMultiplexedIotHubConnection connection = openedConnection();
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, DEVICE_ID, mockDeviceConnection);
+        final TransportException connectionLostException = new TransportException("connection lost");
+
+        //act
+        deviceListener.onConnectionLost(connectionLostException, "deviceConnectionId");
+
+        //assert
+        assertEquals(1, connection.getDisconnectedDeviceIds().size());
+        assertTrue(connection.getDisconnectedDeviceIds().contains(DEVICE_ID));
+        new Verifications()
+        {
+            {
+                mockListener.onConnectionLost((Throwable) any, anyString);
+                times = 0;
+                mockOtherDeviceConnection.close();
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_018: [When a device connection is lost, only that device shall be reconnected, and the listener shall not be notified, so that the other devices keep their connections.]
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_023: [If the connection of the message's device is down, this function shall throw a TransportException that is retryable while the device is being reconnected.]
+    @Test
+    public void otherDevicesKeepSendingWhenOneDeviceDrops() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, OTHER_DEVICE_ID, mockOtherDeviceConnection);
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getIotHubConnectionString();
+                result = mockConnectionString;
+                mockConnectionString.getDeviceId();
+                returns(DEVICE_ID, OTHER_DEVICE_ID, DEVICE_ID);
+            }
+        };
+
+        //act
+        deviceListener.onConnectionLost(new TransportException("connection lost"), "deviceConnectionId");
+        connection.sendMessage(mockMessage);
+        try
+        {
+            connection.sendMessage(mockMessage);
+            fail("sendMessage should have thrown");
+        }
+        catch (TransportException e)
+        {
+            assertTrue(e.isRetryable());
+        }
+        connection.sendMessage(mockMessage);
+
+        //assert
+        assertEquals(IotHubConnectionStatus.CONNECTED, Deencapsulation.getField(connection, "state"));
+        new Verifications()
+        {
+            {
+                mockDeviceConnection.sendMessage(mockMessage);
+                times = 2;
+                mockOtherDeviceConnection.sendMessage((Message) any);
+                times = 0;
+                mockListener.onConnectionLost((Throwable) any, anyString);
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_024: [If the exception is not retryable or the retry policy of the device stops retrying, the device shall stay disconnected and its messages shall fail with a non retryable TransportException.]
+    @Test
+    public void deviceConnectionLostWithoutRetryGivesUpOnDevice() throws TransportException
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        Map<String, DeviceClientConfig> deviceConfigs = new HashMap<>();
+        deviceConfigs.put(OTHER_DEVICE_ID, mockOtherConfig);
+        Deencapsulation.setField(connection, "deviceConfigs", deviceConfigs);
+        Deencapsulation.setField(connection, "reconnectScheduler", Executors.newSingleThreadScheduledExecutor());
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, OTHER_DEVICE_ID, mockOtherDeviceConnection);
+        TransportException connectionLostException = new TransportException("connection lost");
+        connectionLostException.setRetryable(false);
+        new NonStrictExpectations()
+        {
+            {
+                mockMessage.getIotHubConnectionString();
+                result = mockConnectionString;
+                mockConnectionString.getDeviceId();
+                result = OTHER_DEVICE_ID;
+            }
+        };
+
+        //act
+        deviceListener.onConnectionLost(connectionLostException, "deviceConnectionId");
+
+        //assert
+        try
+        {
+            connection.sendMessage(mockMessage);
+            fail("sendMessage should have thrown");
+        }
+        catch (TransportException e)
+        {
+            assertFalse(e.isRetryable());
+        }
+        connection.close();
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_016: [When a device connection reports a sent message, the listener shall be notified.]
+    @Test
+    public void deviceMessageSentIsReported()
+    {
+        //arrange
+        MqttMultiplexedIotHubConnection connection = openedConnection();
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, DEVICE_ID, mockDeviceConnection);
+
+        //act
+        deviceListener.onMessageSent(mockMessage, null);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockListener.onMessageSent(mockMessage, null);
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_MQTTMULTIPLEXEDIOTHUBCONNECTION_41_019: [When a device connection is established, the listener shall not be notified, because the connection of this object was never reported lost.]
+    @Test
+    public void deviceConnectionEstablishedIsNotReported()
+    {
+        //arrange
+        final MqttMultiplexedIotHubConnection connection = openedConnection();
+        IotHubListener deviceListener = Deencapsulation.newInnerInstance("DeviceConnectionListener", connection, DEVICE_ID, mockDeviceConnection);
+
+        //act
+        deviceListener.onConnectionEstablished("deviceConnectionId");
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockListener.onConnectionEstablished(anyString);
+                times = 0;
+            }
+        };
+    }
+}
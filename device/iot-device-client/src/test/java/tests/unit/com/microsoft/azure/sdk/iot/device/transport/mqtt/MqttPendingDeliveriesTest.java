@@ -0,0 +1,208 @@
+/*
+ *  Copyright (c) Microsoft. All rights reserved.
+ *  Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.device.transport.mqtt;
+
+import com.microsoft.azure.sdk.iot.device.Message;
+import com.microsoft.azure.sdk.iot.device.transport.mqtt.MqttPendingDeliveries;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+    Unit test for MqttPendingDeliveries
+ */
+public class MqttPendingDeliveriesTest
+{
+    private static MqttPendingDeliveries newPendingDeliveries(int maxPendingDeliveries)
+    {
+        return Deencapsulation.newInstance(MqttPendingDeliveries.class, new Class[] {int.class}, maxPendingDeliveries);
+    }
+
+    private static void put(MqttPendingDeliveries pendingDeliveries, int packetId, Message message)
+    {
+        Deencapsulation.invoke(pendingDeliveries, "put", new Class[] {int.class, Message.class}, packetId, message);
+    }
+
+    private static Message remove(MqttPendingDeliveries pendingDeliveries, int packetId)
+    {
+        return Deencapsulation.invoke(pendingDeliveries, "remove", new Class[] {int.class}, packetId);
+    }
+
+    private static int size(MqttPendingDeliveries pendingDeliveries)
+    {
+        return Deencapsulation.invoke(pendingDeliveries, "size");
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_001: [If the provided maxPendingDeliveries is smaller than 1 or larger than 65535, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZero()
+    {
+        newPendingDeliveries(0);
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_001: [If the provided maxPendingDeliveries is smaller than 1 or larger than 65535, the constructor shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForMoreThanPacketIds()
+    {
+        newPendingDeliveries(65536);
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_002: [The constructor shall create a table with room for at least twice maxPendingDeliveries entries.]
+    @Test
+    public void constructorSizesTableForMaxPendingDeliveries()
+    {
+        //act
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(100);
+
+        //assert
+        int[] packetIds = Deencapsulation.getField(pendingDeliveries, "packetIds");
+        assertTrue(packetIds.length >= 200);
+        assertEquals(0, packetIds.length & (packetIds.length - 1));
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_003: [If the provided packetId is not between 0 and 65535, or the provided message is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void putThrowsForInvalidPacketId()
+    {
+        put(newPendingDeliveries(10), 65536, new Message());
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_003: [If the provided packetId is not between 0 and 65535, or the provided message is null, this function shall throw an IllegalArgumentException.]
+    @Test (expected = IllegalArgumentException.class)
+    public void putThrowsForNullMessage()
+    {
+        put(newPendingDeliveries(10), 1, null);
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_004: [This function shall save the provided message for the provided packetId.]
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_007: [This function shall remove and return the message saved for the provided packetId.]
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_008: [If no message is saved for the provided packetId, this function shall return null.]
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_010: [This function shall return the number of saved messages.]
+    @Test
+    public void removeReturnsMessageSavedForPacketId()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(10);
+        Message first = new Message();
+        Message second = new Message();
+        put(pendingDeliveries, 1, first);
+        put(pendingDeliveries, 2, second);
+
+        //act
+        Message removed = remove(pendingDeliveries, 2);
+
+        //assert
+        assertSame(second, removed);
+        assertNull(remove(pendingDeliveries, 2));
+        assertEquals(1, size(pendingDeliveries));
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_005: [If a message is already saved for the provided packetId, this function shall replace it.]
+    @Test
+    public void putReplacesMessageForSamePacketId()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(10);
+        Message replacement = new Message();
+        put(pendingDeliveries, 5, new Message());
+
+        //act
+        put(pendingDeliveries, 5, replacement);
+
+        //assert
+        assertEquals(1, size(pendingDeliveries));
+        assertSame(replacement, remove(pendingDeliveries, 5));
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_006: [If the table is full, this function shall throw an IllegalStateException.]
+    @Test (expected = IllegalStateException.class)
+    public void putThrowsWhenTableIsFull()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(1);
+        int[] packetIds = Deencapsulation.getField(pendingDeliveries, "packetIds");
+
+        //act
+        for (int packetId = 0; packetId < packetIds.length; packetId++)
+        {
+            put(pendingDeliveries, packetId, new Message());
+        }
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_007: [This function shall remove and return the message saved for the provided packetId.]
+    @Test
+    public void removeKeepsCollidingPacketIdsReachable()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(10);
+        int capacity = ((int[]) Deencapsulation.getField(pendingDeliveries, "packetIds")).length;
+        Message[] messages = new Message[4];
+        for (int i = 0; i < messages.length; i++)
+        {
+            // every packet id lands on the same slot, and the last one wraps around the end of the table
+            messages[i] = new Message();
+            put(pendingDeliveries, capacity - 2 + i * capacity, messages[i]);
+        }
+
+        //act
+        Message removed = remove(pendingDeliveries, capacity - 2 + capacity);
+
+        //assert
+        assertSame(messages[1], removed);
+        assertSame(messages[0], remove(pendingDeliveries, capacity - 2));
+        assertSame(messages[2], remove(pendingDeliveries, capacity - 2 + 2 * capacity));
+        assertSame(messages[3], remove(pendingDeliveries, capacity - 2 + 3 * capacity));
+        assertEquals(0, size(pendingDeliveries));
+    }
+
+    //Tests_SRS_MQTTPENDINGDELIVERIES_41_009: [This function shall remove and return all saved messages.]
+    @Test
+    public void removeAllEmptiesTable()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(10);
+        Message first = new Message();
+        Message second = new Message();
+        put(pendingDeliveries, 1, first);
+        put(pendingDeliveries, 65535, second);
+
+        //act
+        List<Message> removed = Deencapsulation.invoke(pendingDeliveries, "removeAll");
+
+        //assert
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(first));
+        assertTrue(removed.contains(second));
+        assertEquals(0, size(pendingDeliveries));
+        assertNull(remove(pendingDeliveries, 1));
+    }
+
+    @Test
+    public void tracksPacketIdsAcrossTheWholeIdRange()
+    {
+        //arrange
+        MqttPendingDeliveries pendingDeliveries = newPendingDeliveries(10);
+        Message[] window = new Message[10];
+
+        //act
+        for (int packetId = 0; packetId <= 65535; packetId++)
+        {
+            if (packetId >= window.length)
+            {
+                assertSame(window[packetId % window.length], remove(pendingDeliveries, packetId - window.length));
+            }
+
+            window[packetId % window.length] = new Message();
+            put(pendingDeliveries, packetId, window[packetId % window.length]);
+        }
+
+        //assert
+        assertEquals(window.length, size(pendingDeliveries));
+    }
+}
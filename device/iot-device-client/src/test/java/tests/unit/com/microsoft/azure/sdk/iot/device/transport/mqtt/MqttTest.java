@@ -17,8 +17,6 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -181,6 +179,8 @@ public class MqttTest
                 result = mockMqttMessage;
                 mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
                 result = mockMqttDeliveryToken;
+                Deencapsulation.invoke(mockedMqttConnection, "acquireInFlightSlot", anyLong);
+                result = true;
             }
         };
     }
@@ -555,28 +555,121 @@ public class MqttTest
         //arrange
         baseConstructorExpectations();
         final byte[] payload = {0x61, 0x62, 0x63};
-        final IMqttDeliveryToken[] testTokens = {mockMqttDeliveryToken, mockMqttDeliveryToken, mockMqttDeliveryToken,
-                mockMqttDeliveryToken, mockMqttDeliveryToken, mockMqttDeliveryToken,
-                mockMqttDeliveryToken, mockMqttDeliveryToken, mockMqttDeliveryToken,
-                mockMqttDeliveryToken, mockMqttDeliveryToken, mockMqttDeliveryToken
-        };
         new NonStrictExpectations()
         {
             {
+                mockedMessage.getBytes();
+                result = payload;
                 mockMqttAsyncClient.isConnected();
                 result = true;
-                mockMqttAsyncClient.getPendingDeliveryTokens();
-                result = testTokens;
-                mockMqttAsyncClient.isConnected();
                 result = false;
+                Deencapsulation.invoke(mockedMqttConnection, "acquireInFlightSlot", anyLong);
+                result = false;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, mockedMessage);
+    }
+
+    //Tests_SRS_Mqtt_41_004: [The function shall save the message in the connection's pending deliveries under the packet id of the publish.]
+    @Test
+    public void publishSavesMessageInPendingDeliveries(final @Mocked Message mockedMessage) throws TransportException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations(mockedMessage);
+        final MqttPendingDeliveries pendingDeliveries = Deencapsulation.newInstance(MqttPendingDeliveries.class, 10);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingDeliveries");
+                result = pendingDeliveries;
+                mockMqttDeliveryToken.getMessageId();
+                result = 42;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+
+        //act
+        Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, mockedMessage);
+
+        //assert
+        assertSame(mockedMessage, Deencapsulation.invoke(pendingDeliveries, "remove", 42));
+    }
+
+    //Tests_SRS_Mqtt_41_001: [If the connection's in flight window is full, publish shall wait until a delivery completes and releases a slot.]
+    @Test
+    public void publishWaitsForInFlightSlot(final @Mocked Message mockedMessage) throws TransportException, MqttException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations(mockedMessage);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "acquireInFlightSlot", anyLong);
+                result = false;
+                result = true;
             }
         };
         Mqtt mockMqtt = instantiateMqtt(true);
 
         //act
         Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, mockedMessage);
+
+        //assert
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "acquireInFlightSlot", anyLong);
+                times = 2;
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
+                times = 1;
+                Deencapsulation.invoke(mockedMqttConnection, "releaseInFlightSlot");
+                times = 0;
+            }
+        };
     }
 
+    //Tests_SRS_Mqtt_41_003: [If the message could not be published, the function shall release its slot in the in flight window.]
+    @Test
+    public void publishReleasesInFlightSlotIfPublishFails(final @Mocked Message mockedMessage) throws MqttException, TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        basePublishExpectations(mockedMessage);
+        new NonStrictExpectations()
+        {
+            {
+                mockMqttAsyncClient.publish(MOCK_PARSE_TOPIC, mockMqttMessage);
+                result = mockMqttException;
+            }
+        };
+        Mqtt mockMqtt = instantiateMqtt(true);
+        boolean exceptionThrown = false;
+
+        //act
+        try
+        {
+            Deencapsulation.invoke(mockMqtt, "publish", MOCK_PARSE_TOPIC, mockedMessage);
+        }
+        catch (Exception e)
+        {
+            exceptionThrown = e instanceof ProtocolException;
+        }
+
+        //assert
+        assertTrue(exceptionThrown);
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "releaseInFlightSlot");
+                times = 1;
+            }
+        };
+    }
 
     /*
     **Tests_SRS_Mqtt_25_014: [The function shall publish message payload on the publishTopic specified to the IoT Hub given in the configuration.]
@@ -1234,6 +1327,8 @@ public class MqttTest
     }
 
     //Tests_SRS_Mqtt_34_042: [If this object has a saved listener, that listener shall be notified of the successfully delivered message.]
+    //Tests_SRS_Mqtt_41_002: [This function shall release a slot in the connection's in flight window.]
+    //Tests_SRS_Mqtt_41_005: [This function shall remove the delivered message from the connection's pending deliveries.]
     @Test
     public void deliveryCompleteNotifiesListener() throws TransportException
     {
@@ -1242,14 +1337,15 @@ public class MqttTest
         baseConstructorExpectations();
         final Message otherMessage = new Message();
         final Message expectedMessage = new Message();
+        final MqttPendingDeliveries pendingDeliveries = Deencapsulation.newInstance(MqttPendingDeliveries.class, 10);
+        Deencapsulation.invoke(pendingDeliveries, "put", 12, otherMessage);
+        Deencapsulation.invoke(pendingDeliveries, "put", expectedMessageId, expectedMessage);
         Mqtt mockMqtt = instantiateMqtt(true, mockedIotHubListener);
-        Map<Integer, Message> unacknowledgedMessages = new HashMap<>();
-        unacknowledgedMessages.put(12, otherMessage);
-        unacknowledgedMessages.put(expectedMessageId, expectedMessage);
-        Deencapsulation.setField(mockMqtt, "unacknowledgedSentMessages", unacknowledgedMessages);
         new NonStrictExpectations()
         {
             {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingDeliveries");
+                result = pendingDeliveries;
                 mockMqttDeliveryToken.getMessageId();
                 result = expectedMessageId;
             }
@@ -1259,6 +1355,7 @@ public class MqttTest
         mockMqtt.deliveryComplete(mockMqttDeliveryToken);
 
         //assert
+        assertEquals(1, (int) Deencapsulation.invoke(pendingDeliveries, "size"));
         new Verifications()
         {
             {
@@ -1266,6 +1363,86 @@ public class MqttTest
                 times = 1;
                 mockedIotHubListener.onMessageSent(otherMessage, null);
                 times = 0;
+                Deencapsulation.invoke(mockedMqttConnection, "releaseInFlightSlot");
+                times = 1;
+            }
+        };
+    }
+
+    //Tests_SRS_Mqtt_41_006: [If the delivered message is not pending on this connection, this function shall do nothing.]
+    @Test
+    public void deliveryCompleteIgnoresUnknownPacketId() throws TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final MqttPendingDeliveries pendingDeliveries = Deencapsulation.newInstance(MqttPendingDeliveries.class, 10);
+        Mqtt mockMqtt = instantiateMqtt(true, mockedIotHubListener);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingDeliveries");
+                result = pendingDeliveries;
+                mockMqttDeliveryToken.getMessageId();
+                result = 7;
+            }
+        };
+
+        //act
+        mockMqtt.deliveryComplete(mockMqttDeliveryToken);
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedIotHubListener.onMessageSent((Message) any, (Throwable) any);
+                times = 0;
+                Deencapsulation.invoke(mockedMqttConnection, "releaseInFlightSlot");
+                times = 0;
+            }
+        };
+    }
+
+    //Tests_SRS_Mqtt_41_007: [This function shall remove all messages from the connection's pending deliveries, release
+    // their in flight window slots, and notify the listener that each of them failed with a retryable TransportException
+    // before notifying it that the connection was lost.]
+    @Test
+    public void connectionLostFailsPendingDeliveries() throws TransportException
+    {
+        //arrange
+        baseConstructorExpectations();
+        final Message firstMessage = new Message();
+        final Message secondMessage = new Message();
+        final MqttPendingDeliveries pendingDeliveries = Deencapsulation.newInstance(MqttPendingDeliveries.class, 10);
+        Deencapsulation.invoke(pendingDeliveries, "put", 1, firstMessage);
+        Deencapsulation.invoke(pendingDeliveries, "put", 2, secondMessage);
+        Mqtt mockMqtt = instantiateMqtt(true, mockedIotHubListener);
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "getPendingDeliveries");
+                result = pendingDeliveries;
+            }
+        };
+
+        //act
+        mockMqtt.connectionLost(new Throwable());
+
+        //assert
+        assertEquals(0, (int) Deencapsulation.invoke(pendingDeliveries, "size"));
+        new VerificationsInOrder()
+        {
+            {
+                mockedIotHubListener.onMessageSent((Message) any, (TransportException) any);
+                times = 2;
+                mockedIotHubListener.onConnectionLost((TransportException) any, anyString);
+                times = 1;
+            }
+        };
+        new Verifications()
+        {
+            {
+                Deencapsulation.invoke(mockedMqttConnection, "releaseInFlightSlot");
+                times = 2;
             }
         };
     }
@@ -123,6 +123,17 @@ public final class ProvisioningSasToken
         return expiresOnDate / ONE_SECOND_IN_MILLISECONDS;
     }
 
+    /**
+     * Returns the time, as a UNIX timestamp in seconds, before which the token is valid.
+     *
+     * @return The expiry time of the token.
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_PROVISIONING_SERVICE_SASTOKEN_41_001: [The function shall return the expiry time of the token in seconds since the epoch.]
+        return this.expiryTime;
+    }
+
     /**
      * Returns the string representation of the SAS token.
      *
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.provisioning.service.auth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide cache of the Provisioning SAS tokens, by host name, shared access key name and shared access key,
+ * so that the requests to the Provisioning Service do not compute a new HMAC-SHA256 signature each. A token is
+ * renewed on the first request after less than half of its validity is left.
+ */
+public final class ProvisioningSasTokenCache
+{
+    private static final long ONE_SECOND_IN_MILLISECONDS = 1000;
+    private static final long RENEW_WHEN_LESS_THAN_SECS_LEFT = 365*24*60*60 / 2;
+
+    private static final ConcurrentMap<String, ProvisioningSasToken> tokens = new ConcurrentHashMap<>();
+
+    private ProvisioningSasTokenCache()
+    {
+    }
+
+    /**
+     * Returns a valid SAS token for the connection string, building a new one only if there is no cached token for
+     * the same host name, key name and key, or if the cached token is about to expire.
+     *
+     * @param provisioningConnectionString Connection string object containing the connection parameters
+     * @return The string representation of the SAS token
+     * @throws IllegalArgumentException if the provided provisioning connection string is null
+     */
+    public static String getToken(ProvisioningConnectionString provisioningConnectionString) throws IllegalArgumentException
+    {
+        // Codes_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_001: [The function shall throw IllegalArgumentException if the input object is null]
+        if (provisioningConnectionString == null)
+        {
+            throw new IllegalArgumentException("provisioningConnectionString is null");
+        }
+
+        String key = provisioningConnectionString.getHostName() + "/" + provisioningConnectionString.getSharedAccessKeyName() + "/" + provisioningConnectionString.getSharedAccessKey();
+        long nowInSeconds = System.currentTimeMillis() / ONE_SECOND_IN_MILLISECONDS;
+
+        // Codes_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_002: [The function shall return the cached token for the host name, key name and key if less than half of its validity has passed]
+        ProvisioningSasToken sasToken = tokens.get(key);
+        if ((sasToken == null) || (sasToken.getExpiryTime() - nowInSeconds < RENEW_WHEN_LESS_THAN_SECS_LEFT))
+        {
+            // Codes_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_003: [Otherwise, the function shall create a new ProvisioningSasToken, cache it and return it]
+            sasToken = new ProvisioningSasToken(provisioningConnectionString);
+            tokens.put(key, sasToken);
+        }
+
+        return sasToken.toString();
+    }
+}
@@ -9,7 +9,7 @@ import com.microsoft.azure.sdk.iot.deps.transport.http.HttpResponse;
 import com.microsoft.azure.sdk.iot.provisioning.service.Tools;
 import com.microsoft.azure.sdk.iot.provisioning.service.ProvisioningServiceClient;
 import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningConnectionString;
-import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningSasToken;
+import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningSasTokenCache;
 import com.microsoft.azure.sdk.iot.provisioning.service.exceptions.ProvisioningServiceClientExceptionManager;
 import com.microsoft.azure.sdk.iot.provisioning.service.exceptions.ProvisioningServiceClientException;
 import com.microsoft.azure.sdk.iot.provisioning.service.exceptions.ProvisioningServiceClientTransportException;
@@ -137,7 +137,7 @@ public class ContractApiHttp
     {
         /* SRS_HTTP_DEVICE_REGISTRATION_CLIENT_21_005: [The request shall create a SAS token based on the connection string.*/
         /* SRS_HTTP_DEVICE_REGISTRATION_CLIENT_21_006: [If the request get problem to create the SAS token, it shall throw IllegalArgumentException.*/
-        String sasTokenString = new ProvisioningSasToken(this.provisioningConnectionString).toString();
+        String sasTokenString = ProvisioningSasTokenCache.getToken(this.provisioningConnectionString);
 
         /* SRS_HTTP_DEVICE_REGISTRATION_CLIENT_21_007: [The request shall create a HTTP URL based on the Device Registration path.*/
         URL url = getUrlForPath(path);
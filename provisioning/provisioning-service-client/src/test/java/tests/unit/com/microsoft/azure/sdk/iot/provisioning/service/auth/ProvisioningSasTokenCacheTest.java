@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.provisioning.service.auth;
+
+import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningConnectionString;
+import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningSasToken;
+import com.microsoft.azure.sdk.iot.provisioning.service.auth.ProvisioningSasTokenCache;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Unit tests for ProvisioningSasTokenCache
+ */
+public class ProvisioningSasTokenCacheTest
+{
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String OTHER_KEY_CONNECTION_STRING = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=zyxwvtsrqponmlkjihgfedcba0987654321=";
+
+    // Tests_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_001: [The function shall throw IllegalArgumentException if the input object is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void getTokenThrowsOnNullConnectionString()
+    {
+        // Act
+        ProvisioningSasTokenCache.getToken(null);
+    }
+
+    // Tests_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_002: [The function shall return the cached token for the host name, key name and key if less than half of its validity has passed]
+    @Test
+    public void getTokenReturnsCachedTokenForSameConnectionString() throws Exception
+    {
+        // Arrange
+        ProvisioningConnectionString provisioningConnectionString = ProvisioningConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        String firstToken = ProvisioningSasTokenCache.getToken(provisioningConnectionString);
+
+        // Act
+        String secondToken = ProvisioningSasTokenCache.getToken(ProvisioningConnectionStringBuilder.createConnectionString(CONNECTION_STRING));
+
+        // Assert
+        assertEquals(firstToken, secondToken);
+    }
+
+    // Tests_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_003: [Otherwise, the function shall create a new ProvisioningSasToken, cache it and return it]
+    @Test
+    public void getTokenCreatesTokenPerKey() throws Exception
+    {
+        // Act
+        String token = ProvisioningSasTokenCache.getToken(ProvisioningConnectionStringBuilder.createConnectionString(CONNECTION_STRING));
+        String otherKeyToken = ProvisioningSasTokenCache.getToken(ProvisioningConnectionStringBuilder.createConnectionString(OTHER_KEY_CONNECTION_STRING));
+
+        // Assert
+        assertNotEquals(token, otherKeyToken);
+    }
+
+    // Tests_SRS_PROVISIONING_SERVICE_SASTOKENCACHE_41_003: [Otherwise, the function shall create a new ProvisioningSasToken, cache it and return it]
+    @Test
+    public void getTokenRenewsTokenAboutToExpire() throws Exception
+    {
+        // Arrange
+        ProvisioningConnectionString provisioningConnectionString = ProvisioningConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        ProvisioningSasTokenCache.getToken(provisioningConnectionString);
+        Map<String, ProvisioningSasToken> tokens = Deencapsulation.getField(ProvisioningSasTokenCache.class, "tokens");
+        String key = "HOSTNAME.b.c.d/ACCESSKEYNAME/1234567890abcdefghijklmnopqrstvwxyz=";
+        ProvisioningSasToken cachedToken = tokens.get(key);
+        Deencapsulation.setField(cachedToken, "expiryTime", System.currentTimeMillis() / 1000 + 60);
+
+        // Act
+        ProvisioningSasTokenCache.getToken(provisioningConnectionString);
+
+        // Assert
+        assertNotSame(cachedToken, tokens.get(key));
+    }
+}
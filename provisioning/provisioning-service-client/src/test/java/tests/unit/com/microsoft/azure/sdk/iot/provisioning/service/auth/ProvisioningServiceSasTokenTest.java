@@ -125,4 +125,20 @@ public class ProvisioningServiceSasTokenTest
         Deencapsulation.setField(provisioningConnectionString, "hostName", null);
         ProvisioningSasToken provisioningServiceSasToken = new ProvisioningSasToken(provisioningConnectionString);
     }
+
+    // Tests_SRS_PROVISIONING_SERVICE_SASTOKEN_41_001: [The function shall return the expiry time of the token in seconds since the epoch.]
+    @Test
+    public void getExpiryTimeReturnsSeOfTheToken()
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        ProvisioningConnectionString provisioningConnectionString = ProvisioningConnectionStringBuilder.createConnectionString(connectionString);
+        ProvisioningSasToken provisioningServiceSasToken = new ProvisioningSasToken(provisioningConnectionString);
+
+        // Act
+        long expiryTime = provisioningServiceSasToken.getExpiryTime();
+
+        // Assert
+        assertEquals(true, provisioningServiceSasToken.toString().contains("&se=" + expiryTime + "&"));
+    }
 }
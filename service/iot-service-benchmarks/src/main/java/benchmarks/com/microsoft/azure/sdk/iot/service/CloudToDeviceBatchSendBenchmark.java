@@ -0,0 +1,229 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package benchmarks.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSendHandler;
+import org.apache.qpid.proton.Proton;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.BaseHandler;
+import org.apache.qpid.proton.engine.Collector;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.Event;
+import org.apache.qpid.proton.engine.Handler;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Transport;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cloud to device throughput of the batched send path: every invocation queues a batch of 100 devices
+ * with 10 messages of 256 bytes each on the AMQP sender and pumps the connection until the peer has accepted every
+ * message. The peer is an in-process AMQP endpoint without SASL or TLS, so the result only reflects the client's
+ * encoding, flow control and settlement, not the network or an IoT Hub.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CloudToDeviceBatchSendBenchmark
+{
+    private static final int DEVICE_COUNT = 100;
+    private static final int MESSAGES_PER_DEVICE = 10;
+    private static final int MESSAGE_SIZE_BYTES = 256;
+    private static final int MESSAGES_PER_BATCH = DEVICE_COUNT * MESSAGES_PER_DEVICE;
+    private static final int LINK_CREDIT = 500;
+
+    private Map<String, List<Message>> batch;
+    private AmqpSendHandler sendHandler;
+    private LocalAmqpStandIn standIn;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        this.batch = new LinkedHashMap<>();
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            List<Message> messages = new ArrayList<>(MESSAGES_PER_DEVICE);
+            for (int j = 0; j < MESSAGES_PER_DEVICE; j++)
+            {
+                byte[] body = new byte[MESSAGE_SIZE_BYTES];
+                random.nextBytes(body);
+                messages.add(new Message(body));
+            }
+            this.batch.put("device-" + i, messages);
+        }
+
+        this.sendHandler = new AmqpSendHandler("localhost", "iothubowner@sas.root.localhost", "SharedAccessSignature sr=localhost", IotHubServiceClientProtocol.AMQPS);
+        this.standIn = new LocalAmqpStandIn(this.sendHandler, LINK_CREDIT);
+        this.standIn.pump();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_BATCH)
+    public int sendBatch()
+    {
+        Map<String, List<CompletableFuture<Void>>> futuresByDevice = this.sendHandler.createProtonMessages(this.batch);
+        CompletableFuture<Void> all = CompletableFuture.allOf(flatten(futuresByDevice));
+        while (!all.isDone())
+        {
+            this.sendHandler.processPendingRequests();
+            this.standIn.pump();
+        }
+        return futuresByDevice.size();
+    }
+
+    private static CompletableFuture<?>[] flatten(Map<String, List<CompletableFuture<Void>>> futuresByDevice)
+    {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(MESSAGES_PER_BATCH);
+        for (List<CompletableFuture<Void>> deviceFutures : futuresByDevice.values())
+        {
+            futures.addAll(deviceFutures);
+        }
+        return futures.toArray(new CompletableFuture<?>[futures.size()]);
+    }
+
+    /**
+     * Two proton engines wired back to back in memory. The client side dispatches its events to the send handler
+     * under test, except for the connection bound event that would set up SASL and TLS. The server side opens
+     * whatever the client opens, accepts and settles every delivery and replenishes the link credit.
+     */
+    private static final class LocalAmqpStandIn
+    {
+        private final Handler clientHandler;
+        private final Handler serverHandler;
+        private final Transport clientTransport = Proton.transport();
+        private final Transport serverTransport = Proton.transport();
+        private final Collector clientCollector = Proton.collector();
+        private final Collector serverCollector = Proton.collector();
+
+        LocalAmqpStandIn(Handler clientHandler, final int credit)
+        {
+            this.clientHandler = clientHandler;
+            this.serverHandler = new BaseHandler()
+            {
+                @Override
+                public void onConnectionRemoteOpen(Event event)
+                {
+                    event.getConnection().open();
+                }
+
+                @Override
+                public void onSessionRemoteOpen(Event event)
+                {
+                    event.getSession().open();
+                }
+
+                @Override
+                public void onLinkRemoteOpen(Event event)
+                {
+                    Link link = event.getLink();
+                    link.setSource(link.getRemoteSource());
+                    link.setTarget(link.getRemoteTarget());
+                    link.open();
+                    if (link instanceof Receiver)
+                    {
+                        ((Receiver) link).flow(credit);
+                    }
+                }
+
+                @Override
+                public void onDelivery(Event event)
+                {
+                    Delivery delivery = event.getDelivery();
+                    if (!delivery.isPartial())
+                    {
+                        Receiver receiver = (Receiver) delivery.getLink();
+                        byte[] buffer = new byte[delivery.pending()];
+                        receiver.recv(buffer, 0, buffer.length);
+                        receiver.advance();
+                        delivery.disposition(Accepted.getInstance());
+                        delivery.settle();
+                        receiver.flow(1);
+                    }
+                }
+            };
+
+            Connection clientConnection = Proton.connection();
+            clientConnection.setContainer("benchmark-client");
+            clientConnection.collect(this.clientCollector);
+            this.clientTransport.bind(clientConnection);
+
+            Connection serverConnection = Proton.connection();
+            serverConnection.setContainer("benchmark-server");
+            serverConnection.collect(this.serverCollector);
+            this.serverTransport.bind(serverConnection);
+        }
+
+        /**
+         * Dispatch the pending events on both sides and move bytes between the transports until neither side has
+         * anything left to do.
+         */
+        void pump()
+        {
+            boolean progress = true;
+            while (progress)
+            {
+                progress = dispatch(this.clientCollector, this.clientHandler, true);
+                progress |= dispatch(this.serverCollector, this.serverHandler, false);
+                progress |= transfer(this.clientTransport, this.serverTransport);
+                progress |= transfer(this.serverTransport, this.clientTransport);
+            }
+        }
+
+        private static boolean dispatch(Collector collector, Handler handler, boolean skipConnectionBound)
+        {
+            boolean dispatched = false;
+            Event event;
+            while ((event = collector.peek()) != null)
+            {
+                if (!skipConnectionBound || event.getType() != Event.Type.CONNECTION_BOUND)
+                {
+                    event.dispatch(handler);
+                }
+                collector.pop();
+                dispatched = true;
+            }
+            return dispatched;
+        }
+
+        private static boolean transfer(Transport from, Transport to)
+        {
+            int pending = from.pending();
+            if (pending <= 0)
+            {
+                return false;
+            }
+
+            ByteBuffer head = from.head();
+            ByteBuffer tail = to.tail();
+            int size = Math.min(pending, tail.remaining());
+            if (size <= 0)
+            {
+                return false;
+            }
+
+            ByteBuffer chunk = head.duplicate();
+            chunk.limit(chunk.position() + size);
+            tail.put(chunk);
+            to.process();
+            from.pop(size);
+            return true;
+        }
+    }
+}
@@ -9,7 +9,7 @@ import com.google.gson.JsonSyntaxException;
 import com.microsoft.azure.sdk.iot.deps.serializer.DeviceParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.JobPropertiesParser;
 import com.microsoft.azure.sdk.iot.deps.serializer.RegistryStatisticsParser;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
@@ -110,7 +110,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_006: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_007: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_008: [The function shall create a new HttpRequest for adding the device to IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, deviceJson.getBytes(), sasTokenString);
@@ -181,7 +181,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_015: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_016: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_017: [The function shall create a new HttpRequest for getting a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -255,7 +255,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_024: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDeviceList(maxCount);
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_025: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_026: [The function shall create a new HttpRequest for getting a device list from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -397,7 +397,7 @@ public class RegistryManager
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_036: [The function shall get the URL for the device]
         URL url = iotHubConnectionString.getUrlDevice(device.getDeviceId());
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_037: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_038: [The function shall create a new HttpRequest for updating the device on IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.PUT, device.toDeviceParser().toJson().getBytes(), sasTokenString);
@@ -500,7 +500,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlDevice(deviceId);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_048: [The function shall create a new SAS token for the device]
-        String sasToken = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasToken = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_049: [The function shall create a new HttpRequest for removing the device from IotHub]
         HttpRequest request = new HttpRequest(url, HttpMethod.DELETE, new byte[0]);
@@ -563,7 +563,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlDeviceStatistics();
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_055: [The function shall create a new SAS token for the device]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // Codes_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_12_056: [The function shall create a new HttpRequest for getting statistics a device from IotHub]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -632,7 +632,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_063: [The function shall create a new SAS token for the bulk export job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_064: [The function shall create a new HttpRequest for the bulk export job creation ]
         String jobPropertiesJson = CreateExportJobPropertiesJson(exportBlobContainerUri, excludeKeys);
@@ -702,7 +702,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlCreateExportImportJob();
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_071: [The function shall create a new SAS token for the bulk import job]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_072: [The function shall create a new HttpRequest for the bulk import job creation]
         String jobPropertiesJson = CreateImportJobPropertiesJson(importBlobContainerUri, outputBlobContainerUri);
@@ -771,7 +771,7 @@ public class RegistryManager
         URL url = iotHubConnectionString.getUrlImportExportJob(jobId);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_079: [The function shall create a new SAS token for the get request **]
-        String sasTokenString = new IotHubServiceSasToken(this.iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
 
         // CODES_SRS_SERVICE_SDK_JAVA_REGISTRYMANAGER_15_080: [The function shall create a new HttpRequest for getting the properties of a job]
         HttpRequest request = CreateRequest(url, HttpMethod.GET, new byte[0], sasTokenString);
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch of cloud to device messages sent with {@link ServiceClient#sendBatchAsync(Map)}
+ * Provide getters for the number of sent and failed messages and for the exception of every message
+ */
+public class SendBatchResult
+{
+    private final Map<String, List<Exception>> exceptionsByDevice;
+    private final int messageCount;
+    private final int failedCount;
+
+    /**
+     * Create the result of a batch
+     * @param exceptionsByDevice The exception of every message keyed by device name, in the order the messages
+     *                           were given for that device. A null exception means the message was accepted by IotHub.
+     */
+    public SendBatchResult(Map<String, List<Exception>> exceptionsByDevice)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_001: [The constructor shall throw IllegalArgumentException if the input map is null]
+        if (exceptionsByDevice == null)
+        {
+            throw new IllegalArgumentException("exceptionsByDevice cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_002: [The constructor shall count all messages and the messages that have an exception]
+        Map<String, List<Exception>> copy = new LinkedHashMap<>(exceptionsByDevice.size() * 2);
+        int messageCount = 0;
+        int failedCount = 0;
+        for (Map.Entry<String, List<Exception>> entry : exceptionsByDevice.entrySet())
+        {
+            List<Exception> exceptions = Collections.unmodifiableList(new ArrayList<>(entry.getValue()));
+            for (Exception exception : exceptions)
+            {
+                if (exception != null)
+                {
+                    failedCount++;
+                }
+            }
+            messageCount += exceptions.size();
+            copy.put(entry.getKey(), exceptions);
+        }
+        this.exceptionsByDevice = Collections.unmodifiableMap(copy);
+        this.messageCount = messageCount;
+        this.failedCount = failedCount;
+    }
+
+    /**
+     * Getter for the number of messages in the batch
+     * @return The number of messages
+     */
+    public int getMessageCount()
+    {
+        return this.messageCount;
+    }
+
+    /**
+     * Getter for the number of messages accepted by IotHub
+     * @return The number of accepted messages
+     */
+    public int getSucceededCount()
+    {
+        return this.messageCount - this.failedCount;
+    }
+
+    /**
+     * Getter for the number of messages that failed to be sent or were rejected by IotHub
+     * @return The number of failed messages
+     */
+    public int getFailedCount()
+    {
+        return this.failedCount;
+    }
+
+    /**
+     * Check if all messages of the batch were accepted by IotHub
+     * @return true if no message failed
+     */
+    public boolean isSuccessful()
+    {
+        return this.failedCount == 0;
+    }
+
+    /**
+     * Getter for the exceptions of the messages sent to a device
+     * @param deviceId The device name
+     * @return The exception of every message sent to the device, in the order the messages were given,
+     * with null for the messages accepted by IotHub, or null if the batch had no messages for the device
+     */
+    public List<Exception> getExceptions(String deviceId)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_003: [The function shall return the exceptions of the messages of the given device, or null if the batch had no messages for it]
+        return this.exceptionsByDevice.get(deviceId);
+    }
+
+    /**
+     * Getter for the exceptions of all messages
+     * @return The exception of every message keyed by device name
+     */
+    public Map<String, List<Exception>> getExceptionsByDevice()
+    {
+        return this.exceptionsByDevice;
+    }
+}
@@ -10,7 +10,13 @@ import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -76,11 +82,12 @@ public class ServiceClient
         this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
 
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_007: [The constructor shall create a new instance of AmqpSend object]
-        this.amqpMessageSender = new AmqpSend(hostName, userName, sasToken, this.iotHubServiceClientProtocol);
+        // AmqpSend generates a new SAS token from the connection string whenever it (re)connects
+        this.amqpMessageSender = new AmqpSend(iotHubConnectionString, this.iotHubServiceClientProtocol);
     }
 
     /**
-     * Open AMQP sender
+     * Open AMQP sender. The connection stays open and is shared by all sends until close.
      * @throws IOException This exception is thrown if the AmqpSender object is not initialized
      */
     public void open() throws IOException
@@ -173,27 +180,124 @@ public class ServiceClient
     }
 
     /**
-     * Provide asynchronous access to send()
+     * Send a one-way message to the specified device without waiting for the earlier
+     * messages to be acknowledged. Many messages can be outstanding on the connection at once.
      *
      * @param deviceId The device identifier for the target device
      * @param message The message for the device
-     * @return The future object for the requested operation
+     * @return The future object for the requested operation, completed when IotHub acknowledges the message
      */
     public CompletableFuture<Void> sendAsync(String deviceId, Message message)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call]
-        final CompletableFuture<Void> future = new CompletableFuture<>();
-        executor.submit(() -> {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_001: [The function shall return the future of the AMQP sender, completed when IotHub settles the message]
+        AmqpSend sender = this.amqpMessageSender;
+        if (sender == null)
+        {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("AMQP sender is not initialized"));
+            return future;
+        }
         try
         {
-            send(deviceId, message);
-            future.complete(null);
-        } catch (Exception e)
+            return sender.sendAsync(deviceId, message);
+        }
+        catch (IOException e)
         {
+            // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_002: [If the AMQP sender throws, the function shall return a future completed exceptionally with the exception]
+            CompletableFuture<Void> future = new CompletableFuture<>();
             future.completeExceptionally(e);
+            return future;
         }
-        });
-        return future;
+    }
+
+    /**
+     * Send one-way messages to many devices at once. All messages are queued on the
+     * connection in one pass and sent as the link credit granted by IotHub allows,
+     * without waiting for the earlier messages to be acknowledged.
+     *
+     * @param messagesByDevice The messages for every target device, keyed by device identifier
+     * @return The future object for the requested operation, completed once every message is acknowledged
+     * or has failed. The outcome of each message is in the {@link SendBatchResult}.
+     */
+    public CompletableFuture<SendBatchResult> sendBatchAsync(Map<String, List<Message>> messagesByDevice)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_003: [The function shall throw IllegalArgumentException if the map is null or empty, or if any device identifier is null or empty, or any list of messages or message is null]
+        if (messagesByDevice == null || messagesByDevice.isEmpty())
+        {
+            throw new IllegalArgumentException("messagesByDevice cannot be null or empty");
+        }
+        for (Map.Entry<String, List<Message>> entry : messagesByDevice.entrySet())
+        {
+            if (Tools.isNullOrEmpty(entry.getKey()))
+            {
+                throw new IllegalArgumentException("device identifier cannot be null or empty");
+            }
+            if (entry.getValue() == null || entry.getValue().contains(null))
+            {
+                throw new IllegalArgumentException("messages for device " + entry.getKey() + " cannot be null");
+            }
+        }
+
+        AmqpSend sender = this.amqpMessageSender;
+        if (sender == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_004: [The function shall return a future completed exceptionally with an IOException if the member AMQP sender object has not been initialized]
+            CompletableFuture<SendBatchResult> future = new CompletableFuture<>();
+            future.completeExceptionally(new IOException("AMQP sender is not initialized"));
+            return future;
+        }
+
+        final Map<String, List<CompletableFuture<Void>>> futuresByDevice;
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_005: [The function shall call sendBatchAsync() on the member AMQP sender object with the given messages]
+            futuresByDevice = sender.sendBatchAsync(messagesByDevice);
+        }
+        catch (IOException e)
+        {
+            CompletableFuture<SendBatchResult> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        List<CompletableFuture<Void>> allFutures = new ArrayList<>();
+        for (List<CompletableFuture<Void>> futures : futuresByDevice.values())
+        {
+            allFutures.addAll(futures);
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_006: [The function shall return a future completed with the outcome of every message once all of them are complete]
+        return CompletableFuture.allOf(allFutures.toArray(new CompletableFuture<?>[allFutures.size()]))
+                .handle((ignored, throwable) -> buildSendBatchResult(futuresByDevice));
+    }
+
+    private static SendBatchResult buildSendBatchResult(Map<String, List<CompletableFuture<Void>>> futuresByDevice)
+    {
+        Map<String, List<Exception>> exceptionsByDevice = new LinkedHashMap<>(futuresByDevice.size() * 2);
+        for (Map.Entry<String, List<CompletableFuture<Void>>> entry : futuresByDevice.entrySet())
+        {
+            List<Exception> exceptions = new ArrayList<>(entry.getValue().size());
+            for (CompletableFuture<Void> future : entry.getValue())
+            {
+                Exception exception = null;
+                try
+                {
+                    future.join();
+                }
+                catch (CompletionException e)
+                {
+                    exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                catch (CancellationException e)
+                {
+                    exception = e;
+                }
+                exceptions.add(exception);
+            }
+            exceptionsByDevice.put(entry.getKey(), exceptions);
+        }
+        return new SendBatchResult(exceptionsByDevice);
     }
 
     /**
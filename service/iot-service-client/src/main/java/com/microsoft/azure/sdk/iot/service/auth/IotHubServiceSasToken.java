@@ -120,6 +120,17 @@ public final class IotHubServiceSasToken
         return expiresOnDate / 1000;
     }
 
+    /**
+     * Returns the time, as a UNIX timestamp in seconds, before which the token is valid.
+     *
+     * @return The expiry time of the token.
+     */
+    public long getExpiryTime()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_41_001: [The function shall return the expiry time of the token in seconds since the epoch.]
+        return this.expiryTime;
+    }
+
     /**
      * Returns the string representation of the SAS token.
      *
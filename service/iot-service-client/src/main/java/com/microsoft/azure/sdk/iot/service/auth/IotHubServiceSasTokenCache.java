@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process wide cache of the service SAS tokens, by host name, shared access key name and shared access key. Building
+ * a token costs a HMAC-SHA256 and some URL encoding, so the clients that send one request after the other take the
+ * token from here instead. A token is renewed on the first request after less than half of its validity is left.
+ */
+public final class IotHubServiceSasTokenCache
+{
+    private static final long MILLISECONDS_PER_SECOND = 1000;
+    private static final long RENEW_WHEN_LESS_THAN_SECS_LEFT = 365*24*60*60 / 2;
+
+    private static final ConcurrentMap<String, IotHubServiceSasToken> tokens = new ConcurrentHashMap<>();
+
+    private IotHubServiceSasTokenCache()
+    {
+    }
+
+    /**
+     * Returns a valid SAS token for the connection string, building a new one only if there is no cached token for
+     * the same host name, key name and key, or if the cached token is about to expire.
+     *
+     * @param iotHubConnectionString Connection string object containing the connection parameters
+     * @return The string representation of the SAS token
+     * @throws IllegalArgumentException if the provided iotHubConnectionString is null
+     */
+    public static String getToken(IotHubConnectionString iotHubConnectionString) throws IllegalArgumentException
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_001: [The function shall throw IllegalArgumentException if the input object is null.]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+
+        String key = iotHubConnectionString.getHostName() + "/" + iotHubConnectionString.getSharedAccessKeyName() + "/" + iotHubConnectionString.getSharedAccessKey();
+        long nowInSeconds = System.currentTimeMillis() / MILLISECONDS_PER_SECOND;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_002: [The function shall return the cached token for the host name, key name and key if less than half of its validity has passed.]
+        IotHubServiceSasToken sasToken = tokens.get(key);
+        if ((sasToken == null) || (sasToken.getExpiryTime() - nowInSeconds < RENEW_WHEN_LESS_THAN_SECS_LEFT))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_003: [Otherwise, the function shall create a new IotHubServiceSasToken, cache it and return it.]
+            sasToken = new IotHubServiceSasToken(iotHubConnectionString);
+            tokens.put(key, sasToken);
+        }
+
+        return sasToken.toString();
+    }
+}
@@ -7,24 +7,40 @@ import com.microsoft.azure.sdk.iot.deps.serializer.MethodParser;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DeviceMethod enables service client to directly invoke methods on various devices from service client.
+ * <p>
+ * A single instance can invoke methods on many devices at the same time. The asynchronous invocations run on a pool
+ * of at most {@code maxConcurrentInvocations} threads, further invocations wait for a free thread. The HTTPS
+ * connections to the IoT Hub are kept alive and reused by Java, which keeps at most {@code http.maxConnections}
+ * (5 by default) idle connections per host; set that system property to the number of concurrent invocations to
+ * reuse a connection for every one of them.
  */
 public class DeviceMethod
 {
     private IotHubConnectionString iotHubConnectionString = null;
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private static final int DEFAULT_RESPONSE_TIMEOUT = 30; // default response timeout is 30 seconds
     private static final int DEFAULT_CONNECT_TIMEOUT = 0;
     private static final int THOUSAND_MS = 1000;
+    private static final int DEFAULT_MAX_CONCURRENT_INVOCATIONS = 16;
+    private static final String THREAD_NAME_PREFIX = "azure-iot-sdk-DeviceMethod";
+    private AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, DEFAULT_MAX_CONCURRENT_INVOCATIONS);
+
     /**
      * Create a DeviceMethod instance from the information in the connection string.
      *
@@ -49,6 +65,30 @@ public class DeviceMethod
         return deviceMethod;
     }
 
+    /**
+     * Create a DeviceMethod instance from the information in the connection string, that runs at most
+     * maxConcurrentInvocations asynchronous invocations at the same time.
+     *
+     * @param connectionString is the IoTHub connection string.
+     * @param maxConcurrentInvocations is the maximum number of asynchronous invocations in flight.
+     * @return an instance of the DeviceMethod.
+     * @throws IOException This exception is thrown if the object creation failed
+     */
+    public static DeviceMethod createFromConnectionString(String connectionString, int maxConcurrentInvocations) throws IOException
+    {
+        /* Codes_SRS_DEVICEMETHOD_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentInvocations is less than 1.] */
+        if (maxConcurrentInvocations < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentInvocations must be at least 1");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_41_002: [The constructor shall create a new DeviceMethod instance from the connection string and save maxConcurrentInvocations.] */
+        DeviceMethod deviceMethod = createFromConnectionString(connectionString);
+        deviceMethod.asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, maxConcurrentInvocations);
+
+        return deviceMethod;
+    }
+
     /**
      * Directly invokes a method on the device and return its result.
      *
@@ -61,7 +101,7 @@ public class DeviceMethod
      * @throws IotHubException This exception is thrown if the response verification failed
      * @throws IOException This exception is thrown if the IO operation failed
      */
-    public synchronized MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
+    public MethodResult invoke(String deviceId, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload) throws IotHubException, IOException
     {
         /* Codes_SRS_DEVICEMETHOD_21_004: [The invoke shall throw IllegalArgumentException if the provided deviceId is null or empty.] */
         if((deviceId == null) || deviceId.isEmpty())
@@ -116,7 +156,7 @@ public class DeviceMethod
                
         /* Codes_SRS_DEVICEMETHOD_21_009: [The invoke shall send the created request and get the response using the HttpRequester.] */
         /* Codes_SRS_DEVICEMETHOD_21_010: [The invoke shall create a new HttpRequest with http method as `POST`.] */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++), timeoutInMs);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.POST, json.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()), timeoutInMs);
 
         /* Codes_SRS_DEVICEMETHOD_21_013: [The invoke shall deserialize the payload using the `serializer.MethodParser`.] */
         MethodParser methodParserResponse = new MethodParser();
@@ -126,6 +166,88 @@ public class DeviceMethod
         return new MethodResult(methodParserResponse.getStatus(), methodParserResponse.getPayload());
     }
 
+    /**
+     * Asynchronously invokes a method on the device. The invocation runs on this instance's pool of threads, so that
+     * many invocations can be in flight at the same time.
+     *
+     * @param deviceId is the device identification.
+     * @param methodName is the name of the method that shall be invoked on the device.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from the device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @return the future status and payload resulted from the method invoke. It completes exceptionally with the
+     * exception that {@link #invoke(String, String, Long, Long, Object)} would have thrown, or with an
+     * {@link IllegalStateException} if {@link #close()} was called while the invocation was being submitted.
+     */
+    public CompletableFuture<MethodResult> invokeAsync(final String deviceId, final String methodName, final Long responseTimeoutInSeconds, final Long connectTimeoutInSeconds, final Object payload)
+    {
+        /* Codes_SRS_DEVICEMETHOD_41_003: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId or methodName is null or empty.] */
+        if ((deviceId == null) || deviceId.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceId is empty or null.");
+        }
+
+        if ((methodName == null) || methodName.isEmpty())
+        {
+            throw new IllegalArgumentException("methodName is empty or null.");
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_41_004: [The invokeAsync shall run invoke on the executor of this instance, creating it with maxConcurrentInvocations threads if it does not exist.] */
+        /* Codes_SRS_DEVICEMETHOD_41_005: [If invoke throws, the invokeAsync shall complete the future exceptionally with the thrown exception.] */
+        /* Codes_SRS_DEVICEMETHOD_41_009: [If close is called while the invocation is being submitted, the invokeAsync shall complete the future exceptionally with an IllegalStateException instead of throwing.] */
+        return this.asyncOperationExecutor.submit(() -> invoke(deviceId, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload));
+    }
+
+    /**
+     * Asynchronously invokes the same method on every device in the list. At most {@code maxConcurrentInvocations}
+     * of the invocations are in flight at the same time.
+     *
+     * @param deviceIds is the list of device identifications. A device that is listed more than once is invoked once.
+     * @param methodName is the name of the method that shall be invoked on the devices.
+     * @param responseTimeoutInSeconds is the maximum waiting time for a response from a device in seconds.
+     * @param connectTimeoutInSeconds is the maximum waiting time for a response from the connection in seconds.
+     * @param payload is the the method parameter
+     * @return the future result of every invocation, by device id, in the order of the list.
+     */
+    public Map<String, CompletableFuture<MethodResult>> invokeOnDevicesAsync(Collection<String> deviceIds, String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload)
+    {
+        /* Codes_SRS_DEVICEMETHOD_41_006: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null or empty, or contains a null or empty deviceId.] */
+        if ((deviceIds == null) || deviceIds.isEmpty())
+        {
+            throw new IllegalArgumentException("deviceIds is empty or null.");
+        }
+
+        for (String deviceId : deviceIds)
+        {
+            if ((deviceId == null) || deviceId.isEmpty())
+            {
+                throw new IllegalArgumentException("deviceIds contains an empty or null deviceId.");
+            }
+        }
+
+        /* Codes_SRS_DEVICEMETHOD_41_007: [The invokeOnDevicesAsync shall call invokeAsync once for every distinct deviceId and return the futures by deviceId in the order of the list.] */
+        Map<String, CompletableFuture<MethodResult>> futuresByDevice = new LinkedHashMap<>();
+        for (String deviceId : deviceIds)
+        {
+            if (!futuresByDevice.containsKey(deviceId))
+            {
+                futuresByDevice.put(deviceId, invokeAsync(deviceId, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload));
+            }
+        }
+
+        return futuresByDevice;
+    }
+
+    /**
+     * Stops the threads of the asynchronous invocations once the pending invocations are done. A later asynchronous
+     * invocation starts new threads.
+     */
+    public void close()
+    {
+        /* Codes_SRS_DEVICEMETHOD_41_008: [The close shall shut down the executor of this instance, if any, and forget it.] */
+        this.asyncOperationExecutor.close();
+    }
+
     /**
      * Creates a new Job to invoke method on one or multiple devices
      *
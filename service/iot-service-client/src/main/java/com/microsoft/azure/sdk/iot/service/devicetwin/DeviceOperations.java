@@ -4,7 +4,7 @@
 package com.microsoft.azure.sdk.iot.service.devicetwin;
 
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
-import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
@@ -32,7 +32,11 @@ public class DeviceOperations
     private static final String ACCEPT_CHARSET = "charset=utf-8";
     private static final String CONTENT_TYPE = "Content-Type";
     private static final Integer DEFAULT_HTTP_TIMEOUT_MS = 24000;
-    private static Map<String, String> headers = null;
+    /**
+     *  Custom headers for the next request of the calling thread. They are per thread, so that a query on one thread
+     *  never sends its headers with a request of another thread.
+     */
+    private static final ThreadLocal<Map<String, String>> headers = new ThreadLocal<>();
 
     /**
      * Send a http request to the IoTHub using the Twin/Method standard, and return its response.
@@ -87,7 +91,7 @@ public class DeviceOperations
         }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_006: [The request shall create a new SASToken with the ServiceConnect rights.] */
-        String sasTokenString = new IotHubServiceSasToken(iotHubConnectionString).toString();
+        String sasTokenString = IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
         /* Codes_SRS_DEVICE_OPERATIONS_21_007: [If the SASToken is null or empty, the request shall throw IOException.] */
          if((sasTokenString == null) || sasTokenString.isEmpty())
         {
@@ -119,15 +123,16 @@ public class DeviceOperations
         /* Codes_SRS_DEVICE_OPERATIONS_21_014: [The request shall add to the HTTP header a `Content-Type` key with `application/json; charset=utf-8`.] */
         request.setHeaderField(CONTENT_TYPE, ACCEPT_VALUE + "; " + ACCEPT_CHARSET);
 
-        if (headers != null)
+        Map<String, String> customHeaders = headers.get();
+        if (customHeaders != null)
         {
             //SRS_DEVICE_OPERATIONS_25_019: [The request shall add to the HTTP header all the additional custom headers set for this request.]
-            for(Map.Entry<String, String> header : headers.entrySet())
+            for(Map.Entry<String, String> header : customHeaders.entrySet())
             {
                 request.setHeaderField(header.getKey(), header.getValue());
             }
 
-            headers = null;
+            headers.remove();
         }
 
         /* Codes_SRS_DEVICE_OPERATIONS_21_015: [The request shall send the created request and get the response.] */
@@ -141,7 +146,7 @@ public class DeviceOperations
     }
 
     /**
-     * Sets headers to be used on next HTTP request
+     * Sets headers to be used on the next HTTP request of the calling thread
      * @param httpHeaders non null and non empty custom headers
      * @throws IllegalArgumentException This exception is thrown if headers were null or empty
      */
@@ -154,6 +159,7 @@ public class DeviceOperations
         }
 
         //SRS_DEVICE_OPERATIONS_25_020: [This method shall set the headers map to be used for next request only.]
-        headers = httpHeaders;
+        // Codes_SRS_DEVICE_OPERATIONS_41_001: [The headers shall only be used by the next request of the calling thread.]
+        headers.set(httpHeaders);
     }
 }
@@ -9,6 +9,7 @@ import com.microsoft.azure.sdk.iot.deps.twin.*;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
@@ -17,13 +18,25 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DeviceTwin enables service client to read and update the twins of devices.
+ * <p>
+ * The operations hold no lock on this instance, so that one instance can be shared by many threads. A {@link Query}
+ * or {@link QueryCollection} is iterated under its own lock. The asynchronous operations run on a pool of at most
+ * {@code maxConcurrentOperations} threads.
+ */
 public class DeviceTwin
 {
     private IotHubConnectionString iotHubConnectionString = null;
-    private Integer requestId = 0;
+    private final AtomicInteger requestId = new AtomicInteger(0);
     private final long USE_DEFAULT_TIMEOUT = 0;
     private final int DEFAULT_PAGE_SIZE = 100;
+    private static final int DEFAULT_MAX_CONCURRENT_OPERATIONS = 16;
+    private static final String THREAD_NAME_PREFIX = "azure-iot-sdk-DeviceTwin";
+    private AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, DEFAULT_MAX_CONCURRENT_OPERATIONS);
 
     /**
      * Static constructor to create instance from connection string
@@ -52,6 +65,25 @@ public class DeviceTwin
         return deviceTwin;
     }
 
+    /**
+     * Static constructor to create instance from connection string, that runs at most maxConcurrentOperations
+     * asynchronous operations at the same time
+     *
+     * @param connectionString The iot hub connection string
+     * @param maxConcurrentOperations The maximum number of asynchronous operations in flight
+     * @return The instance of DeviceTwin
+     * @throws IOException This exception is thrown if the object creation failed
+     */
+    public static DeviceTwin createFromConnectionString(String connectionString, int maxConcurrentOperations) throws IOException
+    {
+        // Codes_SRS_DEVICETWIN_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.]
+        // Codes_SRS_DEVICETWIN_41_002: [The constructor shall create a new DeviceTwin instance from the connection string that runs at most maxConcurrentOperations asynchronous operations at the same time.]
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, maxConcurrentOperations);
+        DeviceTwin deviceTwin = createFromConnectionString(connectionString);
+        deviceTwin.asyncOperationExecutor = asyncOperationExecutor;
+        return deviceTwin;
+    }
+
     /**
      * This method retrieves device twin for the specified device.
      *
@@ -88,7 +120,7 @@ public class DeviceTwin
          **Codes_SRS_DEVICETWIN_25_009: [** The function shall send the created request and get the response **]**
          **Codes_SRS_DEVICETWIN_25_010: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId++), USE_DEFAULT_TIMEOUT);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.GET, new byte[0], String.valueOf(requestId.getAndIncrement()), USE_DEFAULT_TIMEOUT);
         String twin = new String(response.getBody(), StandardCharsets.UTF_8);
 
         /*
@@ -112,7 +144,7 @@ public class DeviceTwin
      * @throws IOException This exception is thrown if the IO operation failed
      * @throws IotHubException This exception is thrown if the response verification failed
      */
-    public synchronized void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
+    public void updateTwin(DeviceTwinDevice device) throws IotHubException, IOException
     {
         if (device == null || device.getDeviceId() == null || device.getDeviceId().length() == 0)
         {
@@ -160,7 +192,7 @@ public class DeviceTwin
 
         **Codes_SRS_DEVICETWIN_25_020: [** The function shall verify the response status and throw proper Exception **]**
          */
-        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId++),0);
+        HttpResponse response = DeviceOperations.request(this.iotHubConnectionString, url, HttpMethod.PATCH, twinJson.getBytes(StandardCharsets.UTF_8), String.valueOf(requestId.getAndIncrement()),0);
     }
 
     /**
@@ -222,7 +254,7 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_028: [** The function shall verify the response status and throw proper Exception **]**
          */
        /*
-        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), String.valueOf(requestId++));
+        HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PATCH, desiredJson.getBytes(), String.valueOf(requestId.getAndIncrement()));
         */
     }
 
@@ -280,7 +312,7 @@ public class DeviceTwin
         **Codes_SRS_DEVICETWIN_25_036: [** The function shall verify the response status and throw proper Exception **]**
          */
         // Currently not implemented on service
-        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId++));
+        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId.getAndIncrement()));
     }
 
     /**
@@ -338,7 +370,7 @@ public class DeviceTwin
          */
         throw new UnsupportedOperationException();
         // Currently not implemented on service
-        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId++));
+        // HttpResponse response = this.processHttpTwinRequest(url, HttpMethod.PUT, tags.getBytes(), String.valueOf(requestId.getAndIncrement()));
     }
 
     /**
@@ -349,7 +381,7 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -379,7 +411,7 @@ public class DeviceTwin
      * @throws IotHubException If Query request was not successful at the IotHub
      * @throws IOException If input parameters are invalid
      */
-    public synchronized Query queryTwin(String sqlQuery) throws IotHubException, IOException
+    public Query queryTwin(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_DEVICETWIN_25_052: [ If the pageSize if not provided then a default pageSize of 100 is used for the query.]
         return this.queryTwin(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -392,7 +424,7 @@ public class DeviceTwin
      * @param sqlQuery the sql query to run
      * @return the created QueryCollection object that can be used to query the service
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_069: [This function shall return the results of calling queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE).]
         return this.queryTwinCollection(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -406,7 +438,7 @@ public class DeviceTwin
      * @param pageSize the number of results to return at a time
      * @return the created QueryCollection object that can be used to query the service
      */
-    public synchronized QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
+    public QueryCollection queryTwinCollection(String sqlQuery, Integer pageSize) throws MalformedURLException
     {
         //Codes_SRS_DEVICETWIN_34_070: [This function shall return a new QueryCollection object of type TWIN with the provided sql query and page size.]
         return new QueryCollection(sqlQuery, pageSize, QueryType.TWIN, this.iotHubConnectionString, this.iotHubConnectionString.getUrlTwinQuery(), HttpMethod.POST, USE_DEFAULT_TIMEOUT);
@@ -421,7 +453,7 @@ public class DeviceTwin
      * @throws IotHubException If IotHub could not respond back to the query successfully
      * @throws IOException If input parameter is incorrect
      */
-    public synchronized boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
+    public boolean hasNextDeviceTwin(Query deviceTwinQuery) throws IotHubException, IOException
     {
         if (deviceTwinQuery == null)
         {
@@ -430,7 +462,11 @@ public class DeviceTwin
         }
 
         //Codes_SRS_DEVICETWIN_25_055: [ If a queryResponse is available, this method shall return true as is to the user, and false otherwise.. ]
-        return deviceTwinQuery.hasNext();
+        // Codes_SRS_DEVICETWIN_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.]
+        synchronized (deviceTwinQuery)
+        {
+            return deviceTwinQuery.hasNext();
+        }
     }
 
     /**
@@ -441,7 +477,7 @@ public class DeviceTwin
      * @throws IotHubException If a non successful response from IotHub is received
      * @throws NoSuchElementException If no additional element was found
      */
-    public synchronized DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
+    public DeviceTwinDevice getNextDeviceTwin(Query deviceTwinQuery) throws IOException, IotHubException, NoSuchElementException
     {
         if (deviceTwinQuery == null)
         {
@@ -449,7 +485,12 @@ public class DeviceTwin
             throw new IllegalArgumentException("Query cannot be null");
         }
 
-        Object nextObject = deviceTwinQuery.next();
+        // Codes_SRS_DEVICETWIN_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.]
+        Object nextObject;
+        synchronized (deviceTwinQuery)
+        {
+            nextObject = deviceTwinQuery.next();
+        }
 
         if (nextObject instanceof String)
         {
@@ -470,7 +511,7 @@ public class DeviceTwin
      * @return True if the provided deviceTwinQueryCollection has a next page to query, false otherwise
      * @throws IllegalArgumentException if the provided deviceTwinQueryCollection is null
      */
-    public synchronized boolean hasNext(QueryCollection deviceTwinQueryCollection)
+    public boolean hasNext(QueryCollection deviceTwinQueryCollection)
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -479,7 +520,11 @@ public class DeviceTwin
         }
 
         //Codes_SRS_DEVICETWIN_34_071: [This function shall return if the provided deviceTwinQueryCollection has next.]
-        return deviceTwinQueryCollection.hasNext();
+        // Codes_SRS_DEVICETWIN_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.]
+        synchronized (deviceTwinQueryCollection)
+        {
+            return deviceTwinQueryCollection.hasNext();
+        }
     }
 
     /**
@@ -493,7 +538,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection) throws IOException, IotHubException
     {
         //Codes_SRS_DEVICETWIN_34_075: [This function shall call next(deviceTwinQueryCollection, queryOptions) where queryOptions has the deviceTwinQueryCollection's current page size.]
         QueryOptions options = new QueryOptions();
@@ -516,7 +561,7 @@ public class DeviceTwin
      * @throws IotHubException If an IotHubException occurs when querying the service.
      * @throws IOException If an IotHubException occurs when querying the service or if the results of that query don't match expectations.
      */
-    public synchronized QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
+    public QueryCollectionResponse<DeviceTwinDevice> next(QueryCollection deviceTwinQueryCollection, QueryOptions options) throws IOException, IotHubException
     {
         if (deviceTwinQueryCollection == null)
         {
@@ -524,13 +569,19 @@ public class DeviceTwin
             throw new IllegalArgumentException("Query cannot be null");
         }
 
-        if (!this.hasNext(deviceTwinQueryCollection))
+        // Codes_SRS_DEVICETWIN_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.]
+        QueryCollectionResponse<String> queryResults;
+        synchronized (deviceTwinQueryCollection)
         {
-            //Codes_SRS_DEVICETWIN_34_077: [If the provided deviceTwinQueryCollection has no next set to give, this function shall return null.]
-            return null;
+            if (!this.hasNext(deviceTwinQueryCollection))
+            {
+                //Codes_SRS_DEVICETWIN_34_077: [If the provided deviceTwinQueryCollection has no next set to give, this function shall return null.]
+                return null;
+            }
+
+            queryResults = deviceTwinQueryCollection.next(options);
         }
 
-        QueryCollectionResponse<String> queryResults = deviceTwinQueryCollection.next(options);
         Iterator<String> jsonCollectionIterator = queryResults.getCollection().iterator();
         Collection<DeviceTwinDevice> deviceTwinDeviceList = new ArrayList<>();
 
@@ -590,6 +641,104 @@ public class DeviceTwin
         return job;
     }
 
+    /**
+     * Asynchronously retrieves the device twin for the specified device, see {@link #getTwin(DeviceTwinDevice)}.
+     *
+     * @param device The device with a valid id for which device twin is to be retrieved.
+     * @return The future completion of the operation. It completes exceptionally with the exception that the
+     * synchronous operation would have thrown.
+     */
+    public CompletableFuture<Void> getTwinAsync(final DeviceTwinDevice device)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() ->
+        {
+            getTwin(device);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously updates the twin of the specified device, see {@link #updateTwin(DeviceTwinDevice)}.
+     *
+     * @param device The device with a valid Id for which device twin is to be updated.
+     * @return The future completion of the operation. It completes exceptionally with the exception that the
+     * synchronous operation would have thrown.
+     */
+    public CompletableFuture<Void> updateTwinAsync(final DeviceTwinDevice device)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() ->
+        {
+            updateTwin(device);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronously updates the desired properties of the specified device, see
+     * {@link #updateDesiredProperties(DeviceTwinDevice)}.
+     *
+     * @param device The device with a valid Id for which desired properties is to be updated.
+     * @return The future completion of the operation. It completes exceptionally with the exception that the
+     * synchronous operation would have thrown.
+     */
+    public CompletableFuture<Void> updateDesiredPropertiesAsync(final DeviceTwinDevice device)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() ->
+        {
+            updateDesiredProperties(device);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronous sql style query for twin, see {@link #queryTwin(String, Integer)}.
+     * @param sqlQuery Sql query string to query IotHub for Twin
+     * @param pageSize Size to limit query response by
+     * @return The future Query Object to be used for looking up responses for this query
+     */
+    public CompletableFuture<Query> queryTwinAsync(final String sqlQuery, final Integer pageSize)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() -> queryTwin(sqlQuery, pageSize));
+    }
+
+    /**
+     * Asynchronously returns the next device twin document, see {@link #getNextDeviceTwin(Query)}.
+     * @param deviceTwinQuery Object corresponding to the query in request
+     * @return The future next device twin document
+     */
+    public CompletableFuture<DeviceTwinDevice> getNextDeviceTwinAsync(final Query deviceTwinQuery)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() -> getNextDeviceTwin(deviceTwinQuery));
+    }
+
+    /**
+     * Asynchronously returns the next DeviceTwinDevice collection for the given query, see
+     * {@link #next(QueryCollection, QueryOptions)}.
+     * @param deviceTwinQueryCollection the query to run
+     * @param options the query options to run the query with
+     * @return The future page of query results and the continuation token for the next page of results
+     */
+    public CompletableFuture<QueryCollectionResponse<DeviceTwinDevice>> nextAsync(final QueryCollection deviceTwinQueryCollection, final QueryOptions options)
+    {
+        // Codes_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+        return this.asyncOperationExecutor.submit(() -> next(deviceTwinQueryCollection, options));
+    }
+
+    /**
+     * Stops the threads of the asynchronous operations once the pending operations are done. A later asynchronous
+     * operation starts new threads.
+     */
+    public void close()
+    {
+        // Codes_SRS_DEVICETWIN_41_005: [The close shall shut down the executor of this instance.]
+        this.asyncOperationExecutor.close();
+    }
+
     private DeviceTwinDevice jsonToDeviceTwinDevice(String json) throws IOException
     {
         TwinState twinState = TwinState.createFromTwinJson(json);
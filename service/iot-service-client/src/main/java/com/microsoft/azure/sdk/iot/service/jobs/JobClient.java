@@ -11,6 +11,7 @@ import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.devicetwin.*;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 
@@ -19,19 +20,27 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * JobClient enables service client to schedule and cancel jobs for a group of devices using the IoTHub.
+ * <p>
+ * The operations hold no lock on this instance, so that one instance can be shared by many threads. A {@link Query}
+ * is iterated under its own lock. The asynchronous operations run on a pool of at most
+ * {@code maxConcurrentOperations} threads.
  */
 public class JobClient
 {
     private final static long USE_DEFAULT_TIMEOUT = 0L;
     private final static long MAX_TIMEOUT = Integer.MAX_VALUE - 24000;
     private final static Integer DEFAULT_PAGE_SIZE = 100;
+    private final static int DEFAULT_MAX_CONCURRENT_OPERATIONS = 16;
+    private final static String THREAD_NAME_PREFIX = "azure-iot-sdk-JobClient";
 
     private final static byte[] EMPTY_JSON = "{}".getBytes();
 
     private IotHubConnectionString iotHubConnectionString = null;
+    private AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, DEFAULT_MAX_CONCURRENT_OPERATIONS);
 
     /**
      * Static constructor to create instance from connection string
@@ -58,6 +67,27 @@ public class JobClient
         return jobClient;
     }
 
+    /**
+     * Static constructor to create instance from connection string, that runs at most maxConcurrentOperations
+     * asynchronous operations at the same time
+     *
+     * @param connectionString The iot hub connection string
+     * @param maxConcurrentOperations The maximum number of asynchronous operations in flight
+     * @return The instance of JobClient
+     * @throws IOException if the object creation failed
+     * @throws IllegalArgumentException if the provided connectionString is {@code null} or empty, or maxConcurrentOperations is less than 1
+     */
+    public static JobClient createFromConnectionString(String connectionString, int maxConcurrentOperations) throws IOException, IllegalArgumentException
+    {
+        /* Codes_SRS_JOBCLIENT_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.] */
+        /* Codes_SRS_JOBCLIENT_41_002: [The constructor shall create a new JobClient instance from the connection string that runs at most maxConcurrentOperations asynchronous operations at the same time.] */
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor(THREAD_NAME_PREFIX, maxConcurrentOperations);
+        JobClient jobClient = createFromConnectionString(connectionString);
+        jobClient.asyncOperationExecutor = asyncOperationExecutor;
+
+        return jobClient;
+    }
+
     /**
      * Creates a new Job to update twin tags and desired properties on one or multiple devices
      *
@@ -71,7 +101,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleUpdateTwin(
+    public JobResult scheduleUpdateTwin(
             String jobId,
             String queryCondition,
             DeviceTwinDevice updateTwin,
@@ -144,7 +174,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult scheduleDeviceMethod(
+    public JobResult scheduleDeviceMethod(
             String jobId,
             String queryCondition,
             String methodName, Long responseTimeoutInSeconds, Long connectTimeoutInSeconds, Object payload,
@@ -211,7 +241,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult getJob(String jobId)
+    public JobResult getJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -250,7 +280,7 @@ public class JobClient
      * @throws IOException if the function cannot create a URL for the job, or the IO failed on request
      * @throws IotHubException if the http request failed
      */
-    public synchronized JobResult cancelJob(String jobId)
+    public JobResult cancelJob(String jobId)
             throws IllegalArgumentException, IOException, IotHubException
     {
         URL url;
@@ -341,7 +371,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery, Integer pageSize) throws IotHubException, IOException
     {
         if (sqlQuery == null || sqlQuery.length() == 0)
         {
@@ -370,7 +400,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException When any of the parameters are incorrect
      */
-    public synchronized Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
+    public Query queryDeviceJob(String sqlQuery) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_038: [If the pageSize is not specified, default pageSize of 100 shall be used .]
         return queryDeviceJob(sqlQuery, DEFAULT_PAGE_SIZE);
@@ -383,7 +413,7 @@ public class JobClient
      * @throws IotHubException When IotHub fails to respond
      * @throws IOException if any of the input parameters are incorrect
      */
-    public synchronized boolean hasNextJob(Query query) throws IotHubException, IOException
+    public boolean hasNextJob(Query query) throws IotHubException, IOException
     {
         if (query == null)
         {
@@ -391,7 +421,11 @@ public class JobClient
             throw new IllegalArgumentException("Query cannot be null");
         }
         // Codes_SRS_JOBCLIENT_25_047: [hasNextJob shall return true if the next job exist, false other wise.]
-        return query.hasNext();
+        /* Codes_SRS_JOBCLIENT_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.] */
+        synchronized (query)
+        {
+            return query.hasNext();
+        }
     }
 
     /**
@@ -402,7 +436,7 @@ public class JobClient
      * @throws IOException if any of the input parameters are incorrect
      * @throws NoSuchElementException if called when no further responses are left
      */
-    public synchronized JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
+    public JobResult getNextJob(Query query) throws IOException, IotHubException, NoSuchElementException
     {
         if (query == null)
         {
@@ -410,7 +444,12 @@ public class JobClient
             throw new IllegalArgumentException("Query cannot be null");
         }
         //Codes_SRS_JOBCLIENT_25_049: [getNextJob shall return next Job Result if the exist, and throw NoSuchElementException other wise.]
-        Object nextObject = query.next();
+        /* Codes_SRS_JOBCLIENT_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.] */
+        Object nextObject;
+        synchronized (query)
+        {
+            nextObject = query.next();
+        }
 
         if (nextObject instanceof String)
         {
@@ -434,7 +473,7 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus, Integer pageSize) throws IOException, IotHubException
     {
         if (pageSize <= 0)
         {
@@ -459,12 +498,131 @@ public class JobClient
      * @throws IOException If any of the input parameters are incorrect
      * @throws IotHubException If IotHub failed to respond
      */
-    public synchronized Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
+    public Query queryJobResponse(JobType jobType, JobStatus jobStatus) throws IotHubException, IOException
     {
         //Codes_SRS_JOBCLIENT_25_043: [If the pageSize is not specified, default pageSize of 100 shall be used.]
         return queryJobResponse(jobType, jobStatus, DEFAULT_PAGE_SIZE);
     }
 
+    /**
+     * Asynchronously creates a new Job to update twin tags and desired properties on one or multiple devices, see
+     * {@link #scheduleUpdateTwin(String, String, DeviceTwinDevice, Date, long)}.
+     *
+     * @param jobId Unique Job Id for this job
+     * @param queryCondition Query condition to evaluate which devices to run the job on. It can be {@code null} or empty
+     * @param updateTwin Twin object to use for the update
+     * @param startTimeUtc Date time in Utc to start the job
+     * @param maxExecutionTimeInSeconds Max execution time in seconds, i.e., ttl duration the job can run
+     * @return the future jobResult object. It completes exceptionally with the exception that the synchronous
+     * operation would have thrown.
+     */
+    public CompletableFuture<JobResult> scheduleUpdateTwinAsync(
+            final String jobId,
+            final String queryCondition,
+            final DeviceTwinDevice updateTwin,
+            final Date startTimeUtc,
+            final long maxExecutionTimeInSeconds)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> scheduleUpdateTwin(jobId, queryCondition, updateTwin, startTimeUtc, maxExecutionTimeInSeconds));
+    }
+
+    /**
+     * Asynchronously creates a new Job to invoke method on one or multiple devices, see
+     * {@link #scheduleDeviceMethod(String, String, String, Long, Long, Object, Date, long)}.
+     *
+     * @param jobId Unique Job Id for this job
+     * @param queryCondition Query condition to evaluate which devices to run the job on. It can be {@code null} or empty
+     * @param methodName Method name to be invoked
+     * @param responseTimeoutInSeconds Maximum interval of time, in seconds, that the Direct Method will wait for answer. It can be {@code null}.
+     * @param connectTimeoutInSeconds Maximum interval of time, in seconds, that the Direct Method will wait for the connection. It can be {@code null}.
+     * @param payload Object that contains the payload defined by the user. It can be {@code null}.
+     * @param startTimeUtc Date time in Utc to start the job
+     * @param maxExecutionTimeInSeconds Max execution time in seconds, i.e., ttl duration the job can run
+     * @return the future jobResult object. It completes exceptionally with the exception that the synchronous
+     * operation would have thrown.
+     */
+    public CompletableFuture<JobResult> scheduleDeviceMethodAsync(
+            final String jobId,
+            final String queryCondition,
+            final String methodName, final Long responseTimeoutInSeconds, final Long connectTimeoutInSeconds, final Object payload,
+            final Date startTimeUtc,
+            final long maxExecutionTimeInSeconds)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> scheduleDeviceMethod(jobId, queryCondition, methodName, responseTimeoutInSeconds, connectTimeoutInSeconds, payload, startTimeUtc, maxExecutionTimeInSeconds));
+    }
+
+    /**
+     * Asynchronously gets the current job on the iotHub, see {@link #getJob(String)}.
+     *
+     * @param jobId Unique Job Id for this job
+     * @return the future jobResult object
+     */
+    public CompletableFuture<JobResult> getJobAsync(final String jobId)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> getJob(jobId));
+    }
+
+    /**
+     * Asynchronously cancels a current job on the IoTHub, see {@link #cancelJob(String)}.
+     *
+     * @param jobId Unique Job Id for this job
+     * @return the future jobResult object
+     */
+    public CompletableFuture<JobResult> cancelJobAsync(final String jobId)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> cancelJob(jobId));
+    }
+
+    /**
+     * Asynchronous query for device Job, see {@link #queryDeviceJob(String, Integer)}.
+     * @param sqlQuery sql style query over device.jobs
+     * @param pageSize the value per which to limit the size of query response by.
+     * @return the future Query object for this query
+     */
+    public CompletableFuture<Query> queryDeviceJobAsync(final String sqlQuery, final Integer pageSize)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> queryDeviceJob(sqlQuery, pageSize));
+    }
+
+    /**
+     * Asynchronously returns the next job result in response, see {@link #getNextJob(Query)}.
+     * @param query Query for which to look for next job response by
+     * @return the future next job result
+     */
+    public CompletableFuture<JobResult> getNextJobAsync(final Query query)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> getNextJob(query));
+    }
+
+    /**
+     * Asynchronous query of the iot hub for a jobs response, see {@link #queryJobResponse(JobType, JobStatus, Integer)}.
+     * @param jobType The type of job to query for
+     * @param jobStatus The status of the job to query for
+     * @param pageSize The value to which to limit the job response size by
+     * @return the future query object on which to look for responses by
+     */
+    public CompletableFuture<Query> queryJobResponseAsync(final JobType jobType, final JobStatus jobStatus, final Integer pageSize)
+    {
+        /* Codes_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+        return this.asyncOperationExecutor.submit(() -> queryJobResponse(jobType, jobStatus, pageSize));
+    }
+
+    /**
+     * Stops the threads of the asynchronous operations once the pending operations are done. A later asynchronous
+     * operation starts new threads.
+     */
+    public void close()
+    {
+        /* Codes_SRS_JOBCLIENT_41_005: [The close shall shut down the executor of this instance.] */
+        this.asyncOperationExecutor.close();
+    }
+
     @SuppressWarnings("unused")
     protected JobClient()
     {
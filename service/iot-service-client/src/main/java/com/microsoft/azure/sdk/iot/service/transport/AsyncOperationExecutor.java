@@ -0,0 +1,140 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package com.microsoft.azure.sdk.iot.service.transport;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the asynchronous operations of a service client on a pool of at most maxConcurrentOperations daemon threads.
+ * The pool is created on the first operation and can be closed and recreated, so that clients that never use the
+ * asynchronous operations never start a thread.
+ */
+public final class AsyncOperationExecutor
+{
+    /**
+     * A blocking operation of a service client.
+     * @param <T> The type of the result of the operation
+     */
+    public interface Operation<T>
+    {
+        /**
+         * Run the operation.
+         * @return The result of the operation
+         * @throws IOException This exception is thrown if the IO operation failed
+         * @throws IotHubException This exception is thrown if the response verification failed
+         */
+        T run() throws IOException, IotHubException;
+    }
+
+    private final String threadNamePrefix;
+    private final int maxConcurrentOperations;
+    private ExecutorService executor = null;
+
+    /**
+     * Constructor.
+     * @param threadNamePrefix The prefix of the names of the threads of the pool
+     * @param maxConcurrentOperations The maximum number of operations to run at the same time
+     * @throws IllegalArgumentException if maxConcurrentOperations is less than 1
+     */
+    public AsyncOperationExecutor(String threadNamePrefix, int maxConcurrentOperations)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.]
+        if (maxConcurrentOperations < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentOperations must be at least 1");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_002: [The constructor shall save the thread name prefix and maxConcurrentOperations without starting any thread.]
+        this.threadNamePrefix = threadNamePrefix;
+        this.maxConcurrentOperations = maxConcurrentOperations;
+    }
+
+    /**
+     * Run the operation on the pool.
+     * @param operation The operation to run
+     * @param <T> The type of the result of the operation
+     * @return The future result of the operation. It completes exceptionally with the exception thrown by the operation,
+     * or with an {@link IllegalStateException} if the pool was closed while the operation was being submitted.
+     */
+    public <T> CompletableFuture<T> submit(final Operation<T> operation)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_003: [The function shall run the operation on the pool, creating the pool with maxConcurrentOperations threads if it does not exist.]
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try
+        {
+            getExecutor().submit(() ->
+            {
+                try
+                {
+                    future.complete(operation.run());
+                }
+                catch (IOException | IotHubException | RuntimeException e)
+                {
+                    // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_004: [If the operation throws, the function shall complete the future exceptionally with the thrown exception.]
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_007: [If the pool is closed while the operation is being submitted, the function shall complete the future exceptionally with an IllegalStateException.]
+            future.completeExceptionally(new IllegalStateException("closed", e));
+        }
+
+        return future;
+    }
+
+    /**
+     * Get the maximum number of operations that run at the same time
+     * @return The maximum number of operations that run at the same time
+     */
+    public int getMaxConcurrentOperations()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_005: [The function shall return maxConcurrentOperations.]
+        return this.maxConcurrentOperations;
+    }
+
+    /**
+     * Stop the threads of the pool once the submitted operations are done. A later operation starts new threads.
+     */
+    public synchronized void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_006: [The function shall shut down the pool, if any, and forget it.]
+        if (this.executor != null)
+        {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null)
+        {
+            // Daemon threads, so that an application that never calls close can still exit
+            this.executor = Executors.newFixedThreadPool(this.maxConcurrentOperations, new ThreadFactory()
+            {
+                private final AtomicInteger threadCount = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, threadNamePrefix + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        return this.executor;
+    }
+}
@@ -5,6 +5,7 @@
 
 package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Message;
 import com.microsoft.azure.sdk.iot.service.Tools;
@@ -15,21 +16,43 @@ import org.apache.qpid.proton.engine.Event;
 import org.apache.qpid.proton.reactor.Reactor;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class
  * overriding the events what are needed to handle
  * high level open, close and send methods.
  * Initialize and use AmqpsSendHandler class for low level ampqs operations.
+ *
+ * A single Proton reactor runs on its own thread from open until close and keeps one
+ * connection to the service, so sends do not pay for a new connection each time and
+ * many sends can be outstanding on the link at once.
  */
 public class AmqpSend extends BaseHandler
 {
+    private static final int REACTOR_TIMEOUT_MILLISECONDS = 10;
+    private static final long CLOSE_TIMEOUT_MILLISECONDS = 10000;
+    private static final long SEND_TIMEOUT_MILLISECONDS = 60000;
+
     protected final String hostName;
     protected final String userName;
     protected final String sasToken;
+    protected final IotHubConnectionString iotHubConnectionString;
     protected Reactor reactor = null;
     protected AmqpSendHandler amqpSendHandler;
     protected IotHubServiceClientProtocol iotHubServiceClientProtocol;
+    private ExecutorService reactorExecutor = null;
+    // Completes the futures of the sent messages off the reactor thread
+    private ExecutorService completionExecutor = null;
+    // The send handler of the running reactor, kept until the reactor stops so that it can complete a close
+    private volatile AmqpSendHandler reactorSendHandler = null;
 
     /**
      * Constructor to set up connection parameters
@@ -63,6 +86,33 @@ public class AmqpSend extends BaseHandler
         this.hostName = hostName;
         this.userName = userName;
         this.sasToken = sasToken;
+        this.iotHubConnectionString = null;
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+    }
+
+    /**
+     * Constructor to set up connection parameters from a connection string. Every
+     * connection, including reconnections, is authenticated with a new SAS token.
+     * @param iotHubConnectionString The connection string of the IotHub
+     * @param iotHubServiceClientProtocol protocol to use
+     */
+    public AmqpSend(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_002: [The constructor shall copy the host name and user name of the connection string and all input parameters to private member variables]
+        this.hostName = iotHubConnectionString.getHostName();
+        this.userName = iotHubConnectionString.getUserString();
+        this.sasToken = null;
+        this.iotHubConnectionString = iotHubConnectionString;
         this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
     }
 
@@ -80,59 +130,249 @@ public class AmqpSend extends BaseHandler
         // all the events would go to the reactor.
 
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_003: [The event handler shall set the member AmqpsSendHandler object to handle the given connection events]
-        event.getReactor().connection(amqpSendHandler);
+        event.getReactor().connection(reactorSendHandler);
+    }
+
+    /**
+     * Event handler for the reactor quiesced event. Sends the messages queued by
+     * other threads, or closes the connection if close has been requested.
+     * @param event The proton event object
+     */
+    @Override
+    public void onReactorQuiesced(Event event)
+    {
+        AmqpSendHandler handler = this.reactorSendHandler;
+        if (handler != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_003: [The event handler shall let the AmqpsSendHandler send its queued messages]
+            handler.processPendingRequests();
+        }
     }
 
     /**
      * Create AmqpsSendHandler and store it in a member variable
+     * Initialize the Proton reactor and start it on its own thread
+     * @throws IOException If the Proton reactor could not be created
      */
-    public void open()
+    public synchronized void open() throws IOException
     {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_004: [The function shall do nothing if the reactor is already running]
+        if (this.amqpSendHandler != null)
+        {
+            return;
+        }
+
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_004: [The function shall create an AmqpsSendHandler object to handle reactor events]
-        amqpSendHandler = new AmqpSendHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol);
+        final AmqpSendHandler handler;
+        if (this.iotHubConnectionString != null)
+        {
+            handler = new AmqpSendHandler(this.iotHubConnectionString, this.iotHubServiceClientProtocol);
+        }
+        else
+        {
+            handler = new AmqpSendHandler(this.hostName, this.userName, this.sasToken, this.iotHubServiceClientProtocol);
+        }
+        this.amqpSendHandler = handler;
+        this.reactorSendHandler = handler;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_010: [The function shall let the AmqpsSendHandler complete the futures of the messages on a thread pool, not on the reactor thread]
+        this.completionExecutor = Executors.newCachedThreadPool();
+        handler.setCompletionExecutor(this.completionExecutor);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
+        final Reactor reactor;
+        try
+        {
+            reactor = Proton.reactor(this);
+        }
+        catch (IOException e)
+        {
+            this.amqpSendHandler = null;
+            this.reactorSendHandler = null;
+            this.completionExecutor.shutdown();
+            this.completionExecutor = null;
+            throw new IOException("Could not create Proton reactor", e);
+        }
+        this.reactor = reactor;
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object on its own thread and keep it running until close]
+        this.reactorExecutor = Executors.newSingleThreadExecutor();
+        this.reactorExecutor.submit(() ->
+        {
+            IOException cause = new IOException("AMQP sender is closed");
+            try
+            {
+                reactor.setTimeout(REACTOR_TIMEOUT_MILLISECONDS);
+                reactor.start();
+                while (reactor.process())
+                {
+                }
+                reactor.stop();
+                reactor.process();
+            }
+            catch (Exception e)
+            {
+                cause = new IOException("AMQP reactor stopped unexpectedly", e);
+            }
+            finally
+            {
+                reactor.free();
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_005: [When the reactor stops, all messages not yet settled shall fail with an IOException]
+                handler.stop(cause);
+            }
+        });
     }
 
     /**
-     * Invalidate AmqpsSendHandler member variable
+     * Close the connection, stop the Proton reactor and invalidate AmqpsSendHandler member variable
      */
     public void close()
     {
-        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_005: [The function shall invalidate the member AmqpsSendHandler object]
-        amqpSendHandler = null;
+        AmqpSendHandler handler;
+        Reactor reactor;
+        ExecutorService reactorExecutor;
+        ExecutorService completionExecutor;
+        synchronized (this)
+        {
+            handler = this.amqpSendHandler;
+            reactor = this.reactor;
+            reactorExecutor = this.reactorExecutor;
+            completionExecutor = this.completionExecutor;
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_005: [The function shall invalidate the member AmqpsSendHandler object]
+            this.amqpSendHandler = null;
+            this.reactor = null;
+            this.reactorExecutor = null;
+            this.completionExecutor = null;
+        }
+
+        if (handler != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_006: [The function shall request the AmqpsSendHandler to close the connection, wake up the reactor and wait for it to stop]
+            handler.close();
+            wakeup(reactor);
+        }
+        if (reactorExecutor != null)
+        {
+            reactorExecutor.shutdown();
+            try
+            {
+                if (!reactorExecutor.awaitTermination(CLOSE_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS))
+                {
+                    reactorExecutor.shutdownNow();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                reactorExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (completionExecutor != null)
+        {
+            // The futures failed when the reactor stopped are still completed before the threads exit
+            completionExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Create binary message and queue it on the open connection
+     * @param deviceId The device name string
+     * @param message The message to be sent
+     * @return The future completed when IotHub settles the message, exceptionally if IotHub rejects it, the connection is lost or the message is not settled in time
+     * @throws IOException This exception is thrown if the AmqpSend object is not initialized
+     */
+    public CompletableFuture<Void> sendAsync(String deviceId, Message message) throws IOException
+    {
+        AmqpSendHandler handler = this.amqpSendHandler;
+        Reactor reactor = this.reactor;
+        if (handler == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The function shall throw IOException if the send handler object is not initialized]
+            throw new IOException("send handler is not initialized. call open before send");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The function shall create a binary message with the given content]
+        CompletableFuture<Void> future = handler.createProtonMessage(deviceId, message);
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_007: [The function shall wake up the reactor so that it sends the message without waiting for the earlier messages to be settled]
+        wakeup(reactor);
+        return future;
+    }
+
+    /**
+     * Create binary messages for many devices in one pass and queue them all on the open connection
+     * @param messagesByDevice The messages to be sent, keyed by device name
+     * @return The futures of the messages, keyed by device name, in the order of the messages of each device
+     * @throws IOException This exception is thrown if the AmqpSend object is not initialized
+     */
+    public Map<String, List<CompletableFuture<Void>>> sendBatchAsync(Map<String, List<Message>> messagesByDevice) throws IOException
+    {
+        AmqpSendHandler handler = this.amqpSendHandler;
+        Reactor reactor = this.reactor;
+        if (handler == null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_008: [The function shall throw IOException if the send handler object is not initialized]
+            throw new IOException("send handler is not initialized. call open before send");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_009: [The function shall create and queue the binary messages of all devices, then wake up the reactor once]
+        Map<String, List<CompletableFuture<Void>>> futuresByDevice = handler.createProtonMessages(messagesByDevice);
+        wakeup(reactor);
+        return futuresByDevice;
     }
 
     /**
      * Create binary message
-     * Initialize and start Proton reactor
-     * Send the created message
+     * Send the created message on the open connection and wait for IotHub to settle it
      * @param deviceId The device name string
      * @param message The message to be sent
-     * @throws IOException This exception is thrown if the AmqpSend object is not initialized
+     * @throws IOException This exception is thrown if the AmqpSend object is not initialized, or if IotHub did not settle the message in time
      * @throws IotHubException If IotHub rejects the message for any reason
      */
     public void send(String deviceId, Message message) throws IOException, IotHubException
     {
-      synchronized(this)
-      {
-        if  (amqpSendHandler != null)
-        {
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The function shall create a binary message with the given content]
-            amqpSendHandler.createProtonMessage(deviceId, message);
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
-            this.reactor = Proton.reactor(this);
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object]
-            this.reactor.run();
-            this.reactor.free();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [** The function shall call sendComplete to identify the status of sent message and throws exception if thrown by sendComplete **]**
-            amqpSendHandler.sendComplete();
+        CompletableFuture<Void> future = sendAsync(deviceId, message);
+        try
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_011: [The function shall wait at most SEND_TIMEOUT_MILLISECONDS for the message to be settled, and throw an IOException if it is not]
+            future.get(SEND_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
         }
-        else
+        catch (TimeoutException e)
         {
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The function shall throw IOException if the send handler object is not initialized]
-            throw new IOException("send handler is not initialized. call open before send");
+            throw new IOException("Timed out waiting for IotHub to settle the message", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the message to be sent", e);
+        }
+        catch (ExecutionException e)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [** The function shall identify the status of sent message and throw the exception IotHub responded with **]**
+            Throwable cause = e.getCause();
+            if (cause instanceof IotHubException)
+            {
+                throw (IotHubException) cause;
+            }
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
         }
-      }
-
     }
 
+    private static void wakeup(Reactor reactor)
+    {
+        if (reactor != null)
+        {
+            try
+            {
+                reactor.wakeup();
+            }
+            catch (RuntimeException e)
+            {
+                // The reactor has already been freed. The messages are failed when it stops.
+            }
+        }
+    }
 }
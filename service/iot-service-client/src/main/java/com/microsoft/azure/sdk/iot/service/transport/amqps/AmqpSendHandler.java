@@ -7,25 +7,40 @@ package com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.deps.auth.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Tools;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.TransportUtils;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.messaging.*;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
 import org.apache.qpid.proton.engine.*;
 import org.apache.qpid.proton.engine.impl.TransportInternal;
 import org.apache.qpid.proton.reactor.Handshaker;
+import org.apache.qpid.proton.reactor.Task;
 
 import java.io.IOException;
 import java.nio.BufferOverflowException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Instance of the QPID-Proton-J BaseHandler class to override
@@ -33,6 +48,18 @@ import java.util.concurrent.LinkedBlockingQueue;
  * Contains and sets connection parameters (path, port, endpoint)
  * Maintains the layers of AMQP protocol (Link, Session, Connection, Transport)
  * Creates and sets SASL authentication for transport
+ *
+ * The connection and the sender link are kept open between sends, so many deliveries
+ * can be outstanding at the same time. Each delivery completes its own future when
+ * the service settles it. If the connection is lost, the deliveries in flight fail and
+ * the messages not sent yet wait for the reconnection. The handler reconnects with a
+ * freshly generated SAS token when it was created from a connection string.
+ *
+ * Reconnections back off exponentially and give up after {@link #MAX_RECONNECT_ATTEMPTS}
+ * attempts in a row, or as soon as the service refuses the connection for a reason that
+ * retrying cannot fix, such as an authorization failure. Every message also fails if it is
+ * not settled within {@link #MESSAGE_TIMEOUT_MILLISECONDS} of being queued, so no future is
+ * left pending while the handler waits for the connection to come back.
  */
 public class AmqpSendHandler extends BaseHandler
 {
@@ -43,19 +70,102 @@ public class AmqpSendHandler extends BaseHandler
     public static final String DEVICE_PATH_FORMAT = "/devices/%s/messages/devicebound";
     public static final String WEBSOCKET_PATH = "/$iothub/websocket";
     public static final String WEBSOCKET_SUB_PROTOCOL = "AMQPWSB10";
-    private Queue<AmqpResponseVerification> sendStatusQueue = new LinkedBlockingQueue<>();
-    private Queue<org.apache.qpid.proton.message.Message> messagesToBeSent = new LinkedBlockingQueue<>();
+    public static final int RECONNECT_DELAY_MILLISECONDS = 1000;
+    public static final int MAX_RECONNECT_DELAY_MILLISECONDS = 30000;
+    public static final int MAX_RECONNECT_ATTEMPTS = 10;
+    public static final long MESSAGE_TIMEOUT_MILLISECONDS = 60000;
+
+    // Errors the service closes the connection, session or link with when reconnecting would fail the same way
+    private static final Set<Symbol> UNRECOVERABLE_ERRORS = new HashSet<>(Arrays.asList(
+            AmqpError.UNAUTHORIZED_ACCESS, AmqpError.NOT_FOUND, AmqpError.NOT_ALLOWED, AmqpError.NOT_IMPLEMENTED));
+
+    private Queue<OutgoingMessage> messagesToBeSent = new LinkedBlockingQueue<>();
 
     protected final String hostName;
     protected final String userName;
     protected final String sasToken;
+    protected final IotHubConnectionString iotHubConnectionString;
     private int nextTag = 0;
 
     protected final IotHubServiceClientProtocol iotHubServiceClientProtocol;
     protected final String webSocketHostName;
 
-    private boolean isConnected = false;
-    private boolean isConnectionError = false;
+    // The following members are only accessed from the reactor thread
+    private Connection connection = null;
+    private Sender sender = null;
+    private Task reconnectTask = null;
+    private int reconnectAttempts = 0;
+    // Deadlines of the deliveries in flight, in the order they were sent
+    private final Map<Delivery, Long> unsettledDeliveries = new LinkedHashMap<>();
+
+    private volatile boolean isConnected = false;
+    private volatile boolean isCloseRequested = false;
+    private volatile boolean isStopped = false;
+    // Set when the SSL context cannot be built, when the service refuses the connection for good or when the
+    // reconnection attempts run out. Retrying would fail the same way, so the handler stops reconnecting
+    private volatile IOException connectionError = null;
+
+    // Encoding buffer of the reactor thread, reused for every message that was not encoded when it was queued
+    private final EncodeBuffer encodeBuffer = new EncodeBuffer();
+
+    // Completes the futures of the messages, so that their dependent stages never run on the reactor thread
+    private volatile Executor completionExecutor = null;
+
+    /**
+     * A Proton message waiting for link credit, with the future to complete once it is settled
+     * and the time after which it fails if it is still not settled.
+     * Messages queued as part of a batch are already encoded.
+     */
+    private static final class OutgoingMessage
+    {
+        private final org.apache.qpid.proton.message.Message protonMessage;
+        private final CompletableFuture<Void> future;
+        private final byte[] encodedMessage;
+        private final long deadline;
+
+        private OutgoingMessage(org.apache.qpid.proton.message.Message protonMessage, CompletableFuture<Void> future)
+        {
+            this(protonMessage, future, null);
+        }
+
+        private OutgoingMessage(org.apache.qpid.proton.message.Message protonMessage, CompletableFuture<Void> future, byte[] encodedMessage)
+        {
+            this(protonMessage, future, encodedMessage, System.currentTimeMillis() + MESSAGE_TIMEOUT_MILLISECONDS);
+        }
+
+        private OutgoingMessage(org.apache.qpid.proton.message.Message protonMessage, CompletableFuture<Void> future, byte[] encodedMessage, long deadline)
+        {
+            this.protonMessage = protonMessage;
+            this.future = future;
+            this.encodedMessage = encodedMessage;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Growable buffer to encode Proton messages into. It keeps its largest size,
+     * so a sequence of messages is encoded without allocating a buffer per message.
+     */
+    private static final class EncodeBuffer
+    {
+        private byte[] bytes = new byte[1024];
+
+        private int encode(org.apache.qpid.proton.message.Message protonMessage)
+        {
+            while (true)
+            {
+                try
+                {
+                    return protonMessage.encode(this.bytes, 0, this.bytes.length);
+                }
+                catch (BufferOverflowException e)
+                {
+                    this.bytes = new byte[this.bytes.length * 2];
+                }
+            }
+        }
+    }
+
     /**
      * Constructor to set up connection parameters and initialize handshaker for transport
      *
@@ -100,6 +210,7 @@ public class AmqpSendHandler extends BaseHandler
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_003: [The constructor shall concatenate the host name with the port]
         this.userName = userName;
         this.sasToken = sasToken;
+        this.iotHubConnectionString = null;
 
         // Add a child handler that performs some default handshaking behaviour.
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_004: [The constructor shall initialize a new Handshaker (Proton) object to handle communication handshake]
@@ -107,6 +218,44 @@ public class AmqpSendHandler extends BaseHandler
         isConnected = false;
     }
 
+    /**
+     * Constructor to set up connection parameters from a connection string. A new SAS token
+     * is generated from the connection string every time the connection is established.
+     *
+     * @param iotHubConnectionString The connection string of the IotHub
+     * @param iotHubServiceClientProtocol protocol to use
+     */
+    public AmqpSendHandler(IotHubConnectionString iotHubConnectionString, IotHubServiceClientProtocol iotHubServiceClientProtocol)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+        if (iotHubConnectionString == null)
+        {
+            throw new IllegalArgumentException("iotHubConnectionString cannot be null");
+        }
+        if (iotHubServiceClientProtocol == null)
+        {
+            throw new IllegalArgumentException("iotHubServiceClientProtocol cannot be null");
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_002: [The constructor shall take the host name and user name from the connection string and concatenate the host name with the port]
+        this.iotHubServiceClientProtocol = iotHubServiceClientProtocol;
+        this.webSocketHostName = iotHubConnectionString.getHostName();
+        if (this.iotHubServiceClientProtocol == IotHubServiceClientProtocol.AMQPS_WS)
+        {
+            this.hostName = this.webSocketHostName + SEND_PORT_AMQPS_WS;
+        }
+        else
+        {
+            this.hostName = this.webSocketHostName + SEND_PORT_AMQPS;
+        }
+        this.userName = iotHubConnectionString.getUserString();
+        this.sasToken = null;
+        this.iotHubConnectionString = iotHubConnectionString;
+
+        add(new Handshaker());
+        isConnected = false;
+    }
+
     /**
      * Create "to" parameter for AMQP message to address the device
      * @param deviceId device name string
@@ -117,12 +266,76 @@ public class AmqpSendHandler extends BaseHandler
         return String.format(DEVICE_PATH_FORMAT, deviceId);
     }
 
+    /**
+     * Create Proton message from deviceId and content string and queue it for sending.
+     * The message is sent from the reactor thread on the next call to {@link #processPendingRequests()}
+     * or on the next link flow event.
+     * @param deviceId The device name string
+     * @param message The message to be sent
+     * @return The future completed when the service settles the delivery of the message
+     */
+    public CompletableFuture<Void> createProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
+    {
+        org.apache.qpid.proton.message.Message protonMessage = buildProtonMessage(deviceId, message);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_003: [The function shall queue the Proton message and return a future that is completed when the delivery is settled]
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        messagesToBeSent.add(new OutgoingMessage(protonMessage, future));
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_004: [If the handler has been stopped, the function shall complete the future exceptionally with an IOException]
+        failQueuedMessagesIfClosed();
+        return future;
+    }
+
+    /**
+     * Create and encode Proton messages for many devices in one pass and queue them all for sending.
+     * The messages are sent from the reactor thread as link credit allows, without waiting for
+     * the earlier ones to be settled.
+     * @param messagesByDevice The messages to be sent, keyed by device name
+     * @return The futures of the messages, keyed by device name, in the order of the messages of each device
+     */
+    public Map<String, List<CompletableFuture<Void>>> createProtonMessages(Map<String, List<com.microsoft.azure.sdk.iot.service.Message>> messagesByDevice)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_016: [The function shall throw IllegalArgumentException if the map of messages is null]
+        if (messagesByDevice == null)
+        {
+            throw new IllegalArgumentException("messagesByDevice cannot be null");
+        }
+
+        Map<String, List<CompletableFuture<Void>>> futuresByDevice = new LinkedHashMap<>(messagesByDevice.size() * 2);
+        List<OutgoingMessage> outgoingMessages = new ArrayList<>();
+        EncodeBuffer batchEncodeBuffer = new EncodeBuffer();
+        long deadline = System.currentTimeMillis() + MESSAGE_TIMEOUT_MILLISECONDS;
+        for (Map.Entry<String, List<com.microsoft.azure.sdk.iot.service.Message>> entry : messagesByDevice.entrySet())
+        {
+            List<CompletableFuture<Void>> futures = new ArrayList<>(entry.getValue().size());
+            for (com.microsoft.azure.sdk.iot.service.Message message : entry.getValue())
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_017: [The function shall create and encode a Proton message for every message, reusing one encoding buffer for the whole batch]
+                org.apache.qpid.proton.message.Message protonMessage = buildProtonMessage(entry.getKey(), message);
+                int length = batchEncodeBuffer.encode(protonMessage);
+                CompletableFuture<Void> future = new CompletableFuture<>();
+                outgoingMessages.add(new OutgoingMessage(protonMessage, future, Arrays.copyOf(batchEncodeBuffer.bytes, length), deadline));
+                futures.add(future);
+            }
+            futuresByDevice.put(entry.getKey(), futures);
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_018: [The function shall queue all the messages and return their futures keyed by device name]
+        messagesToBeSent.addAll(outgoingMessages);
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_004: [If the handler has been stopped, the function shall complete the future exceptionally with an IOException]
+        failQueuedMessagesIfClosed();
+        return futuresByDevice;
+    }
+
     /**
      * Create Proton message from deviceId and content string
      * @param deviceId The device name string
      * @param message The message to be sent
+     * @return The Proton message
      */
-    public void createProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
+    private org.apache.qpid.proton.message.Message buildProtonMessage(String deviceId, com.microsoft.azure.sdk.iot.service.Message message)
     {
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_005: [The function shall create a new Message (Proton) object]
         org.apache.qpid.proton.message.Message protonMessage = Proton.message();
@@ -159,15 +372,16 @@ public class AmqpSendHandler extends BaseHandler
         Section section = new Data(binary);
         // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_009: [The function shall set the Message body to the created data section]
         protonMessage.setBody(section);
-        messagesToBeSent.add(protonMessage);
+        return protonMessage;
     }
 
     /**
      * Create Proton SslDomain object from Address using the given Ssl mode
      * @param mode The proton enum value of requested Ssl mode
      * @return The created Ssl domain
+     * @throws IOException If the SSL context with the IotHub certificates cannot be built
      */
-    private SslDomain makeDomain(SslDomain.Mode mode)
+    private SslDomain makeDomain(SslDomain.Mode mode) throws IOException
     {
         SslDomain domain = Proton.sslDomain();
 
@@ -178,7 +392,7 @@ public class AmqpSendHandler extends BaseHandler
         }
         catch (Exception e)
         {
-            this.isConnectionError = true;
+            throw new IOException("Connection failed to be established", e);
         }
 
         domain.init(mode);
@@ -205,9 +419,24 @@ public class AmqpSendHandler extends BaseHandler
                 ((TransportInternal)transport).addTransportLayer(webSocket);
             }
             Sasl sasl = transport.sasl();
-            sasl.plain(this.userName, this.sasToken);
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_005: [If the handler was created from a connection string, the event handler shall get a valid SAS token from IotHubServiceSasTokenCache for every connection]
+            sasl.plain(this.userName, getSasToken());
 
-            SslDomain domain = makeDomain(SslDomain.Mode.CLIENT);
+            SslDomain domain;
+            try
+            {
+                domain = makeDomain(SslDomain.Mode.CLIENT);
+            }
+            catch (IOException e)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_020: [If the SSL context cannot be built, the event handler shall fail all unsettled and queued messages with an IOException, close the connection and stop reconnecting]
+                this.connectionError = e;
+                isConnected = false;
+                failUnsettledDeliveries(e);
+                failQueuedMessages(e);
+                event.getConnection().close();
+                return;
+            }
             domain.setPeerAuthentication(SslDomain.VerifyMode.VERIFY_PEER);
             Ssl ssl = transport.ssl(domain);
         }
@@ -247,6 +476,8 @@ public class AmqpSendHandler extends BaseHandler
         conn.open();
         ssn.open();
         snd.open();
+        this.connection = conn;
+        this.sender = snd;
         isConnected = true;
     }
 
@@ -256,9 +487,108 @@ public class AmqpSendHandler extends BaseHandler
      */
     @Override
     public void onTransportError(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_011: [The event handler shall complete the futures of the unsettled messages exceptionally with an IOException, and keep the queued messages for the next connection]
+        Transport eventTransport = event.getTransport();
+        onConnectionLost("Transport error on the AMQP connection", eventTransport == null ? null : eventTransport.getCondition());
+    }
+
+    /**
+     * Event handler for the connection remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionRemoteClose(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_011: [The event handler shall complete the futures of the unsettled messages exceptionally with an IOException, and keep the queued messages for the next connection]
+        onConnectionLost("AMQP connection was closed by the service", event.getConnection().getRemoteCondition());
+        closeEndpoints();
+    }
+
+    /**
+     * Event handler for the session remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onSessionRemoteClose(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_011: [The event handler shall complete the futures of the unsettled messages exceptionally with an IOException, and keep the queued messages for the next connection]
+        onConnectionLost("AMQP session was closed by the service", event.getSession().getRemoteCondition());
+        closeEndpoints();
+    }
+
+    /**
+     * Event handler for the link remote close event
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteClose(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_011: [The event handler shall complete the futures of the unsettled messages exceptionally with an IOException, and keep the queued messages for the next connection]
+        onConnectionLost("AMQP sender link was closed by the service", event.getLink().getRemoteCondition());
+        closeEndpoints();
+    }
+
+    /**
+     * Event handler for the link remote open event. The service accepted the connection, so the
+     * next reconnection starts over from the shortest delay.
+     * @param event The proton event object
+     */
+    @Override
+    public void onLinkRemoteOpen(Event event)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_023: [The event handler shall reset the number of reconnection attempts]
+        reconnectAttempts = 0;
+    }
+
+    /**
+     * Event handler for the connection unbound event. Schedules a reconnection unless the handler is closing,
+     * waiting twice as long as for the previous attempt, or gives up once the attempts run out.
+     * @param event The proton event object
+     */
+    @Override
+    public void onConnectionUnbound(Event event)
     {
         isConnected = false;
-        isConnectionError = true;
+        if (event.getConnection() == this.connection)
+        {
+            this.connection = null;
+            this.sender = null;
+        }
+        event.getConnection().free();
+
+        if (isCloseRequested || isStopped || connectionError != null || reconnectTask != null)
+        {
+            return;
+        }
+
+        if (reconnectAttempts >= MAX_RECONNECT_ATTEMPTS)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_024: [If the reconnection attempts have run out, the event handler shall fail all unsettled and queued messages with an IOException and stop reconnecting]
+            stopReconnecting(new IOException("AMQP connection could not be reestablished after " + reconnectAttempts + " attempts"));
+            return;
+        }
+
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_012: [If close has not been requested, the event handler shall schedule a reconnection on the reactor]
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_025: [The delay before each reconnection shall double after every failed attempt, up to a maximum]
+        int delay = (int) Math.min((long) RECONNECT_DELAY_MILLISECONDS << Math.min(reconnectAttempts, 30), MAX_RECONNECT_DELAY_MILLISECONDS);
+        reconnectAttempts++;
+        reconnectTask = event.getReactor().schedule(delay, this);
+    }
+
+    /**
+     * Event handler for the timer task event. Opens a new connection for the scheduled reconnection.
+     * @param event The proton event object
+     */
+    @Override
+    public void onTimerTask(Event event)
+    {
+        reconnectTask = null;
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_013: [The event handler shall open a new connection handled by this handler unless close has been requested]
+        if (!isCloseRequested && !isStopped && connectionError == null && this.connection == null)
+        {
+            event.getReactor().connection(this);
+        }
     }
 
     /**
@@ -283,38 +613,83 @@ public class AmqpSendHandler extends BaseHandler
     @Override
     public void onLinkFlow(Event event)
     {
-        if (!messagesToBeSent.isEmpty())
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall get the Sender (Proton) object from the link]
+        Sender snd = (Sender)event.getLink();
+        sendQueuedMessages(snd);
+    }
+
+    /**
+     * Send the queued messages or close the connection if close has been requested.
+     * Must only be called from the reactor thread.
+     */
+    public void processPendingRequests()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_026: [The function shall fail the queued and unsettled messages that are not settled within the message timeout with an IOException]
+        failExpiredMessages(System.currentTimeMillis());
+
+        if (isCloseRequested)
         {
-            org.apache.qpid.proton.message.Message protonMessage = messagesToBeSent.remove();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall get the Sender (Proton) object from the link]
-            Sender snd = (Sender)event.getLink();
-            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall encode the message and copy to the byte buffer]
-            if (snd.getCredit() > 0)
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_009: [If close has been requested, the function shall cancel any reconnection, close the Sender, Session and Connection and fail all queued messages]
+            if (reconnectTask != null)
             {
-                byte[] msgData = new byte[1024];
-                int length;
-                while (true)
-                {
-                    try
-                    {
-                        length = protonMessage.encode(msgData, 0, msgData.length);
-                        break;
-                    } catch (BufferOverflowException e)
-                    {
-                        msgData = new byte[msgData.length * 2];
-                    }
-                }
-                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall set the delivery tag on the Sender (Proton) object]
-                byte[] tag = String.valueOf(nextTag++).getBytes();
-                Delivery dlv = snd.delivery(tag);
-                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall send the encoded bytes]
-                snd.send(msgData, 0, length);
+                reconnectTask.cancel();
+                reconnectTask = null;
+            }
+            closeEndpoints();
+            failQueuedMessages(new IOException("AMQP sender is closed"));
+        }
+        else if (this.sender != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_010: [The function shall send the queued messages on the current Sender]
+            sendQueuedMessages(this.sender);
+        }
+    }
+
+    /**
+     * Send queued messages while the sender link has credit. Every delivery stays
+     * unsettled, and its future pending, until the service sends its disposition.
+     * @param snd The sender link
+     */
+    private void sendQueuedMessages(Sender snd)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_006: [The function shall send queued messages as long as the Sender has credit, without waiting for the earlier deliveries to be settled]
+        while (snd.getCredit() > 0 && snd.getLocalState() == EndpointState.ACTIVE)
+        {
+            OutgoingMessage outgoingMessage = messagesToBeSent.poll();
+            if (outgoingMessage == null)
+            {
+                break;
+            }
 
-                snd.advance();
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall encode the message and copy to the byte buffer]
+            byte[] msgData;
+            int length;
+            if (outgoingMessage.encodedMessage != null)
+            {
+                msgData = outgoingMessage.encodedMessage;
+                length = msgData.length;
             }
+            else
+            {
+                length = this.encodeBuffer.encode(outgoingMessage.protonMessage);
+                msgData = this.encodeBuffer.bytes;
+            }
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall set the delivery tag on the Sender (Proton) object]
+            byte[] tag = String.valueOf(nextTag++).getBytes();
+            Delivery dlv = snd.delivery(tag);
+            dlv.setContext(outgoingMessage.future);
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall send the encoded bytes]
+            snd.send(msgData, 0, length);
+
+            snd.advance();
+            unsettledDeliveries.put(dlv, outgoingMessage.deadline);
         }
     }
 
+    /**
+     * Event handler for the delivery event. Completes the future of the delivered message.
+     * @param event The proton event object
+     */
     @Override
     public void onDelivery(Event event)
     {
@@ -326,41 +701,223 @@ public class AmqpSendHandler extends BaseHandler
 
             //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_024: [ The event handler shall get the Delivery remote state from the delivery **]**
             DeliveryState remoteState = d.getRemoteState();
+            if (remoteState == null && !d.remotelySettled())
+            {
+                // No disposition from the service yet
+                return;
+            }
 
             //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [ The event handler shall verify the Amqp response and add the response to a queue. **]**
-            sendStatusQueue.add(new AmqpResponseVerification(remoteState));
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_007: [The event handler shall complete the future of the delivery, exceptionally if the service did not accept the message]
+            IotHubException exception = new AmqpResponseVerification(remoteState).getException();
+            Object context = d.getContext();
+            if (context instanceof CompletableFuture)
+            {
+                // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_019: [The futures of the messages shall be completed on the completion executor, if one is set]
+                completeFuture((CompletableFuture<?>) context, exception);
+            }
 
             //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_026: [ The event handler shall settle the delivery. **]**
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_008: [The event handler shall not close the Sender, Session or Connection]
             d.settle();
+            unsettledDeliveries.remove(d);
+        }
+    }
+
+    /**
+     * Request the connection to be closed. The connection is closed from the reactor
+     * thread on the next call to {@link #processPendingRequests()}.
+     */
+    public void close()
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_014: [The function shall mark the handler as closing so that no new messages are accepted and no reconnection is attempted]
+        isCloseRequested = true;
+    }
+
+    /**
+     * Mark the handler as stopped after the reactor has finished and fail all outstanding messages.
+     * @param cause The exception to complete the outstanding futures with
+     */
+    public void stop(IOException cause)
+    {
+        // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_015: [The function shall complete the futures of all unsettled and queued messages exceptionally with the given exception]
+        isStopped = true;
+        isConnected = false;
+        failUnsettledDeliveries(cause);
+        failQueuedMessages(cause);
+    }
+
+    /**
+     * Set the executor that completes the futures of the messages. The futures are
+     * completed by the reactor thread when no executor is set, so a stage that depends
+     * on a future and blocks would stall every other send.
+     * @param completionExecutor The executor to complete the futures on
+     */
+    public void setCompletionExecutor(Executor completionExecutor)
+    {
+        this.completionExecutor = completionExecutor;
+    }
 
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_027: [ The event handler shall get the Sender (Proton) object from the event **]**
-            Sender snd = event.getSender();
+    /**
+     * Get the number of messages waiting for link credit
+     * @return The number of queued messages
+     */
+    public int getQueuedMessageCount()
+    {
+        return messagesToBeSent.size();
+    }
 
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [ The event handler shall close the Sender, Session and Connection **]**
-            snd.close();
-            snd.getSession().close();
-            snd.getSession().getConnection().close();
-            isConnected = false;
+    /**
+     * Get the SAS token to authenticate a new connection with
+     * @return The SAS token
+     */
+    private String getSasToken()
+    {
+        if (this.iotHubConnectionString != null)
+        {
+            return IotHubServiceSasTokenCache.getToken(this.iotHubConnectionString);
+        }
+        return this.sasToken;
+    }
+
+    private void onConnectionLost(String reason, ErrorCondition condition)
+    {
+        isConnected = false;
+        if (isCloseRequested)
+        {
+            return;
+        }
+
+        if (condition != null && UNRECOVERABLE_ERRORS.contains(condition.getCondition()))
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_022: [If the service closed the connection with an error that reconnecting cannot fix, such as an authorization failure, the event handler shall fail all unsettled and queued messages with an IOException and stop reconnecting]
+            stopReconnecting(new IOException(reason + ": " + condition.getCondition() + " " + condition.getDescription()));
+            return;
+        }
+
+        // Only the deliveries in flight are lost with the connection. The messages that were never sent stay
+        // queued and are sent once the connection is reestablished.
+        failUnsettledDeliveries(new IOException(reason));
+    }
+
+    private void stopReconnecting(IOException cause)
+    {
+        this.connectionError = cause;
+        failUnsettledDeliveries(cause);
+        failQueuedMessages(cause);
+    }
+
+    private void failExpiredMessages(long now)
+    {
+        // Both the queue and the unsettled deliveries are in the order the messages were queued, so the
+        // deadlines only grow from the head and the scan stops at the first message still in time
+        OutgoingMessage outgoingMessage;
+        while ((outgoingMessage = messagesToBeSent.peek()) != null && outgoingMessage.deadline <= now)
+        {
+            if (messagesToBeSent.remove(outgoingMessage))
+            {
+                completeFuture(outgoingMessage.future, new IOException("Message was not sent within " + MESSAGE_TIMEOUT_MILLISECONDS + " milliseconds"));
+            }
+        }
+
+        Iterator<Map.Entry<Delivery, Long>> iterator = unsettledDeliveries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            Map.Entry<Delivery, Long> entry = iterator.next();
+            if (entry.getValue() > now)
+            {
+                break;
+            }
+
+            iterator.remove();
+            Object context = entry.getKey().getContext();
+            if (context instanceof CompletableFuture)
+            {
+                completeFuture((CompletableFuture<?>) context, new IOException("Message was not settled within " + MESSAGE_TIMEOUT_MILLISECONDS + " milliseconds"));
+            }
+        }
+    }
+
+    private void closeEndpoints()
+    {
+        if (this.sender != null && this.sender.getLocalState() != EndpointState.CLOSED)
+        {
+            this.sender.close();
+            this.sender.getSession().close();
+        }
+        if (this.connection != null && this.connection.getLocalState() != EndpointState.CLOSED)
+        {
+            this.connection.close();
+        }
+        isConnected = false;
+    }
+
+    private void failUnsettledDeliveries(IOException cause)
+    {
+        List<Delivery> deliveries = new ArrayList<>(unsettledDeliveries.keySet());
+        unsettledDeliveries.clear();
+        for (Delivery delivery : deliveries)
+        {
+            Object context = delivery.getContext();
+            if (context instanceof CompletableFuture)
+            {
+                completeFuture((CompletableFuture<?>) context, cause);
+            }
         }
+    }
 
+    private void failQueuedMessagesIfClosed()
+    {
+        IOException error = this.connectionError;
+        if (error != null)
+        {
+            // Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_021: [If the connection failed because the SSL context could not be built, the function shall complete the future exceptionally with that IOException]
+            failQueuedMessages(error);
+        }
+        else if (isStopped || isCloseRequested)
+        {
+            failQueuedMessages(new IOException("AMQP sender is closed"));
+        }
     }
 
-    public void sendComplete() throws IotHubException, IOException
+    private void failQueuedMessages(IOException cause)
     {
-        //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_029: [ The event handler shall check the status queue to get the response for the sent message]
-        if (isConnectionError)
+        OutgoingMessage outgoingMessage;
+        while ((outgoingMessage = messagesToBeSent.poll()) != null)
         {
-            throw new IOException("Connection failed to be established");
+            completeFuture(outgoingMessage.future, cause);
         }
-        if (!sendStatusQueue.isEmpty())
+    }
+
+    private void completeFuture(final CompletableFuture<?> future, final Throwable exception)
+    {
+        Runnable completion = () ->
         {
-            //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_030: [ The event handler shall remove the response from the queue]
-            AmqpResponseVerification verifier = sendStatusQueue.remove();
-            if (verifier.getException() != null)
+            if (exception == null)
+            {
+                future.complete(null);
+            }
+            else
             {
-                //Codes_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [ The event handler shall get the exception from the response and throw is it is not null]
-                throw verifier.getException();
+                future.completeExceptionally(exception);
             }
+        };
+
+        Executor executor = this.completionExecutor;
+        if (executor == null)
+        {
+            completion.run();
+            return;
+        }
+
+        try
+        {
+            executor.execute(completion);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The executor was shut down after the sender was closed
+            completion.run();
         }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service;
+
+import com.microsoft.azure.sdk.iot.service.SendBatchResult;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/** Unit tests for SendBatchResult */
+public class SendBatchResultTest
+{
+    // Tests_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_001: [The constructor shall throw IllegalArgumentException if the input map is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_checks_if_map_null()
+    {
+        // Act
+        new SendBatchResult(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_002: [The constructor shall count all messages and the messages that have an exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_003: [The function shall return the exceptions of the messages of the given device, or null if the batch had no messages for it]
+    @Test
+    public void counts_succeeded_and_failed_messages()
+    {
+        // Arrange
+        Exception notFound = new IotHubNotFoundException();
+        Exception connectionLost = new IOException();
+        Map<String, List<Exception>> exceptionsByDevice = new LinkedHashMap<>();
+        exceptionsByDevice.put("device1", Arrays.asList(null, notFound, null));
+        exceptionsByDevice.put("device2", Arrays.asList(connectionLost));
+
+        // Act
+        SendBatchResult sendBatchResult = new SendBatchResult(exceptionsByDevice);
+
+        // Assert
+        assertEquals(4, sendBatchResult.getMessageCount());
+        assertEquals(2, sendBatchResult.getSucceededCount());
+        assertEquals(2, sendBatchResult.getFailedCount());
+        assertFalse(sendBatchResult.isSuccessful());
+        assertEquals(Arrays.asList(null, notFound, null), sendBatchResult.getExceptions("device1"));
+        assertSame(connectionLost, sendBatchResult.getExceptions("device2").get(0));
+        assertNull(sendBatchResult.getExceptions("device3"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SENDBATCHRESULT_41_002: [The constructor shall count all messages and the messages that have an exception]
+    @Test
+    public void is_successful_if_no_message_failed()
+    {
+        // Arrange
+        Map<String, List<Exception>> exceptionsByDevice = new LinkedHashMap<>();
+        exceptionsByDevice.put("device1", Arrays.asList((Exception) null, null));
+
+        // Act
+        SendBatchResult sendBatchResult = new SendBatchResult(exceptionsByDevice);
+
+        // Assert
+        assertEquals(2, sendBatchResult.getMessageCount());
+        assertEquals(2, sendBatchResult.getSucceededCount());
+        assertTrue(sendBatchResult.isSuccessful());
+    }
+
+    @Test
+    public void is_not_changed_by_later_changes_of_the_input()
+    {
+        // Arrange
+        List<Exception> exceptions = new ArrayList<>();
+        exceptions.add(null);
+        Map<String, List<Exception>> exceptionsByDevice = new LinkedHashMap<>();
+        exceptionsByDevice.put("device1", exceptions);
+        SendBatchResult sendBatchResult = new SendBatchResult(exceptionsByDevice);
+
+        // Act
+        exceptions.add(new IOException());
+        exceptionsByDevice.put("device2", exceptions);
+
+        // Assert
+        assertEquals(1, sendBatchResult.getMessageCount());
+        assertEquals(1, sendBatchResult.getExceptionsByDevice().size());
+    }
+}
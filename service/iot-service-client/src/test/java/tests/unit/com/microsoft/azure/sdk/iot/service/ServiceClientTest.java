@@ -7,18 +7,30 @@ package tests.unit.com.microsoft.azure.sdk.iot.service;
 
 import com.microsoft.azure.sdk.iot.service.*;
 import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 import mockit.*;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class ServiceClientTest
 {
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+
     @Mocked
     AmqpSend amqpSend;
     @Mocked
@@ -107,7 +119,7 @@ public class ServiceClientTest
         {
             {
                 iotHubServiceSasToken = new IotHubServiceSasToken(withNotNull());
-                amqpSend = new AmqpSend(anyString, anyString, anyString, iotHubServiceClientProtocol);
+                amqpSend = new AmqpSend((IotHubConnectionString) any, iotHubServiceClientProtocol);
             }
         };
         // Act
@@ -367,6 +379,7 @@ public class ServiceClientTest
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call, handle the return value or delegate exception]
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_001: [The function shall return the future of the AMQP sender, completed when IotHub settles the message]
     @Test
     public void send_async_future_return_ok() throws Exception
     {
@@ -382,31 +395,40 @@ public class ServiceClientTest
         Message iotMessage = new Message(content);
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         ServiceClient serviceClient = ServiceClient.createFromConnectionString(connectionString, iotHubServiceClientProtocol);
+        final CompletableFuture<Void> senderFuture = new CompletableFuture<>();
+        senderFuture.complete(null);
         // Assert
         new Expectations()
         {
             {
-                amqpSend.send(deviceId, iotMessage);
-                serviceClient.send(deviceId, iotMessage);
+                amqpSend.sendAsync(deviceId, iotMessage);
+                result = senderFuture;
             }
         };
         // Act
         CompletableFuture<Void> completableFuture = serviceClient.sendAsync(deviceId, iotMessage);
         completableFuture.get();
+        new Verifications()
+        {
+            {
+                amqpSend.send(anyString, (Message) any);
+                times = 0;
+            }
+        };
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_016: [The function shall create an async wrapper around the send() function call, handle the return value or delegate exception]
     // Assert
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_002: [If the AMQP sender throws, the function shall return a future completed exceptionally with the exception]
     @Test (expected = Exception.class)
     public void send_async_future_throw() throws Exception
     {
         // Arrange
-        new MockUp<ServiceClient>()
+        new NonStrictExpectations()
         {
-            @Mock
-            public void send(String deviceId, String message) throws IOException
             {
-                throw new IOException();
+                amqpSend.sendAsync(anyString, (Message) any);
+                result = new IOException();
             }
         };
         String iotHubName = "IOTHUBNAME";
@@ -425,6 +447,82 @@ public class ServiceClientTest
         completableFuture.get();
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_003: [The function shall throw IllegalArgumentException if the map is null or empty, or if any device identifier is null or empty, or any list of messages or message is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void send_batch_async_checks_if_map_empty() throws Exception
+    {
+        // Arrange
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        // Act
+        serviceClient.sendBatchAsync(new HashMap<>());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_003: [The function shall throw IllegalArgumentException if the map is null or empty, or if any device identifier is null or empty, or any list of messages or message is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void send_batch_async_checks_if_message_null() throws Exception
+    {
+        // Arrange
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        Map<String, List<Message>> messagesByDevice = new HashMap<>();
+        messagesByDevice.put("XXX", Arrays.asList(new Message("HELLO"), null));
+        // Act
+        serviceClient.sendBatchAsync(messagesByDevice);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_004: [The function shall return a future completed exceptionally with an IOException if the member AMQP sender object has not been initialized]
+    @Test (expected = ExecutionException.class)
+    public void send_batch_async_sender_null() throws Exception
+    {
+        // Arrange
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        Deencapsulation.setField(serviceClient, "amqpMessageSender", null);
+        Map<String, List<Message>> messagesByDevice = new HashMap<>();
+        messagesByDevice.put("XXX", Arrays.asList(new Message("HELLO")));
+        // Act
+        serviceClient.sendBatchAsync(messagesByDevice).get();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_005: [The function shall call sendBatchAsync() on the member AMQP sender object with the given messages]
+    // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_41_006: [The function shall return a future completed with the outcome of every message once all of them are complete]
+    @Test
+    public void send_batch_async_aggregates_outcome_of_every_message() throws Exception
+    {
+        // Arrange
+        ServiceClient serviceClient = ServiceClient.createFromConnectionString(CONNECTION_STRING, IotHubServiceClientProtocol.AMQPS);
+        final Map<String, List<Message>> messagesByDevice = new LinkedHashMap<>();
+        messagesByDevice.put("device1", Arrays.asList(new Message("HELLO"), new Message("WORLD")));
+        messagesByDevice.put("device2", Arrays.asList(new Message("HELLO")));
+        final CompletableFuture<Void> accepted = new CompletableFuture<>();
+        final CompletableFuture<Void> rejected = new CompletableFuture<>();
+        final CompletableFuture<Void> pending = new CompletableFuture<>();
+        final IotHubNotFoundException notFound = new IotHubNotFoundException();
+        final Map<String, List<CompletableFuture<Void>>> futuresByDevice = new LinkedHashMap<>();
+        futuresByDevice.put("device1", Arrays.asList(accepted, rejected));
+        futuresByDevice.put("device2", Arrays.asList(pending));
+        new NonStrictExpectations()
+        {
+            {
+                amqpSend.sendBatchAsync(messagesByDevice);
+                result = futuresByDevice;
+            }
+        };
+
+        // Act
+        CompletableFuture<SendBatchResult> completableFuture = serviceClient.sendBatchAsync(messagesByDevice);
+        accepted.complete(null);
+        rejected.completeExceptionally(notFound);
+        assertFalse(completableFuture.isDone());
+        pending.complete(null);
+
+        // Assert
+        SendBatchResult sendBatchResult = completableFuture.get();
+        assertEquals(3, sendBatchResult.getMessageCount());
+        assertEquals(1, sendBatchResult.getFailedCount());
+        assertNull(sendBatchResult.getExceptions("device1").get(0));
+        assertSame(notFound, sendBatchResult.getExceptions("device1").get(1));
+        assertNull(sendBatchResult.getExceptions("device2").get(0));
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_SERVICECLIENT_12_017: [The function shall create a FeedbackReceiver object and returns with it]
     @Test
     public void getFeedbackReceiver_good_case() throws Exception
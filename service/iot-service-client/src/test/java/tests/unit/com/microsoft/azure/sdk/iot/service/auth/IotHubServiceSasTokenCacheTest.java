@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) Microsoft. All rights reserved.
+ * Licensed under the MIT license. See LICENSE file in the project root for full license information.
+ */
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.auth;
+
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Unit tests for IotHubServiceSasTokenCache
+ */
+public class IotHubServiceSasTokenCacheTest
+{
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+    private static final String OTHER_KEY_CONNECTION_STRING = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=zyxwvtsrqponmlkjihgfedcba0987654321=";
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_001: [The function shall throw IllegalArgumentException if the input object is null.]
+    @Test (expected = IllegalArgumentException.class)
+    public void getToken_input_null()
+    {
+        // Act
+        IotHubServiceSasTokenCache.getToken(null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_002: [The function shall return the cached token for the host name, key name and key if less than half of its validity has passed.]
+    @Test
+    public void getToken_returns_cached_token_for_same_connection_string() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        String firstToken = IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
+
+        // Act
+        String secondToken = IotHubServiceSasTokenCache.getToken(IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING));
+
+        // Assert
+        assertEquals(firstToken, secondToken);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_003: [Otherwise, the function shall create a new IotHubServiceSasToken, cache it and return it.]
+    @Test
+    public void getToken_creates_token_per_key() throws Exception
+    {
+        // Act
+        String token = IotHubServiceSasTokenCache.getToken(IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING));
+        String otherKeyToken = IotHubServiceSasTokenCache.getToken(IotHubConnectionStringBuilder.createConnectionString(OTHER_KEY_CONNECTION_STRING));
+
+        // Assert
+        assertNotEquals(token, otherKeyToken);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKENCACHE_41_003: [Otherwise, the function shall create a new IotHubServiceSasToken, cache it and return it.]
+    @Test
+    public void getToken_renews_token_about_to_expire() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
+        Map<String, IotHubServiceSasToken> tokens = Deencapsulation.getField(IotHubServiceSasTokenCache.class, "tokens");
+        String key = "HOSTNAME.b.c.d/ACCESSKEYNAME/1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubServiceSasToken cachedToken = tokens.get(key);
+        Deencapsulation.setField(cachedToken, "expiryTime", System.currentTimeMillis() / 1000 + 60);
+
+        // Act
+        IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
+
+        // Assert
+        assertNotSame(cachedToken, tokens.get(key));
+    }
+}
@@ -127,4 +127,20 @@ public class IotHubServiceSasTokenTest
         Deencapsulation.setField(iotHubConnectionString, "hostName", null);
         IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
     }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_IOTHUBSERVICESASTOKEN_41_001: [The function shall return the expiry time of the token in seconds since the epoch.]
+    @Test
+    public void getExpiryTime_returns_se_of_the_token()
+    {
+        // Arrange
+        String connectionString = "HostName=HOSTNAME.b.c.d;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(connectionString);
+        IotHubServiceSasToken iotHubServiceSasToken = new IotHubServiceSasToken(iotHubConnectionString);
+
+        // Act
+        long expiryTime = iotHubServiceSasToken.getExpiryTime();
+
+        // Assert
+        assertEquals(true, iotHubServiceSasToken.toString().contains("&se=" + expiryTime + "&"));
+    }
 }
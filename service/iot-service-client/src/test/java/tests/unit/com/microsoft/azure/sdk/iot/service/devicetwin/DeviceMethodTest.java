@@ -12,6 +12,7 @@ import com.microsoft.azure.sdk.iot.service.devicetwin.DeviceOperations;
 import com.microsoft.azure.sdk.iot.service.devicetwin.Job;
 import com.microsoft.azure.sdk.iot.service.devicetwin.MethodResult;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import mockit.*;
@@ -19,15 +20,28 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for Device Method
@@ -583,4 +597,308 @@ public class DeviceMethodTest
         testMethod.scheduleDeviceMethod(queryCondition, STANDARD_METHODNAME, STANDARD_TIMEOUT_SECONDS, STANDARD_TIMEOUT_SECONDS, STANDARD_PAYLOAD_MAP, now, maxExecutionTimeInSeconds);
     }
 
+    /* Tests_SRS_DEVICEMETHOD_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentInvocations is less than 1.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowOnZeroMaxConcurrentInvocations() throws Exception
+    {
+        //act
+        DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING, 0);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_002: [The constructor shall create a new DeviceMethod instance from the connection string and save maxConcurrentInvocations.] */
+    @Test
+    public void constructorSavesMaxConcurrentInvocations() throws Exception
+    {
+        //act
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING, 4);
+
+        //assert
+        AsyncOperationExecutor asyncOperationExecutor = Deencapsulation.getField(testMethod, "asyncOperationExecutor");
+        assertEquals(4, asyncOperationExecutor.getMaxConcurrentOperations());
+        assertNotNull(Deencapsulation.getField(testMethod, "iotHubConnectionString"));
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_003: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId or methodName is null or empty.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsyncThrowOnNullDeviceId() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(null, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_003: [The invokeAsync shall throw IllegalArgumentException if the provided deviceId or methodName is null or empty.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeAsyncThrowOnEmptyMethodName() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeAsync(STANDARD_DEVICEID, "", null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_004: [The invokeAsync shall run invoke on the executor of this instance, creating it with maxConcurrentInvocations threads if it does not exist.] */
+    @Test
+    public void invokeAsyncSucceed(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                mockedIotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                methodParser.getPayload();
+                result = STANDARD_PAYLOAD_STR;
+                methodParser.getStatus();
+                result = 123;
+            }
+        };
+
+        //act
+        MethodResult result = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP).get(10, TimeUnit.SECONDS);
+
+        //assert
+        assertThat(result.getStatus(), is(123));
+        assertThat(result.getPayload().toString(), is(STANDARD_PAYLOAD_STR));
+        testMethod.close();
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_005: [If invoke throws, the invokeAsync shall complete the future exceptionally with the thrown exception.] */
+    @Test
+    public void invokeAsyncCompletesExceptionallyOnRequestFailed(
+            @Mocked final MethodParser methodParser,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                mockedIotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+            }
+        };
+        new MockUp<DeviceOperations>()
+        {
+            @Mock HttpResponse request(
+                    IotHubConnectionString mockedIotHubConnectionString,
+                    URL url,
+                    HttpMethod method,
+                    byte[] payload,
+                    String requestId,
+                    long timeoutInMs)
+                    throws IOException, IotHubException, IllegalArgumentException
+            {
+                throw new IotHubException();
+            }
+        };
+
+        //act
+        CompletableFuture<MethodResult> future = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            assertTrue("Expected the invocation to fail", false);
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IotHubException);
+        }
+        testMethod.close();
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_004: [The invokeAsync shall run invoke on the executor of this instance, creating it with maxConcurrentInvocations threads if it does not exist.] */
+    @Test
+    public void invokeAsyncRunsInvocationsConcurrently(
+            @Mocked final MethodParser methodParser,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        final CountDownLatch bothInFlight = new CountDownLatch(2);
+        final AtomicInteger completedRequests = new AtomicInteger(0);
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING, 2);
+        new NonStrictExpectations()
+        {
+            {
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                mockedIotHubConnectionString.getUrlMethod(anyString);
+                result = STANDARD_URL;
+            }
+        };
+        new MockUp<DeviceOperations>()
+        {
+            @Mock HttpResponse request(
+                    IotHubConnectionString mockedIotHubConnectionString,
+                    URL url,
+                    HttpMethod method,
+                    byte[] payload,
+                    String requestId,
+                    long timeoutInMs)
+                    throws IOException, IotHubException, IllegalArgumentException
+            {
+                // Only returns once both requests are in flight, which a serialized invoke would never allow
+                bothInFlight.countDown();
+                try
+                {
+                    if (!bothInFlight.await(10, TimeUnit.SECONDS))
+                    {
+                        throw new IOException("requests did not run concurrently");
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+                completedRequests.incrementAndGet();
+                return new HttpResponse(200, new byte[0], new HashMap<String, List<String>>(), new byte[0]);
+            }
+        };
+
+        //act
+        CompletableFuture<MethodResult> first = testMethod.invokeAsync("device1", STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+        CompletableFuture<MethodResult> second = testMethod.invokeAsync("device2", STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        assertNotNull(first.get(20, TimeUnit.SECONDS));
+        assertNotNull(second.get(20, TimeUnit.SECONDS));
+        assertEquals(2, completedRequests.get());
+        testMethod.close();
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_006: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null or empty, or contains a null or empty deviceId.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnEmptyDeviceIds() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(Collections.<String>emptyList(), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_006: [The invokeOnDevicesAsync shall throw IllegalArgumentException if the provided deviceIds is null or empty, or contains a null or empty deviceId.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void invokeOnDevicesAsyncThrowOnNullDeviceIdInList() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+
+        //act
+        testMethod.invokeOnDevicesAsync(Arrays.asList(STANDARD_DEVICEID, null), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_007: [The invokeOnDevicesAsync shall call invokeAsync once for every distinct deviceId and return the futures by deviceId in the order of the list.] */
+    @Test
+    public void invokeOnDevicesAsyncInvokesEveryDistinctDeviceOnce(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                mockedIotHubConnectionString.getUrlMethod(anyString);
+                result = STANDARD_URL;
+                methodParser.toJson();
+                result = STANDARD_JSON;
+                methodParser.getStatus();
+                result = 200;
+            }
+        };
+
+        //act
+        Map<String, CompletableFuture<MethodResult>> futures = testMethod.invokeOnDevicesAsync(Arrays.asList("device1", "device2", "device1"), STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        assertEquals(Arrays.asList("device1", "device2"), new ArrayList<>(futures.keySet()));
+        for (CompletableFuture<MethodResult> future : futures.values())
+        {
+            assertThat(future.get(10, TimeUnit.SECONDS).getStatus(), is(200));
+        }
+        testMethod.close();
+        new Verifications()
+        {
+            {
+                DeviceOperations.request((IotHubConnectionString)any, (URL)any, HttpMethod.POST, (byte[])any, anyString, anyLong);
+                times = 2;
+            }
+        };
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_008: [The close shall shut down the executor of this instance, if any, and forget it.] */
+    @Test
+    public void closeShutsDownExecutor(
+            @Mocked final MethodParser methodParser,
+            @Mocked final DeviceOperations request,
+            @Mocked final IotHubServiceSasToken iotHubServiceSasToken)
+            throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        new NonStrictExpectations()
+        {
+            {
+                mockedIotHubConnectionString.getUrlMethod(STANDARD_DEVICEID);
+                result = STANDARD_URL;
+                methodParser.toJson();
+                result = STANDARD_JSON;
+            }
+        };
+        testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP).get(10, TimeUnit.SECONDS);
+        AsyncOperationExecutor asyncOperationExecutor = Deencapsulation.getField(testMethod, "asyncOperationExecutor");
+        ExecutorService executor = Deencapsulation.getField(asyncOperationExecutor, "executor");
+
+        //act
+        testMethod.close();
+
+        //assert
+        assertTrue(executor.isShutdown());
+        assertNull(Deencapsulation.getField(asyncOperationExecutor, "executor"));
+    }
+
+    /* Tests_SRS_DEVICEMETHOD_41_009: [If close is called while the invocation is being submitted, the invokeAsync shall complete the future exceptionally with an IllegalStateException instead of throwing.] */
+    @Test
+    public void invokeAsyncRacingCloseCompletesExceptionally() throws Exception
+    {
+        //arrange
+        DeviceMethod testMethod = DeviceMethod.createFromConnectionString(STANDARD_CONNECTIONSTRING);
+        AsyncOperationExecutor asyncOperationExecutor = Deencapsulation.getField(testMethod, "asyncOperationExecutor");
+        ExecutorService closedExecutor = Executors.newSingleThreadExecutor();
+        closedExecutor.shutdown();
+        Deencapsulation.setField(asyncOperationExecutor, "executor", closedExecutor);
+
+        //act
+        CompletableFuture<MethodResult> future = testMethod.invokeAsync(STANDARD_DEVICEID, STANDARD_METHODNAME, null, null, STANDARD_PAYLOAD_MAP);
+
+        //assert
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the invocation to fail");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
 }
@@ -14,6 +14,7 @@ import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasToken;
 import com.microsoft.azure.sdk.iot.service.devicetwin.*;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubExceptionManager;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpRequest;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
@@ -24,6 +25,9 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -1585,4 +1589,143 @@ public class DeviceTwinTest
         //act
         deviceTwin.hasNext(null);
     }
+
+    //Tests_SRS_DEVICETWIN_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroMaxConcurrentOperations() throws Exception
+    {
+        //act
+        DeviceTwin.createFromConnectionString("testString", 0);
+    }
+
+    //Tests_SRS_DEVICETWIN_41_002: [The constructor shall create a new DeviceTwin instance from the connection string that runs at most maxConcurrentOperations asynchronous operations at the same time.]
+    @Test
+    public void constructorSavesMaxConcurrentOperations() throws Exception
+    {
+        //act
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString("testString", 4);
+
+        //assert
+        AsyncOperationExecutor asyncOperationExecutor = Deencapsulation.getField(testTwin, "asyncOperationExecutor");
+        assertEquals(4, asyncOperationExecutor.getMaxConcurrentOperations());
+    }
+
+    //Tests_SRS_DEVICETWIN_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.]
+    @Test
+    public void hasNextDeviceTwinDoesNotWaitForOtherThreadsUsingTheClient() throws Exception
+    {
+        //arrange
+        final DeviceTwin testTwin = DeviceTwin.createFromConnectionString("testString");
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.newInstance(Query.class, new Class[] {String.class, Integer.class, QueryType.class}, anyString, anyInt, QueryType.TWIN);
+                result = mockedQuery;
+                Deencapsulation.invoke(mockedQuery, "hasNext");
+                result = true;
+            }
+        };
+        Query testQuery = testTwin.queryTwin(VALID_SQL_QUERY);
+        final CountDownLatch monitorHeld = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread otherThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (testTwin)
+                {
+                    monitorHeld.countDown();
+                    try
+                    {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        otherThread.start();
+        assertTrue(monitorHeld.await(10, TimeUnit.SECONDS));
+
+        //act
+        boolean result = testTwin.hasNextDeviceTwin(testQuery);
+
+        //assert
+        assertTrue(result);
+        release.countDown();
+        otherThread.join();
+    }
+
+    //Tests_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+    @Test
+    public void getTwinAsyncCompletesExceptionallyOnNullDevice() throws Exception
+    {
+        //arrange
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString("testString");
+
+        //act
+        try
+        {
+            testTwin.getTwinAsync(null).get(10, TimeUnit.SECONDS);
+            fail("Expected getTwinAsync to fail");
+        }
+        catch (ExecutionException e)
+        {
+            //assert
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        testTwin.close();
+    }
+
+    //Tests_SRS_DEVICETWIN_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.]
+    @Test
+    public void getNextDeviceTwinAsyncReturnsNextTwin(@Mocked DeviceTwinDevice mockedDevice) throws Exception
+    {
+        //arrange
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString("testString");
+        new NonStrictExpectations()
+        {
+            {
+                Deencapsulation.newInstance(Query.class, new Class[] {String.class, Integer.class, QueryType.class}, anyString, anyInt, QueryType.TWIN);
+                result = mockedQuery;
+                Deencapsulation.invoke(mockedQuery, "next");
+                result = "{}";
+                TwinState.createFromTwinJson((String)any);
+                result = mockedTwinState;
+                mockedTwinState.getDeviceId();
+                result = "testDeviceID";
+            }
+        };
+        Query testQuery = testTwin.queryTwin(VALID_SQL_QUERY);
+
+        //act
+        DeviceTwinDevice result = testTwin.getNextDeviceTwinAsync(testQuery).get(10, TimeUnit.SECONDS);
+
+        //assert
+        assertNotNull(result);
+        testTwin.close();
+    }
+
+    //Tests_SRS_DEVICETWIN_41_005: [The close shall shut down the executor of this instance.]
+    @Test
+    public void closeClosesExecutor(@Mocked final AsyncOperationExecutor mockedAsyncOperationExecutor) throws Exception
+    {
+        //arrange
+        DeviceTwin testTwin = DeviceTwin.createFromConnectionString("testString");
+
+        //act
+        testTwin.close();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedAsyncOperationExecutor.close();
+                times = 1;
+            }
+        };
+    }
 }
@@ -17,6 +17,7 @@ import com.microsoft.azure.sdk.iot.service.jobs.JobClient;
 import com.microsoft.azure.sdk.iot.service.jobs.JobResult;
 import com.microsoft.azure.sdk.iot.service.jobs.JobStatus;
 import com.microsoft.azure.sdk.iot.service.jobs.JobType;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpResponse;
 import mockit.Deencapsulation;
@@ -33,10 +34,14 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test for job client
@@ -2269,4 +2274,155 @@ public class JobClientTest
         //act
         testJobClient.getNextJob(testQuery);
     }
+
+    /* Tests_SRS_JOBCLIENT_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.] */
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsOnZeroMaxConcurrentOperations() throws IOException
+    {
+        //act
+        JobClient.createFromConnectionString("testString", 0);
+    }
+
+    /* Tests_SRS_JOBCLIENT_41_002: [The constructor shall create a new JobClient instance from the connection string that runs at most maxConcurrentOperations asynchronous operations at the same time.] */
+    @Test
+    public void constructorSavesMaxConcurrentOperations() throws IOException
+    {
+        //act
+        JobClient testJobClient = JobClient.createFromConnectionString("testString", 4);
+
+        //assert
+        AsyncOperationExecutor asyncOperationExecutor = Deencapsulation.getField(testJobClient, "asyncOperationExecutor");
+        assertEquals(4, asyncOperationExecutor.getMaxConcurrentOperations());
+    }
+
+    /* Tests_SRS_JOBCLIENT_41_003: [The method shall hold the lock of the query, and no lock on this instance, while it iterates the query.] */
+    @Test
+    public void getJobDoesNotWaitForOtherThreadsUsingTheClient() throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        final String jobId = "validJobId";
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = mockedIotHubConnectionString;
+
+                mockedIotHubConnectionString.getUrlJobs(jobId);
+                result = mockedURL;
+
+                DeviceOperations.request(mockedIotHubConnectionString, mockedURL, HttpMethod.GET, new byte[]{}, (String)any, 0);
+                result = mockedHttpResponse;
+
+                Deencapsulation.newInstance(JobResult.class, new Class[] {byte[].class}, (byte[])any);
+                result = mockedJobResult;
+            }
+        };
+        final JobClient testJobClient = JobClient.createFromConnectionString(connectionString);
+        final CountDownLatch monitorHeld = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread otherThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                synchronized (testJobClient)
+                {
+                    monitorHeld.countDown();
+                    try
+                    {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        otherThread.start();
+        assertTrue(monitorHeld.await(10, TimeUnit.SECONDS));
+
+        //act
+        JobResult jobResult = testJobClient.getJob(jobId);
+
+        //assert
+        assertNotNull(jobResult);
+        release.countDown();
+        otherThread.join();
+    }
+
+    /* Tests_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+    @Test
+    public void getJobAsyncParseResponse() throws Exception
+    {
+        //arrange
+        final String connectionString = "testString";
+        final String jobId = "validJobId";
+        new NonStrictExpectations()
+        {
+            {
+                IotHubConnectionStringBuilder.createConnectionString(connectionString);
+                result = mockedIotHubConnectionString;
+
+                mockedIotHubConnectionString.getUrlJobs(jobId);
+                result = mockedURL;
+
+                DeviceOperations.request(mockedIotHubConnectionString, mockedURL, HttpMethod.GET, new byte[]{}, (String)any, 0);
+                result = mockedHttpResponse;
+
+                Deencapsulation.newInstance(JobResult.class, new Class[] {byte[].class}, (byte[])any);
+                result = mockedJobResult;
+            }
+        };
+        JobClient testJobClient = JobClient.createFromConnectionString(connectionString);
+
+        //act
+        JobResult jobResult = testJobClient.getJobAsync(jobId).get(10, TimeUnit.SECONDS);
+
+        //assert
+        assertNotNull(jobResult);
+        testJobClient.close();
+    }
+
+    /* Tests_SRS_JOBCLIENT_41_004: [The asynchronous operations shall run the corresponding synchronous operation on the executor of this instance and complete the future with its result or exception.] */
+    @Test
+    public void cancelJobAsyncCompletesExceptionallyOnNullJobId() throws Exception
+    {
+        //arrange
+        JobClient testJobClient = JobClient.createFromConnectionString("testString");
+
+        //act
+        try
+        {
+            testJobClient.cancelJobAsync(null).get(10, TimeUnit.SECONDS);
+            fail("Expected cancelJobAsync to fail");
+        }
+        catch (ExecutionException e)
+        {
+            //assert
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        testJobClient.close();
+    }
+
+    /* Tests_SRS_JOBCLIENT_41_005: [The close shall shut down the executor of this instance.] */
+    @Test
+    public void closeClosesExecutor(@Mocked final AsyncOperationExecutor mockedAsyncOperationExecutor) throws IOException
+    {
+        //arrange
+        JobClient testJobClient = JobClient.createFromConnectionString("testString");
+
+        //act
+        testJobClient.close();
+
+        //assert
+        new Verifications()
+        {
+            {
+                mockedAsyncOperationExecutor.close();
+                times = 1;
+            }
+        };
+    }
 }
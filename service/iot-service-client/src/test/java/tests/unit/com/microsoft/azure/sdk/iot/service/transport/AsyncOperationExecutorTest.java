@@ -0,0 +1,202 @@
+// Copyright (c) Microsoft. All rights reserved.
+// Licensed under the MIT license. See LICENSE file in the project root for full license information.
+
+package tests.unit.com.microsoft.azure.sdk.iot.service.transport;
+
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
+import com.microsoft.azure.sdk.iot.service.transport.AsyncOperationExecutor;
+import mockit.Deencapsulation;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for AsyncOperationExecutor.
+ */
+public class AsyncOperationExecutorTest
+{
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_001: [The constructor shall throw IllegalArgumentException if maxConcurrentOperations is less than 1.]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructorThrowsForZeroMaxConcurrentOperations()
+    {
+        new AsyncOperationExecutor("test", 0);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_002: [The constructor shall save the thread name prefix and maxConcurrentOperations without starting any thread.]
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_005: [The function shall return maxConcurrentOperations.]
+    @Test
+    public void constructorDoesNotStartThreads()
+    {
+        //act
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", 3);
+
+        //assert
+        assertEquals(3, asyncOperationExecutor.getMaxConcurrentOperations());
+        assertNull(Deencapsulation.getField(asyncOperationExecutor, "executor"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_003: [The function shall run the operation on the pool, creating the pool with maxConcurrentOperations threads if it does not exist.]
+    @Test
+    public void submitCompletesWithResultOfOperation() throws Exception
+    {
+        //arrange
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", 1);
+
+        //act
+        CompletableFuture<String> future = asyncOperationExecutor.submit(new AsyncOperationExecutor.Operation<String>()
+        {
+            @Override
+            public String run()
+            {
+                return Thread.currentThread().getName();
+            }
+        });
+
+        //assert
+        assertEquals("test-1", future.get(10, TimeUnit.SECONDS));
+        asyncOperationExecutor.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_003: [The function shall run the operation on the pool, creating the pool with maxConcurrentOperations threads if it does not exist.]
+    @Test
+    public void submitRunsUpToMaxConcurrentOperationsAtTheSameTime() throws Exception
+    {
+        //arrange
+        final int maxConcurrentOperations = 3;
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger maxRunning = new AtomicInteger(0);
+        final CountDownLatch allStarted = new CountDownLatch(maxConcurrentOperations);
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", maxConcurrentOperations);
+        AsyncOperationExecutor.Operation<Void> operation = new AsyncOperationExecutor.Operation<Void>()
+        {
+            @Override
+            public Void run() throws IOException
+            {
+                int nowRunning = running.incrementAndGet();
+                maxRunning.accumulateAndGet(nowRunning, Math::max);
+                allStarted.countDown();
+                try
+                {
+                    allStarted.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new IOException(e);
+                }
+                running.decrementAndGet();
+                return null;
+            }
+        };
+
+        //act
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[maxConcurrentOperations * 2];
+        for (int i = 0; i < futures.length; i++)
+        {
+            futures[i] = asyncOperationExecutor.submit(operation);
+        }
+        CompletableFuture.allOf(futures).get(20, TimeUnit.SECONDS);
+
+        //assert
+        assertEquals(maxConcurrentOperations, maxRunning.get());
+        asyncOperationExecutor.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_004: [If the operation throws, the function shall complete the future exceptionally with the thrown exception.]
+    @Test
+    public void submitCompletesExceptionallyIfOperationThrows() throws Exception
+    {
+        //arrange
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", 1);
+        final IotHubException expected = new IotHubException("test");
+
+        //act
+        CompletableFuture<Void> future = asyncOperationExecutor.submit(new AsyncOperationExecutor.Operation<Void>()
+        {
+            @Override
+            public Void run() throws IotHubException
+            {
+                throw expected;
+            }
+        });
+
+        //assert
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the operation to fail");
+        }
+        catch (ExecutionException e)
+        {
+            assertSame(expected, e.getCause());
+        }
+        asyncOperationExecutor.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_006: [The function shall shut down the pool, if any, and forget it.]
+    @Test
+    public void closeShutsDownPoolAndLaterSubmitStartsANewOne() throws Exception
+    {
+        //arrange
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", 1);
+        AsyncOperationExecutor.Operation<Integer> operation = new AsyncOperationExecutor.Operation<Integer>()
+        {
+            @Override
+            public Integer run()
+            {
+                return 1;
+            }
+        };
+        asyncOperationExecutor.submit(operation).get(10, TimeUnit.SECONDS);
+        ExecutorService firstPool = Deencapsulation.getField(asyncOperationExecutor, "executor");
+
+        //act
+        asyncOperationExecutor.close();
+
+        //assert
+        assertTrue(firstPool.isShutdown());
+        assertNull(Deencapsulation.getField(asyncOperationExecutor, "executor"));
+        assertEquals(1, (int) asyncOperationExecutor.submit(operation).get(10, TimeUnit.SECONDS));
+        asyncOperationExecutor.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_ASYNCOPERATIONEXECUTOR_41_007: [If the pool is closed while the operation is being submitted, the function shall complete the future exceptionally with an IllegalStateException.]
+    @Test
+    public void submitCompletesExceptionallyIfPoolIsClosedWhileSubmitting() throws Exception
+    {
+        //arrange
+        AsyncOperationExecutor asyncOperationExecutor = new AsyncOperationExecutor("test", 1);
+        ExecutorService closedPool = Executors.newSingleThreadExecutor();
+        closedPool.shutdown();
+        Deencapsulation.setField(asyncOperationExecutor, "executor", closedPool);
+
+        //act
+        CompletableFuture<Integer> future = asyncOperationExecutor.submit(new AsyncOperationExecutor.Operation<Integer>()
+        {
+            @Override
+            public Integer run()
+            {
+                return 1;
+            }
+        });
+
+        //assert
+        try
+        {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected the operation to fail");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
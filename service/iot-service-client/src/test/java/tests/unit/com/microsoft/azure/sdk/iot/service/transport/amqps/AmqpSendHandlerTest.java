@@ -7,13 +7,17 @@ package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
 
 import com.microsoft.azure.sdk.iot.deps.auth.IotHubSSLContext;
 import com.microsoft.azure.sdk.iot.deps.ws.impl.WebSocketImpl;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
+import com.microsoft.azure.sdk.iot.service.auth.IotHubServiceSasTokenCache;
 import com.microsoft.azure.sdk.iot.service.exceptions.IotHubException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpResponseVerification;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSendHandler;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
@@ -45,14 +49,20 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /** Unit tests for AmqpSendHandler */
 @RunWith(JMockit.class)
 public class AmqpSendHandlerTest
 {
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+
     private Integer exceptionCount = 0;
 
     @Mocked Handshaker handshaker;
@@ -262,6 +272,131 @@ public class AmqpSendHandlerTest
         };
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_002: [The constructor shall take the host name and user name from the connection string and concatenate the host name with the port]
+    @Test
+    public void constructor_from_connection_string_copies_params_to_members() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS_WS;
+
+        // Act
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(iotHubConnectionString, iotHubServiceClientProtocol);
+
+        // Assert
+        assertEquals(iotHubConnectionString.getHostName() + ":443", Deencapsulation.getField(amqpSendHandler, "hostName"));
+        assertEquals(iotHubConnectionString.getHostName(), Deencapsulation.getField(amqpSendHandler, "webSocketHostName"));
+        assertEquals(iotHubConnectionString.getUserString(), Deencapsulation.getField(amqpSendHandler, "userName"));
+        assertEquals(iotHubConnectionString, Deencapsulation.getField(amqpSendHandler, "iotHubConnectionString"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_from_connection_string_checks_if_connection_string_null()
+    {
+        // Act
+        new AmqpSendHandler((IotHubConnectionString) null, IotHubServiceClientProtocol.AMQPS);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_from_connection_string_checks_if_protocol_null() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+
+        // Act
+        new AmqpSendHandler(iotHubConnectionString, null);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_005: [If the handler was created from a connection string, the event handler shall get a valid SAS token from IotHubServiceSasTokenCache for every connection]
+    @Test
+    public void onConnectionBound_gets_sas_token_from_cache_for_every_connection(final @Mocked IotHubServiceSasTokenCache mockedSasTokenCache) throws Exception
+    {
+        // Arrange
+        final IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(iotHubConnectionString, IotHubServiceClientProtocol.AMQPS);
+        new NonStrictExpectations()
+        {
+            {
+                IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
+                result = "token";
+            }
+        };
+
+        // Act
+        amqpSendHandler.onConnectionBound(event);
+        amqpSendHandler.onConnectionBound(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                IotHubServiceSasTokenCache.getToken(iotHubConnectionString);
+                times = 2;
+                sasl.plain(iotHubConnectionString.getUserString(), "token");
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_020: [If the SSL context cannot be built, the event handler shall fail all unsettled and queued messages with an IOException, close the connection and stop reconnecting]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_021: [If the connection failed because the SSL context could not be built, the function shall complete the future exceptionally with that IOException]
+    @Test
+    public void onConnectionBound_fails_messages_if_ssl_context_cannot_be_built(final @Mocked Reactor mockedReactor) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getConnection();
+                result = connection;
+                connection.getTransport();
+                result = transport;
+                event.getReactor();
+                result = mockedReactor;
+                new IotHubSSLContext();
+                result = new KeyManagementException();
+            }
+        };
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Act
+        amqpSendHandler.onConnectionBound(event);
+        amqpSendHandler.onConnectionUnbound(event);
+        CompletableFuture<Void> lateFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Assert
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertTrue(lateFuture.isCompletedExceptionally());
+        try
+        {
+            lateFuture.get();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        new Verifications()
+        {
+            {
+                connection.close();
+                times = 1;
+                transport.ssl((SslDomain) any);
+                times = 0;
+                mockedReactor.schedule(anyInt, (Handler) any);
+                times = 0;
+            }
+        };
+    }
+
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_009: [The event handler shall set the SASL PLAIN authentication on the Transport using the given user name and sas token]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_010: [The event handler shall set VERIFY_PEER authentication mode on the domain of the Transport]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_023: [The event handler shall not initialize WebSocket if the protocol is AMQP]
@@ -394,42 +529,162 @@ public class AmqpSendHandlerTest
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall encode the message and copy to the byte buffer]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall set the delivery tag on the Sender (Proton) object]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall send the encoded bytes]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall close the Sender, Session and Connection]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_006: [The function shall send queued messages as long as the Sender has credit, without waiting for the earlier deliveries to be settled]
     @Test
-    public void onLinkFlow_call_flow_ok() throws UnsupportedEncodingException
+    public void onLinkFlow_sends_all_queued_messages_while_link_has_credit() throws UnsupportedEncodingException
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String hostAddr = hostName + ":5671";
         String deviceId = "deviceId";
         String content = "abcdefghijklmnopqrst";
         com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message(content);
-        String endpoint = "/messages/devicebound";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         createProtonObjects();
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
         amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+        amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                result = 10;
+                sender.getLocalState();
+                result = EndpointState.ACTIVE;
+                message.encode((byte[]) any, 0, anyInt);
+                result = 10;
+            }
+        };
+
+        // Act
+        amqpSendHandler.onLinkFlow(event);
+
         // Assert
-        new Expectations()
+        assertEquals(0, amqpSendHandler.getQueuedMessageCount());
+        new Verifications()
         {
             {
-                link = event.getLink();
-                link.getCredit();
-                byte[] buffer = new byte[1024];
-                message.encode(buffer, 0, 1024);
+                sender.delivery((byte[]) any);
+                times = 2;
+                sender.send((byte[]) any, 0, 10);
+                times = 2;
+                sender.advance();
+                times = 2;
+                sender.close();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_006: [The function shall send queued messages as long as the Sender has credit, without waiting for the earlier deliveries to be settled]
+    @Test
+    public void onLinkFlow_keeps_messages_queued_without_credit() throws UnsupportedEncodingException
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        String content = "abcdefghijklmnopqrst";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message(content);
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        createProtonObjects();
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+        new NonStrictExpectations()
+        {
+            {
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                result = 0;
+            }
+        };
+
+        // Act
+        amqpSendHandler.onLinkFlow(event);
+
+        // Assert
+        assertEquals(1, amqpSendHandler.getQueuedMessageCount());
+        new Verifications()
+        {
+            {
+                sender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_017: [The function shall create and encode a Proton message for every message, reusing one encoding buffer for the whole batch]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_018: [The function shall queue all the messages and return their futures keyed by device name]
+    @Test
+    public void createProtonMessages_encodes_batch_once_and_sends_it_as_credit_allows() throws UnsupportedEncodingException
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        createProtonObjects();
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        Map<String, List<com.microsoft.azure.sdk.iot.service.Message>> messagesByDevice = new LinkedHashMap<>();
+        messagesByDevice.put("device1", Arrays.asList(new com.microsoft.azure.sdk.iot.service.Message("abc"), new com.microsoft.azure.sdk.iot.service.Message("def")));
+        messagesByDevice.put("device2", Arrays.asList(new com.microsoft.azure.sdk.iot.service.Message("ghi")));
+        new NonStrictExpectations()
+        {
+            {
+                message.encode((byte[]) any, 0, anyInt);
+                result = 5;
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                result = 10;
+                sender.getLocalState();
+                result = EndpointState.ACTIVE;
             }
         };
+
         // Act
+        Map<String, List<CompletableFuture<Void>>> futuresByDevice = amqpSendHandler.createProtonMessages(messagesByDevice);
+        assertEquals(3, amqpSendHandler.getQueuedMessageCount());
         amqpSendHandler.onLinkFlow(event);
+
+        // Assert
+        assertEquals(2, futuresByDevice.get("device1").size());
+        assertEquals(1, futuresByDevice.get("device2").size());
+        assertEquals(0, amqpSendHandler.getQueuedMessageCount());
+        new Verifications()
+        {
+            {
+                message.encode((byte[]) any, 0, anyInt);
+                times = 3;
+                properties.setTo("/devices/device1/messages/devicebound");
+                times = 2;
+                properties.setTo("/devices/device2/messages/devicebound");
+                times = 1;
+                sender.send((byte[]) any, 0, 5);
+                times = 3;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_016: [The function shall throw IllegalArgumentException if the map of messages is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void createProtonMessages_checks_if_map_null()
+    {
+        // Arrange
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        // Act
+        amqpSendHandler.createProtonMessages(null);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_017: [The event handler shall get the Sender (Proton) object from the link]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_018: [The event handler shall encode the message and copy to the byte buffer]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_019: [The event handler shall set the delivery tag on the Sender (Proton) object]
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_020: [The event handler shall send the encoded bytes]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_12_021: [The event handler shall close the Sender, Session and Connection]
     @Test
     public void onLinkFlowBufferOverflow_call_flow_ok() throws UnsupportedEncodingException
     {
@@ -437,28 +692,37 @@ public class AmqpSendHandlerTest
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String hostAddr = hostName + ":5671";
-        String deviceId = "deviceId";
-        String content = "abcdefghijklmnopqrst";
-        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message(content);
-        String endpoint = "/messages/devicebound";
         exceptionCount = 0;
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         createProtonObjects();
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<Message> testMessagesToBeSent = new LinkedBlockingQueue<>();
-        testMessagesToBeSent.add(messageWithException);
+        Queue<Object> testMessagesToBeSent = new LinkedBlockingQueue<>();
+        testMessagesToBeSent.add(Deencapsulation.newInstance(AmqpSendHandler.class.getName() + "$OutgoingMessage", messageWithException, new CompletableFuture<Void>()));
         Deencapsulation.setField(amqpSendHandler,"messagesToBeSent", testMessagesToBeSent );
-        // Assert
-        new Expectations()
+        new NonStrictExpectations()
         {
             {
-                link = event.getLink();
-                link.getCredit();
+                event.getLink();
+                result = sender;
+                sender.getCredit();
+                result = 1;
+                sender.getLocalState();
+                result = EndpointState.ACTIVE;
             }
         };
+
         // Act
         amqpSendHandler.onLinkFlow(event);
+
+        // Assert
+        assertEquals(1, (int)exceptionCount);
+        new Verifications()
+        {
+            {
+                sender.send((byte[]) any, 0, anyInt);
+                times = 1;
+            }
+        };
     }
 
     /*
@@ -466,18 +730,16 @@ public class AmqpSendHandlerTest
 
     Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_024: [** The event handler shall get the Delivery remote state from the delivery **]**
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_025: [** The event handler shall verify the Amqp response and add the response to a queue. **]**
-
     Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_026: [** The event handler shall settle the delivery. **]**
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_027: [** The event handler shall get the Sender (Proton) object from the event **]**
+    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_007: [The event handler shall complete the future of the delivery, exceptionally if the service did not accept the message]
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_028: [** The event handler shall close the Sender, Session and Connection **]**
+    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_008: [The event handler shall not close the Sender, Session or Connection]
      */
     @Test
-    public void onDelivery_flow_ok(final @Mocked Event mockedEvent,
-                                   final @Mocked DeliveryState mockedDeliveryState,
-                                   final @Mocked Delivery mockedDelivery) throws UnsupportedEncodingException
+    public void onDelivery_completes_future_and_keeps_connection_open(final @Mocked Event mockedEvent,
+                                                                      final @Mocked DeliveryState mockedDeliveryState,
+                                                                      final @Mocked Delivery mockedDelivery)
     {
         // Arrange
         String hostName = "aaa";
@@ -485,9 +747,8 @@ public class AmqpSendHandlerTest
         String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-
-        // Assert
-        new Expectations()
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new NonStrictExpectations()
         {
             {
                 mockedEvent.getType();
@@ -496,25 +757,122 @@ public class AmqpSendHandlerTest
                 result = mockedDelivery;
                 mockedDelivery.getRemoteState();
                 result = mockedDeliveryState;
+                mockedDelivery.getContext();
+                result = future;
+                responseVerification.getException();
+                result = null;
+            }
+        };
+
+        // Act
+        amqpSendHandler.onDelivery(mockedEvent);
+
+        // Assert
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        new Verifications()
+        {
+            {
+                mockedDelivery.settle();
+                times = 1;
                 sender.close();
-                session = sender.getSession();
-                connection = session.getConnection();
+                times = 0;
                 connection.close();
+                times = 0;
             }
         };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_007: [The event handler shall complete the future of the delivery, exceptionally if the service did not accept the message]
+    @Test
+    public void onDelivery_completes_future_exceptionally_if_rejected(final @Mocked Event mockedEvent,
+                                                                      final @Mocked DeliveryState mockedDeliveryState,
+                                                                      final @Mocked Delivery mockedDelivery,
+                                                                      final @Mocked IotHubException mockedIotHubException) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockedEvent.getType();
+                result = Event.Type.DELIVERY;
+                mockedEvent.getDelivery();
+                result = mockedDelivery;
+                mockedDelivery.getRemoteState();
+                result = mockedDeliveryState;
+                mockedDelivery.getContext();
+                result = future;
+                responseVerification.getException();
+                result = mockedIotHubException;
+            }
+        };
+
         // Act
         amqpSendHandler.onDelivery(mockedEvent);
+
+        // Assert
+        assertTrue(future.isCompletedExceptionally());
+        new Verifications()
+        {
+            {
+                mockedDelivery.settle();
+                times = 1;
+            }
+        };
     }
 
-    /*
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_029: [** The event handler shall check the status queue to get the response for the sent message **]**
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_019: [The futures of the messages shall be completed on the completion executor, if one is set]
+    @Test
+    public void onDelivery_completes_future_on_completion_executor(final @Mocked Event mockedEvent,
+                                                                   final @Mocked DeliveryState mockedDeliveryState,
+                                                                   final @Mocked Delivery mockedDelivery)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        final List<Runnable> completions = new ArrayList<>();
+        amqpSendHandler.setCompletionExecutor(completions::add);
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockedEvent.getType();
+                result = Event.Type.DELIVERY;
+                mockedEvent.getDelivery();
+                result = mockedDelivery;
+                mockedDelivery.getRemoteState();
+                result = mockedDeliveryState;
+                mockedDelivery.getContext();
+                result = future;
+                responseVerification.getException();
+                result = null;
+            }
+        };
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_030: [** The event handler shall remove the response from the queue **]**
+        // Act
+        amqpSendHandler.onDelivery(mockedEvent);
 
-    Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-     */
+        // Assert
+        assertFalse(future.isDone());
+        assertEquals(1, completions.size());
+        completions.get(0).run();
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_007: [The event handler shall complete the future of the delivery, exceptionally if the service did not accept the message]
     @Test
-    public void sendComplete_flow_OK(final @Mocked AmqpResponseVerification mockedVerification) throws IotHubException, IOException
+    public void onDelivery_waits_for_disposition(final @Mocked Event mockedEvent,
+                                                 final @Mocked Delivery mockedDelivery)
     {
         // Arrange
         String hostName = "aaa";
@@ -522,26 +880,280 @@ public class AmqpSendHandlerTest
         String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<AmqpResponseVerification> testsendStatusQueue = new LinkedBlockingQueue<>();
-        testsendStatusQueue.add(mockedVerification);
-        Deencapsulation.setField(amqpSendHandler,"sendStatusQueue", testsendStatusQueue );
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        new NonStrictExpectations()
+        {
+            {
+                mockedEvent.getType();
+                result = Event.Type.DELIVERY;
+                mockedEvent.getDelivery();
+                result = mockedDelivery;
+                mockedDelivery.getRemoteState();
+                result = null;
+                mockedDelivery.remotelySettled();
+                result = false;
+                mockedDelivery.getContext();
+                result = future;
+            }
+        };
+
+        // Act
+        amqpSendHandler.onDelivery(mockedEvent);
 
         // Assert
-        new Expectations()
+        assertFalse(future.isDone());
+        new Verifications()
         {
             {
-                mockedVerification.getException();
-                result = null;
+                mockedDelivery.settle();
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_011: [The event handler shall complete the futures of the unsettled messages exceptionally with an IOException, and keep the queued messages for the next connection]
+    @Test
+    public void onTransportError_fails_unsettled_and_keeps_queued_messages() throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        createProtonObjects();
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        final CompletableFuture<Void> unsettledFuture = new CompletableFuture<>();
+        Map<Delivery, Long> unsettledDeliveries = Deencapsulation.getField(amqpSendHandler, "unsettledDeliveries");
+        unsettledDeliveries.put(delivery, Long.MAX_VALUE);
+        new NonStrictExpectations()
+        {
+            {
+                delivery.getContext();
+                result = unsettledFuture;
+            }
+        };
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Act
+        amqpSendHandler.onTransportError(event);
+
+        // Assert
+        assertTrue(unsettledFuture.isCompletedExceptionally());
+        assertFalse(queuedFuture.isDone());
+        assertEquals(1, amqpSendHandler.getQueuedMessageCount());
+        assertTrue(unsettledDeliveries.isEmpty());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_012: [If close has not been requested, the event handler shall schedule a reconnection on the reactor]
+    @Test
+    public void onConnectionUnbound_schedules_reconnection(final @Mocked Reactor mockedReactor)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = mockedReactor;
+            }
+        };
+
+        // Act
+        amqpSendHandler.onConnectionUnbound(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedReactor.schedule(AmqpSendHandler.RECONNECT_DELAY_MILLISECONDS, amqpSendHandler);
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_012: [If close has not been requested, the event handler shall schedule a reconnection on the reactor]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_014: [The function shall mark the handler as closing so that no new messages are accepted and no reconnection is attempted]
+    @Test
+    public void onConnectionUnbound_does_not_reconnect_after_close(final @Mocked Reactor mockedReactor)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = mockedReactor;
+            }
+        };
+        amqpSendHandler.close();
+
+        // Act
+        amqpSendHandler.onConnectionUnbound(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedReactor.schedule(anyInt, (Handler) any);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_024: [If the reconnection attempts have run out, the event handler shall fail all unsettled and queued messages with an IOException and stop reconnecting]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_025: [The delay before each reconnection shall double after every failed attempt, up to a maximum]
+    @Test
+    public void onConnectionUnbound_backs_off_and_fails_messages_when_attempts_run_out(final @Mocked Reactor mockedReactor) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = mockedReactor;
+            }
+        };
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Act
+        for (int i = 0; i < AmqpSendHandler.MAX_RECONNECT_ATTEMPTS; i++)
+        {
+            amqpSendHandler.onConnectionUnbound(event);
+            assertFalse(queuedFuture.isDone());
+            amqpSendHandler.onTimerTask(event);
+        }
+        amqpSendHandler.onConnectionUnbound(event);
+        CompletableFuture<Void> lateFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Assert
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertTrue(lateFuture.isCompletedExceptionally());
+        try
+        {
+            queuedFuture.get();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        new Verifications()
+        {
+            {
+                mockedReactor.schedule(AmqpSendHandler.RECONNECT_DELAY_MILLISECONDS, amqpSendHandler);
+                times = 1;
+                mockedReactor.schedule(AmqpSendHandler.RECONNECT_DELAY_MILLISECONDS * 2, amqpSendHandler);
+                times = 1;
+                mockedReactor.schedule(AmqpSendHandler.RECONNECT_DELAY_MILLISECONDS * 4, amqpSendHandler);
+                times = 1;
+                mockedReactor.schedule(anyInt, (Handler) any);
+                times = AmqpSendHandler.MAX_RECONNECT_ATTEMPTS;
+                mockedReactor.connection(amqpSendHandler);
+                times = AmqpSendHandler.MAX_RECONNECT_ATTEMPTS;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_023: [The event handler shall reset the number of reconnection attempts]
+    @Test
+    public void onLinkRemoteOpen_resets_reconnection_backoff(final @Mocked Reactor mockedReactor)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = mockedReactor;
             }
         };
+        amqpSendHandler.onConnectionUnbound(event);
+        amqpSendHandler.onTimerTask(event);
+
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.onLinkRemoteOpen(event);
+        amqpSendHandler.onConnectionUnbound(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedReactor.schedule(AmqpSendHandler.RECONNECT_DELAY_MILLISECONDS, amqpSendHandler);
+                times = 2;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_022: [If the service closed the connection with an error that reconnecting cannot fix, such as an authorization failure, the event handler shall fail all unsettled and queued messages with an IOException and stop reconnecting]
+    @Test
+    public void onConnectionRemoteClose_unauthorized_fails_messages_and_stops_reconnecting(final @Mocked Reactor mockedReactor) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        final CompletableFuture<Void> unsettledFuture = new CompletableFuture<>();
+        Map<Delivery, Long> unsettledDeliveries = Deencapsulation.getField(amqpSendHandler, "unsettledDeliveries");
+        unsettledDeliveries.put(delivery, Long.MAX_VALUE);
+        final ErrorCondition unauthorized = new ErrorCondition(AmqpError.UNAUTHORIZED_ACCESS, "token expired");
+        new NonStrictExpectations()
+        {
+            {
+                event.getReactor();
+                result = mockedReactor;
+                event.getConnection();
+                result = connection;
+                connection.getRemoteCondition();
+                result = unauthorized;
+                delivery.getContext();
+                result = unsettledFuture;
+            }
+        };
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+
+        // Act
+        amqpSendHandler.onConnectionRemoteClose(event);
+        amqpSendHandler.onConnectionUnbound(event);
+
+        // Assert
+        assertTrue(unsettledFuture.isCompletedExceptionally());
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        new Verifications()
+        {
+            {
+                mockedReactor.schedule(anyInt, (Handler) any);
+                times = 0;
+            }
+        };
     }
 
-    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-    @Test (expected = IotHubException.class)
-    public void sendComplete_throws_exception_if_found(final @Mocked AmqpResponseVerification mockedVerification,
-                                                       final @Mocked IotHubException mockedIotHubException) throws IotHubException, IOException
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_026: [The function shall fail the queued and unsettled messages that are not settled within the message timeout with an IOException]
+    @Test
+    public void processPendingRequests_fails_expired_messages() throws Exception
     {
         // Arrange
         String hostName = "aaa";
@@ -549,41 +1161,136 @@ public class AmqpSendHandlerTest
         String sasToken = "ccc";
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        Queue<AmqpResponseVerification> testsendStatusQueue = new LinkedBlockingQueue<>();
-        testsendStatusQueue.add(mockedVerification);
-        Deencapsulation.setField(amqpSendHandler,"sendStatusQueue", testsendStatusQueue );
+        final CompletableFuture<Void> expiredQueuedFuture = new CompletableFuture<>();
+        final CompletableFuture<Void> queuedFuture = new CompletableFuture<>();
+        final CompletableFuture<Void> expiredUnsettledFuture = new CompletableFuture<>();
+        Class[] outgoingMessageTypes = {Message.class, CompletableFuture.class, byte[].class, long.class};
+        Queue<Object> testMessagesToBeSent = new LinkedBlockingQueue<>();
+        testMessagesToBeSent.add(Deencapsulation.newInstance(AmqpSendHandler.class.getName() + "$OutgoingMessage", outgoingMessageTypes, message, expiredQueuedFuture, null, 0L));
+        testMessagesToBeSent.add(Deencapsulation.newInstance(AmqpSendHandler.class.getName() + "$OutgoingMessage", outgoingMessageTypes, message, queuedFuture, null, Long.MAX_VALUE));
+        Deencapsulation.setField(amqpSendHandler, "messagesToBeSent", testMessagesToBeSent);
+        Map<Delivery, Long> unsettledDeliveries = Deencapsulation.getField(amqpSendHandler, "unsettledDeliveries");
+        unsettledDeliveries.put(delivery, 0L);
+        new NonStrictExpectations()
+        {
+            {
+                delivery.getContext();
+                result = expiredUnsettledFuture;
+            }
+        };
+
+        // Act
+        amqpSendHandler.processPendingRequests();
 
         // Assert
-        new Expectations()
+        assertTrue(expiredQueuedFuture.isCompletedExceptionally());
+        assertTrue(expiredUnsettledFuture.isCompletedExceptionally());
+        assertFalse(queuedFuture.isDone());
+        assertEquals(1, amqpSendHandler.getQueuedMessageCount());
+        assertTrue(unsettledDeliveries.isEmpty());
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_013: [The event handler shall open a new connection handled by this handler unless close has been requested]
+    @Test
+    public void onTimerTask_opens_new_connection(final @Mocked Reactor mockedReactor)
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        new NonStrictExpectations()
         {
             {
-                mockedVerification.getException();
-                result = mockedIotHubException;
+                event.getReactor();
+                result = mockedReactor;
             }
         };
+
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.onTimerTask(event);
 
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedReactor.connection(amqpSendHandler);
+                times = 1;
+            }
+        };
     }
 
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_009: [If close has been requested, the function shall cancel any reconnection, close the Sender, Session and Connection and fail all queued messages]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_014: [The function shall mark the handler as closing so that no new messages are accepted and no reconnection is attempted]
+    @Test
+    public void processPendingRequests_closes_connection_after_close() throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        createProtonObjects();
+        AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        Deencapsulation.setField(amqpSendHandler, "connection", connection);
+        Deencapsulation.setField(amqpSendHandler, "sender", sender);
+        new NonStrictExpectations()
+        {
+            {
+                sender.getLocalState();
+                result = EndpointState.ACTIVE;
+                connection.getLocalState();
+                result = EndpointState.ACTIVE;
+            }
+        };
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
+        amqpSendHandler.close();
 
-    //Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_25_031: [** The event handler shall get the exception from the response and throw is it is not null **]**
-    @Test (expected = IOException.class)
-    public void sendComplete_throws_Connection_exception_if_found(final @Mocked AmqpResponseVerification mockedVerification,
-                                                                  final @Mocked IotHubException mockedIotHubException,
-                                                                  final @Mocked Event mockedEvent) throws IotHubException, IOException
+        // Act
+        amqpSendHandler.processPendingRequests();
+
+        // Assert
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        new Verifications()
+        {
+            {
+                sender.close();
+                times = 1;
+                connection.close();
+                times = 1;
+                sender.send((byte[]) any, anyInt, anyInt);
+                times = 0;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_004: [If the handler has been stopped, the function shall complete the future exceptionally with an IOException]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSENDHANDLER_41_015: [The function shall complete the futures of all unsettled and queued messages exceptionally with the given exception]
+    @Test
+    public void createProtonMessage_fails_after_stop() throws Exception
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
+        String deviceId = "deviceId";
+        com.microsoft.azure.sdk.iot.service.Message iotMessage = new com.microsoft.azure.sdk.iot.service.Message("abc");
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        createProtonObjects();
         AmqpSendHandler amqpSendHandler = new AmqpSendHandler(hostName, userName, sasToken, iotHubServiceClientProtocol);
-        amqpSendHandler.onTransportError(mockedEvent);
+        CompletableFuture<Void> queuedFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
 
         // Act
-        amqpSendHandler.sendComplete();
+        amqpSendHandler.stop(new IOException());
+        CompletableFuture<Void> lateFuture = amqpSendHandler.createProtonMessage(deviceId, iotMessage);
 
+        // Assert
+        assertTrue(queuedFuture.isCompletedExceptionally());
+        assertTrue(lateFuture.isCompletedExceptionally());
+        assertEquals(0, amqpSendHandler.getQueuedMessageCount());
     }
 
     private void createProtonObjects()
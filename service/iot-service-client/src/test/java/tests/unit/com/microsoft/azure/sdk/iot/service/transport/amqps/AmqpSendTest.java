@@ -5,13 +5,18 @@
 
 package tests.unit.com.microsoft.azure.sdk.iot.service.transport.amqps;
 
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionString;
+import com.microsoft.azure.sdk.iot.service.IotHubConnectionStringBuilder;
 import com.microsoft.azure.sdk.iot.service.IotHubServiceClientProtocol;
 import com.microsoft.azure.sdk.iot.service.Message;
+import com.microsoft.azure.sdk.iot.service.exceptions.IotHubNotFoundException;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSend;
 import com.microsoft.azure.sdk.iot.service.transport.amqps.AmqpSendHandler;
 import mockit.Deencapsulation;
 import mockit.Expectations;
 import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.Verifications;
 import mockit.integration.junit4.JMockit;
 import org.apache.qpid.proton.Proton;
 import org.apache.qpid.proton.engine.Connection;
@@ -22,6 +27,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -30,6 +41,8 @@ import static org.junit.Assert.assertNull;
 @RunWith(JMockit.class)
 public class AmqpSendTest
 {
+    private static final String CONNECTION_STRING = "HostName=HOSTNAME.IOTHUBNAME;SharedAccessKeyName=ACCESSKEYNAME;SharedAccessKey=1234567890abcdefghijklmnopqrstvwxyz=";
+
     @Mocked Proton proton;
     @Mocked Reactor reactor;
     @Mocked Event event;
@@ -223,58 +236,248 @@ public class AmqpSendTest
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_006: [The event handler shall create a Proton message with the given content]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_007: [The function shall wake up the reactor so that it sends the message without waiting for the earlier messages to be settled]
     @Test
-    public void send_creates_ProtonMessage() throws Exception
+    public void sendAsync_queues_ProtonMessage_and_wakes_up_Reactor(final @Mocked AmqpSendHandler mockedHandler) throws Exception
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String deviceId = "deviceId";
+        final String deviceId = "deviceId";
         String content = "abcdefghijklmnopqrst";
-        Message message = new Message(content);
+        final Message message = new Message(content);
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
         amqpSend.open();
 
-        AmqpSendHandler handler = Deencapsulation.getField(amqpSend, "amqpSendHandler");
+        // Act
+        amqpSend.sendAsync(deviceId, message);
+
         // Assert
-        new Expectations()
+        new Verifications()
         {
             {
-                Deencapsulation.invoke(handler, "createProtonMessage"
-                        , deviceId, message);
+                mockedHandler.createProtonMessage(deviceId, message);
+                times = 1;
+                reactor.wakeup();
+                minTimes = 1;
             }
         };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_009: [The function shall create and queue the binary messages of all devices, then wake up the reactor once]
+    @Test
+    public void sendBatchAsync_queues_all_messages_and_wakes_up_Reactor_once(final @Mocked AmqpSendHandler mockedHandler) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        final Map<String, List<Message>> messagesByDevice = new HashMap<>();
+        messagesByDevice.put("device1", Arrays.asList(new Message("abc"), new Message("def")));
+        messagesByDevice.put("device2", Arrays.asList(new Message("ghi")));
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSend.open();
+
+        // Act
+        amqpSend.sendBatchAsync(messagesByDevice);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedHandler.createProtonMessages(messagesByDevice);
+                times = 1;
+                mockedHandler.createProtonMessage(anyString, (Message) any);
+                times = 0;
+                reactor.wakeup();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_008: [The function shall throw IOException if the send handler object is not initialized]
+    @Test (expected = IOException.class)
+    public void sendBatchAsync_throwsIOException_when_open_has_not_been_called() throws Exception
+    {
+        // Arrange
+        AmqpSend amqpSend = new AmqpSend("aaa", "bbb", "ccc", IotHubServiceClientProtocol.AMQPS);
+        Map<String, List<Message>> messagesByDevice = new HashMap<>();
+        messagesByDevice.put("device1", Arrays.asList(new Message("abc")));
+        // Act
+        amqpSend.sendBatchAsync(messagesByDevice);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_25_010: [** The function shall identify the status of sent message and throw the exception IotHub responded with **]**
+    @Test (expected = IotHubNotFoundException.class)
+    public void send_throws_exception_IotHub_responded_with(final @Mocked AmqpSendHandler mockedHandler) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        String deviceId = "deviceId";
+        Message message = new Message("abcdefghijklmnopqrst");
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSend.open();
+        final CompletableFuture<Void> rejectedFuture = new CompletableFuture<>();
+        rejectedFuture.completeExceptionally(new IotHubNotFoundException());
+        new NonStrictExpectations()
+        {
+            {
+                mockedHandler.createProtonMessage(anyString, (Message) any);
+                result = rejectedFuture;
+            }
+        };
+
         // Act
         amqpSend.send(deviceId, message);
     }
 
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The event handler shall initialize the Proton reactor object]
-    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The event handler shall start the Proton reactor object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_007: [The function shall initialize the Proton reactor object]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_008: [The function shall start the Proton reactor object on its own thread and keep it running until close]
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_004: [The function shall do nothing if the reactor is already running]
     @Test
-    public void send_initializes_Reactor() throws Exception
+    public void open_initializes_Reactor_once() throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        final AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+
+        // Act
+        amqpSend.open();
+        amqpSend.open();
+
+        // Assert
+        new Verifications()
+        {
+            {
+                Proton.reactor(amqpSend);
+                times = 1;
+            }
+        };
+        amqpSend.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_010: [The function shall let the AmqpsSendHandler complete the futures of the messages on a thread pool, not on the reactor thread]
+    @Test
+    public void open_sets_completion_executor_on_handler(final @Mocked AmqpSendHandler mockedHandler) throws Exception
     {
         // Arrange
         String hostName = "aaa";
         String userName = "bbb";
         String sasToken = "ccc";
-        String deviceId = "deviceId";
-        String content = "abcdefghijklmnopqrst";
-        Message message = new Message(content);
         IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
         AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+
+        // Act
         amqpSend.open();
+
         // Assert
-        new Expectations()
+        new Verifications()
         {
             {
-                reactor = proton.reactor(amqpSend);
-                reactor.run();
+                mockedHandler.setCompletionExecutor((Executor) any);
+                times = 1;
             }
         };
+        amqpSend.close();
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_003: [The event handler shall let the AmqpsSendHandler send its queued messages]
+    @Test
+    public void onReactorQuiesced_processes_pending_requests(final @Mocked AmqpSendHandler mockedHandler) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSend.open();
+
         // Act
-        amqpSend.send(deviceId, message);
+        amqpSend.onReactorQuiesced(event);
+
+        // Assert
+        new Verifications()
+        {
+            {
+                mockedHandler.processPendingRequests();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_006: [The function shall request the AmqpsSendHandler to close the connection, wake up the reactor and wait for it to stop]
+    @Test
+    public void close_requests_handler_close_and_wakes_up_Reactor(final @Mocked AmqpSendHandler mockedHandler) throws Exception
+    {
+        // Arrange
+        String hostName = "aaa";
+        String userName = "bbb";
+        String sasToken = "ccc";
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+        AmqpSend amqpSend = new AmqpSend(hostName, userName, sasToken, iotHubServiceClientProtocol);
+        amqpSend.open();
+
+        // Act
+        amqpSend.close();
+
+        // Assert
+        assertNull(Deencapsulation.getField(amqpSend, "amqpSendHandler"));
+        new Verifications()
+        {
+            {
+                mockedHandler.close();
+                times = 1;
+                reactor.wakeup();
+                times = 1;
+            }
+        };
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_002: [The constructor shall copy the host name and user name of the connection string and all input parameters to private member variables]
+    @Test
+    public void constructor_from_connection_string_copies_params_to_members() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+        IotHubServiceClientProtocol iotHubServiceClientProtocol = IotHubServiceClientProtocol.AMQPS;
+
+        // Act
+        AmqpSend amqpSend = new AmqpSend(iotHubConnectionString, iotHubServiceClientProtocol);
+
+        // Assert
+        assertEquals(iotHubConnectionString.getHostName(), Deencapsulation.getField(amqpSend, "hostName"));
+        assertEquals(iotHubConnectionString.getUserString(), Deencapsulation.getField(amqpSend, "userName"));
+        assertEquals(iotHubConnectionString, Deencapsulation.getField(amqpSend, "iotHubConnectionString"));
+        assertEquals(iotHubServiceClientProtocol, Deencapsulation.getField(amqpSend, "iotHubServiceClientProtocol"));
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_from_connection_string_checks_if_connection_string_null()
+    {
+        // Act
+        new AmqpSend((IotHubConnectionString) null, IotHubServiceClientProtocol.AMQPS);
+    }
+
+    // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_41_001: [The constructor shall throw IllegalArgumentException if any of the input parameter is null]
+    @Test (expected = IllegalArgumentException.class)
+    public void constructor_from_connection_string_checks_if_protocol_null() throws Exception
+    {
+        // Arrange
+        IotHubConnectionString iotHubConnectionString = IotHubConnectionStringBuilder.createConnectionString(CONNECTION_STRING);
+
+        // Act
+        new AmqpSend(iotHubConnectionString, null);
     }
 
     // Tests_SRS_SERVICE_SDK_JAVA_AMQPSEND_12_009: [The event handler shall throw IOException if the send handler object is not initialized]
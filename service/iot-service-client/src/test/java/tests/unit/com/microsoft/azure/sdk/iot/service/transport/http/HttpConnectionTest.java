@@ -7,6 +7,7 @@ package tests.unit.com.microsoft.azure.sdk.iot.service.transport.http;
 
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpConnection;
 import com.microsoft.azure.sdk.iot.service.transport.http.HttpMethod;
+import mockit.Deencapsulation;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import mockit.Verifications;
@@ -15,6 +16,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import javax.net.ssl.HttpsURLConnection;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -389,7 +391,7 @@ public class HttpConnectionTest
 
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSCONNECTION_12_014: [The function shall read from the input stream (response stream) and return the response.]
     @Test
-    public void readInputCompletelyReadsInputStream(@Mocked final InputStream mockIs) throws IOException
+    public void readInputCompletelyReadsInputStream() throws IOException
     {
         // Arrange
         final HttpMethod httpsMethod = HttpMethod.GET;
@@ -404,9 +406,7 @@ public class HttpConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getInputStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -462,6 +462,8 @@ public class HttpConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -479,7 +481,7 @@ public class HttpConnectionTest
 
     // Tests_SRS_SERVICE_SDK_JAVA_HTTPSCONNECTION_12_017: [The function shall read from the error stream and return the response.]
     @Test
-    public void readErrorCompletelyReadsErrorStream(@Mocked final InputStream mockIs) throws IOException
+    public void readErrorCompletelyReadsErrorStream() throws IOException
     {
         // Arrange
         final HttpMethod httpsMethod = HttpMethod.GET;
@@ -494,9 +496,7 @@ public class HttpConnectionTest
                 mockUrlConn.getRequestMethod();
                 result = httpsMethod.name();
                 mockUrlConn.getErrorStream();
-                result = mockIs;
-                mockIs.read();
-                returns(1, 2, 3, -1);
+                result = new ByteArrayInputStream(new byte[] { 1, 2, 3 });
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -580,6 +580,8 @@ public class HttpConnectionTest
                 result = mockIs;
                 mockIs.read();
                 result = -1;
+                mockIs.read((byte[]) any, anyInt, anyInt);
+                result = -1;
             }
         };
         HttpConnection conn = new HttpConnection(mockUrl, httpsMethod);
@@ -720,4 +722,16 @@ public class HttpConnectionTest
         // Act
         conn.getResponseHeaders();
     }
+
+    // Tests_SRS_HTTPCONNECTION_41_001: [The function shall read the stream until it is empty and return its content.]
+    @Test
+    public void readInputStreamReadsStreamUntilEmpty() throws IOException
+    {
+        // Arrange
+        byte[] expectedContent = { 1, 2, 3 };
+        // Act
+        byte[] content = Deencapsulation.invoke(HttpConnection.class, "readInputStream", new ByteArrayInputStream(expectedContent));
+        // Assert
+        assertThat(content, is(expectedContent));
+    }
 }